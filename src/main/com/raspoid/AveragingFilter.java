@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+/**
+ * <b>Allocation-free filter used to average a stream of integer values, such as
+ * fixed-point sensor measures.</b>
+ * 
+ * <p>Three modes are available:
+ *  <ul>
+ *      <li>{@link Mode#NONE}: the values are returned as is,</li>
+ *      <li>{@link Mode#WINDOW}: the mean of the last N values (running window),</li>
+ *      <li>{@link Mode#EXPONENTIAL}: an exponential moving average, with a smoothing factor of 1/2^N.</li>
+ *  </ul>
+ * </p>
+ * 
+ * <p>Values are stored in primitive fields and arrays allocated once, in the constructor:
+ * no allocation is made when a new value is added.</p>
+ * 
+ * <p>This class is not thread safe.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class AveragingFilter {
+    
+    /**
+     * Maximum shift for the exponential mode (smoothing factor of 1/2^16).
+     */
+    public static final int MAX_EXPONENTIAL_SHIFT = 16;
+    
+    /**
+     * The selected averaging mode.
+     */
+    private final Mode mode;
+    
+    /**
+     * Window size (WINDOW mode) or smoothing shift (EXPONENTIAL mode).
+     */
+    private final int parameter;
+    
+    /**
+     * Last values received (WINDOW mode).
+     */
+    private final int[] window;
+    
+    /**
+     * Index of the next value to replace in the window (WINDOW mode).
+     */
+    private int windowIndex = 0;
+    
+    /**
+     * Number of values received, up to the window size (WINDOW mode),
+     * or up to 1 (NONE and EXPONENTIAL modes).
+     */
+    private int count = 0;
+    
+    /**
+     * Sum of the values of the window (WINDOW mode), or exponential accumulator
+     * scaled by 2^parameter (EXPONENTIAL mode).
+     */
+    private long accumulator = 0;
+    
+    /**
+     * Last filtered value.
+     */
+    private int value = 0;
+    
+    /**
+     * Averaging modes available.
+     */
+    public enum Mode {
+        
+        /**
+         * No averaging: the filtered value is the last value received.
+         */
+        NONE,
+        
+        /**
+         * Mean of the last N values received.
+         */
+        WINDOW,
+        
+        /**
+         * Exponential moving average: value += (newValue - value) / 2^N.
+         */
+        EXPONENTIAL
+    }
+    
+    /**
+     * Constructor for a new averaging filter.
+     * @param mode the averaging mode.
+     * @param parameter the size of the window for the WINDOW mode (&gt;= 1), or the smoothing shift N
+     * for the EXPONENTIAL mode (in the [0;16] interval, smoothing factor = 1/2^N). Unused for the NONE mode.
+     */
+    public AveragingFilter(Mode mode, int parameter) {
+        if(mode == Mode.WINDOW && parameter < 1)
+            throw new IllegalArgumentException("The size of the window must be at least 1.");
+        if(mode == Mode.EXPONENTIAL && (parameter < 0 || parameter > MAX_EXPONENTIAL_SHIFT))
+            throw new IllegalArgumentException("The smoothing shift must be in the [0;" + MAX_EXPONENTIAL_SHIFT + "] interval.");
+        
+        this.mode = mode;
+        this.parameter = parameter;
+        this.window = mode == Mode.WINDOW ? new int[parameter] : null;
+    }
+    
+    /**
+     * Adds a new value to the filter, and returns the new filtered value.
+     * @param newValue the new value to add.
+     * @return the new filtered value.
+     */
+    public int add(int newValue) {
+        switch(mode) {
+        case WINDOW:
+            if(count == window.length)
+                accumulator -= window[windowIndex];
+            else
+                count++;
+            window[windowIndex] = newValue;
+            windowIndex = (windowIndex + 1) % window.length;
+            accumulator += newValue;
+            value = (int) roundedDivision(accumulator, count);
+            break;
+        case EXPONENTIAL:
+            if(count == 0) {
+                accumulator = (long) newValue << parameter;
+                count = 1;
+            } else {
+                accumulator += newValue - (accumulator >> parameter);
+            }
+            value = (int) ((accumulator + (parameter > 0 ? 1L << (parameter - 1) : 0)) >> parameter);
+            break;
+        default:
+            count = 1;
+            value = newValue;
+            break;
+        }
+        return value;
+    }
+    
+    /**
+     * Get the last filtered value.
+     * @return the last filtered value, or 0 if no value has been added yet.
+     */
+    public int getValue() {
+        return value;
+    }
+    
+    /**
+     * Checks if at least one value has been added since the creation or the last reset of the filter.
+     * @return true if the filter contains at least one value.
+     */
+    public boolean hasValue() {
+        return count > 0;
+    }
+    
+    /**
+     * Get the averaging mode of this filter.
+     * @return the averaging mode of this filter.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Clears all the values received by the filter.
+     */
+    public void reset() {
+        windowIndex = 0;
+        count = 0;
+        accumulator = 0;
+        value = 0;
+    }
+    
+    /**
+     * Division of a sum by a positive count, rounded to the nearest integer.
+     * @param sum the sum to divide.
+     * @param count the positive divisor.
+     * @return the rounded quotient.
+     */
+    private static long roundedDivision(long sum, int count) {
+        return sum >= 0 ? (sum + count / 2) / count : (sum - count / 2) / count;
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+import java.util.Arrays;
+
+/**
+ * <b>A blink pattern: a sequence of ON and OFF periods, played on a digital output by a {@link BlinkPatternEngine}.</b>
+ * 
+ * <p>The pattern is stored as a compact array of durations, in ms, alternating ON and OFF periods
+ * (starting with an ON period). A period can be empty (0 ms). A looping pattern starts again from its
+ * first period at its end, while a one shot pattern turns the output off at its end.</p>
+ * 
+ * <p>Some common patterns are available: {@link #blink(int, int)}, {@link #pulse(int)}, {@link #heartbeat(int)},
+ * {@link #morse(String, int, boolean)} and {@link #dutyCycle(int, int)} (software PWM, to dim a LED).</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BlinkPattern {
+    
+    /**
+     * Morse code of the letters A to Z.
+     */
+    private static final String[] MORSE_LETTERS = {".-", "-...", "-.-.", "-..", ".", "..-.", "--.", "....", "..",
+            ".---", "-.-", ".-..", "--", "-.", "---", ".--.", "--.-", ".-.", "...", "-", "..-", "...-", ".--",
+            "-..-", "-.--", "--.."};
+    
+    /**
+     * Morse code of the digits 0 to 9.
+     */
+    private static final String[] MORSE_DIGITS = {"-----", ".----", "..---", "...--", "....-", ".....", "-....",
+            "--...", "---..", "----."};
+    
+    /**
+     * Durations of the periods, in ms: ON periods at even indexes, OFF periods at odd indexes.
+     */
+    private final int[] durations;
+    
+    private final boolean looping;
+    
+    /**
+     * Constructor for a new blink pattern.
+     * @param durations the durations of the periods, in ms, alternating ON and OFF periods (starting with an ON period).
+     * @param looping true if the pattern starts again at its end, false to turn the output off at its end.
+     */
+    public BlinkPattern(int[] durations, boolean looping) {
+        int total = 0;
+        for(int duration : durations) {
+            if(duration < 0)
+                throw new IllegalArgumentException("The durations of a blink pattern can't be negative.");
+            total += duration;
+        }
+        if(total == 0)
+            throw new IllegalArgumentException("The total duration of a blink pattern must be positive.");
+        this.durations = durations.clone();
+        this.looping = looping;
+    }
+    
+    /**
+     * Creates a looping pattern: ON during onMillis ms, then OFF during offMillis ms.
+     * @param onMillis the duration of the ON period, in ms.
+     * @param offMillis the duration of the OFF period, in ms.
+     * @return the new pattern.
+     */
+    public static BlinkPattern blink(int onMillis, int offMillis) {
+        return new BlinkPattern(new int[] {onMillis, offMillis}, true);
+    }
+    
+    /**
+     * Creates a one shot pattern: ON during millis ms, then OFF.
+     * @param millis the duration of the ON period, in ms.
+     * @return the new pattern.
+     */
+    public static BlinkPattern pulse(int millis) {
+        return new BlinkPattern(new int[] {millis}, false);
+    }
+    
+    /**
+     * Creates a looping heartbeat pattern: two short pulses, followed by a long pause.
+     * @param periodMillis the duration of a heartbeat, in ms (e.g. 1000 ms).
+     * @return the new pattern.
+     */
+    public static BlinkPattern heartbeat(int periodMillis) {
+        int pulse = periodMillis / 10;
+        return new BlinkPattern(new int[] {pulse, pulse, pulse, periodMillis - 3 * pulse}, true);
+    }
+    
+    /**
+     * Creates a looping software PWM pattern, to dim a LED (e.g. a period of 10 ms, with an engine tick of 1 ms).
+     * <p>The durations are rounded to the tick period of the engine: the period must last many ticks
+     * (see {@link com.raspoid.additionalcomponents.LED#blink(BlinkPattern, BlinkPatternEngine)}).</p>
+     * @param percent the duty cycle, in % (0 = always OFF, 100 = always ON).
+     * @param periodMillis the period of the signal, in ms.
+     * @return the new pattern.
+     */
+    public static BlinkPattern dutyCycle(int percent, int periodMillis) {
+        percent = Math.max(0, Math.min(100, percent));
+        int on = periodMillis * percent / 100;
+        return new BlinkPattern(new int[] {on, periodMillis - on}, true);
+    }
+    
+    /**
+     * Creates a pattern transmitting a text in Morse code (letters, digits and spaces; other characters are ignored).
+     * <p>A dot lasts one unit, a dash three units. The gap between the elements of a character lasts one unit,
+     * the gap between two characters three units, and the gap between two words seven units.</p>
+     * @param text the text to transmit.
+     * @param unitMillis the duration of a unit, in ms.
+     * @param looping true to repeat the text (separated by a gap of seven units).
+     * @return the new pattern.
+     */
+    public static BlinkPattern morse(String text, int unitMillis, boolean looping) {
+        int[] durations = new int[16];
+        int nbDurations = 0;
+        int pendingGap = 0; // in units, added before the next ON period
+        
+        for(char c : text.toUpperCase().toCharArray()) {
+            String code = null;
+            if(c >= 'A' && c <= 'Z')
+                code = MORSE_LETTERS[c - 'A'];
+            else if(c >= '0' && c <= '9')
+                code = MORSE_DIGITS[c - '0'];
+            else if(c == ' ' && nbDurations > 0)
+                pendingGap = 7;
+            if(code == null)
+                continue;
+            
+            for(char element : code.toCharArray()) {
+                if(nbDurations + 2 > durations.length)
+                    durations = Arrays.copyOf(durations, durations.length * 2);
+                if(nbDurations > 0)
+                    durations[nbDurations - 1] = pendingGap * unitMillis;
+                durations[nbDurations++] = (element == '.' ? 1 : 3) * unitMillis;
+                durations[nbDurations++] = 0;
+                pendingGap = 1;
+            }
+            pendingGap = Math.max(pendingGap, 3);
+        }
+        if(nbDurations == 0)
+            throw new IllegalArgumentException("No character to transmit in Morse code.");
+        durations[nbDurations - 1] = looping ? 7 * unitMillis : 0;
+        return new BlinkPattern(Arrays.copyOf(durations, nbDurations), looping);
+    }
+    
+    /**
+     * Get the number of periods of the pattern.
+     * @return the number of periods.
+     */
+    public int getNbPeriods() {
+        return durations.length;
+    }
+    
+    /**
+     * Get the duration of a period.
+     * @param index the index of the period (ON periods at even indexes, OFF periods at odd indexes).
+     * @return the duration of the period, in ms.
+     */
+    public int getDuration(int index) {
+        return durations[index];
+    }
+    
+    /**
+     * Checks if the pattern starts again at its end.
+     * @return true if the pattern is looping.
+     */
+    public boolean isLooping() {
+        return looping;
+    }
+}
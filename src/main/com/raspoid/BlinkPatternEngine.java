@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.PinState;
+
+/**
+ * <b>Engine playing {@link BlinkPattern blink patterns} on digital outputs (LEDs, active buzzers, ...).</b>
+ * 
+ * <p>All the outputs are driven by one thread, at a fixed tick: the durations of a pattern are converted
+ * once in numbers of ticks when the pattern is assigned, and each tick only decrements counters.
+ * The state of an output is only written when it changes, and nothing is allocated per tick.
+ * Many blinking outputs then cost one thread and a few operations per tick, instead of one thread
+ * (or one sleeping loop) per output.</p>
+ * 
+ * <p>The ticker only runs while at least one pattern is playing: an idle engine costs no CPU.</p>
+ * 
+ * <p>The durations are rounded to the tick period. A tick period of 10 ms ({@link #DEFAULT_TICK_PERIOD})
+ * is enough for blinking and Morse patterns. Software PWM ({@link BlinkPattern#dutyCycle(int, int)})
+ * needs a shorter tick period (e.g. 1 ms) on a dedicated engine.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BlinkPatternEngine {
+    
+    /**
+     * Default tick period, in ms.
+     */
+    public static final int DEFAULT_TICK_PERIOD = 10; // ms
+    
+    /**
+     * The default engine, shared by the components of the framework
+     * (lazily created, see {@link #getDefault()}).
+     */
+    private static BlinkPatternEngine defaultEngine = null;
+    
+    /**
+     * An output playing a pattern.
+     */
+    private static class Slot {
+        private final GpioPinDigitalOutput output;
+        private final PinState onState;
+        private final PinState offState;
+        private final int[] ticks;
+        private final boolean looping;
+        private int step = -1;
+        private int remainingTicks = 0;
+        private boolean on;
+        
+        private Slot(GpioPinDigitalOutput output, PinState onState, int[] ticks, boolean looping) {
+            this.output = output;
+            this.onState = onState;
+            this.offState = onState == PinState.HIGH ? PinState.LOW : PinState.HIGH;
+            this.ticks = ticks;
+            this.looping = looping;
+            this.on = output.getState() == onState;
+        }
+    }
+    
+    private final int tickPeriod;
+    
+    private final ScheduledExecutorService executor;
+    
+    private final List<Slot> slots = new ArrayList<>();
+    
+    /**
+     * The ticker (null while no pattern is playing).
+     */
+    private ScheduledFuture<?> ticker = null;
+    
+    /**
+     * Constructor for a new engine, with a specific tick period.
+     * @param tickPeriod the tick period, in ms.
+     */
+    public BlinkPatternEngine(int tickPeriod) {
+        if(tickPeriod <= 0)
+            throw new IllegalArgumentException("The tick period must be positive.");
+        this.tickPeriod = tickPeriod;
+        this.executor = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-blink-engine"));
+    }
+    
+    /**
+     * Get the default engine, with a tick period of {@link #DEFAULT_TICK_PERIOD} ms,
+     * shared by the components of the framework.
+     * @return the default engine.
+     */
+    public static synchronized BlinkPatternEngine getDefault() {
+        if(defaultEngine == null)
+            defaultEngine = new BlinkPatternEngine(DEFAULT_TICK_PERIOD);
+        return defaultEngine;
+    }
+    
+    /**
+     * Get the tick period of this engine.
+     * @return the tick period, in ms.
+     */
+    public int getTickPeriod() {
+        return tickPeriod;
+    }
+    
+    /**
+     * Plays a pattern on an output, replacing the pattern currently played on this output (if any).
+     * The first period of the pattern starts immediately.
+     * @param output the digital output.
+     * @param onState the state of the output during the ON periods.
+     * @param pattern the pattern to play.
+     */
+    public synchronized void setPattern(GpioPinDigitalOutput output, PinState onState, BlinkPattern pattern) {
+        int[] ticks = new int[pattern.getNbPeriods()];
+        for(int i = 0; i < ticks.length; i++) {
+            int duration = pattern.getDuration(i);
+            // a non-empty period lasts at least one tick
+            ticks[i] = duration == 0 ? 0 : Math.max(1, Math.round((float) duration / tickPeriod));
+        }
+        
+        removeSlot(output);
+        Slot slot = new Slot(output, onState, ticks, pattern.isLooping());
+        if(nextStep(slot))
+            slots.add(slot);
+        
+        if(ticker == null && !slots.isEmpty())
+            ticker = executor.scheduleAtFixedRate(this::tick, tickPeriod, tickPeriod, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the pattern played on an output (if any). The state of the output is left unchanged.
+     * @param output the digital output.
+     */
+    public synchronized void clearPattern(GpioPinDigitalOutput output) {
+        removeSlot(output);
+        stopTickerIfIdle();
+    }
+    
+    /**
+     * Checks if a pattern is playing on an output.
+     * @param output the digital output.
+     * @return true if a pattern is playing on this output.
+     */
+    public synchronized boolean isPlaying(GpioPinDigitalOutput output) {
+        for(Slot slot : slots)
+            if(slot.output == output)
+                return true;
+        return false;
+    }
+    
+    /**
+     * Stops all the patterns, and the thread of this engine.
+     * The engine can't be used anymore after this call.
+     */
+    public synchronized void shutdown() {
+        slots.clear();
+        stopTickerIfIdle();
+        executor.shutdownNow();
+    }
+    
+    private void removeSlot(GpioPinDigitalOutput output) {
+        for(int i = 0; i < slots.size(); i++) {
+            if(slots.get(i).output == output) {
+                slots.remove(i);
+                return;
+            }
+        }
+    }
+    
+    private void stopTickerIfIdle() {
+        if(slots.isEmpty() && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+    
+    /**
+     * Called at each tick: decrements the counters, and moves the outputs to their next period when needed.
+     */
+    private synchronized void tick() {
+        for(int i = slots.size() - 1; i >= 0; i--) {
+            Slot slot = slots.get(i);
+            if(--slot.remainingTicks <= 0 && !nextStep(slot))
+                slots.remove(i);
+        }
+        stopTickerIfIdle();
+    }
+    
+    /**
+     * Moves an output to the next non-empty period of its pattern, and updates its state if needed.
+     * @param slot the output.
+     * @return false if the end of a one shot pattern has been reached (the output is then turned off).
+     */
+    private boolean nextStep(Slot slot) {
+        int skipped = 0;
+        do {
+            slot.step++;
+            if(slot.step == slot.ticks.length) {
+                if(!slot.looping) {
+                    write(slot, false);
+                    return false;
+                }
+                slot.step = 0;
+            }
+            // a looping pattern contains at least one non-empty period, but protect against an infinite loop
+            if(++skipped > slot.ticks.length) {
+                write(slot, false);
+                return false;
+            }
+        } while(slot.ticks[slot.step] == 0);
+        
+        slot.remainingTicks = slot.ticks[slot.step];
+        write(slot, slot.step % 2 == 0);
+        return true;
+    }
+    
+    private static void write(Slot slot, boolean on) {
+        if(slot.on != on) {
+            slot.output.setState(on ? slot.onState : slot.offState);
+            slot.on = on;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.PinState;
+import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
+import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+
+/**
+ * <b>Event layer over a pi4j digital input (button, touch switch, obstacle detector, ...).</b>
+ * 
+ * <p>The raw state changes of the input are debounced in time: a new state is only accepted once it
+ * has been stable during the debounce delay. No thread sleeps or polls the input: the detector reacts
+ * to the pi4j state change events, and uses the {@link GPIOComponent#getSharedScheduler() Gpio scheduler}
+ * for its timers. Many inputs then cost no CPU while idle, and the reaction latency is bounded by
+ * the debounce delay.</p>
+ * 
+ * <p>The following events are emitted:
+ *  <ul>
+ *      <li>{@link Event#PRESS} when the input becomes active,</li>
+ *      <li>{@link Event#RELEASE} when the input becomes inactive,</li>
+ *      <li>{@link Event#LONG_PRESS} when the input stays active during the long press delay,</li>
+ *      <li>{@link Event#DOUBLE_CLICK} when the input becomes active for the second time during the double click delay.
+ *      The PRESS event of the second click is still emitted, to not delay the PRESS events.</li>
+ *  </ul>
+ * The listeners are notified on the Gpio scheduler thread, and should return quickly.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class DigitalInputEventDetector {
+    
+    /**
+     * Default debounce delay, in ms.
+     */
+    public static final int DEFAULT_DEBOUNCE_DELAY = 20; // ms
+    
+    /**
+     * Default delay before a long press, in ms.
+     */
+    public static final int DEFAULT_LONG_PRESS_DELAY = 1000; // ms
+    
+    /**
+     * Default maximum delay between the two presses of a double click, in ms.
+     */
+    public static final int DEFAULT_DOUBLE_CLICK_DELAY = 400; // ms
+    
+    /**
+     * Events emitted by the detector.
+     */
+    public enum Event {
+        
+        /**
+         * The input became active (after debounce).
+         */
+        PRESS,
+        
+        /**
+         * The input became inactive (after debounce).
+         */
+        RELEASE,
+        
+        /**
+         * The input stayed active during the long press delay (emitted while the input is still active).
+         */
+        LONG_PRESS,
+        
+        /**
+         * Second press within the double click delay, emitted after its PRESS event.
+         */
+        DOUBLE_CLICK
+    }
+    
+    /**
+     * Listener notified of the events of a digital input.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     */
+    @FunctionalInterface
+    public interface EventListener {
+        
+        /**
+         * Called for each event of the digital input.
+         * @param event the event.
+         */
+        void newEvent(Event event);
+    }
+    
+    /**
+     * The state of the input considered as active (pressed).
+     */
+    private final PinState activeState;
+    
+    private final List<EventListener> listeners = new CopyOnWriteArrayList<>();
+    
+    private int debounceDelay = DEFAULT_DEBOUNCE_DELAY;
+    private int longPressDelay = DEFAULT_LONG_PRESS_DELAY;
+    private int doubleClickDelay = DEFAULT_DOUBLE_CLICK_DELAY;
+    
+    /**
+     * The last raw state of the input, and the debounced state.
+     */
+    private boolean rawActive;
+    private boolean active;
+    
+    /**
+     * Timestamp of the last PRESS event which could be the first click of a double click (ns, 0 if none).
+     */
+    private long lastPressTime = 0;
+    
+    /**
+     * Pending timers (null if no timer is pending).
+     */
+    private ScheduledFuture<?> debounceTimer = null;
+    private ScheduledFuture<?> longPressTimer = null;
+    
+    /**
+     * Constructor for a new event detector on a digital input.
+     * @param input the pi4j digital input.
+     * @param activeState the state of the input considered as active (pressed).
+     */
+    public DigitalInputEventDetector(GpioPinDigitalInput input, PinState activeState) {
+        this.activeState = activeState;
+        this.rawActive = input.getState() == activeState;
+        this.active = rawActive;
+        input.addListener((GpioPinListenerDigital) this::stateChanged);
+    }
+    
+    /**
+     * Called by pi4j for each raw state change of the input: (re)starts the debounce timer.
+     * @param event the pi4j event.
+     */
+    private synchronized void stateChanged(GpioPinDigitalStateChangeEvent event) {
+        rawActive = event.getState() == activeState;
+        if(debounceTimer != null)
+            debounceTimer.cancel(false);
+        debounceTimer = GPIOComponent.getSharedScheduler().schedule(this::debounced, debounceDelay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Called when the raw state has been stable during the debounce delay.
+     */
+    private void debounced() {
+        Event event = null;
+        boolean doubleClick = false;
+        synchronized(this) {
+            debounceTimer = null;
+            if(rawActive == active)
+                return;
+            active = rawActive;
+            
+            if(active) {
+                event = Event.PRESS;
+                long now = System.nanoTime();
+                if(lastPressTime != 0 && now - lastPressTime <= TimeUnit.MILLISECONDS.toNanos(doubleClickDelay)) {
+                    doubleClick = true;
+                    lastPressTime = 0; // a third click starts a new double click
+                } else {
+                    lastPressTime = now;
+                }
+                longPressTimer = GPIOComponent.getSharedScheduler().schedule(this::longPress, longPressDelay, TimeUnit.MILLISECONDS);
+            } else {
+                event = Event.RELEASE;
+                if(longPressTimer != null) {
+                    longPressTimer.cancel(false);
+                    longPressTimer = null;
+                }
+            }
+        }
+        notifyListeners(event);
+        if(doubleClick)
+            notifyListeners(Event.DOUBLE_CLICK);
+    }
+    
+    /**
+     * Called when the input stayed active during the long press delay.
+     */
+    private void longPress() {
+        synchronized(this) {
+            if(longPressTimer == null || !active)
+                return;
+            longPressTimer = null;
+            lastPressTime = 0; // a long press can't be the first click of a double click
+        }
+        notifyListeners(Event.LONG_PRESS);
+    }
+    
+    private void notifyListeners(Event event) {
+        for(EventListener listener : listeners) {
+            try {
+                listener.newEvent(event);
+            } catch(RuntimeException e) {
+                // a failing listener must not prevent the other listeners and events from being notified
+                Tools.log("[DigitalInputEventDetector] Error in a listener (" + event + "): " + e.getMessage(), Tools.Color.ANSI_RED);
+            }
+        }
+    }
+    
+    /**
+     * Add a listener notified of the events of the input.
+     * @param listener the listener to add.
+     */
+    public void addListener(EventListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a listener.
+     * @param listener the listener to remove.
+     */
+    public void removeListener(EventListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Check if the input is active (pressed), after debounce.
+     * @return true if the input is active.
+     */
+    public synchronized boolean isActive() {
+        return active;
+    }
+    
+    /**
+     * Set the debounce delay: a new state is accepted once it has been stable during this delay.
+     * @param debounceDelay the debounce delay, in ms.
+     */
+    public synchronized void setDebounceDelay(int debounceDelay) {
+        if(debounceDelay < 0)
+            throw new IllegalArgumentException("The debounce delay can't be negative.");
+        this.debounceDelay = debounceDelay;
+    }
+    
+    /**
+     * Set the delay during which the input must stay active to emit a LONG_PRESS event.
+     * @param longPressDelay the long press delay, in ms.
+     */
+    public synchronized void setLongPressDelay(int longPressDelay) {
+        if(longPressDelay < 1)
+            throw new IllegalArgumentException("The long press delay must be at least 1ms.");
+        this.longPressDelay = longPressDelay;
+    }
+    
+    /**
+     * Set the maximum delay between the two presses of a double click.
+     * @param doubleClickDelay the double click delay, in ms.
+     */
+    public synchronized void setDoubleClickDelay(int doubleClickDelay) {
+        if(doubleClickDelay < 0)
+            throw new IllegalArgumentException("The double click delay can't be negative.");
+        this.doubleClickDelay = doubleClickDelay;
+    }
+}
@@ -18,6 +18,9 @@
  ******************************************************************************/
 package com.raspoid;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 import com.pi4j.io.gpio.GpioController;
 import com.pi4j.io.gpio.GpioFactory;
 
@@ -41,12 +44,34 @@ public class GPIOComponent implements Component {
      */
     protected static final GpioController gpio = GpioFactory.getInstance();
     
+    /**
+     * Single thread scheduler shared by the Gpio components needing timers
+     * (lazily created, see {@link #getSharedScheduler()}).
+     */
+    private static ScheduledExecutorService sharedScheduler = null;
+    
     /**
      * Protected constructor to hide the implicit public one.
      */
     protected GPIOComponent() {
     }
     
+    /**
+     * Get the single thread scheduler shared by the Gpio components of the framework.
+     * <p>Instead of blocking the caller thread (or starting a new thread) to wait for an event or a delay,
+     * a component can schedule its timeouts and delayed tasks on this scheduler.
+     * One thread can then serve many components.</p>
+     * <p>The tasks executed by this scheduler should return quickly, to not delay the other components.</p>
+     * <p>The scheduler thread is a daemon thread: it won't prevent the JVM from exiting.</p>
+     * @return the scheduler shared by the Gpio components.
+     */
+    public static synchronized ScheduledExecutorService getSharedScheduler() {
+        if(sharedScheduler == null) {
+            sharedScheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-gpio-scheduler"));
+        }
+        return sharedScheduler;
+    }
+    
     @Override
     public String getType() {
         return "GPIOComponent";
@@ -19,6 +19,8 @@
 package com.raspoid;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import com.pi4j.io.i2c.I2CBus;
 import com.pi4j.io.i2c.I2CDevice;
@@ -51,6 +53,12 @@ public class I2CComponent implements Component {
      */
     public static final int MIN_I2C_ADDRESS = 0x03;
     
+    /**
+     * Single thread scheduler shared by the i2c components needing to wait for a conversion
+     * before reading a result (lazily created, see {@link #getSharedScheduler()}).
+     */
+    private static ScheduledExecutorService sharedScheduler = null;
+    
     /**
      * The i2c bus used by the component.
      * @see com.pi4j.io.i2c.I2CBus
@@ -79,6 +87,21 @@ public class I2CComponent implements Component {
         }
     }
     
+    /**
+     * Get the single thread scheduler shared by the slow i2c components of the framework.
+     * <p>Instead of blocking the caller thread while a conversion is in progress, a component
+     * can start the conversion and schedule the read of the result on this scheduler.
+     * One thread can then serve many sensors, and the accesses to the i2c bus are serialized.</p>
+     * <p>The scheduler thread is a daemon thread: it won't prevent the JVM from exiting.</p>
+     * @return the scheduler shared by the i2c components.
+     */
+    public static synchronized ScheduledExecutorService getSharedScheduler() {
+        if(sharedScheduler == null) {
+            sharedScheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-i2c-scheduler"));
+        }
+        return sharedScheduler;
+    }
+    
     /**
      * Get the abstraction of the i2c device.
      * It then allows data to be read or written to the device.
@@ -124,6 +147,25 @@ public class I2CComponent implements Component {
         }
     }
     
+    /**
+     * This method writes a block of bytes on the i2c device, starting at a specific register,
+     * in one single i2c transaction.
+     * <p>The device must support the auto-increment of its register address for the
+     * bytes to be written in consecutive registers.</p>
+     * @param reg the first destination register on the i2c device.
+     * @param buffer the buffer containing the bytes to write.
+     * @param offset the offset of the first byte to write, in the buffer.
+     * @param size the number of bytes to write.
+     * @see com.pi4j.io.i2c.I2CDevice#write(int, byte[], int, int)
+     */
+    public void writeBytesToRegister(int reg, byte[] buffer, int offset, int size) {
+        try {
+            device.write(reg, buffer, offset, size);
+        } catch (IOException e) {
+            throw new RaspoidException("Error when writting data to i2c device or i2c bus.", e);
+        }
+    }
+    
     /**
      * Reads the content of the reg register (8bits),
      * and returns this value in the 0..255 interval if read operation was successfull.
@@ -18,6 +18,12 @@
  ******************************************************************************/
 package com.raspoid;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import com.pi4j.wiringpi.Gpio;
 import com.raspoid.additionalcomponents.PCA9685;
 import com.raspoid.additionalcomponents.PCA9685.PCA9685Channel;
@@ -31,6 +37,9 @@ import com.raspoid.additionalcomponents.PCA9685.PCA9685Channel;
  *  <li>a PCA9685 (16 output channels per module, but a smaller range of available PWM frequencies).</li>
  * </p>
  * 
+ * <p>Timed signals ({@link #setPWM(int, long)}) don't block the caller thread: the end of the signal
+ * is scheduled on a scheduler shared by all the PWM components.</p>
+ * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
  * @version 1.0
  */
@@ -103,6 +112,18 @@ public class PWMComponent implements Component {
     private PCA9685Channel channel;
     
     private boolean stop = false;
+    
+    /**
+     * Single thread scheduler shared by all the PWM components, to stop the timed signals
+     * (lazily created, see {@link #getSharedScheduler()}).
+     */
+    private static ScheduledExecutorService sharedScheduler = null;
+    
+    /**
+     * The scheduled end of the current timed signal, and the corresponding future (null if none).
+     */
+    private ScheduledFuture<?> pendingReset = null;
+    private CompletableFuture<Void> pendingSignal = null;
         
     /**
      * Constructor for a PWM component, using a PCA9685 module to generate PWM signals.
@@ -181,10 +202,20 @@ public class PWMComponent implements Component {
      * the off value to the rangeGenerator value.</p>
      * 
      * <p>Note that an off value of zero will stop the PWM signal.</p>
+     * <p>If a timed signal is in progress ({@link #setPWM(int, long)}), its scheduled end is cancelled.</p>
      * @param off the tick where the signal turns off (low). 0 to stop the PWM signal.
      * @see PWMComponent#setPWM(int, long)
      */
-    public void setPWM(int off) {
+    public synchronized void setPWM(int off) {
+        cancelPendingReset();
+        writePWM(off);
+    }
+    
+    /**
+     * Sends a new off tick for the PWM signal (cfr {@link #setPWM(int)}).
+     * @param off the tick where the signal turns off (low). 0 to stop the PWM signal.
+     */
+    private void writePWM(int off) {
         off = Math.max(off, 0);
         off = Math.min(off, rangeGenerator);
         
@@ -192,27 +223,112 @@ public class PWMComponent implements Component {
             off = 0;
         
         if(selectedMode == PCA9685_MODE) {
-            // with the PCA9685, a pulse is composed of 4096 ticks (12bits).
-            // the range of values for the on, off ticks, must then be adapted to this 0..4096 range.
-            off = (int)(((double)off / (double)rangeGenerator) * PCA9685_PULSE_TICKS);
-            
-            pca9685.setPWM(channel, 0, off);
+            pca9685.setPWM(channel, 0, toPCA9685Ticks(off));
         } else if(selectedMode == RPI_PWM_PIN_MODE) {
             Gpio.pwmWrite(pin.getPin().getWiringPiNb(), off);
         }
     }
     
+    /**
+     * Stages a new off tick for the PWM signal, as {@link PWMComponent#setPWM(int)}, but without sending it.
+     * 
+     * <p>When using a PCA9685, the new value is only sent on the next {@link PCA9685#commit()}:
+     * the channels of several components can then be updated in one single i2c transaction,
+     * and all change in the same PWM period. When using a Raspberry Pi PWM pin, the new value
+     * is directly applied.</p>
+     * <p>If a timed signal is in progress ({@link #setPWM(int, long)}), its scheduled end is cancelled.</p>
+     * @param off the tick where the signal turns off (low). 0 to stop the PWM signal.
+     * @see PCA9685#commit()
+     */
+    public synchronized void stagePWM(int off) {
+        cancelPendingReset();
+        off = Math.max(off, 0);
+        off = Math.min(off, rangeGenerator);
+        
+        if(stop)
+            off = 0;
+        
+        if(selectedMode == PCA9685_MODE)
+            pca9685.stagePWM(channel, 0, toPCA9685Ticks(off));
+        else if(selectedMode == RPI_PWM_PIN_MODE)
+            Gpio.pwmWrite(pin.getPin().getWiringPiNb(), off);
+    }
+    
+    /**
+     * Get the PCA9685 used to generate the PWM signals.
+     * @return the PCA9685 used to generate the PWM signals, or null if a Raspberry Pi PWM pin is used.
+     */
+    public PCA9685 getPCA9685() {
+        return pca9685;
+    }
+    
+    /**
+     * Converts an off tick in the 0..rangeGenerator range to the 0..4096 range of the PCA9685.
+     * @param off the tick where the signal turns off, in the 0..rangeGenerator range.
+     * @return the corresponding tick for the PCA9685.
+     */
+    private int toPCA9685Ticks(int off) {
+        // with the PCA9685, a pulse is composed of 4096 ticks (12bits).
+        // the range of values for the on, off ticks, must then be adapted to this 0..4096 range.
+        return (int)(((double)off / (double)rangeGenerator) * PCA9685_PULSE_TICKS);
+    }
+    
     /**
      * Uses the {@link PWMComponent#setPWM(int)} method to set the PWM signal with the off parameter,
      * for a duration of millis milliseconds, and then stops the signal.
+     * 
+     * <p>This method returns immediately: the end of the signal is scheduled on the
+     * {@link #getSharedScheduler() shared PWM scheduler}. Use the returned future to wait for the end of the signal
+     * (e.g. <code>setPWM(off, millis).join()</code>).</p>
+     * 
+     * <p>A new call to setPWM or stagePWM on this component before the end of the signal cancels the
+     * scheduled end (and the returned future): the new value is kept.</p>
      * @param off the tick where the signal turns off (low).
      * @param millis the duration of the PWM signal, in milliseconds.
+     * @return a future completed when the signal is stopped, or cancelled if the signal is replaced before.
      * @see PWMComponent#setPWM(int)
      */
-    public void setPWM(int off, long millis) {
-        setPWM(off);
-        Tools.sleepMilliseconds(millis);
-        setPWM(0);
+    public synchronized CompletableFuture<Void> setPWM(int off, long millis) {
+        cancelPendingReset();
+        writePWM(off);
+        
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        pendingSignal = signal;
+        pendingReset = getSharedScheduler().schedule(() -> {
+            synchronized(this) {
+                if(pendingSignal != signal)
+                    return;
+                pendingSignal = null;
+                pendingReset = null;
+                writePWM(0);
+            }
+            signal.complete(null);
+        }, millis, TimeUnit.MILLISECONDS);
+        return signal;
+    }
+    
+    /**
+     * Cancels the scheduled end of the current timed signal, if any.
+     */
+    private void cancelPendingReset() {
+        if(pendingReset != null) {
+            pendingReset.cancel(false);
+            pendingSignal.cancel(false);
+            pendingReset = null;
+            pendingSignal = null;
+        }
+    }
+    
+    /**
+     * Get the single thread scheduler shared by all the PWM components, used to stop the timed signals.
+     * <p>The scheduler thread is a daemon thread: it won't prevent the JVM from exiting.</p>
+     * @return the scheduler shared by the PWM components.
+     */
+    public static synchronized ScheduledExecutorService getSharedScheduler() {
+        if(sharedScheduler == null) {
+            sharedScheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-pwm-scheduler"));
+        }
+        return sharedScheduler;
     }
     
     @Override
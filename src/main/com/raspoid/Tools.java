@@ -19,6 +19,7 @@
 package com.raspoid;
 
 import java.util.BitSet;
+import java.util.concurrent.ThreadFactory;
 
 import com.raspoid.exceptions.RaspoidInterruptedException;
 
@@ -340,4 +341,33 @@ public class Tools {
             throw new RaspoidInterruptedException("The thread was interrupted unexpectedly while sleeping", e);
         }
     }
+    
+    /**
+     * Actively waits (busy-wait) for the specified number of microseconds.
+     * <p>Unlike {@link #sleepMilliseconds(long)}, the thread is not descheduled: this method
+     * is intended for the very short delays (a few μs) required by some hardware timings,
+     * for which a sleep would be much too coarse. The CPU is used during the whole wait.</p>
+     * @param micros the number of microseconds to wait.
+     */
+    public static void busyWaitMicroseconds(long micros) {
+        long end = System.nanoTime() + micros * 1000;
+        while(end - System.nanoTime() > 0) {
+            // busy wait
+        }
+    }
+    
+    /**
+     * Get a factory of daemon threads, with the specified name.
+     * <p>Used by the executors of the framework: a daemon thread doesn't prevent the JVM
+     * from exiting when the program ends without shutting the executor down.</p>
+     * @param name the name of the threads created by the factory.
+     * @return a factory of daemon threads.
+     */
+    public static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -21,6 +21,8 @@ package com.raspoid.additionalcomponents;
 import com.pi4j.io.gpio.GpioPinDigitalOutput;
 import com.pi4j.io.gpio.PinPullResistance;
 import com.pi4j.io.gpio.PinState;
+import com.raspoid.BlinkPattern;
+import com.raspoid.BlinkPatternEngine;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
 import com.raspoid.Tools;
@@ -34,6 +36,9 @@ import com.raspoid.examples.additionalcomponents.ActiveBuzzerExample;
  * You can then simply connect the buzzer to a classical Gpio pin of the Raspberry Pi.
  * If the pin is high: no sound. If the pin is low: sound.</p>
  * 
+ * <p>Beep sequences (alarms, Morse code, ...) can be played without blocking the caller
+ * with {@link #play(BlinkPattern)}.</p>
+ * 
  * <p>Example Datasheet: <a href="http://raspoid.com/download/datasheet/ActiveBuzzer">Active Buzzer</a></p>
  * 
  * <p>Example of use: {@link ActiveBuzzerExample}</p>
@@ -64,6 +69,7 @@ public class ActiveBuzzer extends GPIOComponent {
      * Enable the buzzer.
      */
     public void on() {
+        stopPattern();
         if(inverse)
             buzzer.low();
         else
@@ -74,6 +80,7 @@ public class ActiveBuzzer extends GPIOComponent {
      * Disable the buzzer.
      */
     public void off() {
+        stopPattern();
         if(inverse)
             buzzer.high();
         else
@@ -82,6 +89,8 @@ public class ActiveBuzzer extends GPIOComponent {
     
     /**
      * Beep for a duration of millis milliseconds on and the millis milliseconds off.
+     * <p>This method blocks the caller during 2 * millis milliseconds.
+     * See {@link #play(BlinkPattern)} to beep without blocking.</p>
      * @param millis the duration of the on/off period.
      */
     public void beep(int millis) {
@@ -90,4 +99,22 @@ public class ActiveBuzzer extends GPIOComponent {
         off();
         Tools.sleepMilliseconds(millis);
     }
+    
+    /**
+     * Plays a beep pattern (ON periods: sound, OFF periods: silence),
+     * replacing the pattern currently played (if any).
+     * <p>This method returns immediately: the pattern is played by the
+     * {@link BlinkPatternEngine#getDefault() default blink pattern engine}.</p>
+     * @param pattern the pattern to play.
+     */
+    public void play(BlinkPattern pattern) {
+        BlinkPatternEngine.getDefault().setPattern(buzzer, inverse ? PinState.LOW : PinState.HIGH, pattern);
+    }
+    
+    /**
+     * Stops the pattern played on the buzzer (if any). The buzzer state is left unchanged.
+     */
+    public void stopPattern() {
+        BlinkPatternEngine.getDefault().clearPattern(buzzer);
+    }
 }
@@ -18,6 +18,13 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.raspoid.AveragingFilter;
 import com.raspoid.I2CComponent;
 import com.raspoid.Tools;
 import com.raspoid.examples.additionalcomponents.BarometerBMP180Example;
@@ -55,6 +62,15 @@ import com.raspoid.examples.additionalcomponents.BarometerBMP180Example;
  *  <li>UT = temperature data (16 bit)</li>
  * </ul>
  * 
+ * <p>Measures can be read synchronously (the caller thread then waits for the conversion
+ * time of the BMP180), or continuously with {@link #startContinuousMeasures(int)}: the conversions
+ * are then started and read back on a scheduler, and the compensated values are
+ * pushed to the registered {@link MeasureListener}s. Those measures can be averaged directly
+ * by the driver with a running window or an exponential moving average (see {@link #setAveraging(AveragingFilter.Mode, int)}).</p>
+ * 
+ * <p>The compensation is made with the integer algorithm of the datasheet, and the altitude is
+ * interpolated from a lookup table built once: no floating point power and no allocation per measure.</p>
+ * 
  * <p>Example of use: {@link BarometerBMP180Example}</p>
  * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
@@ -78,6 +94,11 @@ public class BarometerBMP180 extends I2CComponent {
      */
     public static final int CONTROL_TEMPERATURE_REQUEST = 0x2E;
     
+    /**
+     * Maximum conversion time of a temperature measure, in milliseconds (4.5ms) [datasheet - p.12].
+     */
+    public static final int TEMPERATURE_CONVERSION_TIME = 5;
+    
     /**
      * Value sent to the control register to ask a new pressure 
      * value in [OUT_MSB_ADDR, OUT_LSB_ADDR, OUT_XLSB_ADDR] registers.
@@ -113,6 +134,27 @@ public class BarometerBMP180 extends I2CComponent {
      */
     public static final double PRESSURE_AT_SEA_LEVEL = 1013.25;
     
+    /**
+     * Lowest pressure of the altitude lookup table, in Pa (the BMP180 pressure range is 300 ... 1100hPa).
+     */
+    private static final int ALTITUDE_TABLE_MIN_PRESSURE = 30000;
+    
+    /**
+     * Pressure step between two entries of the altitude lookup table, in Pa.
+     * <p>With a linear interpolation between two entries, the error is below 1cm on the whole range.</p>
+     */
+    private static final int ALTITUDE_TABLE_STEP = 100;
+    
+    /**
+     * Altitudes (in m) corresponding to the pressures from ALTITUDE_TABLE_MIN_PRESSURE to 110000Pa,
+     * by ALTITUDE_TABLE_STEP steps.
+     */
+    private static final double[] ALTITUDE_TABLE = new double[(110000 - ALTITUDE_TABLE_MIN_PRESSURE) / ALTITUDE_TABLE_STEP + 1];
+    static {
+        for(int i = 0; i < ALTITUDE_TABLE.length; i++)
+            ALTITUDE_TABLE[i] = calculateAltitudeWithBarometricFormula(ALTITUDE_TABLE_MIN_PRESSURE + i * ALTITUDE_TABLE_STEP);
+    }
+    
     /**
      * BMP180 register MSB address of calibration coefficient AC1.
      * (1 address every 16bits (2 bytes) given that each word of data is 16bit long.)
@@ -256,6 +298,96 @@ public class BarometerBMP180 extends I2CComponent {
     private long lastB5UpdateTime = 0;
     private int b5UpdateTimeout; // ms
     
+    /**
+     * Listeners notified each time a new measure is available in continuous mode.
+     */
+    private List<MeasureListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Current state of the continuous measures state machine.
+     */
+    private ConversionState conversionState = ConversionState.IDLE;
+    
+    /**
+     * Scheduler used to read the result of the conversions in continuous mode.
+     */
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * Next step of the continuous measures state machine, scheduled on the scheduler.
+     */
+    private ScheduledFuture<?> nextStep;
+    
+    /**
+     * Incremented each time a step is scheduled, to discard a step that would still be
+     * waiting for the lock when the continuous measures are stopped or restarted.
+     */
+    private int stepGeneration = 0;
+    
+    /**
+     * Filter used to average the pressures measured in continuous mode (in Pa).
+     */
+    private AveragingFilter pressureFilter = new AveragingFilter(AveragingFilter.Mode.NONE, 0);
+    
+    /**
+     * Filter used to average the temperatures measured in continuous mode (in 0.1 degree celsius).
+     */
+    private AveragingFilter temperatureFilter = new AveragingFilter(AveragingFilter.Mode.NONE, 0);
+    
+    /**
+     * Minimum period between two successive measures in continuous mode, in milliseconds.
+     */
+    private int measuresPeriod;
+    
+    /**
+     * Time at which the current cycle of the continuous mode has been started, in milliseconds.
+     */
+    private long cycleStartTime;
+    
+    /**
+     * States of the continuous measures state machine.
+     */
+    private enum ConversionState {
+        /**
+         * No conversion in progress, continuous mode stopped.
+         */
+        IDLE,
+        
+        /**
+         * Waiting for the end of a temperature conversion (to refresh the B5 coefficient).
+         */
+        TEMPERATURE_CONVERSION,
+        
+        /**
+         * Waiting for the end of a pressure conversion.
+         */
+        PRESSURE_CONVERSION,
+        
+        /**
+         * Waiting before starting the next cycle of conversions.
+         */
+        WAITING_NEXT_CYCLE
+    }
+    
+    /**
+     * Listener notified with the compensated values, each time a new measure is available
+     * in continuous mode.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     * @see BarometerBMP180#startContinuousMeasures(int)
+     */
+    @FunctionalInterface
+    public interface MeasureListener {
+        
+        /**
+         * Called on the scheduler thread each time a new measure is available.
+         * <p>This method should return quickly: the scheduler is shared with other components.</p>
+         * <p>If an averaging mode is selected, the values received are the averaged ones.</p>
+         * @param temperature the compensated temperature in degree celsius.
+         * @param pressure the compensated pressure in Pa.
+         */
+        void newMeasure(double temperature, int pressure);
+    }
+    
     /**
      * There exists 4 different hardware accuracy modes to deal with the BMP180 pressure measures.
      * 
@@ -268,30 +400,36 @@ public class BarometerBMP180 extends I2CComponent {
         /**
          * Ultra low power mode.
          */
-        ULTRA_LOW_POWER(0),
+        ULTRA_LOW_POWER(0, 5), // 4.5ms
         
         /**
          * Standard mode.
          */
-        STANDARD(1),
+        STANDARD(1, 8), // 7.5ms
         
         /**
          * High resolution mode.
          */
-        HIGH_RESOLUTION(2),
+        HIGH_RESOLUTION(2, 14), // 13.5ms
         
         /**
          * Ultra high resolution mode.
          */
-        ULTRA_HIGH_RESOLUTION(3);
+        ULTRA_HIGH_RESOLUTION(3, 26); // 25.5ms
         
         /**
          * oversampling setting.
          */
         int oss;
         
-        HardwarePressureAccuracyMode(int oss) {
+        /**
+         * Maximum conversion time of a pressure measure, in milliseconds [datasheet - p.12].
+         */
+        int conversionTime;
+        
+        HardwarePressureAccuracyMode(int oss, int conversionTime) {
             this.oss = oss;
+            this.conversionTime = conversionTime;
         }
     }
     
@@ -362,7 +500,7 @@ public class BarometerBMP180 extends I2CComponent {
         // or temperature measurement. After converting time, the value
         // (UP or UT, respectively) can be read via the I2C interface.
         writeUnsignedValueToRegister(CONTROL_REG_ADDR, CONTROL_TEMPERATURE_REQUEST);
-        Tools.sleepMilliseconds(5);
+        Tools.sleepMilliseconds(TEMPERATURE_CONVERSION_TIME);
         return readTwoSignedRegsiters(OUT_MSB_ADDR);
     }
     
@@ -376,32 +514,23 @@ public class BarometerBMP180 extends I2CComponent {
         // The microcontroller sends a start sequence to start a pressure
         // or temperature measurement. After converting time, the value
         // (UP or UT, respectively) can be read via the I2C interface.
-        int oss = selectedHardwarePressureAccuracyMode.oss;
-        writeUnsignedValueToRegister(CONTROL_REG_ADDR, CONTROL_PRESSURE_REQUEST + (oss << 6));
+        writeUnsignedValueToRegister(CONTROL_REG_ADDR, CONTROL_PRESSURE_REQUEST + (selectedHardwarePressureAccuracyMode.oss << 6));
         
         // wait [datasheet - p.12]
-        switch(selectedHardwarePressureAccuracyMode) {
-        case ULTRA_LOW_POWER:
-            Tools.sleepMilliseconds(5); // 4.5ms
-            break;
-        case STANDARD:
-            Tools.sleepMilliseconds(8); // 7.5ms
-            break;
-        case HIGH_RESOLUTION:
-            Tools.sleepMilliseconds(14); // 13.5ms
-            break;
-        case ULTRA_HIGH_RESOLUTION:
-            Tools.sleepMilliseconds(26); // 25.5ms
-            break;
-        default:
-            Tools.log("Unknown hardware pressure accuracy mode selected.", Tools.Color.ANSI_RED);
-            break;
-        }
+        Tools.sleepMilliseconds(selectedHardwarePressureAccuracyMode.conversionTime);
         
+        return readPressureConversionResult();
+    }
+    
+    /**
+     * Read the result of the last pressure conversion, from the output registers of the BMP180.
+     * @return the uncompensated pressure value.
+     */
+    private int readPressureConversionResult() {
         int msb = readUnsignedRegisterValue(OUT_MSB_ADDR);
         int lsb = readUnsignedRegisterValue(OUT_LSB_ADDR);
         int xlsb = readUnsignedRegisterValue(OUT_XLSB_ADDR);
-        return ((msb << 16) + (lsb << 8) + xlsb) >> (8 - oss);
+        return ((msb << 16) + (lsb << 8) + xlsb) >> (8 - selectedHardwarePressureAccuracyMode.oss);
     }
     
     /**
@@ -415,16 +544,45 @@ public class BarometerBMP180 extends I2CComponent {
      * too frequenty (as recommended in the datasheet - p.11).</p>
      * @return the calculated compensated temperature in degree celsius.
      */
-    public double calculateTrueTemperature() {
-        long currentTime = System.currentTimeMillis();
-        if((currentTime - lastB5UpdateTime) > b5UpdateTimeout) {
-            int ut = readUncompensatedTemperature();
-            int x1 = ((ut - ac6) * ac5) >> 15; // ">> 15" = "/ 2^15"
-            int x2 = (mc << 11) / (x1 + md); // "<< 11" = "* 2^11"
-            b5 = x1 + x2;
-            lastB5UpdateTime = currentTime;
-        }
-        return ((b5 + 8) >> 4) / 10.;
+    public synchronized double calculateTrueTemperature() {
+        return calculateTrueTemperatureFixedPoint() / 10.;
+    }
+    
+    /**
+     * Fixed-point version of {@link #calculateTrueTemperature()}.
+     * @return the calculated compensated temperature in 0.1 degree celsius.
+     */
+    public synchronized int calculateTrueTemperatureFixedPoint() {
+        if(b5UpdateNeeded())
+            updateB5(readUncompensatedTemperature());
+        return getFixedPointTemperatureFromB5();
+    }
+    
+    /**
+     * Checks if the b5UpdateTimeout is exceeded, i.e. if a new temperature value must be read.
+     * @return true if the B5 coefficient must be refreshed.
+     */
+    private boolean b5UpdateNeeded() {
+        return (System.currentTimeMillis() - lastB5UpdateTime) > b5UpdateTimeout;
+    }
+    
+    /**
+     * Updates the B5 coefficient from an uncompensated temperature value <b>[datasheet - p.15]</b>.
+     * @param ut the uncompensated temperature value.
+     */
+    private void updateB5(int ut) {
+        int x1 = ((ut - ac6) * ac5) >> 15; // ">> 15" = "/ 2^15"
+        int x2 = (mc << 11) / (x1 + md); // "<< 11" = "* 2^11"
+        b5 = x1 + x2;
+        lastB5UpdateTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * Get the compensated temperature corresponding to the current B5 coefficient.
+     * @return the compensated temperature in 0.1 degree celsius.
+     */
+    private int getFixedPointTemperatureFromB5() {
+        return (b5 + 8) >> 4;
     }
     
     /**
@@ -432,8 +590,18 @@ public class BarometerBMP180 extends I2CComponent {
      * returns the compensated pressure in Pa.
      * @return the calculated compensated pressure in Pa.
      */
-    public int calculateTruePressure() {
+    public synchronized int calculateTruePressure() {
         calculateTrueTemperature(); // will only be executed if B5UpdateTimeout exceeded
+        return compensatePressure(readUncompensatedPressure());
+    }
+    
+    /**
+     * Compensates an uncompensated pressure value with the calibration coefficients
+     * and the current B5 coefficient <b>[datasheet - p.15]</b>.
+     * @param up the uncompensated pressure value.
+     * @return the compensated pressure in Pa.
+     */
+    private int compensatePressure(long up) {
         int b6 = b5 - 4000;
         long x1 = (b2 * ((b6 * b6) >> 12)) >> 11;
         long x2 = (ac2 * b6) >> 11;
@@ -444,7 +612,6 @@ public class BarometerBMP180 extends I2CComponent {
         x2 = (b1 * ((b6 * b6) >> 12)) >> 16;
         x3 = ((x1 + x2) + 2) >> 2;
         long b4 = (ac4 * (x3 + 32768)) >> 15;
-        long up = readUncompensatedPressure();
         long b7 = (up - b3) * (50000 >> oss);
         long pressure;
         if(b7 < 0x80000000L)
@@ -473,7 +640,224 @@ public class BarometerBMP180 extends I2CComponent {
      * @return the altitude, in m, with regard to the sea level.
      */
     public double calculateAbsoluteAltitude() {
-        int pressure = calculateTruePressure();
+        return pressureToAltitude(calculateTruePressure());
+    }
+    
+    /**
+     * Converts a compensated pressure in an altitude.
+     * <p>In the pressure range of the BMP180, the altitude is linearly interpolated from a lookup table
+     * built with the international barometric formula: no power is calculated.</p>
+     * @param pressure the compensated pressure in Pa.
+     * @return the altitude, in m, with regard to the sea level.
+     * @see #calculateAbsoluteAltitude()
+     * @see #calculateAltitudeWithBarometricFormula(int)
+     */
+    public static double pressureToAltitude(int pressure) {
+        int offset = pressure - ALTITUDE_TABLE_MIN_PRESSURE;
+        int index = offset / ALTITUDE_TABLE_STEP;
+        if(offset < 0 || index >= ALTITUDE_TABLE.length - 1)
+            return calculateAltitudeWithBarometricFormula(pressure);
+        double low = ALTITUDE_TABLE[index];
+        return low + (ALTITUDE_TABLE[index + 1] - low) * (offset - index * ALTITUDE_TABLE_STEP) / ALTITUDE_TABLE_STEP;
+    }
+    
+    /**
+     * Converts a compensated pressure in an altitude, by directly evaluating the international barometric formula.
+     * @param pressure the compensated pressure in Pa.
+     * @return the altitude, in m, with regard to the sea level.
+     * @see #pressureToAltitude(int)
+     */
+    public static double calculateAltitudeWithBarometricFormula(int pressure) {
         return 44330. * (1. - Math.pow((pressure / 100.) / PRESSURE_AT_SEA_LEVEL, 0.19029));
     }
+    
+    /* -----------------------------------------------
+     *                   AVERAGING
+     * ---------------------------------------------*/
+    
+    /**
+     * Selects the averaging applied to the measures of the continuous mode.
+     * <p>The previous averaged values are discarded.</p>
+     * @param mode the averaging mode ({@link AveragingFilter.Mode#NONE} to disable the averaging).
+     * @param parameter the size of the running window for the WINDOW mode, or the smoothing
+     * shift N (smoothing factor = 1/2^N) for the EXPONENTIAL mode.
+     * @see AveragingFilter
+     */
+    public synchronized void setAveraging(AveragingFilter.Mode mode, int parameter) {
+        pressureFilter = new AveragingFilter(mode, parameter);
+        temperatureFilter = new AveragingFilter(mode, parameter);
+    }
+    
+    /**
+     * Get the last (averaged) pressure measured in continuous mode.
+     * @return the last averaged pressure in Pa, or 0 if no measure is available yet.
+     */
+    public synchronized int getAveragedPressure() {
+        return pressureFilter.getValue();
+    }
+    
+    /**
+     * Get the last (averaged) temperature measured in continuous mode.
+     * @return the last averaged temperature in degree celsius, or 0 if no measure is available yet.
+     */
+    public synchronized double getAveragedTemperature() {
+        return temperatureFilter.getValue() / 10.;
+    }
+    
+    /**
+     * Get the altitude corresponding to the last (averaged) pressure measured in continuous mode.
+     * @return the altitude, in m, with regard to the sea level.
+     */
+    public synchronized double getAveragedAltitude() {
+        return pressureToAltitude(pressureFilter.getValue());
+    }
+    
+    /* -----------------------------------------------
+     *               CONTINUOUS MEASURES
+     * ---------------------------------------------*/
+    
+    /**
+     * Registers a new listener, notified each time a new measure is available in continuous mode.
+     * @param listener the listener to register.
+     * @see #startContinuousMeasures(int)
+     */
+    public void addMeasureListener(MeasureListener listener) {
+        if(!listeners.contains(listener))
+            listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a listener previously added with {@link #addMeasureListener(MeasureListener)}.
+     * @param listener the listener to unregister.
+     */
+    public void removeMeasureListener(MeasureListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Starts the continuous measures on the scheduler shared by the i2c components.
+     * @param period the minimum period between two successive measures, in milliseconds.
+     * @see #startContinuousMeasures(int, ScheduledExecutorService)
+     */
+    public void startContinuousMeasures(int period) {
+        startContinuousMeasures(period, getSharedScheduler());
+    }
+    
+    /**
+     * Starts the continuous measures on a specific scheduler.
+     * 
+     * <p>The conversions are started by writing the control register, and the read of the 
+     * results is scheduled after the conversion time given in <b>[datasheet - p.12]</b>: no thread
+     * is blocked during the conversions. When the b5UpdateTimeout is exceeded, a temperature conversion
+     * is started just before the next pressure conversion, so that the refresh of the B5 coefficient is
+     * pipelined with the pressure measures.</p>
+     * 
+     * <p>Each new measure is pushed to the registered {@link MeasureListener}s, on the scheduler thread.
+     * The synchronous methods (calculateTrueTemperature(), calculateTruePressure(), ...) should not be
+     * used while the continuous measures are running, as they would interfere with the conversion in progress.</p>
+     * 
+     * @param period the minimum period between two successive measures, in milliseconds.
+     * A period of 0 starts a new pressure conversion as soon as the previous one is read.
+     * @param scheduler the scheduler used to read the results of the conversions.
+     */
+    public synchronized void startContinuousMeasures(int period, ScheduledExecutorService scheduler) {
+        if(period < 0)
+            throw new IllegalArgumentException("The period between two measures must be positive.");
+        if(conversionState != ConversionState.IDLE)
+            stopContinuousMeasures();
+        
+        this.measuresPeriod = period;
+        this.scheduler = scheduler;
+        startNewCycle();
+    }
+    
+    /**
+     * Stops the continuous measures. The conversion in progress, if any, is discarded.
+     */
+    public synchronized void stopContinuousMeasures() {
+        if(nextStep != null)
+            nextStep.cancel(false);
+        nextStep = null;
+        stepGeneration++;
+        conversionState = ConversionState.IDLE;
+    }
+    
+    /**
+     * Checks if the continuous measures are running.
+     * @return true if the continuous measures are running.
+     */
+    public synchronized boolean continuousMeasuresRunning() {
+        return conversionState != ConversionState.IDLE;
+    }
+    
+    /**
+     * Starts a new cycle of the continuous mode: a temperature conversion if the B5 coefficient
+     * must be refreshed, or directly a pressure conversion otherwise.
+     */
+    private void startNewCycle() {
+        cycleStartTime = System.currentTimeMillis();
+        if(b5UpdateNeeded()) {
+            writeUnsignedValueToRegister(CONTROL_REG_ADDR, CONTROL_TEMPERATURE_REQUEST);
+            scheduleNextStep(ConversionState.TEMPERATURE_CONVERSION, TEMPERATURE_CONVERSION_TIME);
+        } else {
+            startPressureConversion();
+        }
+    }
+    
+    /**
+     * Starts a new pressure conversion, and schedules the read of the result.
+     */
+    private void startPressureConversion() {
+        writeUnsignedValueToRegister(CONTROL_REG_ADDR, CONTROL_PRESSURE_REQUEST + (selectedHardwarePressureAccuracyMode.oss << 6));
+        scheduleNextStep(ConversionState.PRESSURE_CONVERSION, selectedHardwarePressureAccuracyMode.conversionTime);
+    }
+    
+    /**
+     * Moves the state machine to a new state, and schedules the next step after the delay.
+     * @param state the new state of the state machine.
+     * @param delay the delay before the next step, in milliseconds.
+     */
+    private void scheduleNextStep(ConversionState state, long delay) {
+        conversionState = state;
+        int generation = ++stepGeneration;
+        nextStep = scheduler.schedule(() -> nextConversionStep(generation), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Executes the next step of the continuous measures state machine.
+     * This method is called on the scheduler thread.
+     * @param generation the generation of the step, discarded if not the last scheduled one.
+     */
+    private synchronized void nextConversionStep(int generation) {
+        if(generation != stepGeneration)
+            return;
+        try {
+            switch(conversionState) {
+            case TEMPERATURE_CONVERSION:
+                updateB5(readTwoSignedRegsiters(OUT_MSB_ADDR));
+                startPressureConversion();
+                break;
+            case PRESSURE_CONVERSION:
+                int pressure = pressureFilter.add(compensatePressure(readPressureConversionResult()));
+                double temperature = temperatureFilter.add(getFixedPointTemperatureFromB5()) / 10.;
+                for(MeasureListener listener : listeners)
+                    listener.newMeasure(temperature, pressure);
+                long delay = measuresPeriod - (System.currentTimeMillis() - cycleStartTime);
+                if(delay > 0)
+                    scheduleNextStep(ConversionState.WAITING_NEXT_CYCLE, delay);
+                else
+                    startNewCycle();
+                break;
+            case WAITING_NEXT_CYCLE:
+                startNewCycle();
+                break;
+            default:
+                // continuous measures stopped in the meantime
+                break;
+            }
+        } catch(RuntimeException e) {
+            conversionState = ConversionState.IDLE;
+            Tools.log("BMP180 continuous measures stopped: " + e.getMessage(), Tools.Color.ANSI_RED);
+        }
+    }
 }
@@ -20,6 +20,8 @@ package com.raspoid.additionalcomponents;
 
 import com.pi4j.io.gpio.GpioPinDigitalInput;
 import com.pi4j.io.gpio.PinPullResistance;
+import com.pi4j.io.gpio.PinState;
+import com.raspoid.DigitalInputEventDetector;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
 import com.raspoid.examples.additionalcomponents.JoystickExample;
@@ -29,6 +31,9 @@ import com.raspoid.examples.additionalcomponents.JoystickExample;
  * 
  * <p>This component only uses one Gpio pin.</p>
  * 
+ * <p>The state of the button can be polled with {@link #isPressed()}, or debounced events
+ * (press, release, long press, double click) can be received with {@link #addEventListener(DigitalInputEventDetector.EventListener)}.</p>
+ * 
  * <p>As an example, you can use this kind of component:
  * <a href="https://www.sparkfun.com/products/9190">Momentary Pushbutton Switch</a></p>
  * 
@@ -43,6 +48,11 @@ public class Button extends GPIOComponent {
     
     private boolean highIsPressed = true;
     
+    /**
+     * The event detector of this button (null until first use).
+     */
+    private DigitalInputEventDetector eventDetector = null;
+    
     /**
      * Constructor for a new button, using a specific Gpio pin.
      * @param pin the pin used to deal with the button.
@@ -74,6 +84,35 @@ public class Button extends GPIOComponent {
             return digitalInput.isLow();
     }
     
+    /**
+     * Get the event detector of this button, created on the first call.
+     * <p>The detector emits debounced press, release, long press and double click events, without any polling.</p>
+     * @return the event detector of this button.
+     * @see DigitalInputEventDetector
+     */
+    public synchronized DigitalInputEventDetector getEventDetector() {
+        if(eventDetector == null)
+            eventDetector = new DigitalInputEventDetector(digitalInput, highIsPressed ? PinState.HIGH : PinState.LOW);
+        return eventDetector;
+    }
+    
+    /**
+     * Add a listener notified of the debounced events of this button.
+     * <p>The listeners are notified on the shared Gpio scheduler thread, and should return quickly.</p>
+     * @param listener the listener to add.
+     */
+    public void addEventListener(DigitalInputEventDetector.EventListener listener) {
+        getEventDetector().addListener(listener);
+    }
+    
+    /**
+     * Remove a listener of the events of this button.
+     * @param listener the listener to remove.
+     */
+    public void removeEventListener(DigitalInputEventDetector.EventListener listener) {
+        getEventDetector().removeListener(listener);
+    }
+    
     /**
      * Get the pi4j GpioPinDigitalInput corresponding to this button.
      * <p>This can be usefull to add custom listeners to easily react when the button is pressed/released.</p>
@@ -19,6 +19,8 @@
 package com.raspoid.additionalcomponents;
 
 import com.pi4j.io.gpio.GpioPinDigitalInput;
+import com.pi4j.io.gpio.PinState;
+import com.raspoid.DigitalInputEventDetector;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
 import com.raspoid.examples.additionalcomponents.IRObstacleAvoidanceModuleExample;
@@ -50,6 +52,11 @@ import com.raspoid.examples.additionalcomponents.IRObstacleAvoidanceModuleExampl
 public class IRObstacleAvoidanceModule extends GPIOComponent {
     
     protected final GpioPinDigitalInput digitalInput;
+    
+    /**
+     * The event detector of this module (null until first use).
+     */
+    private DigitalInputEventDetector eventDetector = null;
 
     /**
      * Constructor for a new infrared obstacle avoidance module using a specific Gpio pin.
@@ -67,6 +74,35 @@ public class IRObstacleAvoidanceModule extends GPIOComponent {
         return digitalInput.isLow();
     }
     
+    /**
+     * Get the event detector of this module, created on the first call.
+     * <p>The detector emits debounced events: PRESS when an obstacle is detected, RELEASE when it disappears, without any polling.</p>
+     * @return the event detector of this module.
+     * @see DigitalInputEventDetector
+     */
+    public synchronized DigitalInputEventDetector getEventDetector() {
+        if(eventDetector == null)
+            eventDetector = new DigitalInputEventDetector(digitalInput, PinState.LOW);
+        return eventDetector;
+    }
+    
+    /**
+     * Add a listener notified of the debounced events of this module.
+     * <p>The listeners are notified on the shared Gpio scheduler thread, and should return quickly.</p>
+     * @param listener the listener to add.
+     */
+    public void addEventListener(DigitalInputEventDetector.EventListener listener) {
+        getEventDetector().addListener(listener);
+    }
+    
+    /**
+     * Remove a listener of the events of this module.
+     * @param listener the listener to remove.
+     */
+    public void removeEventListener(DigitalInputEventDetector.EventListener listener) {
+        getEventDetector().removeListener(listener);
+    }
+    
     /**
      * Get the pi4j GpioPinDigitalInput corresponding to this IR obstacle avoidance module.
      * <p>This can be usefull to add custom listeners to easily react when the module detects an obstacle.</p>
@@ -57,6 +57,12 @@ public class Joystick extends AnalogComponent {
      */
     private ADCChannel btChannel;
     
+    /**
+     * The x, y and bt channels, in this order, to read the three channels at once.
+     * @see ADC#analogToDigital(ADCChannel[], int[])
+     */
+    private ADCChannel[] channels;
+    
     /**
      * Constructor for a joystick using a specifc ADC instance, and specific channels on this ADC
      * for the x, y and bt variations of the joystick.
@@ -70,6 +76,7 @@ public class Joystick extends AnalogComponent {
         this.xChannel = xChannel;
         this.yChannel = yChannel;
         this.btChannel = btChannel;
+        this.channels = new ADCChannel[] {xChannel, yChannel, btChannel};
     }
     
     /**
@@ -85,16 +92,17 @@ public class Joystick extends AnalogComponent {
      * @return the main current position of the joystick
      */
     public String getPosition() {
-        if(adc.analogToDigital(btChannel) == 0)
+        int[] rawData = getRawData();
+        if(rawData[2] == 0)
             return "press-down";
         
-        int x = adc.analogToDigital(xChannel);
+        int x = rawData[0];
         if(x < 7)
             return "up";
         else if(x > 248)
             return "down";
         
-        int y = adc.analogToDigital(yChannel);
+        int y = rawData[1];
         if(y < 7)
             return "left";
         else if(y > 248)
@@ -109,10 +117,11 @@ public class Joystick extends AnalogComponent {
      * @return the (x,y) position of the joystick (with x and y in the 0..255 range). (-1,-1) if the button is pressed.
      */
     public int[] getXYPosition() {
-        if(adc.analogToDigital(btChannel) == 0)
+        int[] rawData = getRawData();
+        if(rawData[2] == 0)
             return new int[]{-1, -1};
         
-        return new int[]{adc.analogToDigital(xChannel), adc.analogToDigital(yChannel)};
+        return new int[]{rawData[0], rawData[1]};
     }
     
     /**
@@ -122,9 +131,12 @@ public class Joystick extends AnalogComponent {
      *  <li>variations on the Y axis</li>
      *  <li>variations on the push button</li>
      * </ul>
+     * <p>The three channels are read at once: with a PCF8591, in one single i2c transaction.</p>
      * @return an array containing raw digital output vaules for [x axis, y axis, push button].
      */
     public int[] getRawData() {
-        return new int[] {adc.analogToDigital(xChannel), adc.analogToDigital(yChannel), adc.analogToDigital(btChannel)};
+        int[] rawData = new int[3];
+        adc.analogToDigital(channels, rawData);
+        return rawData;
     }
 }
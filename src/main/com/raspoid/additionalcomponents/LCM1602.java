@@ -33,6 +33,15 @@ import com.raspoid.exceptions.RaspoidException;
  * 
  * <p>To use this display, we use the 4-Bit interface (cfr. <b>[datasheet - p.13]</b>).</p>
  * 
+ * <p>Each character or command is sent in one i2c transaction (the two nibbles, each one with its
+ * enable pulse), followed by a microsecond busy-wait for the execution time of the HD44780.</p>
+ * 
+ * <p>The text can also be prepared in a 2x16 in-memory frame buffer
+ * ({@link #bufferText(int, int, String)}, {@link #bufferLine(int, String, boolean)}, ...).
+ * The {@link #flush()} method then only sends the characters that differ from the content
+ * currently displayed, with the needed cursor moves: updating a value on a screen only costs
+ * a few characters instead of a full redraw.</p>
+ * 
  * <p>Example of use: {@link LCM1602Example}</p>
  * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
@@ -172,6 +181,49 @@ public class LCM1602 extends I2CComponent {
      */
     private static final int ENABLE_5X10_DOTS_FONT = 0x04; // 0000 0100
     
+    /**
+     * Execution time of most of the instructions (37μs [datasheet HD44780 - p.24]), with a margin, in μs.
+     * <p>Note: the enable pulse width (min 450ns) and the enable cycle time (min 1μs) are guaranteed
+     * by the i2c bus, as each byte sent to the i2c expander takes more than 20μs, even at 400kHz.</p>
+     */
+    private static final int EXECUTION_TIME = 50;
+    
+    /**
+     * Execution time of the clear display and return home instructions (1.52ms [datasheet HD44780 - p.24]),
+     * with a margin, in μs.
+     */
+    private static final int LONG_EXECUTION_TIME = 2000;
+    
+    /**
+     * Value used in the shadow of the display for an unknown content.
+     */
+    private static final char UNKNOWN_CHAR = '\0';
+    
+    /**
+     * The frame buffer: content to display on the next {@link #flush()}.
+     */
+    private final char[][] frameBuffer = new char[NB_LINES][NB_COL];
+    
+    /**
+     * The content currently displayed on the LCD.
+     */
+    private final char[][] displayedContent = new char[NB_LINES][NB_COL];
+    
+    /**
+     * Current line of the cursor on the LCD (-1 if unknown).
+     */
+    private int cursorLine = -1;
+    
+    /**
+     * Current column of the cursor on the LCD (-1 if unknown).
+     */
+    private int cursorCol = -1;
+    
+    /**
+     * Buffer used to send one byte (4 i2c bytes: 2 nibbles with enable high then low) in one transaction.
+     */
+    private final byte[] i2cBuffer = new byte[4];
+    
     /**
      * Default constructor for an LCM1602 using the default LCM i2c address.
      */
@@ -186,6 +238,8 @@ public class LCM1602 extends I2CComponent {
     public LCM1602(int i2cAddress) {
         super(i2cAddress);
         resetFunction(); // init phase [datasheet - p.13]
+        clearFrameBuffer();
+        invalidateDisplayedContent();
     }
     
     /* ===============================================
@@ -195,18 +249,25 @@ public class LCM1602 extends I2CComponent {
     /**
      * Clears the content of the display and move the cursor to the (0,0) position.
      */
-    public void clearDisplay() {
+    public synchronized void clearDisplay() {
         sendCommand(CLEAR_DISPLAY_COMMAND);
-        Tools.sleepMilliseconds(3);
+        Tools.busyWaitMicroseconds(LONG_EXECUTION_TIME);
+        for(int line = 0; line < NB_LINES; line++)
+            for(int col = 0; col < NB_COL; col++)
+                displayedContent[line][col] = ' ';
+        cursorLine = 0;
+        cursorCol = 0;
     }
     
     /**
      * The cursor is shifted to its original position (0, 0) if shifted,
      * and the content of the display is not changed.
      */
-    public void returnHome() {
+    public synchronized void returnHome() {
         sendCommand(RETURN_HOME_COMMAND);
-        Tools.sleepMilliseconds(3);
+        Tools.busyWaitMicroseconds(LONG_EXECUTION_TIME);
+        cursorLine = 0;
+        cursorCol = 0;
     }
     
     /**
@@ -215,7 +276,10 @@ public class LCM1602 extends I2CComponent {
      *        False for a cursor moving from right to left.
      * @param enableEntireDisplayShift true to enable the entire display shift. False to disable.
      */
-    public void setEntryMode(boolean cursorMovingFromLeftToRight, boolean enableEntireDisplayShift) {
+    public synchronized void setEntryMode(boolean cursorMovingFromLeftToRight, boolean enableEntireDisplayShift) {
+        if(!cursorMovingFromLeftToRight || enableEntireDisplayShift)
+            // the content displayed can't be tracked anymore
+            invalidateDisplayedContent();
         int command = SET_ENTRY_MODE_COMMAND;
         if(cursorMovingFromLeftToRight)
             command += CURSOR_MOVING_FROM_LEFT_TO_RIGHT;
@@ -231,7 +295,7 @@ public class LCM1602 extends I2CComponent {
      * @param enableCursor a cursor is displayed at the current cursor position "_".
      * @param enableBlinkingCursor a plein cursor is displayed and blinking at the current cursor position.
      */
-    public void setDisplay(boolean enableDisplay, boolean enableCursor, boolean enableBlinkingCursor) {
+    public synchronized void setDisplay(boolean enableDisplay, boolean enableCursor, boolean enableBlinkingCursor) {
         int command = SET_DISPLAY_COMMAND;
         if(enableDisplay)
             command += ENABLE_DISPLAY;
@@ -246,7 +310,7 @@ public class LCM1602 extends I2CComponent {
      * Disable the display.
      * <p>The content of the display is deleted and the cursor is moved to (0,0).</p>
      */
-    public void disableDisplay() {
+    public synchronized void disableDisplay() {
         clearDisplay();
         setDisplay(false, false, false);
     }
@@ -259,7 +323,7 @@ public class LCM1602 extends I2CComponent {
      * @param twoLines 2-line if true, 1-line if false.
      * @param fiveTenDots 5x10 if true, 5x8 if false.
      */
-    public void setFunction(boolean heightBitsInterface, boolean twoLines, boolean fiveTenDots) {
+    public synchronized void setFunction(boolean heightBitsInterface, boolean twoLines, boolean fiveTenDots) {
         int command = SET_FUNCTION_COMMAND;
         if(heightBitsInterface)
             command += ENABLE_8BITS_INTERFACE;
@@ -275,7 +339,7 @@ public class LCM1602 extends I2CComponent {
      * @param line the new line of the cursor, in the {@link #MIN_LINE_NB}..{@link #MAX_LINE_NB} interval.
      * @param col the new column of the cursor, in the {@link #MIN_COL_NB}..{@link #MAX_COL_NB} interval.
      */
-    public void moveCursor(int line, int col) {
+    public synchronized void moveCursor(int line, int col) {
         if(col < MIN_COL_NB)
             col = MIN_COL_NB;
         if(col > MAX_COL_NB)
@@ -287,13 +351,15 @@ public class LCM1602 extends I2CComponent {
         
         int command = 0x80 + 0x40 * line + col;
         sendCommand(command);
+        cursorLine = line;
+        cursorCol = col;
     }
     
     /**
      * Writes a text on the display, starting at the current cursor position.
      * @param text the text to print on the display.
      */
-    public void writeText(String text) {
+    public synchronized void writeText(String text) {
         this.writeCharArray(text.toCharArray());
     }
     
@@ -304,7 +370,7 @@ public class LCM1602 extends I2CComponent {
      * @param col the new column for the cursor.
      * @param text the text to print on the display.
      */
-    public void writeText(int line, int col, String text) {
+    public synchronized void writeText(int line, int col, String text) {
         moveCursor(line, col);
         writeText(text);
     }
@@ -317,7 +383,7 @@ public class LCM1602 extends I2CComponent {
      * @param line the line to print the text.
      * @param text the text to print on the display.
      */
-    public void writeTextRightAlign(int line, String text) {
+    public synchronized void writeTextRightAlign(int line, String text) {
         int textLength = text.length();
         if(textLength > NB_COL)
             moveCursor(line, 0);
@@ -338,45 +404,100 @@ public class LCM1602 extends I2CComponent {
     }
     
     /* ===============================================
-     *                      Utils
+     *                  Frame buffer
      * =============================================*/
     
     /**
-     * Writes data on the I2C bus, respecting the requested format (cfr <b>[datasheet - p.11]</b>).
-     * @param data
+     * Writes a text in the frame buffer, starting at the (line, col) position.
+     * <p>The characters out of the screen are ignored. Nothing is sent to the LCD before the next {@link #flush()}.</p>
+     * @param line the line of the first character, in the {@link #MIN_LINE_NB}..{@link #MAX_LINE_NB} interval.
+     * @param col the column of the first character, in the {@link #MIN_COL_NB}..{@link #MAX_COL_NB} interval.
+     * @param text the text to write in the frame buffer.
      */
-    private void writeDataToI2C(int data) {
-        try {
-            data |= 0x08;
-            byte sent = (byte)(data);
-            device.write(sent);
-        } catch (IOException e) {
-            throw new RaspoidException(e);
+    public synchronized void bufferText(int line, int col, String text) {
+        if(line < MIN_LINE_NB || line > MAX_LINE_NB)
+            throw new IllegalArgumentException("The line must be in the [" + MIN_LINE_NB + ";" + MAX_LINE_NB + "] interval.");
+        int textLength = text.length();
+        for(int i = 0; i < textLength; i++) {
+            int currentCol = col + i;
+            if(currentCol >= MIN_COL_NB && currentCol <= MAX_COL_NB)
+                frameBuffer[line][currentCol] = text.charAt(i);
+        }
+    }
+    
+    /**
+     * Writes a text on a full line of the frame buffer: the text is padded with spaces,
+     * or truncated if longer than {@link #NB_COL}.
+     * <p>Nothing is sent to the LCD before the next {@link #flush()}.</p>
+     * @param line the line to write, in the {@link #MIN_LINE_NB}..{@link #MAX_LINE_NB} interval.
+     * @param text the text to write in the frame buffer.
+     * @param leftAlign true to align the text on the left, false to align it on the right.
+     */
+    public synchronized void bufferLine(int line, String text, boolean leftAlign) {
+        if(line < MIN_LINE_NB || line > MAX_LINE_NB)
+            throw new IllegalArgumentException("The line must be in the [" + MIN_LINE_NB + ";" + MAX_LINE_NB + "] interval.");
+        int textLength = Math.min(text.length(), NB_COL);
+        int start = leftAlign ? 0 : NB_COL - textLength;
+        for(int col = 0; col < NB_COL; col++) {
+            int index = col - start;
+            frameBuffer[line][col] = index >= 0 && index < textLength ? text.charAt(index) : ' ';
+        }
+    }
+    
+    /**
+     * Fills the frame buffer with spaces.
+     * <p>Nothing is sent to the LCD before the next {@link #flush()}.</p>
+     */
+    public synchronized void clearFrameBuffer() {
+        for(int line = 0; line < NB_LINES; line++)
+            for(int col = 0; col < NB_COL; col++)
+                frameBuffer[line][col] = ' ';
+    }
+    
+    /**
+     * Updates the LCD with the content of the frame buffer.
+     * <p>Only the characters that differ from the content currently displayed are sent,
+     * with a cursor move only when the next changed character is not at the current cursor position.</p>
+     * @return the number of characters sent to the LCD.
+     */
+    public synchronized int flush() {
+        int nbCharsSent = 0;
+        for(int line = 0; line < NB_LINES; line++) {
+            for(int col = 0; col < NB_COL; col++) {
+                char c = frameBuffer[line][col];
+                if(c != displayedContent[line][col]) {
+                    if(line != cursorLine || col != cursorCol)
+                        moveCursor(line, col);
+                    sendData(c);
+                    nbCharsSent++;
+                }
+            }
         }
+        return nbCharsSent;
     }
     
+    /**
+     * Forgets the content displayed on the LCD: the next {@link #flush()} will redraw the entire screen.
+     */
+    public synchronized void invalidateDisplayedContent() {
+        for(int line = 0; line < NB_LINES; line++)
+            for(int col = 0; col < NB_COL; col++)
+                displayedContent[line][col] = UNKNOWN_CHAR;
+        cursorLine = -1;
+        cursorCol = -1;
+    }
+    
+    /* ===============================================
+     *                      Utils
+     * =============================================*/
+    
     /**
      * Send a command to the LCM using I2C protocol. This command is sent using
      * the 4-bit data-length interface.
      * @param command
      */
     private void sendCommand(int command) {
-        int buf;
-        // Send bit7-4 firstly
-        buf = command & 0xF0;
-        buf |= RS0_RW0_EN1;
-        writeDataToI2C(buf);
-        Tools.sleepMilliseconds(2);
-        buf &= MAKE_EN0;
-        writeDataToI2C(buf);
-
-        // Send bit3-0 secondly
-        buf = (command & 0x0F) << 4;
-        buf |= RS0_RW0_EN1;
-        writeDataToI2C(buf);
-        Tools.sleepMilliseconds(2);
-        buf &= MAKE_EN0;
-        writeDataToI2C(buf);
+        sendByte(command, RS0_RW0_EN1);
     }
     
     /**
@@ -384,22 +505,57 @@ public class LCM1602 extends I2CComponent {
      * @param data
      */
     private void sendData(int data) {
+        sendByte(data, RS1_RW0_EN1);
+        if(cursorLine >= 0 && cursorCol >= 0) {
+            if(cursorCol <= MAX_COL_NB)
+                displayedContent[cursorLine][cursorCol] = (char) data;
+            // the address counter is incremented, even after the last visible column
+            cursorCol++;
+        }
+    }
+    
+    /**
+     * Sends a byte to the LCM using the 4-bit data-length interface: bit7-4 firstly, then bit3-0,
+     * each nibble with an enable pulse (EN high, then EN low). The 4 resulting bytes are written
+     * in one single i2c transaction.
+     * @param value the byte to send.
+     * @param header the instruction code header ({@link #RS0_RW0_EN1} for a command, {@link #RS1_RW0_EN1} for data).
+     */
+    private void sendByte(int value, int header) {
         int buf;
         // Send bit7-4 firstly
-        buf = data & 0xF0;
-        buf |= RS1_RW0_EN1;
-        writeDataToI2C(buf);
-        Tools.sleepMilliseconds(2);
-        buf &= MAKE_EN0;
-        writeDataToI2C(buf);
-
+        buf = (value & 0xF0) | header;
+        i2cBuffer[0] = (byte) (buf | 0x08);
+        i2cBuffer[1] = (byte) ((buf & MAKE_EN0) | 0x08);
+        
         // Send bit3-0 secondly
-        buf = (data & 0x0F) << 4;
-        buf |= RS1_RW0_EN1;
-        writeDataToI2C(buf);
-        Tools.sleepMilliseconds(2);
-        buf &= MAKE_EN0;
-        writeDataToI2C(buf);
+        buf = ((value & 0x0F) << 4) | header;
+        i2cBuffer[2] = (byte) (buf | 0x08);
+        i2cBuffer[3] = (byte) ((buf & MAKE_EN0) | 0x08);
+        
+        try {
+            device.write(i2cBuffer, 0, i2cBuffer.length);
+        } catch (IOException e) {
+            throw new RaspoidException(e);
+        }
+        Tools.busyWaitMicroseconds(EXECUTION_TIME);
+    }
+    
+    /**
+     * Sends a single nibble (bit7-4 of the value) as a command, with an enable pulse, and then waits 5ms.
+     * <p>Only used by the initial procedure, which requires more than 4.1ms between the first nibbles.</p>
+     * @param value the value whose bit7-4 are sent.
+     */
+    private void sendInitNibble(int value) {
+        int buf = (value & 0xF0) | RS0_RW0_EN1;
+        i2cBuffer[0] = (byte) (buf | 0x08);
+        i2cBuffer[1] = (byte) ((buf & MAKE_EN0) | 0x08);
+        try {
+            device.write(i2cBuffer, 0, 2);
+        } catch (IOException e) {
+            throw new RaspoidException(e);
+        }
+        Tools.sleepMilliseconds(5);
     }
     
     /**
@@ -409,8 +565,10 @@ public class LCM1602 extends I2CComponent {
      */
     private void resetFunction() {
         Tools.sleepMilliseconds(40);
-        sendCommand(0x33); // 0011 and then 0011
-        sendCommand(0x32); // 0011 and then 0010
+        sendInitNibble(0x30); // 0011
+        sendInitNibble(0x30); // 0011
+        sendInitNibble(0x30); // 0011
+        sendInitNibble(0x20); // 0010: 4-bit interface
         setFunction(false, true, false);
         setDisplay(false, false, false);
         setEntryMode(true, false);
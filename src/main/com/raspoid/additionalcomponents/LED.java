@@ -20,6 +20,8 @@ package com.raspoid.additionalcomponents;
 
 import com.pi4j.io.gpio.GpioPinDigitalOutput;
 import com.pi4j.io.gpio.PinState;
+import com.raspoid.BlinkPattern;
+import com.raspoid.BlinkPatternEngine;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
 import com.raspoid.examples.additionalcomponents.LEDExample;
@@ -30,6 +32,15 @@ import com.pi4j.io.gpio.PinPullResistance;
  * 
  * <p>This component only uses a Gpio pin.</p>
  * 
+ * <p>Blinking and pulses are played by the {@link BlinkPatternEngine#getDefault() default blink pattern engine}:
+ * the caller is never blocked, and many LEDs share the same thread. Dimming ({@link BlinkPattern#dutyCycle(int, int)})
+ * needs an engine with a shorter tick period, given to {@link #blink(BlinkPattern, BlinkPatternEngine)}:
+ * <pre>
+ * BlinkPatternEngine pwmEngine = new BlinkPatternEngine(1);
+ * led.blink(BlinkPattern.dutyCycle(30, 10), pwmEngine);
+ * </pre>
+ * </p>
+ * 
  * <p>Example of use: {@link LEDExample}</p>
  * 
  * <p>Datasheet (example): <a href="http://raspoid.com/download/datasheet/LED">LED</a>,
@@ -41,6 +52,11 @@ public class LED extends GPIOComponent {
 
     protected final GpioPinDigitalOutput digitalOutput;
     
+    /**
+     * The engine playing the current pattern (null if none).
+     */
+    private BlinkPatternEngine engine = null;
+    
     /**
      * Constructor for a LED using a specific Gpio pin,
      * and a specific name.
@@ -64,6 +80,7 @@ public class LED extends GPIOComponent {
      * Turns the LED on.
      */
     public void on() {
+        stopPattern();
         digitalOutput.high();
     }
 
@@ -71,6 +88,7 @@ public class LED extends GPIOComponent {
      * Turns the LED off.
      */
     public void off() {
+        stopPattern();
         digitalOutput.low();
     }
 
@@ -79,14 +97,51 @@ public class LED extends GPIOComponent {
      * <p>Turns on if OFF. Turns off if ON.
      */
     public void toggle() {
+        stopPattern();
         digitalOutput.toggle();
     }
 
     /**
      * Turns the LED on for millis milliseconds and then off.
+     * <p>This method returns immediately.</p>
      * @param millis the duration of the ON period, in milliseconds.
      */
     public void pulse(long millis) {
-        digitalOutput.pulse(millis, true);
+        blink(BlinkPattern.pulse((int) millis));
+    }
+    
+    /**
+     * Plays a blink pattern on the LED (blinking, heartbeat, Morse code, ...) with the default engine,
+     * replacing the pattern currently played (if any).
+     * <p>This method returns immediately.</p>
+     * @param pattern the pattern to play.
+     */
+    public void blink(BlinkPattern pattern) {
+        blink(pattern, BlinkPatternEngine.getDefault());
+    }
+    
+    /**
+     * Plays a blink pattern on the LED with a specific engine, replacing the pattern currently played (if any).
+     * <p>The durations of the pattern are rounded to the tick period of the engine: dimming needs
+     * an engine with a tick period much shorter than the period of the pattern.</p>
+     * <p>This method returns immediately.</p>
+     * @param pattern the pattern to play.
+     * @param engine the engine used to play the pattern.
+     */
+    public synchronized void blink(BlinkPattern pattern, BlinkPatternEngine engine) {
+        if(this.engine != null && this.engine != engine)
+            this.engine.clearPattern(digitalOutput);
+        engine.setPattern(digitalOutput, PinState.HIGH, pattern);
+        this.engine = engine;
+    }
+    
+    /**
+     * Stops the pattern played on the LED (if any). The LED state is left unchanged.
+     */
+    public synchronized void stopPattern() {
+        if(engine != null) {
+            engine.clearPattern(digitalOutput);
+            engine = null;
+        }
     }
 }
@@ -36,6 +36,12 @@ import com.raspoid.Tools;
  *  </ul>
  * </p>
  * 
+ * <p>The register auto-increment (AI bit of MODE1) is enabled at initialization: the 4 registers
+ * of a channel are written in one single i2c transaction. Several channels can also be staged with
+ * {@link #stagePWM(PCA9685Channel, int, int)}, and then written all together with {@link #commit()},
+ * in one block write of the contiguous range of LED registers. As the outputs change on the i2c STOP
+ * condition (MODE2 OCH = 0), all the committed channels are updated in the same PWM period.</p>
+ * 
  * <p>The implementation of this component is mainly based on:
  *  <ul>
  *      <li>the datasheet</li>
@@ -261,6 +267,46 @@ public class PCA9685 extends I2CComponent {
      */
     public static final int MIN_FREQUENCY = 40;
     
+    /**
+     * Number of output channels of the PCA9685.
+     */
+    public static final int NB_CHANNELS = 16;
+    
+    /**
+     * On ticks last written on each channel.
+     */
+    private final int[] currentOn = new int[NB_CHANNELS];
+    
+    /**
+     * Off ticks last written on each channel.
+     */
+    private final int[] currentOff = new int[NB_CHANNELS];
+    
+    /**
+     * On ticks staged on each channel, waiting for the next commit.
+     */
+    private final int[] stagedOn = new int[NB_CHANNELS];
+    
+    /**
+     * Off ticks staged on each channel, waiting for the next commit.
+     */
+    private final int[] stagedOff = new int[NB_CHANNELS];
+    
+    /**
+     * Bitmask of the channels staged since the last commit (bit n for the channel n).
+     */
+    private int stagedChannels = 0;
+    
+    /**
+     * Buffer used to write the LED registers of all the channels in one block write.
+     */
+    private final byte[] registersBuffer = new byte[NB_CHANNELS * REGISTERS_PER_LED];
+    
+    /**
+     * The value currently in the PRE_SCALE register (-1 if unknown).
+     */
+    private int currentPreScale = -1;
+    
     /**
      * Default constructor for a PCA9685 using the default i2c address of the component.
      */
@@ -276,7 +322,7 @@ public class PCA9685 extends I2CComponent {
         super(i2cAddress);
         setAllPWM(0, 0);
         writeUnsignedValueToRegister(MODE2, OUTDRV);
-        writeUnsignedValueToRegister(MODE1, ALLCALL);
+        writeUnsignedValueToRegister(MODE1, ALLCALL | AI);
         Tools.sleepMilliseconds(5);
         
         int mode1 = readUnsignedRegisterValue(MODE1);
@@ -287,13 +333,25 @@ public class PCA9685 extends I2CComponent {
     
     /**
      * Sets the PWM frequency, which determines how many full pulses per second are generated by the module.
+     * <p>If the frequency corresponds to the current pre scale value, nothing is sent to the module.</p>
      * @param frequency the frequency in Hz, in the {@link #MAX_FREQUENCY}..{@link #MIN_FREQUENCY} range.
+     * @see #frequencyToPreScale(int)
      */
-    public void setPWMFreq(int frequency) {
+    public synchronized void setPWMFreq(int frequency) {
         if(frequency > MAX_FREQUENCY)
             Tools.debug("[PCA9685] Max frequency: " + MAX_FREQUENCY + "Hz. " + frequency + " requested.", Tools.Color.ANSI_RED);
         if(frequency < MIN_FREQUENCY)
             Tools.debug("[PCA9685] Min frequency: " + MIN_FREQUENCY + "Hz. " + frequency + " requested.", Tools.Color.ANSI_RED);
+        setPreScale(frequencyToPreScale(frequency));
+    }
+    
+    /**
+     * Converts a PWM frequency to the corresponding value of the PRE_SCALE register.
+     * <p>Different frequencies can give the same pre scale value.</p>
+     * @param frequency the frequency in Hz, bounded to the {@link #MAX_FREQUENCY}..{@link #MIN_FREQUENCY} range.
+     * @return the corresponding value of the PRE_SCALE register.
+     */
+    public static int frequencyToPreScale(int frequency) {
         frequency = Math.max(frequency, MIN_FREQUENCY);
         frequency = Math.min(frequency, MAX_FREQUENCY);
         
@@ -304,13 +362,26 @@ public class PCA9685 extends I2CComponent {
         preScale /= (double)frequency;
         preScale -= 1.;
         preScale = Math.floor(preScale + .5);
+        return (int)Math.floor(preScale);
+    }
+    
+    /**
+     * Sets the value of the PRE_SCALE register, which defines the PWM frequency (cfr {@link #frequencyToPreScale(int)}).
+     * <p>The module must be put to sleep to change this value, and then restarted. This sequence is skipped
+     * when the pre scale value is unchanged, e.g. for consecutive notes of a melody with the same pre scale.</p>
+     * @param preScale the new value of the PRE_SCALE register.
+     */
+    public synchronized void setPreScale(int preScale) {
+        if(preScale == currentPreScale)
+            return;
         int oldMode = readUnsignedRegisterValue(MODE1);
         int newMode = (oldMode & 0x7F) | 0x10; // sleep
         writeUnsignedValueToRegister(MODE1, newMode); // go to sleep
-        writeUnsignedValueToRegister(PRE_SCALE, (int)Math.floor(preScale)); // set pwm frequency
+        writeUnsignedValueToRegister(PRE_SCALE, preScale); // set pwm frequency
         writeUnsignedValueToRegister(MODE1, oldMode); // go back to previous mode
         Tools.sleepMilliseconds(5);
         writeUnsignedValueToRegister(MODE1, oldMode | 0x80);
+        currentPreScale = preScale;
     }
     
     /**
@@ -322,16 +393,92 @@ public class PCA9685 extends I2CComponent {
      * @param off the tick, between on and 4096, when the signal should transition from high to low.
      * @see #setAllPWM(int, int)
      */
-    public void setPWM(PCA9685Channel channel, int on, int off) {
+    public synchronized void setPWM(PCA9685Channel channel, int on, int off) {
+        int channelNb = channel.getValue();
+        on = Math.max(on, 0);
+        on = Math.min(on, 4096);
+        off = Math.max(off, on);
+        off = Math.min(off, 4096);
+        
+        // the 4 registers of the channel are written in one auto-incremented block write
+        stagedChannels &= ~(1 << channelNb);
+        putInRegistersBuffer(channelNb, on, off);
+        writeBytesToRegister(LED0_ON_L + REGISTERS_PER_LED * channelNb, registersBuffer, REGISTERS_PER_LED * channelNb, REGISTERS_PER_LED);
+        currentOn[channelNb] = on;
+        currentOff[channelNb] = off;
+    }
+    
+    /**
+     * Stages new on and off ticks for a specific channel. The values are not sent to the PCA9685
+     * before the next call to {@link #commit()}.
+     * <p>Staging a channel several times before a commit only keeps the last values.</p>
+     * @param channel the channel that should be updated with the new values.
+     * @param on the tick, between 0 and 4096, when the signal should transition from low to high.
+     * @param off the tick, between on and 4096, when the signal should transition from high to low.
+     * @see #commit()
+     */
+    public synchronized void stagePWM(PCA9685Channel channel, int on, int off) {
+        int channelNb = channel.getValue();
         on = Math.max(on, 0);
         on = Math.min(on, 4096);
         off = Math.max(off, on);
         off = Math.min(off, 4096);
         
-        writeUnsignedValueToRegister(LED0_ON_L + REGISTERS_PER_LED * channel.getValue(), on & 0xFF); // 0xFF to take the 8 lowest bits
-        writeUnsignedValueToRegister(LED0_ON_H + REGISTERS_PER_LED * channel.getValue(), on >> 8); // >> 8 to take the 8 highest bits
-        writeUnsignedValueToRegister(LED0_OFF_L + REGISTERS_PER_LED * channel.getValue(), off & 0xFF); // 0xFF to take the 8 lowest bits
-        writeUnsignedValueToRegister(LED0_OFF_H + REGISTERS_PER_LED * channel.getValue(), off >> 8); // >> 8 to take the 8 highest bits
+        stagedOn[channelNb] = on;
+        stagedOff[channelNb] = off;
+        stagedChannels |= 1 << channelNb;
+    }
+    
+    /**
+     * Writes all the channels staged since the last commit, in one single i2c transaction.
+     * 
+     * <p>The staged channels whose values have not changed are skipped: only the contiguous range of
+     * LED registers, from the first to the last changed channel, is written with one auto-incremented
+     * block write. The unchanged channels in the middle of this range are rewritten with their current values.</p>
+     * 
+     * <p>As the outputs of the PCA9685 change on the i2c STOP condition, all the channels of the
+     * commit are updated in the same PWM period.</p>
+     * @return the number of channels whose values have changed.
+     * @see #stagePWM(PCA9685Channel, int, int)
+     */
+    public synchronized int commit() {
+        int firstChannel = -1;
+        int lastChannel = -1;
+        int nbChangedChannels = 0;
+        for(int channelNb = 0; channelNb < NB_CHANNELS; channelNb++) {
+            if((stagedChannels & (1 << channelNb)) != 0
+                    && (stagedOn[channelNb] != currentOn[channelNb] || stagedOff[channelNb] != currentOff[channelNb])) {
+                currentOn[channelNb] = stagedOn[channelNb];
+                currentOff[channelNb] = stagedOff[channelNb];
+                if(firstChannel < 0)
+                    firstChannel = channelNb;
+                lastChannel = channelNb;
+                nbChangedChannels++;
+            }
+        }
+        stagedChannels = 0;
+        
+        if(nbChangedChannels > 0) {
+            for(int channelNb = firstChannel; channelNb <= lastChannel; channelNb++)
+                putInRegistersBuffer(channelNb, currentOn[channelNb], currentOff[channelNb]);
+            writeBytesToRegister(LED0_ON_L + REGISTERS_PER_LED * firstChannel, registersBuffer,
+                    REGISTERS_PER_LED * firstChannel, REGISTERS_PER_LED * (lastChannel - firstChannel + 1));
+        }
+        return nbChangedChannels;
+    }
+    
+    /**
+     * Puts the values of the 4 LED registers of a channel in the registers buffer.
+     * @param channelNb the channel number, in the 0..15 range.
+     * @param on the on tick of the channel.
+     * @param off the off tick of the channel.
+     */
+    private void putInRegistersBuffer(int channelNb, int on, int off) {
+        int index = REGISTERS_PER_LED * channelNb;
+        registersBuffer[index] = (byte) (on & 0xFF); // ON_L: 0xFF to take the 8 lowest bits
+        registersBuffer[index + 1] = (byte) (on >> 8); // ON_H: >> 8 to take the 8 highest bits
+        registersBuffer[index + 2] = (byte) (off & 0xFF); // OFF_L
+        registersBuffer[index + 3] = (byte) (off >> 8); // OFF_H
     }
     
     /**
@@ -340,11 +487,15 @@ public class PCA9685 extends I2CComponent {
      * @param off the tick, between on and 4096, when the signal should transition from high to low.
      * @see #setPWM(PCA9685Channel, int, int)
      */
-    public void setAllPWM(int on, int off) {
+    public synchronized void setAllPWM(int on, int off) {
         writeUnsignedValueToRegister(ALL_LED_ON_L, on & 0xFF); // 0xFF to take the 8 lowest bits
         writeUnsignedValueToRegister(ALL_LED_ON_H, on >> 8); // >> 8 to take the 8 highest bits
         writeUnsignedValueToRegister(ALL_LED_OFF_L, off & 0xFF); // 0xFF to take the 8 lowest bits
         writeUnsignedValueToRegister(ALL_LED_OFF_H, off >> 8); // >> 8 to take the 8 highest bits
+        for(int channelNb = 0; channelNb < NB_CHANNELS; channelNb++) {
+            currentOn[channelNb] = on;
+            currentOff[channelNb] = off;
+        }
     }
     
     /**
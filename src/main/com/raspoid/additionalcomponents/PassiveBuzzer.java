@@ -18,6 +18,8 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.raspoid.PWMComponent;
 import com.raspoid.PWMPin;
 import com.raspoid.Tools;
@@ -68,12 +70,14 @@ public class PassiveBuzzer extends PWMComponent {
     
     /**
      * Plays a tone for a duration of millis milliseconds.
+     * <p>The caller thread is not blocked (cfr {@link #pulse(int)}).</p>
      * @param frequency the frequency of the tone.
      * @param millis the duration of the tone.
+     * @return a future completed at the end of the tone.
      */
-    public void playTone(double frequency, int millis) {
+    public CompletableFuture<Void> playTone(double frequency, int millis) {
         setFrequency(frequency);
-        pulse(millis);
+        return pulse(millis);
     }
     
     /**
@@ -82,10 +86,11 @@ public class PassiveBuzzer extends PWMComponent {
      * @param baseNote the base note to play.
      * @param octave the octave from the base note to play.
      * @param millis the duration of the note to play.
+     * @return a future completed at the end of the note.
      */
-    public void playNote(BaseNote baseNote, int octave, int millis) {
-        playTone(Note.getNoteFrequency(baseNote, octave), millis);
+    public CompletableFuture<Void> playNote(BaseNote baseNote, int octave, int millis) {
         Tools.debug("Note played: " + baseNote + " (octave)" + octave, Tools.Color.ANSI_YELLOW);
+        return playTone(Note.getNoteFrequency(baseNote, octave), millis);
     }
     
     /**
@@ -99,10 +104,13 @@ public class PassiveBuzzer extends PWMComponent {
     
     /**
      * Enables the buzzer to play the tone at the currently setted frequency.
+     * <p>The caller thread is not blocked: the end of the tone is scheduled (cfr {@link PWMComponent#setPWM(int, long)}).
+     * A new tone started before the end of this one replaces it.</p>
      * @param millis the duration of the tone.
+     * @return a future completed at the end of the tone, or cancelled if the tone is replaced before.
      */
-    public void pulse(int millis) {
-        setPWM(50, millis);
+    public CompletableFuture<Void> pulse(int millis) {
+        return setPWM(50, millis);
     }
     
     /**
@@ -18,8 +18,14 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.pi4j.wiringpi.Gpio;
 import com.raspoid.GPIOPin;
+import com.raspoid.exceptions.RaspoidException;
 import com.raspoid.examples.additionalcomponents.RotaryEncoderExample;
 
 /**
@@ -29,6 +35,16 @@ import com.raspoid.examples.additionalcomponents.RotaryEncoderExample;
  * <p>A rotary encoders is usually placed at the side which is perpendicular to the shaft. 
  * They act as sensors for detecting angle, speed, length, position, and acceleration in automation field.</p>
  * 
+ * <p>The rotation of the shaft can be decoded in two ways:
+ *  <ul>
+ *      <li>by polling, calling {@link #getEncoderTurn()} in a loop (the caller thread is busy),</li>
+ *      <li>with Gpio interrupts, after a call to {@link #startDecoding()}: each edge of the DT and CLK signals
+ *      updates a quadrature state machine. No CPU is used while the shaft doesn't move, and steps are not
+ *      missed during fast rotations. The velocity of the shaft is also tracked, and {@link RotationListener}s
+ *      are notified for each step.</li>
+ *  </ul>
+ * </p>
+ * 
  * <p>Example datasheet: <a href="http://raspoid.com/download/datasheet/rotaryEncoder">Rotary Encoder</a></p>
  * 
  * <p>Example of use: {@link RotaryEncoderExample}</p>
@@ -38,11 +54,82 @@ import com.raspoid.examples.additionalcomponents.RotaryEncoderExample;
  */
 public class RotaryEncoder extends Button {
     
+    /**
+     * Number of valid quadrature transitions for one step (one detent) of the encoder.
+     */
+    public static final int TRANSITIONS_PER_STEP = 4;
+    
+    /**
+     * Without any step during this delay, the velocity is considered null (ms).
+     */
+    public static final int VELOCITY_TIMEOUT = 500; // ms
+    
+    /**
+     * Quadrature decoding table, indexed by (previousState &lt;&lt; 2) | newState,
+     * with state = (clk &lt;&lt; 1) | dt.
+     * <p>Valid transitions (a single signal changing) give +1 or -1, depending on the direction.
+     * Invalid or null transitions (bounces, missed edges) give 0.</p>
+     */
+    private static final int[] QUADRATURE_TABLE = {
+         0, -1,  1,  0,
+         1,  0,  0, -1,
+        -1,  0,  0,  1,
+         0,  1, -1,  0
+    };
+    
     private int dtPinNumber;
     private int clkPinNumber;
     private int flag = 0;
     private int currentDt = 0;
-    private int globalCounter = 0;
+    private final AtomicInteger globalCounter = new AtomicInteger();
+    
+    /**
+     * True once the interrupts on the DT and CLK pins are set up.
+     */
+    private boolean decoding = false;
+    
+    /**
+     * Last state of the DT and CLK signals: (clk &lt;&lt; 1) | dt.
+     */
+    private int quadratureState;
+    
+    /**
+     * Sum of the quadrature transitions since the last step.
+     * <p>A bounce gives a transition and its opposite, which cancel each other:
+     * only full quadrature cycles give a step.</p>
+     */
+    private int transitions = 0;
+    
+    /**
+     * Timestamp of the last step (ns), and duration between the two last steps (ns, 0 if unknown).
+     */
+    private volatile long lastStepTime = 0;
+    private volatile long lastStepInterval = 0;
+    
+    /**
+     * Direction of the last step: 1 or -1.
+     */
+    private volatile int lastStepDirection = 0;
+    
+    /**
+     * The listeners notified for each step.
+     */
+    private final List<RotationListener> rotationListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Listener notified for each step of the encoder (in interrupt mode).
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     */
+    @FunctionalInterface
+    public interface RotationListener {
+        
+        /**
+         * Called for each step of the encoder.
+         * @param direction the direction of the step: 1 (counter incremented) or -1 (counter decremented).
+         * @param counterValue the value of the counter, after this step.
+         */
+        void step(int direction, int counterValue);
+    }
     
     /**
      * Constructor for a new rotary encoder using specific GPIO pin for sw, dt and clk pins.
@@ -64,6 +151,8 @@ public class RotaryEncoder extends Button {
      * <p>The counter is used to represent the position of the shaft. If you turn to the right,
      * the counter is incremeted by one for each tick. If you turn to the left, the counter is 
      * then decremented by one for each tick.</p>
+     * <p>This method polls the pins of the encoder, and must be called in a loop.
+     * Prefer the interrupt mode ({@link #startDecoding()}), which doesn't need any polling.</p>
      * @see #getCounterValue()
      */
     public void getEncoderTurn() {
@@ -77,17 +166,111 @@ public class RotaryEncoder extends Button {
         if(flag == 1) {
             flag = 0;
             if(lastDt == Gpio.LOW && currentDt == Gpio.HIGH)
-                globalCounter++;
+                globalCounter.incrementAndGet();
             if(lastDt == Gpio.HIGH && currentDt == Gpio.LOW)
-                globalCounter--;
+                globalCounter.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Starts the decoding of the rotation with Gpio interrupts on the DT and CLK pins.
+     * <p>The counter is then updated automatically, without any polling.
+     * {@link #getEncoderTurn()} must not be used anymore.</p>
+     * <p>Note: the interrupts can't be disabled once set up.</p>
+     */
+    public synchronized void startDecoding() {
+        if(decoding)
+            return;
+        quadratureState = readQuadratureState();
+        if(Gpio.wiringPiISR(dtPinNumber, Gpio.INT_EDGE_BOTH, pin -> decode()) < 0
+                || Gpio.wiringPiISR(clkPinNumber, Gpio.INT_EDGE_BOTH, pin -> decode()) < 0)
+            throw new RaspoidException("Unable to set up the interrupts on the pins of the rotary encoder.");
+        decoding = true;
+    }
+    
+    /**
+     * Called by the interrupts of the DT and CLK pins, on each edge.
+     * <p>The interrupts of the two pins are handled by two different threads: the decoding is synchronized.</p>
+     */
+    private synchronized void decode() {
+        int newState = readQuadratureState();
+        transitions += QUADRATURE_TABLE[(quadratureState << 2) | newState];
+        quadratureState = newState;
+        
+        if(transitions >= TRANSITIONS_PER_STEP) {
+            transitions = 0;
+            newStep(1, globalCounter.incrementAndGet());
+        } else if(transitions <= -TRANSITIONS_PER_STEP) {
+            transitions = 0;
+            newStep(-1, globalCounter.decrementAndGet());
         }
     }
     
+    /**
+     * Read the current state of the DT and CLK signals.
+     * @return the state of the signals: (clk &lt;&lt; 1) | dt.
+     */
+    private int readQuadratureState() {
+        return (Gpio.digitalRead(clkPinNumber) << 1) | Gpio.digitalRead(dtPinNumber);
+    }
+    
+    /**
+     * Updates the velocity of the shaft and notifies the listeners of a new step.
+     * @param direction the direction of the step: 1 or -1.
+     * @param counterValue the value of the counter, after this step.
+     */
+    private void newStep(int direction, int counterValue) {
+        long now = System.nanoTime();
+        // the interval is only meaningful for successive steps in the same direction
+        lastStepInterval = lastStepTime != 0 && direction == lastStepDirection ? now - lastStepTime : 0;
+        lastStepTime = now;
+        lastStepDirection = direction;
+        
+        if(!rotationListeners.isEmpty())
+            getSharedScheduler().execute(() -> {
+                for(RotationListener listener : rotationListeners)
+                    listener.step(direction, counterValue);
+            });
+    }
+    
+    /**
+     * Add a listener notified for each step of the encoder, in interrupt mode.
+     * <p>The listeners are notified on the {@link #getSharedScheduler() Gpio scheduler} thread,
+     * and should return quickly.</p>
+     * @param listener the listener to add.
+     * @see #startDecoding()
+     */
+    public void addRotationListener(RotationListener listener) {
+        rotationListeners.add(listener);
+    }
+    
+    /**
+     * Remove a rotation listener.
+     * @param listener the listener to remove.
+     */
+    public void removeRotationListener(RotationListener listener) {
+        rotationListeners.remove(listener);
+    }
+    
     /**
      * Get the current value of the counter corresponding to the position of the shaft.
      * @return the value of the counter corresponding to the position of the shaft.
      */
     public int getCounterValue() {
-        return globalCounter;
+        return globalCounter.get();
+    }
+    
+    /**
+     * Get the current velocity of the shaft, in interrupt mode.
+     * <p>The velocity is estimated from the interval between the two last steps, and decreases
+     * while no new step occurs. Without any step during {@link #VELOCITY_TIMEOUT} ms, the velocity is null.</p>
+     * @return the velocity of the shaft, in steps per second (positive when the counter is incremented).
+     */
+    public double getVelocity() {
+        long interval = lastStepInterval;
+        long elapsed = System.nanoTime() - lastStepTime;
+        if(interval == 0 || elapsed > TimeUnit.MILLISECONDS.toNanos(VELOCITY_TIMEOUT))
+            return 0;
+        return lastStepDirection * 1e9 / Math.max(interval, elapsed);
     }
 }
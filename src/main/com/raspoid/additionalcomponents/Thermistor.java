@@ -18,7 +18,13 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.raspoid.AnalogComponent;
+import com.raspoid.AveragingFilter;
 import com.raspoid.additionalcomponents.adc.ADC;
 import com.raspoid.additionalcomponents.adc.ADCChannel;
 
@@ -42,6 +48,17 @@ import com.raspoid.additionalcomponents.adc.ADCChannel;
  *  </pre>
  * </p>
  * 
+ * <p>As the ADC only returns 256 different raw values, the temperatures corresponding to each raw value
+ * are computed once, in a lookup table. Each conversion is then a simple array access, and the table is
+ * shared between all the thermistors with the same characteristics (serie resistor, R0 and B).</p>
+ * 
+ * <p>If the B-parameter equation is not accurate enough, the three coefficients of the complete Steinhart-Hart
+ * equation can be fitted from calibration points (raw values measured at known temperatures), with the
+ * {@link #calibrate(int[], double[])} method.</p>
+ * 
+ * <p>A smoothed temperature, filtering the noise of successive measures, is also available with
+ * {@link #setSmoothing(AveragingFilter.Mode, int)} and {@link #getSmoothedTemperature()}.</p>
+ * 
  * <p><b>Note:</b> with our observations, we can observe an error of about 1.4% in temperature measurements
  * (using the Kelvin scale). A temperature of 24°C should correspond to a real temperature of 20°C.
  * Different factors can be at the origin of this problem.
@@ -74,6 +91,22 @@ public class Thermistor extends AnalogComponent {
      */
     private static final double POWER_VOLTAGE = 3.3; // V
     
+    /**
+     * Number of different raw values returned by the ADC.
+     */
+    private static final int NB_RAW_VALUES = 256;
+    
+    /**
+     * Relative magnitude under which a pivot of the calibration system is considered as null.
+     */
+    private static final double SINGULAR_PIVOT = 1e-15;
+    
+    /**
+     * Lookup tables (raw value -> temperature in °C) already computed,
+     * for each (serieResistor, r0, b) configuration.
+     */
+    private static final Map<List<Double>, double[]> TEMPERATURE_TABLES = new ConcurrentHashMap<>();
+    
     private ADCChannel thermistorChannel;
     
     /**
@@ -91,6 +124,16 @@ public class Thermistor extends AnalogComponent {
      */
     private double b; // K
     
+    /**
+     * Temperature corresponding to each raw value of the ADC, in °C.
+     */
+    private volatile double[] temperatureTable;
+    
+    /**
+     * Filter used to smooth the successive temperatures, in 0.01°C.
+     */
+    private AveragingFilter smoothingFilter = new AveragingFilter(AveragingFilter.Mode.NONE, 0);
+    
     /**
      * Constructor for a thermistor using a specific ADC instance, a specific channel on this ADC,
      * and specific parameters regarding the thermistor characteristics.
@@ -106,6 +149,8 @@ public class Thermistor extends AnalogComponent {
         this.serieResistor = serieResistor;
         this.r0 = r0;
         this.b = b;
+        this.temperatureTable = TEMPERATURE_TABLES.computeIfAbsent(Arrays.asList(serieResistor, r0, b),
+                key -> computeBParameterTable(serieResistor, r0, b));
     }
     
     /**
@@ -116,22 +161,176 @@ public class Thermistor extends AnalogComponent {
      * @return the measured temperature, in °C.
      */
     public double getTemperature() {
-        // raw value from ADC (between 0 and 255).
-        double rawValue = (double) adc.analogToDigital(thermistorChannel);
+        // the raw value from ADC (between 0 and 255) is the index in the lookup table.
+        return temperatureTable[adc.analogToDigital(thermistorChannel)];
+    }
+    
+    /**
+     * Return the raw value measured by the ADC, between 0 and 255.
+     * <p>This is the value to use as calibration point, with {@link #calibrate(int[], double[])}.</p>
+     * @return the raw value measured by the ADC.
+     */
+    public int getRawValue() {
+        return adc.analogToDigital(thermistorChannel);
+    }
+    
+    /* -----------------------------------------------
+     *                    SMOOTHING
+     * ---------------------------------------------*/
+    
+    /**
+     * Set the filter used to smooth the successive temperatures returned by {@link #getSmoothedTemperature()}.
+     * @param mode the smoothing mode.
+     * @param parameter the window size for the WINDOW mode, or the shift N (smoothing factor = 1/2^N)
+     * for the EXPONENTIAL mode.
+     * @see AveragingFilter
+     */
+    public synchronized void setSmoothing(AveragingFilter.Mode mode, int parameter) {
+        smoothingFilter = new AveragingFilter(mode, parameter);
+    }
+    
+    /**
+     * Measure a new temperature, and return the smoothed temperature including this new measure.
+     * <p>This method is intended to be called periodically (streaming reading).</p>
+     * @return the smoothed temperature, in °C.
+     */
+    public synchronized double getSmoothedTemperature() {
+        return smoothingFilter.add((int) Math.round(getTemperature() * 100.)) / 100.;
+    }
+    
+    /* -----------------------------------------------
+     *                   CALIBRATION
+     * ---------------------------------------------*/
+    
+    /**
+     * Fit the three coefficients of the Steinhart-Hart equation (1/T = a + b ln(R) + c ln(R)^3)
+     * from calibration points, and use this equation instead of the B-parameter equation.
+     * 
+     * <p>At least three calibration points, at different temperatures, are required.
+     * With more than three points, the coefficients are fitted with the least squares method.
+     * For best results, the calibration temperatures should cover the range of use of the thermistor.</p>
+     * 
+     * @param rawValues the raw values measured by the ADC ({@link #getRawValue()}) at the calibration temperatures.
+     * @param temperatures the calibration temperatures, in °C.
+     */
+    public void calibrate(int[] rawValues, double[] temperatures) {
+        if(rawValues.length != temperatures.length)
+            throw new IllegalArgumentException("One temperature is required for each raw value.");
+        if(rawValues.length < 3)
+            throw new IllegalArgumentException("At least three calibration points are required.");
+        
+        // normal equations of the least squares problem: (M^T M) x = M^T y,
+        // with rows of M = [1, ln(R), ln(R)^3] and y = 1/T
+        double[][] system = new double[3][4];
+        for(int i = 0; i < rawValues.length; i++) {
+            if(rawValues[i] <= 0 || rawValues[i] >= NB_RAW_VALUES - 1)
+                throw new IllegalArgumentException("Calibration raw values must be between 1 and " + (NB_RAW_VALUES - 2) + ".");
+            double lnR = Math.log(rawValueToResistance(rawValues[i], serieResistor));
+            double[] row = {1., lnR, lnR * lnR * lnR};
+            double y = 1. / (temperatures[i] + K_TO_C);
+            for(int j = 0; j < 3; j++) {
+                for(int k = 0; k < 3; k++)
+                    system[j][k] += row[j] * row[k];
+                system[j][3] += row[j] * y;
+            }
+        }
+        double[] coefficients = solve(system);
         
+        double[] table = new double[NB_RAW_VALUES];
+        for(int rawValue = 0; rawValue < NB_RAW_VALUES; rawValue++) {
+            double lnR = Math.log(rawValueToResistance(rawValue, serieResistor));
+            table[rawValue] = 1. / (coefficients[0] + coefficients[1] * lnR + coefficients[2] * lnR * lnR * lnR) - K_TO_C;
+        }
+        temperatureTable = table;
+    }
+    
+    /**
+     * Forget the calibration, and use the B-parameter equation again.
+     */
+    public void resetCalibration() {
+        temperatureTable = TEMPERATURE_TABLES.computeIfAbsent(Arrays.asList(serieResistor, r0, b),
+                key -> computeBParameterTable(serieResistor, r0, b));
+    }
+    
+    /* -----------------------------------------------
+     *                  CONVERSIONS
+     * ---------------------------------------------*/
+    
+    /**
+     * Compute the temperature corresponding to each raw value of the ADC, with the B-parameter equation.
+     * @param serieResistor the value of the resistance placed in serie with the thermistor.
+     * @param r0 the resistance of the thermistor, at 25 degrees Celsius.
+     * @param b the B-parameter equation coefficient.
+     * @return the lookup table: raw value -> temperature in °C.
+     */
+    private static double[] computeBParameterTable(double serieResistor, double r0, double b) {
+        double[] table = new double[NB_RAW_VALUES];
+        for(int rawValue = 0; rawValue < NB_RAW_VALUES; rawValue++) {
+            double rt = rawValueToResistance(rawValue, serieResistor);
+            
+            // B-equation to convert rt in temperature (https://en.wikipedia.org/wiki/Thermistor)
+            double c1 = (1./b) * Math.log(rt / r0);
+            double c2 = 1./T0;
+            
+            double t = 1./(c1 + c2); // K
+            // we then convert the result in degrees Celsius.
+            table[rawValue] = t - K_TO_C;
+        }
+        return table;
+    }
+    
+    /**
+     * Convert a raw value from the ADC to the corresponding resistance of the thermistor.
+     * @param rawValue the raw value from the ADC (between 0 and 255).
+     * @param serieResistor the value of the resistance placed in serie with the thermistor.
+     * @return the resistance of the thermistor, in Ohm.
+     */
+    private static double rawValueToResistance(int rawValue, double serieResistor) {
         // convert the raw value to a voltage.
         // 0 = 0V, 255 = Max voltage. So
         double vt = POWER_VOLTAGE * rawValue / 255.; // voltage around thermistor
         
         // thermistor value is then (voltage divider)
-        double rt = serieResistor * vt / (POWER_VOLTAGE - vt);
-        
-        // B-equation to convert rt in temperature (https://en.wikipedia.org/wiki/Thermistor)
-        double c1 = (1./b) * Math.log(rt / r0);
-        double c2 = 1./T0;
+        return serieResistor * vt / (POWER_VOLTAGE - vt);
+    }
+    
+    /**
+     * Solve a 3x3 linear system, with Gaussian elimination and partial pivoting.
+     * <p>A pivot negligible compared to the coefficients of the system (rounding errors only) means that
+     * the system is singular: the calibration points don't determine the three coefficients.</p>
+     * @param system the augmented matrix of the system (3 rows, 4 columns). Modified by this method.
+     * @return the solution of the system.
+     */
+    private static double[] solve(double[][] system) {
+        double maxCoefficient = 0.;
+        for(double[] row : system)
+            for(int k = 0; k < 3; k++)
+                maxCoefficient = Math.max(maxCoefficient, Math.abs(row[k]));
         
-        double t = 1./(c1 + c2); // K
-        // we then convert the result in degrees Celsius.
-        return t - K_TO_C;
+        for(int col = 0; col < 3; col++) {
+            int pivot = col;
+            for(int row = col + 1; row < 3; row++)
+                if(Math.abs(system[row][col]) > Math.abs(system[pivot][col]))
+                    pivot = row;
+            if(Math.abs(system[pivot][col]) <= SINGULAR_PIVOT * maxCoefficient)
+                throw new IllegalArgumentException("Calibration points must correspond to at least three different raw values.");
+            double[] tmp = system[col];
+            system[col] = system[pivot];
+            system[pivot] = tmp;
+            
+            for(int row = col + 1; row < 3; row++) {
+                double factor = system[row][col] / system[col][col];
+                for(int k = col; k < 4; k++)
+                    system[row][k] -= factor * system[col][k];
+            }
+        }
+        double[] solution = new double[3];
+        for(int row = 2; row >= 0; row--) {
+            double sum = system[row][3];
+            for(int k = row + 1; k < 3; k++)
+                sum -= system[row][k] * solution[k];
+            solution[row] = sum / system[row][row];
+        }
+        return solution;
     }
 }
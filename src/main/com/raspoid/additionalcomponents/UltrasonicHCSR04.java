@@ -18,6 +18,12 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import com.pi4j.wiringpi.Gpio;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
@@ -45,6 +51,19 @@ import com.raspoid.exceptions.RaspoidException;
  * 
  * <p>Datasheet: <a href="http://raspoid.com/download/datasheet/HCSR04">HCSR04</a></p>
  * 
+ * <p>Two measurement modes are available:
+ *  <ul>
+ *      <li>{@link #getDistance()} blocks the caller thread, and actively waits for the echo signal.</li>
+ *      <li>{@link #measureDistance()} triggers a measure and returns immediately. The edges of the echo
+ *      signal are timestamped by Gpio interrupts, and the result is delivered through a future.
+ *      No thread is busy during the measure.</li>
+ *  </ul>
+ * In both modes, a measure without echo is stopped after {@link #MEASURE_TIMEOUT} ms, and the
+ * distance is then {@link #OUT_OF_RANGE}.</p>
+ * 
+ * <p>To use several sensors without cross-talk (a sensor receiving the echo of another one),
+ * use a {@link UltrasonicHCSR04Scheduler}.</p>
+ * 
  * <p><i>Note: for accuracy reasons, we need to directly use WiringPi functions
  * instead of pi4j to control the pins, probably because pi4j is too slow to react (higher level).</i></p>
  * 
@@ -56,10 +75,54 @@ import com.raspoid.exceptions.RaspoidException;
  */
 public class UltrasonicHCSR04 extends GPIOComponent {
     
+    /**
+     * Maximum duration of a measure, in ms.
+     * <p>The echo signal of the HCSR04 lasts at most 38ms, when no obstacle is detected.
+     * Without echo signal after this delay, the measure is abandoned.</p>
+     */
+    public static final int MEASURE_TIMEOUT = 60; // ms
+    
+    /**
+     * Distance returned when no echo is received before the timeout
+     * (no obstacle in the range of the sensor).
+     */
+    public static final double OUT_OF_RANGE = Double.POSITIVE_INFINITY;
+    
+    /**
+     * Duration of the high level of the trigger signal, in μs (at least 10μs, cfr datasheet).
+     */
+    private static final int TRIGGER_DURATION = 10; // μs
+    
+    /**
+     * Duration of the low level of the trigger signal, before the trigger pulse, in μs.
+     */
+    private static final int TRIGGER_SETTLING_DURATION = 2; // μs
+    
+    /**
+     * Thread executing the blocking measures of the single pin sensors
+     * (lazily created, see {@link #getSinglePinExecutor()}).
+     */
+    private static ExecutorService singlePinExecutor = null;
+    
     private int trig;
     private int echo;
     private final boolean singlePin;
     
+    /**
+     * True once the interrupts on the echo pin are set up.
+     */
+    private boolean interruptsEnabled = false;
+    
+    /**
+     * The measure in progress, in interrupt mode (null if no measure is in progress).
+     */
+    private final AtomicReference<CompletableFuture<Double>> pendingMeasure = new AtomicReference<>();
+    
+    /**
+     * Timestamp of the rising edge of the echo signal, for the measure in progress (0 if not received yet).
+     */
+    private volatile long echoStart;
+    
     /**
      * Constructor for an ultrasonic sensor HCSR04 using a specific Gpio trigger pin 
      * and a specific Gpio echo pin.
@@ -89,7 +152,8 @@ public class UltrasonicHCSR04 extends GPIOComponent {
     /**
      * Get the calculated distance from the ultrasound sensor.
      * <p>By measuring the width of the echo pulse and dividing by 58 to get distance in cm [cfr datasheet].</p>
-     * @return the measured distance, in cm.
+     * <p>The caller thread is blocked during the measure (at most {@link #MEASURE_TIMEOUT} ms).</p>
+     * @return the measured distance, in cm, or {@link #OUT_OF_RANGE} if no echo has been received.
      */
     public double getDistance() {
         if(singlePin) {
@@ -99,37 +163,128 @@ public class UltrasonicHCSR04 extends GPIOComponent {
         }
     }
     
-    private double getDistanceTwoPins() {
-        Gpio.digitalWrite(trig, Gpio.LOW);
-        Tools.sleepMilliseconds(2);
+    /**
+     * Trigger a new measure, without blocking the caller thread.
+     * 
+     * <p>With a two pins sensor, the edges of the echo signal are captured with Gpio interrupts.
+     * With a single pin sensor, the pin must switch from output to input during the measure, and interrupts
+     * can't be used: the blocking measure is then executed by a dedicated thread, shared by the single pin sensors
+     * (the {@link #getSharedScheduler() Gpio scheduler} must not be held during a measure).</p>
+     * 
+     * <p>If a measure is already in progress, its future is returned.</p>
+     * 
+     * @return a future completed with the measured distance, in cm, or {@link #OUT_OF_RANGE} if no echo
+     * has been received before the timeout.
+     */
+    public CompletableFuture<Double> measureDistance() {
+        CompletableFuture<Double> measure = new CompletableFuture<>();
+        if(!pendingMeasure.compareAndSet(null, measure))
+            return pendingMeasure.get();
         
-        Gpio.digitalWrite(trig, Gpio.HIGH);
-        Tools.sleepMilliseconds(10);
-        Gpio.digitalWrite(trig, Gpio.LOW);
-
-        while(!(Gpio.digitalRead(echo) == 1));
-        long start = System.nanoTime();
-
-        while(!(Gpio.digitalRead(echo) == 0));
-        long end = System.nanoTime();
+        if(singlePin) {
+            getSinglePinExecutor().execute(() -> {
+                try {
+                    double distance = getDistanceOnePin();
+                    pendingMeasure.set(null);
+                    measure.complete(distance);
+                } catch(RuntimeException e) {
+                    pendingMeasure.set(null);
+                    measure.completeExceptionally(e);
+                }
+            });
+            return measure;
+        }
         
-        return (end - start) / 1000. / 58.;
+        synchronized(this) {
+            if(!interruptsEnabled) {
+                if(Gpio.wiringPiISR(echo, Gpio.INT_EDGE_BOTH, pin -> echoEdge()) < 0) {
+                    pendingMeasure.set(null);
+                    throw new RaspoidException("Unable to set up the interrupts on the echo pin of the ultrasonic sensor.");
+                }
+                interruptsEnabled = true;
+            }
+        }
+        
+        echoStart = 0;
+        trigger();
+        getSharedScheduler().schedule(() -> {
+            if(pendingMeasure.compareAndSet(measure, null))
+                measure.complete(OUT_OF_RANGE);
+        }, MEASURE_TIMEOUT, TimeUnit.MILLISECONDS);
+        return measure;
     }
     
-    private double getDistanceOnePin() {
-        Gpio.pinMode(trig, Gpio.OUTPUT);
+    /**
+     * Get the thread executing the blocking measures of the single pin sensors.
+     * <p>The thread is a daemon thread: it won't prevent the JVM from exiting.</p>
+     * @return the executor of the single pin measures.
+     */
+    private static synchronized ExecutorService getSinglePinExecutor() {
+        if(singlePinExecutor == null) {
+            singlePinExecutor = Executors.newSingleThreadExecutor(Tools.daemonThreadFactory("raspoid-hcsr04-single-pin"));
+        }
+        return singlePinExecutor;
+    }
+    
+    /**
+     * Called by the interrupts of the echo pin, on each edge of the echo signal.
+     * <p>The echo line is low when the measure is triggered: the first edge is the rising edge,
+     * and the second one is the falling edge.</p>
+     */
+    private void echoEdge() {
+        long timestamp = System.nanoTime();
+        CompletableFuture<Double> measure = pendingMeasure.get();
+        if(measure == null)
+            return;
+        
+        if(echoStart == 0) {
+            echoStart = timestamp;
+        } else if(pendingMeasure.compareAndSet(measure, null)) {
+            measure.complete((timestamp - echoStart) / 1000. / 58.);
+        }
+    }
+    
+    /**
+     * Send the trigger signal on the trigger pin (a high level of at least 10μs).
+     */
+    private void trigger() {
         Gpio.digitalWrite(trig, Gpio.LOW);
-        Tools.sleepMilliseconds(2);
+        Tools.busyWaitMicroseconds(TRIGGER_SETTLING_DURATION);
         
         Gpio.digitalWrite(trig, Gpio.HIGH);
-        Tools.sleepMilliseconds(10);
+        Tools.busyWaitMicroseconds(TRIGGER_DURATION);
         Gpio.digitalWrite(trig, Gpio.LOW);
+    }
+    
+    private double getDistanceTwoPins() {
+        trigger();
+        return measureEchoPulse(echo);
+    }
+    
+    private double getDistanceOnePin() {
+        Gpio.pinMode(trig, Gpio.OUTPUT);
+        trigger();
         
         Gpio.pinMode(trig, Gpio.INPUT);
-        while(!(Gpio.digitalRead(trig) == 1));
+        return measureEchoPulse(trig);
+    }
+    
+    /**
+     * Actively wait for the echo pulse on a pin, and convert its duration in a distance.
+     * @param pin the pin receiving the echo signal.
+     * @return the measured distance, in cm, or {@link #OUT_OF_RANGE} if no echo has been received before the timeout.
+     */
+    private double measureEchoPulse(int pin) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MEASURE_TIMEOUT);
+        
+        while(!(Gpio.digitalRead(pin) == 1))
+            if(System.nanoTime() > deadline)
+                return OUT_OF_RANGE;
         long start = System.nanoTime();
 
-        while(!(Gpio.digitalRead(trig) == 0));
+        while(!(Gpio.digitalRead(pin) == 0))
+            if(System.nanoTime() > deadline)
+                return OUT_OF_RANGE;
         long end = System.nanoTime();
         
         return (end - start) / 1000. / 58.;
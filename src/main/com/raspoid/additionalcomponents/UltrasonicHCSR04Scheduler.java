@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.raspoid.GPIOComponent;
+import com.raspoid.Tools;
+import com.raspoid.exceptions.RaspoidException;
+
+/**
+ * <b>Round-robin scheduler of the measures of several {@link UltrasonicHCSR04} sensors.</b>
+ * 
+ * <p>When several ultrasonic sensors are triggered at the same time, a sensor can receive the echo
+ * of the ultrasonic burst sent by another one (cross-talk), and return a wrong distance.
+ * This scheduler triggers the sensors one after the other: the next sensor is triggered as soon as
+ * the measure of the previous one is finished (echo received or timeout), after a short guard delay
+ * letting the residual echoes fade. The aggregate ranging rate is then the maximum rate
+ * without cross-talk, instead of a fixed (worst case) period for each sensor.</p>
+ * 
+ * <p>The measures use the interrupt mode of the sensors ({@link UltrasonicHCSR04#measureDistance()}):
+ * no thread is busy while waiting for the echoes. The listeners are notified on the
+ * {@link GPIOComponent#getSharedScheduler() Gpio scheduler} thread, and should return quickly.</p>
+ * 
+ * <p>Example:
+ * <pre>
+ * UltrasonicHCSR04Scheduler scheduler = new UltrasonicHCSR04Scheduler(frontSensor, backSensor);
+ * scheduler.addDistanceListener((sensor, distance) -&gt; Tools.log(sensor + ": " + distance + " cm"));
+ * scheduler.start();
+ * </pre>
+ * </p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class UltrasonicHCSR04Scheduler {
+    
+    /**
+     * Default delay between the end of a measure and the trigger of the next sensor, in ms.
+     */
+    public static final int DEFAULT_GUARD_DELAY = 10; // ms
+    
+    /**
+     * The scheduled sensors, in order of measure.
+     */
+    private final List<UltrasonicHCSR04> sensors = new ArrayList<>();
+    
+    /**
+     * Last distance measured by each sensor, in cm.
+     */
+    private final double[] lastDistances;
+    
+    /**
+     * Listeners notified after each measure.
+     */
+    private final List<DistanceListener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Delay between the end of a measure and the trigger of the next sensor, in ms.
+     */
+    private final int guardDelay;
+    
+    /**
+     * Index of the next sensor to trigger.
+     */
+    private int nextSensor = 0;
+    
+    /**
+     * True while the scheduler is running.
+     */
+    private volatile boolean running = false;
+    
+    /**
+     * Incremented each time the scheduler is started: the measures of a previous run are then ignored.
+     */
+    private int generation = 0;
+    
+    /**
+     * Listener notified each time a sensor has measured a new distance.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     */
+    @FunctionalInterface
+    public interface DistanceListener {
+        
+        /**
+         * Called each time a sensor has measured a new distance.
+         * @param sensor the sensor which measured the distance.
+         * @param distance the measured distance, in cm, or {@link UltrasonicHCSR04#OUT_OF_RANGE}.
+         */
+        void newDistance(UltrasonicHCSR04 sensor, double distance);
+    }
+    
+    /**
+     * Constructor for a scheduler of several ultrasonic sensors, with the default guard delay.
+     * @param sensors the sensors to trigger, in order.
+     */
+    public UltrasonicHCSR04Scheduler(UltrasonicHCSR04... sensors) {
+        this(DEFAULT_GUARD_DELAY, sensors);
+    }
+    
+    /**
+     * Constructor for a scheduler of several ultrasonic sensors, with a specific guard delay.
+     * @param guardDelay the delay between the end of a measure and the trigger of the next sensor, in ms.
+     * @param sensors the sensors to trigger, in order.
+     */
+    public UltrasonicHCSR04Scheduler(int guardDelay, UltrasonicHCSR04... sensors) {
+        if(sensors.length == 0)
+            throw new IllegalArgumentException("At least one sensor must be scheduled.");
+        if(guardDelay < 0)
+            throw new IllegalArgumentException("The guard delay can't be negative.");
+        
+        for(UltrasonicHCSR04 sensor : sensors)
+            this.sensors.add(sensor);
+        this.lastDistances = new double[sensors.length];
+        this.guardDelay = guardDelay;
+    }
+    
+    /**
+     * Add a listener notified each time a sensor has measured a new distance.
+     * @param listener the listener to add.
+     */
+    public void addDistanceListener(DistanceListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a listener.
+     * @param listener the listener to remove.
+     */
+    public void removeDistanceListener(DistanceListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Start the measures of the sensors, one after the other.
+     */
+    public synchronized void start() {
+        if(running)
+            throw new RaspoidException("The ultrasonic sensors scheduler is already running.");
+        running = true;
+        generation++;
+        int currentGeneration = generation;
+        GPIOComponent.getSharedScheduler().execute(() -> triggerNextSensor(currentGeneration));
+    }
+    
+    /**
+     * Stop the measures. The measure in progress, if any, is completed but ignored.
+     */
+    public synchronized void stop() {
+        running = false;
+    }
+    
+    /**
+     * Check if the scheduler is running.
+     * @return true if the scheduler is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Get the last distance measured by a sensor.
+     * @param sensor a scheduled sensor.
+     * @return the last distance measured by this sensor, in cm, or 0 if no measure is available yet.
+     */
+    public synchronized double getLastDistance(UltrasonicHCSR04 sensor) {
+        int index = sensors.indexOf(sensor);
+        if(index < 0)
+            throw new IllegalArgumentException("This sensor is not scheduled.");
+        return lastDistances[index];
+    }
+    
+    /**
+     * Trigger the next sensor, and schedule the trigger of the following one when its measure is finished.
+     * @param currentGeneration the generation of the run triggering this sensor.
+     */
+    private void triggerNextSensor(int currentGeneration) {
+        UltrasonicHCSR04 sensor;
+        int index;
+        synchronized(this) {
+            if(!running || currentGeneration != generation)
+                return;
+            index = nextSensor;
+            sensor = sensors.get(index);
+            nextSensor = (nextSensor + 1) % sensors.size();
+        }
+        
+        CompletableFuture<Double> measure;
+        try {
+            measure = sensor.measureDistance();
+        } catch(RuntimeException e) {
+            // the round-robin must go on with the other sensors
+            Tools.log("[UltrasonicHCSR04Scheduler] Error when triggering a sensor: " + e.getMessage(), Tools.Color.ANSI_RED);
+            scheduleNextSensor(currentGeneration);
+            return;
+        }
+        
+        measure.whenComplete((distance, exception) ->
+            GPIOComponent.getSharedScheduler().execute(() -> {
+                try {
+                    synchronized(this) {
+                        if(!running || currentGeneration != generation)
+                            return;
+                        if(exception == null)
+                            lastDistances[index] = distance;
+                    }
+                    if(exception == null)
+                        notifyListeners(sensor, distance);
+                } finally {
+                    scheduleNextSensor(currentGeneration);
+                }
+            }));
+    }
+    
+    /**
+     * Notify the listeners of a new distance. A failing listener doesn't prevent the other ones from being notified.
+     * @param sensor the sensor of the measure.
+     * @param distance the measured distance.
+     */
+    private void notifyListeners(UltrasonicHCSR04 sensor, double distance) {
+        for(DistanceListener listener : listeners) {
+            try {
+                listener.newDistance(sensor, distance);
+            } catch(RuntimeException e) {
+                Tools.log("[UltrasonicHCSR04Scheduler] Error in a distance listener: " + e.getMessage(), Tools.Color.ANSI_RED);
+            }
+        }
+    }
+    
+    /**
+     * Schedule the trigger of the next sensor, after the guard delay.
+     * @param currentGeneration the generation of the run.
+     */
+    private void scheduleNextSensor(int currentGeneration) {
+        GPIOComponent.getSharedScheduler().schedule(() -> triggerNextSensor(currentGeneration),
+                guardDelay, TimeUnit.MILLISECONDS);
+    }
+}
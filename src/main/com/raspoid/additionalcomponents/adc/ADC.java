@@ -38,4 +38,17 @@ public interface ADC {
      * @return the int representation of the newly read value from the specified analog input channel. 
      */
     public int analogToDigital(ADCChannel inputChannel);
+    
+    /**
+     * Read the digital values of several channels from the ADC.
+     * <p>By default, each channel is read with {@link #analogToDigital(ADCChannel)}.
+     * An ADC able to read several channels in one transaction should override this method.</p>
+     * @param inputChannels the input channels on the ADC from which to read the data.
+     * @param values the array receiving the value of each input channel (values[i] for inputChannels[i]).
+     * Its length must be at least inputChannels.length.
+     */
+    public default void analogToDigital(ADCChannel[] inputChannels, int[] values) {
+        for(int i = 0; i < inputChannels.length; i++)
+            values[i] = analogToDigital(inputChannels[i]);
+    }
 }
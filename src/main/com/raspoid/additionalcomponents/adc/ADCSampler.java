@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.adc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.raspoid.Tools;
+import com.raspoid.exceptions.RaspoidException;
+
+/**
+ * <b>Continuous sampler of the channels of an {@link ADC}.</b>
+ * 
+ * <p>The sampler reads the selected channels of any ADC at a target rate, on a dedicated timer thread,
+ * and stores the samples in one primitive ring buffer per channel. No allocation is made per sample.</p>
+ * 
+ * <p>Different views are available on the last samples of a channel:
+ *  <ul>
+ *      <li>the last samples ({@link #getLastSamples(ADCChannel, int[], int)}),</li>
+ *      <li>the decimated samples: mean of each block of N samples ({@link #getDecimatedSamples(ADCChannel, int, int[], int)}),</li>
+ *      <li>the minimum, maximum and RMS values ({@link #getMin(ADCChannel, int)}, {@link #getMax(ADCChannel, int)}, {@link #getRMS(ADCChannel, int)}).</li>
+ *  </ul>
+ * </p>
+ * 
+ * <p>Threshold listeners can also be registered on a channel: they are notified, on the sampler thread,
+ * each time the value of the channel crosses the threshold. Events shorter than a polling period 
+ * (a clap for a sound sensor, a flash for a photoresistor, ...) can then be detected.</p>
+ * 
+ * <p>The sampler is itself an {@link ADC}: an analog component created with the sampler as ADC
+ * receives the last sample of its channel, without any additional access to the underlying ADC.
+ * All the components of the same ADC then share the same acquisition.</p>
+ * 
+ * <p>Example:
+ * <pre>
+ * ADCSampler sampler = new ADCSampler(new PCF8591(), new ADCChannel[] {PCF8591.CHANNEL_0}, 1000);
+ * sampler.addThresholdListener(PCF8591.CHANNEL_0, 70, (channel, value, rising) -&gt; {
+ *     if(rising)
+ *         Tools.log("Clap detected");
+ * });
+ * sampler.start(2000); // one sample every 2ms
+ * </pre>
+ * </p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class ADCSampler implements ADC {
+    
+    /**
+     * The sampled ADC.
+     */
+    private final ADC adc;
+    
+    /**
+     * The sampled channels.
+     */
+    private final ADCChannel[] channels;
+    
+    /**
+     * One ring buffer per sampled channel: samples[channelIndex][sampleIndex].
+     */
+    private final int[][] samples;
+    
+    /**
+     * Buffer receiving the values of the channels, at each sample.
+     */
+    private final int[] currentValues;
+    
+    /**
+     * Total number of samples taken since the start of the sampler.
+     * The last sample of each channel is at index (nbSamples - 1) % bufferSize.
+     */
+    private long nbSamples = 0;
+    
+    /**
+     * The threshold triggers registered on the channels.
+     */
+    private final List<ThresholdTrigger> thresholdTriggers = new ArrayList<>();
+    
+    /**
+     * The timer used to sample the channels.
+     */
+    private ScheduledExecutorService timer = null;
+    
+    /**
+     * Listener notified each time the value of a channel crosses a threshold.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     */
+    @FunctionalInterface
+    public interface ThresholdListener {
+        
+        /**
+         * Called on the sampler thread each time the value of the channel crosses the threshold.
+         * <p>This method should return quickly, to not delay the next samples.</p>
+         * @param channel the channel whose value crossed the threshold.
+         * @param value the new value of the channel.
+         * @param rising true if the value went above the threshold, false if it went back below it.
+         */
+        void thresholdCrossed(ADCChannel channel, int value, boolean rising);
+    }
+    
+    /**
+     * A threshold listener registered on a channel.
+     */
+    private static class ThresholdTrigger {
+        private final int channelIndex;
+        private final int threshold;
+        private final ThresholdListener listener;
+        private boolean above = false;
+        
+        ThresholdTrigger(int channelIndex, int threshold, ThresholdListener listener) {
+            this.channelIndex = channelIndex;
+            this.threshold = threshold;
+            this.listener = listener;
+        }
+    }
+    
+    /**
+     * Constructor for a new sampler of some channels of an ADC.
+     * @param adc the ADC to sample.
+     * @param channels the channels of the ADC to sample.
+     * @param bufferSize the number of samples kept for each channel.
+     */
+    public ADCSampler(ADC adc, ADCChannel[] channels, int bufferSize) {
+        if(channels.length == 0)
+            throw new IllegalArgumentException("At least one channel must be sampled.");
+        if(bufferSize < 1)
+            throw new IllegalArgumentException("The size of the buffers must be at least 1.");
+        
+        this.adc = adc;
+        this.channels = channels.clone();
+        this.samples = new int[channels.length][bufferSize];
+        this.currentValues = new int[channels.length];
+    }
+    
+    /**
+     * Starts the sampler, in a new thread.
+     * @param periodMicros the period between two successive samples, in μs.
+     */
+    public synchronized void start(long periodMicros) {
+        if(periodMicros < 1)
+            throw new IllegalArgumentException("The sampling period must be at least 1μs.");
+        if(timer != null)
+            throw new RaspoidException("The sampler is already running.");
+        
+        timer = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-adc-sampler"));
+        timer.scheduleAtFixedRate(this::sample, 0, periodMicros, TimeUnit.MICROSECONDS);
+    }
+    
+    /**
+     * Stops the sampler. The samples already taken are kept.
+     */
+    public synchronized void stop() {
+        if(timer != null) {
+            timer.shutdown();
+            timer = null;
+        }
+    }
+    
+    /**
+     * Registers a threshold listener on a sampled channel.
+     * @param channel the sampled channel to watch.
+     * @param threshold the threshold value.
+     * @param listener the listener to notify when the value of the channel crosses the threshold.
+     */
+    public synchronized void addThresholdListener(ADCChannel channel, int threshold, ThresholdListener listener) {
+        thresholdTriggers.add(new ThresholdTrigger(indexOf(channel), threshold, listener));
+    }
+    
+    /**
+     * Unregisters a threshold listener from all the channels.
+     * @param listener the listener to unregister.
+     */
+    public synchronized void removeThresholdListener(ThresholdListener listener) {
+        thresholdTriggers.removeIf(trigger -> trigger.listener == listener);
+    }
+    
+    /**
+     * Takes one sample of each channel. Called by the timer.
+     */
+    private void sample() {
+        try {
+            adc.analogToDigital(channels, currentValues);
+        } catch(RuntimeException e) {
+            // an exception would silently stop the periodic task
+            Tools.log("[ADCSampler] Error when sampling the ADC: " + e.getMessage(), Tools.Color.ANSI_RED);
+            return;
+        }
+        
+        synchronized(this) {
+            int bufferSize = samples[0].length;
+            int index = (int) (nbSamples % bufferSize);
+            for(int channelIndex = 0; channelIndex < channels.length; channelIndex++)
+                samples[channelIndex][index] = currentValues[channelIndex];
+            nbSamples++;
+            
+            for(ThresholdTrigger trigger : thresholdTriggers) {
+                int value = currentValues[trigger.channelIndex];
+                boolean above = value > trigger.threshold;
+                if(above != trigger.above) {
+                    trigger.above = above;
+                    try {
+                        trigger.listener.thresholdCrossed(channels[trigger.channelIndex], value, above);
+                    } catch(RuntimeException e) {
+                        // a failing listener must not stop the sampling
+                        Tools.log("[ADCSampler] Error in a threshold listener: " + e.getMessage(), Tools.Color.ANSI_RED);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the last sample of a channel.
+     * <p>Analog components created with this sampler as ADC then share the acquisition of the sampler.</p>
+     * @param inputChannel the sampled channel.
+     * @return the last sample of the channel, or 0 if no sample has been taken yet.
+     */
+    @Override
+    public synchronized int analogToDigital(ADCChannel inputChannel) {
+        if(nbSamples == 0)
+            return 0;
+        return samples[indexOf(inputChannel)][(int) ((nbSamples - 1) % samples[0].length)];
+    }
+    
+    /**
+     * Get the total number of samples taken since the start of the sampler.
+     * @return the total number of samples taken.
+     */
+    public synchronized long getNbSamples() {
+        return nbSamples;
+    }
+    
+    /**
+     * Copies the last samples of a channel, from the oldest to the most recent one.
+     * @param channel the sampled channel.
+     * @param destination the array receiving the samples.
+     * @param count the maximum number of samples to copy.
+     * @return the number of samples copied (less than count if not enough samples are available).
+     */
+    public synchronized int getLastSamples(ADCChannel channel, int[] destination, int count) {
+        int[] buffer = samples[indexOf(channel)];
+        int available = available(count);
+        long first = nbSamples - available;
+        for(int i = 0; i < available; i++)
+            destination[i] = buffer[(int) ((first + i) % buffer.length)];
+        return available;
+    }
+    
+    /**
+     * Copies the decimated last samples of a channel: each value is the mean of a block of
+     * factor successive samples. The values are ordered from the oldest to the most recent block.
+     * @param channel the sampled channel.
+     * @param factor the decimation factor (number of samples per block).
+     * @param destination the array receiving the decimated values.
+     * @param count the maximum number of decimated values to copy.
+     * @return the number of decimated values copied.
+     */
+    public synchronized int getDecimatedSamples(ADCChannel channel, int factor, int[] destination, int count) {
+        if(factor < 1)
+            throw new IllegalArgumentException("The decimation factor must be at least 1.");
+        int[] buffer = samples[indexOf(channel)];
+        int nbBlocks = Math.min(count, available(Integer.MAX_VALUE) / factor);
+        long first = nbSamples - (long) nbBlocks * factor;
+        for(int block = 0; block < nbBlocks; block++) {
+            long sum = 0;
+            for(int i = 0; i < factor; i++)
+                sum += buffer[(int) ((first + (long) block * factor + i) % buffer.length)];
+            destination[block] = (int) (sum / factor);
+        }
+        return nbBlocks;
+    }
+    
+    /**
+     * Returns the minimum value of the last samples of a channel.
+     * @param channel the sampled channel.
+     * @param count the number of last samples to consider.
+     * @return the minimum value, or 0 if no sample is available.
+     */
+    public synchronized int getMin(ADCChannel channel, int count) {
+        int[] buffer = samples[indexOf(channel)];
+        int available = available(count);
+        if(available == 0)
+            return 0;
+        int min = Integer.MAX_VALUE;
+        for(long i = nbSamples - available; i < nbSamples; i++)
+            min = Math.min(min, buffer[(int) (i % buffer.length)]);
+        return min;
+    }
+    
+    /**
+     * Returns the maximum value of the last samples of a channel.
+     * @param channel the sampled channel.
+     * @param count the number of last samples to consider.
+     * @return the maximum value, or 0 if no sample is available.
+     */
+    public synchronized int getMax(ADCChannel channel, int count) {
+        int[] buffer = samples[indexOf(channel)];
+        int available = available(count);
+        if(available == 0)
+            return 0;
+        int max = Integer.MIN_VALUE;
+        for(long i = nbSamples - available; i < nbSamples; i++)
+            max = Math.max(max, buffer[(int) (i % buffer.length)]);
+        return max;
+    }
+    
+    /**
+     * Returns the RMS value of the variations of the last samples of a channel, around their mean
+     * (i.e. the standard deviation). For a sound sensor, this is a measure of the sound level.
+     * @param channel the sampled channel.
+     * @param count the number of last samples to consider.
+     * @return the RMS value of the variations around the mean, or 0 if no sample is available.
+     */
+    public synchronized double getRMS(ADCChannel channel, int count) {
+        int[] buffer = samples[indexOf(channel)];
+        int available = available(count);
+        if(available == 0)
+            return 0;
+        long sum = 0;
+        long sumOfSquares = 0;
+        for(long i = nbSamples - available; i < nbSamples; i++) {
+            long value = buffer[(int) (i % buffer.length)];
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        double mean = (double) sum / available;
+        return Math.sqrt(Math.max(0., (double) sumOfSquares / available - mean * mean));
+    }
+    
+    /**
+     * Returns the number of samples available, bounded by count and by the size of the buffers.
+     * @param count the number of samples requested.
+     * @return the number of samples available.
+     */
+    private int available(int count) {
+        return (int) Math.min(Math.min(count, samples[0].length), nbSamples);
+    }
+    
+    /**
+     * Returns the index of a sampled channel.
+     * @param channel the sampled channel.
+     * @return the index of the channel in the ring buffers.
+     */
+    private int indexOf(ADCChannel channel) {
+        for(int i = 0; i < channels.length; i++)
+            if(channels[i].getValue() == channel.getValue())
+                return i;
+        throw new IllegalArgumentException("This channel is not sampled.");
+    }
+}
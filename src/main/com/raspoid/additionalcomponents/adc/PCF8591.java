@@ -19,8 +19,12 @@
 package com.raspoid.additionalcomponents.adc;
 
 import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import com.raspoid.I2CComponent;
+import com.raspoid.Tools;
 import com.raspoid.examples.additionalcomponents.adc.PCF8591Example;
 import com.raspoid.exceptions.RaspoidException;
 
@@ -50,6 +54,13 @@ import com.raspoid.exceptions.RaspoidException;
  *  </ul>
  * </p>
  * 
+ * <p>All the channels of the selected mode can be read in one single i2c transaction with {@link #scan(int[])},
+ * using the auto-increment flag of the PCF8591. A continuous scan mode is also available
+ * ({@link #startContinuousScan(int)}): all the channels are then periodically scanned on the scheduler
+ * shared by the i2c components, and {@link #analogToDigital(PCF8591InputChannel)} directly returns the
+ * latest value of the channel, without any access to the i2c bus. Components connected to the same
+ * PCF8591 (joystick, thermistor, photoresistor, ...) then share the same acquisition.</p>
+ * 
  * <p>Example of use: {@link PCF8591Example}</p>
  * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
@@ -157,6 +168,22 @@ public class PCF8591 extends I2CComponent implements ADC {
     private boolean enableAnalogOutput = false;
     private boolean enableAutoIncrement = false;
     
+    /**
+     * Buffer used to read the bytes from the PCF8591: the stale byte of the previous conversion,
+     * followed by up to 4 channel values.
+     */
+    private final byte[] readBuffer = new byte[5];
+    
+    /**
+     * Latest value of each channel, updated by the continuous scan.
+     */
+    private final AtomicIntegerArray latestValues = new AtomicIntegerArray(4);
+    
+    /**
+     * The periodic task of the continuous scan, null if the continuous scan is not running.
+     */
+    private volatile ScheduledFuture<?> continuousScan = null;
+    
     /**
      * Default constructor for a PCF8591 using the default i2c address of the component,
      * the four single ended analogue input programming mode, enabling the analog output and disabling the auto increment flag.
@@ -202,6 +229,184 @@ public class PCF8591 extends I2CComponent implements ADC {
      */
     public int analogToDigital(PCF8591InputChannel inputChannel) {
         int channel = inputChannel.getValue();
+        checkChannel(channel);
+        
+        if(continuousScan != null)
+            return latestValues.get(channel);
+        
+        synchronized(this) {
+            //Tools.log(Tools.getBinaryString(new byte[] {getControlByte(channel, enableAutoIncrement)}), Tools.Color.ANSI_RED); // DEBUG
+            try {
+                device.write(getControlByte(channel, enableAutoIncrement));
+                device.read(readBuffer, 0, 2);
+                //Tools.log(String.valueOf(readBuffer[1]), Tools.Color.ANSI_BLUE); // DEBUG
+            } catch (IOException e) {
+                throw new RaspoidException(e);
+            }
+            
+            return readBuffer[1] & 0xFF;
+        }
+    }
+    
+    /**
+     * Read several channels of the PCF8591.
+     * <p>All the channels of the selected mode are read in one single i2c transaction (see {@link #scan(int[])}),
+     * or directly taken from the latest values if the continuous scan is running.</p>
+     * @param inputChannels the input channels on the PCF8591 from which to read the data.
+     * @param values the array receiving the value of each input channel (values[i] for inputChannels[i]).
+     */
+    @Override
+    public void analogToDigital(ADCChannel[] inputChannels, int[] values) {
+        for(ADCChannel inputChannel : inputChannels)
+            checkChannel(inputChannel.getValue());
+        
+        if(continuousScan != null) {
+            for(int i = 0; i < inputChannels.length; i++)
+                values[i] = latestValues.get(inputChannels[i].getValue());
+        } else {
+            synchronized(this) {
+                readAllChannels();
+                for(int i = 0; i < inputChannels.length; i++)
+                    values[i] = readBuffer[1 + inputChannels[i].getValue()] & 0xFF;
+            }
+        }
+    }
+    
+    /**
+     * Read all the channels of the selected mode, in one single i2c transaction.
+     * 
+     * <p>The control byte is sent with the auto-increment flag and the channel 0. A burst of
+     * (number of channels + 1) bytes is then read: the first byte contains the result of the previous
+     * conversion and is discarded, the following ones contain the values of the channels 0, 1, ...
+     * <b>[datasheet - p.6-8]</b></p>
+     * 
+     * <p>No allocation is made by this method.</p>
+     * @param values the array receiving the value of each channel (values[n] for the channel n).
+     * Its length must be at least {@link #getNbChannels()}.
+     * @return the number of channels read.
+     */
+    public int scan(int[] values) {
+        int nbChannels = getNbChannels();
+        if(values.length < nbChannels)
+            throw new IllegalArgumentException("The array must be able to contain the values of the " + nbChannels + " channels.");
+        
+        if(continuousScan != null) {
+            for(int channel = 0; channel < nbChannels; channel++)
+                values[channel] = latestValues.get(channel);
+        } else {
+            synchronized(this) {
+                readAllChannels();
+                for(int channel = 0; channel < nbChannels; channel++)
+                    values[channel] = readBuffer[1 + channel] & 0xFF;
+            }
+        }
+        return nbChannels;
+    }
+    
+    /**
+     * Starts the continuous scan of all the channels, on the scheduler shared by the i2c components.
+     * <p>While the continuous scan is running, the read methods ({@link #analogToDigital(PCF8591InputChannel)},
+     * {@link #scan(int[])}, ...) return the latest values, without any access to the i2c bus.</p>
+     * @param period the period between two successive scans, in milliseconds.
+     */
+    public synchronized void startContinuousScan(int period) {
+        if(period < 1)
+            throw new IllegalArgumentException("The period of the continuous scan must be at least 1ms.");
+        stopContinuousScan();
+        
+        // first scan done synchronously, so that the latest values are available when this method returns
+        scanToLatestValues();
+        continuousScan = getSharedScheduler().scheduleAtFixedRate(() -> {
+            try {
+                scanToLatestValues();
+            } catch(RaspoidException e) {
+                // an exception would silently stop the periodic task: the latest values are kept
+                Tools.log("[PCF8591] Error during the continuous scan: " + e.getMessage(), Tools.Color.ANSI_RED);
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the continuous scan. The read methods then access the i2c bus again.
+     */
+    public synchronized void stopContinuousScan() {
+        if(continuousScan != null) {
+            continuousScan.cancel(false);
+            continuousScan = null;
+        }
+    }
+    
+    /**
+     * Checks if the continuous scan is running.
+     * @return true if the continuous scan is running.
+     */
+    public boolean continuousScanRunning() {
+        return continuousScan != null;
+    }
+    
+    /**
+     * Get the number of channels available in the selected analog input programming mode.
+     * @return the number of channels available (4, 3 or 2).
+     */
+    public int getNbChannels() {
+        switch(selectedMode) {
+        case FOUR_SINGLE_ENDED_INPUTS:
+            return 4;
+        case THREE_DIFFERENTIAL_INPUTS:
+        case SINGLE_ENDED_AND_DIFFERENTIAL_MIXED:
+            return 3;
+        case TWO_DIFFERENTIAL_INPUTS:
+            return 2;
+        default:
+            throw new IllegalArgumentException("Mode not supported");
+        }
+    }
+    
+    /**
+     * Scans all the channels, and stores the values in the latest values.
+     */
+    private synchronized void scanToLatestValues() {
+        readAllChannels();
+        int nbChannels = getNbChannels();
+        for(int channel = 0; channel < nbChannels; channel++)
+            latestValues.set(channel, readBuffer[1 + channel] & 0xFF);
+    }
+    
+    /**
+     * Reads all the channels in the read buffer, in one i2c transaction (auto-increment).
+     * <p>The caller must hold the lock on this PCF8591.</p>
+     */
+    private void readAllChannels() {
+        try {
+            device.write(getControlByte(0, true));
+            device.read(readBuffer, 0, getNbChannels() + 1);
+        } catch (IOException e) {
+            throw new RaspoidException(e);
+        }
+    }
+    
+    /**
+     * Builds the control byte to send to the PCF8591 <b>[datasheet - p.6]</b>.
+     * @param channel the channel number.
+     * @param autoIncrement true to set the auto-increment flag.
+     * @return the control byte.
+     */
+    private byte getControlByte(int channel, boolean autoIncrement) {
+        byte controlByte = 0;
+        if(enableAnalogOutput)
+            controlByte += ANALOGUE_OUTPUT_ENABLE_FLAG;
+        controlByte += selectedMode.toByte();
+        if(autoIncrement)
+            controlByte += AUTO_INCREMENT_FLAG;
+        controlByte += (byte) channel;
+        return controlByte;
+    }
+    
+    /**
+     * Checks that the channel number is valid in the selected analog input programming mode.
+     * @param channel the channel number to check.
+     */
+    private void checkChannel(int channel) {
         switch(selectedMode) {
         case FOUR_SINGLE_ENDED_INPUTS:
             if(channel < 0 || channel > 3)
@@ -222,28 +427,6 @@ public class PCF8591 extends I2CComponent implements ADC {
         default:
             throw new IllegalArgumentException("Mode not supported");
         }
-        
-        // Control byte
-        byte controlByte = 0;
-        if(enableAnalogOutput)
-            controlByte += ANALOGUE_OUTPUT_ENABLE_FLAG;
-        controlByte += selectedMode.toByte();
-        if(enableAutoIncrement)
-            controlByte += AUTO_INCREMENT_FLAG;
-        controlByte += (byte) channel;
-        
-        //Tools.log(Tools.getBinaryString(new byte[] {controlByte}), Tools.Color.ANSI_RED); // DEBUG
-        
-        byte[] readBuffer = new byte[2];
-        try {
-            device.write(controlByte);
-            device.read(readBuffer, 0, 2);
-            //Tools.log(String.valueOf(readBuffer[1]), Tools.Color.ANSI_BLUE); // DEBUG
-        } catch (IOException e) {
-            throw new RaspoidException(e);
-        }
-        
-        return readBuffer[1] & 0xFF;
     }
     
     /**
@@ -265,7 +448,7 @@ public class PCF8591 extends I2CComponent implements ADC {
      * 
      * @param value the data value to send on the analog output, in the 0..255 range.
      */
-    public void digitalToAnalog(int value) {
+    public synchronized void digitalToAnalog(int value) {
         if(value < 0 || value > 255)
             throw new IllegalArgumentException("Value must be in the 0..255 range");
         
@@ -282,42 +465,29 @@ public class PCF8591 extends I2CComponent implements ADC {
     
     @Override
     public String toString() {
-        String result = "";
-        
-        String c0 = " CHANNEL_0: ";
-        String c1 = " CHANNEL_1: ";
-        String c2 = " CHANNEL_2: ";
-        String c3 = " CHANNEL_3: ";
+        int[] values = new int[4];
+        int nbChannels = scan(values);
         
+        String result;
         switch(selectedMode) {
         case FOUR_SINGLE_ENDED_INPUTS:
-            result += "[FOUR_SINGLE_ENDED_INPUTS]" + 
-                    c0 + analogToDigital(CHANNEL_0) +
-                    c1 + analogToDigital(CHANNEL_1) +
-                    c2 + analogToDigital(CHANNEL_2) +
-                    c3 + analogToDigital(CHANNEL_3);
+            result = "[FOUR_SINGLE_ENDED_INPUTS]";
             break;
         case THREE_DIFFERENTIAL_INPUTS:
-            result += "[THREE_DIFFERENTIAL_INPUTS]" + 
-                    c0 + analogToDigital(CHANNEL_0) +
-                    c1 + analogToDigital(CHANNEL_1) +
-                    c2 + analogToDigital(CHANNEL_2);
+            result = "[THREE_DIFFERENTIAL_INPUTS]";
             break;
         case SINGLE_ENDED_AND_DIFFERENTIAL_MIXED:
-            result += "[SINGLE_ENDED_AND_DIFFERENTIAL_MIXED]" + 
-                    c0 + analogToDigital(CHANNEL_0) +
-                    c1 + analogToDigital(CHANNEL_1) +
-                    c2 + analogToDigital(CHANNEL_2);
+            result = "[SINGLE_ENDED_AND_DIFFERENTIAL_MIXED]";
             break;
         case TWO_DIFFERENTIAL_INPUTS:
-            result += "[TWO_DIFFERENTIAL_INPUTS]" + 
-                    c0 + analogToDigital(CHANNEL_0) +
-                    c1 + analogToDigital(CHANNEL_1);
+            result = "[TWO_DIFFERENTIAL_INPUTS]";
             break;
         default:
             throw new IllegalArgumentException("Mode not supported");
         }
         
+        for(int channel = 0; channel < nbChannels; channel++)
+            result += " CHANNEL_" + channel + ": " + values[channel];
         return result;
     }
 }
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+/**
+ * A decoder converts the pulses of an infrared signal into the code transmitted with a specific
+ * infrared transmission protocol (address and command bits).
+ * 
+ * <p>Two signals of the same button of a remote can have slightly different pulse durations,
+ * but give the same code. The signals of an {@link IRProtocol} can then be indexed by their code,
+ * and a received signal can be found with a simple lookup, instead of comparing it
+ * to each signal of the protocol.</p>
+ * 
+ * <p>Implementations: {@link IRDecoderNEC}, {@link IRDecoderRC5} and {@link IRDecoderSony}.
+ * Decoders are stateless, and can be shared.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public abstract class IRDecoder {
+    
+    /**
+     * Value returned by {@link #decode(IRSignal)} when the signal doesn't follow the protocol of the decoder.
+     */
+    public static final long NO_CODE = -1;
+    
+    /**
+     * Tolerance on the durations of the pulses, in %.
+     */
+    public static final int TOLERANCE = 30; // %
+    
+    /**
+     * Decode an infrared signal.
+     * @param signal the signal to decode.
+     * @return the code transmitted by the signal (non negative),
+     * or {@link #NO_CODE} if the signal doesn't follow the protocol of this decoder.
+     */
+    public abstract long decode(IRSignal signal);
+    
+    /**
+     * Check if a duration corresponds to an expected duration, with a tolerance of {@link #TOLERANCE} %.
+     * @param duration the measured duration, in μs.
+     * @param expected the expected duration, in μs.
+     * @return true if the duration corresponds to the expected duration.
+     */
+    protected static boolean matchesDuration(int duration, int expected) {
+        return Math.abs(duration - expected) <= expected * TOLERANCE / 100;
+    }
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+/**
+ * Decoder for the NEC infrared transmission protocol, used by many cheap remotes
+ * (such as the {@link IRProtocolSunfounderMediaRemote}).
+ * 
+ * <p>A NEC frame is composed of:
+ *  <ul>
+ *      <li>a leading pulse of 9ms, followed by a space of 4.5ms,</li>
+ *      <li>32 bits, least significant bit first: the address, the logical inverse of the address
+ *      (or the high byte of an extended address), the command and the logical inverse of the command.
+ *      Each bit is a pulse of 562.5μs followed by a space of 562.5μs (logical 0) or 1687.5μs (logical 1),</li>
+ *      <li>a final pulse of 562.5μs.</li>
+ *  </ul>
+ * The repeat codes sent while the button is held are ignored.</p>
+ * 
+ * <p>The code of a signal is the 32 bits of the frame, as an unsigned value.</p>
+ * 
+ * <p>Source: <a href="http://www.sbprojects.com/knowledge/ir/nec.php">http://www.sbprojects.com/knowledge/ir/nec.php</a></p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class IRDecoderNEC extends IRDecoder {
+    
+    private static final int LEADING_PULSE = 9000; // μs
+    private static final int LEADING_SPACE = 4500; // μs
+    private static final int BIT_PULSE = 562; // μs
+    private static final int ZERO_SPACE = 562; // μs
+    private static final int ONE_SPACE = 1687; // μs
+    private static final int NB_BITS = 32;
+    
+    @Override
+    public long decode(IRSignal signal) {
+        int[] periods = signal.getPulsesArray();
+        // first OFF period, leading pulse and space, 32 bits and the final pulse
+        if(2 * signal.getNbPulses() < 4 + 2 * NB_BITS
+                || !matchesDuration(periods[1], LEADING_PULSE) || !matchesDuration(periods[2], LEADING_SPACE))
+            return NO_CODE;
+        
+        long code = 0;
+        for(int bit = 0; bit < NB_BITS; bit++) {
+            if(!matchesDuration(periods[3 + 2 * bit], BIT_PULSE))
+                return NO_CODE;
+            int space = periods[4 + 2 * bit];
+            if(matchesDuration(space, ONE_SPACE))
+                code |= 1L << bit;
+            else if(!matchesDuration(space, ZERO_SPACE))
+                return NO_CODE;
+        }
+        return code;
+    }
+}
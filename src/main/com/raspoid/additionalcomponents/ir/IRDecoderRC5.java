@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+/**
+ * Decoder for the Philips RC5 infrared transmission protocol.
+ * 
+ * <p>A RC5 frame is composed of 14 bits, most significant bit first, with a Manchester encoding:
+ * each bit lasts 1.778ms, and is a space followed by a pulse of 889μs (logical 1), or a pulse
+ * followed by a space of 889μs (logical 0). The bits are:
+ *  <ul>
+ *      <li>two start bits (the second one is the inverted 7th command bit, in the extended RC5 protocol),</li>
+ *      <li>a toggle bit, inverted each time a button is pressed again,</li>
+ *      <li>the address (5 bits) and the command (6 bits).</li>
+ *  </ul>
+ * </p>
+ * 
+ * <p>The code of a signal is the value of the 14 bits, without the toggle bit: successive presses
+ * of the same button give the same code.</p>
+ * 
+ * <p>Source: <a href="http://www.sbprojects.com/knowledge/ir/rc5.php">http://www.sbprojects.com/knowledge/ir/rc5.php</a></p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class IRDecoderRC5 extends IRDecoder {
+    
+    private static final int HALF_BIT = 889; // μs
+    private static final int NB_BITS = 14;
+    private static final long TOGGLE_BIT = 1L << 11;
+    
+    @Override
+    public long decode(IRSignal signal) {
+        int[] periods = signal.getPulsesArray();
+        int nbPeriods = 2 * signal.getNbPulses();
+        
+        // the space of the first start bit is not received: it is the first half bit.
+        int nbHalfBits = 1;
+        boolean firstHalfIsPulse = false;
+        long code = 0;
+        int nbBits = 0;
+        
+        // ON periods are at odd indexes, OFF periods at even indexes
+        for(int i = 1; i < nbPeriods && nbBits < NB_BITS; i++) {
+            boolean pulse = i % 2 == 1;
+            int halfBits;
+            if(matchesDuration(periods[i], HALF_BIT))
+                halfBits = 1;
+            else if(matchesDuration(periods[i], 2 * HALF_BIT))
+                halfBits = 2;
+            else if(!pulse && nbHalfBits % 2 == 1)
+                halfBits = 1; // a long space after a bit starting with a pulse: end of the frame
+            else
+                return NO_CODE;
+            
+            for(int j = 0; j < halfBits && nbBits < NB_BITS; j++) {
+                if(nbHalfBits % 2 == 0) {
+                    firstHalfIsPulse = pulse;
+                } else {
+                    if(firstHalfIsPulse == pulse)
+                        return NO_CODE;
+                    code = (code << 1) | (pulse ? 1 : 0);
+                    nbBits++;
+                }
+                nbHalfBits++;
+            }
+        }
+        
+        // the space of a last logical 0 is not received
+        if(nbBits == NB_BITS - 1 && nbHalfBits % 2 == 1 && firstHalfIsPulse) {
+            code <<= 1;
+            nbBits++;
+        }
+        
+        if(nbBits != NB_BITS)
+            return NO_CODE;
+        return code & ~TOGGLE_BIT;
+    }
+}
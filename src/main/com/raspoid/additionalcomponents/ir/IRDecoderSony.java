@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+/**
+ * Decoder for the Sony SIRC infrared transmission protocol.
+ * 
+ * <p>A SIRC frame is composed of:
+ *  <ul>
+ *      <li>a leading pulse of 2.4ms,</li>
+ *      <li>12, 15 or 20 bits, least significant bit first: the command (7 bits), the address
+ *      (5, 8 or 13 bits). Each bit is a space of 600μs followed by a pulse of 600μs (logical 0)
+ *      or 1200μs (logical 1).</li>
+ *  </ul>
+ * The frames repeated while the button is held are ignored.</p>
+ * 
+ * <p>The code of a signal is the value of the bits, with the number of bits in the bits 32 to 39.</p>
+ * 
+ * <p>Source: <a href="http://www.sbprojects.com/knowledge/ir/sirc.php">http://www.sbprojects.com/knowledge/ir/sirc.php</a></p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class IRDecoderSony extends IRDecoder {
+    
+    private static final int LEADING_PULSE = 2400; // μs
+    private static final int SPACE = 600; // μs
+    private static final int ZERO_PULSE = 600; // μs
+    private static final int ONE_PULSE = 1200; // μs
+    
+    @Override
+    public long decode(IRSignal signal) {
+        int[] periods = signal.getPulsesArray();
+        int nbPeriods = 2 * signal.getNbPulses();
+        if(nbPeriods < 4 || !matchesDuration(periods[1], LEADING_PULSE) || !matchesDuration(periods[2], SPACE))
+            return NO_CODE;
+        
+        long value = 0;
+        int nbBits = 0;
+        for(int i = 3; i < nbPeriods && nbBits < 20; i += 2) {
+            if(matchesDuration(periods[i], ONE_PULSE))
+                value |= 1L << nbBits;
+            else if(!matchesDuration(periods[i], ZERO_PULSE))
+                return NO_CODE;
+            nbBits++;
+            // the frame ends with the first space longer than a bit space (gap before a repeated frame)
+            if(i + 1 >= nbPeriods || !matchesDuration(periods[i + 1], SPACE))
+                break;
+        }
+        
+        if(nbBits != 12 && nbBits != 15 && nbBits != 20)
+            return NO_CODE;
+        return ((long) nbBits << 32) | value;
+    }
+}
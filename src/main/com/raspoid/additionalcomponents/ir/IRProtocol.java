@@ -19,7 +19,11 @@
 package com.raspoid.additionalcomponents.ir;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.raspoid.examples.additionalcomponents.ir.IRSignalDetector;
 
@@ -33,17 +37,60 @@ import com.raspoid.examples.additionalcomponents.ir.IRSignalDetector;
  * (using the {@link IRSignalDetector})
  * and saved this in a new IR protocol: {@link IRProtocolSunfounderMediaRemote}.</p>
  * 
+ * <p>To find the signal corresponding to a received signal ({@link #findSignal(IRSignal, int)}),
+ * the signals of the protocol are indexed by their code, for each {@link IRDecoder} (NEC, Sony and RC5
+ * by default). A received signal is then decoded and looked up in a hash map, whatever the number
+ * of signals in the protocol. The signals which can't be decoded are compared one by one
+ * with {@link IRSignal#matches(IRSignal, int)}.</p>
+ * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
  * @version 1.0
  */
 public abstract class IRProtocol {
     
-    private List<IRSignal> signals = new ArrayList<>();
+    /**
+     * The decoders used by default to index the signals.
+     */
+    public static final List<IRDecoder> DEFAULT_DECODERS = Collections.unmodifiableList(
+            Arrays.asList(new IRDecoderNEC(), new IRDecoderSony(), new IRDecoderRC5()));
+    
+    private final List<IRSignal> signals = new ArrayList<>();
+    
+    /**
+     * The decoders used to index the signals.
+     */
+    private final List<IRDecoder> decoders;
+    
+    /**
+     * For each decoder (same order as decoders): the signals of the protocol, indexed by their code.
+     */
+    private final List<Map<Long, IRSignal>> indexes = new ArrayList<>();
+    
+    /**
+     * The signals which can't be decoded by any decoder.
+     */
+    private final List<IRSignal> undecodableSignals = new ArrayList<>();
+    
+    /**
+     * True when the list of signals changed since the indexes were built.
+     */
+    private boolean indexesOutdated = true;
     
     /**
      * Constructor for a new empty infrared protocol.
      */
     public IRProtocol() {
+        this(DEFAULT_DECODERS);
+    }
+    
+    /**
+     * Constructor for a new empty infrared protocol, using specific decoders to index the signals.
+     * @param decoders the decoders used to index the signals, by order of priority.
+     */
+    public IRProtocol(List<IRDecoder> decoders) {
+        this.decoders = new ArrayList<>(decoders);
+        for(int i = 0; i < decoders.size(); i++)
+            indexes.add(new HashMap<>());
     }
     
     /**
@@ -51,16 +98,83 @@ public abstract class IRProtocol {
      * composing the protocol.
      * @param signal the new IRSignal to add to the protocol.
      */
-    public void addSignal(IRSignal signal) {
-        if(!signals.contains(signal))
+    public synchronized void addSignal(IRSignal signal) {
+        if(!signals.contains(signal)) {
             signals.add(signal);
+            indexesOutdated = true;
+        }
+    }
+    
+    /**
+     * Remove an infrared signal from the collection of infrared signals
+     * composing the protocol.
+     * @param signal the IRSignal to remove from the protocol.
+     */
+    public synchronized void removeSignal(IRSignal signal) {
+        if(signals.remove(signal))
+            indexesOutdated = true;
     }
     
     /**
      * Get the collection of signals composing the infrared protocol.
+     * <p>The list is read-only: use {@link #addSignal(IRSignal)} and {@link #removeSignal(IRSignal)}
+     * to change the signals, so that the indexes are kept up to date.</p>
      * @return the List of IRSignals composing the infrared protocol.
      */
     public List<IRSignal> getSignals() {
-        return signals;
+        return Collections.unmodifiableList(signals);
+    }
+    
+    /**
+     * Returns the signal of the protocol corresponding to an input signal,
+     * or null if no signal of the protocol corresponds.
+     * <p>The input signal is decoded with each decoder, and the code is looked up in the index of the decoder.
+     * If no indexed signal is found, the input signal is compared with the signals which can't be decoded,
+     * with a fuzziness of tolerance %.</p>
+     * @param signal the input signal.
+     * @param tolerance the fuzziness to use for the comparison with the signals which can't be decoded, in %.
+     * @return the signal of the protocol corresponding to the input signal, or null if no correspondance.
+     */
+    public synchronized IRSignal findSignal(IRSignal signal, int tolerance) {
+        if(indexesOutdated)
+            buildIndexes();
+        
+        for(int i = 0; i < decoders.size(); i++) {
+            long code = decoders.get(i).decode(signal);
+            if(code != IRDecoder.NO_CODE) {
+                IRSignal protocolSignal = indexes.get(i).get(code);
+                if(protocolSignal != null)
+                    return protocolSignal;
+            }
+        }
+        
+        for(IRSignal protocolSignal : undecodableSignals)
+            if(protocolSignal.matches(signal, tolerance))
+                return protocolSignal;
+        return null;
+    }
+    
+    /**
+     * Index each signal of the protocol with the first decoder able to decode it.
+     */
+    private void buildIndexes() {
+        for(Map<Long, IRSignal> index : indexes)
+            index.clear();
+        undecodableSignals.clear();
+        
+        for(IRSignal signal : signals) {
+            boolean indexed = false;
+            for(int i = 0; i < decoders.size() && !indexed; i++) {
+                long code = decoders.get(i).decode(signal);
+                if(code != IRDecoder.NO_CODE) {
+                    // in case of duplicate codes, the first signal is kept (as with a linear search)
+                    indexes.get(i).putIfAbsent(code, signal);
+                    indexed = true;
+                }
+            }
+            if(!indexed)
+                undecodableSignals.add(signal);
+        }
+        indexesOutdated = false;
     }
 }
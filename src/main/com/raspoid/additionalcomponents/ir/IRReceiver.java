@@ -18,9 +18,15 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents.ir;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
 import com.pi4j.wiringpi.Gpio;
 import com.raspoid.GPIOComponent;
 import com.raspoid.GPIOPin;
+import com.raspoid.exceptions.RaspoidException;
 
 /**
  * IR detectors are little microchips with a photocell that are tuned
@@ -52,6 +58,16 @@ import com.raspoid.GPIOPin;
  * This is much easier for a microcontroller like the Raspberry Pi to handle.
  * Thats what we do here.</p>
  * 
+ * <p>Two reception modes are available:
+ *  <ul>
+ *      <li>{@link #detectSignal()} polls the pin every {@link #RESOLUTION} μs, until a complete signal is received.
+ *      The caller thread is busy during the reception.</li>
+ *      <li>{@link #startCapture()} captures the edges of the signal with Gpio interrupts, and timestamps them
+ *      with {@link System#nanoTime()}. A signal is complete when no edge is received during {@link #MAX_PULSE} μs:
+ *      it is then delivered to the {@link IRSignalListener}s. No thread is busy while waiting for signals.</li>
+ *  </ul>
+ * </p>
+ * 
  * <p>Main source of informations:
  * <a href="https://learn.adafruit.com/ir-sensor/ir-remote-signals">https://learn.adafruit.com/ir-sensor/ir-remote-signals</a>.</p>
  * 
@@ -72,8 +88,52 @@ public abstract class IRReceiver extends GPIOComponent {
      */
     public static final int RESOLUTION = 20; // μs
     
+    /**
+     * Initial capacity of the buffers of pulses (100 pulse pairs).
+     */
+    private static final int INITIAL_BUFFER_SIZE = 200;
+    
     private int pinNumber;
     
+    /**
+     * True once the interrupts on the pin are set up.
+     */
+    private boolean capturing = false;
+    
+    /**
+     * Durations of the OFF/ON periods of the signal being captured, in μs (grown if needed).
+     */
+    private int[] captureBuffer = new int[INITIAL_BUFFER_SIZE];
+    
+    /**
+     * Number of periods of the signal being captured (0 if no signal is being captured).
+     */
+    private int capturedPeriods = 0;
+    
+    /**
+     * Timestamp of the last edge of the signal being captured, in ns.
+     */
+    private long lastEdgeTime;
+    
+    /**
+     * The listeners notified of each signal captured.
+     */
+    private final List<IRSignalListener> signalListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Listener notified each time a new infrared signal has been captured.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
+     */
+    @FunctionalInterface
+    public interface IRSignalListener {
+        
+        /**
+         * Called each time a new infrared signal has been captured.
+         * @param signal the new signal.
+         */
+        void signalReceived(IRSignal signal);
+    }
+    
     /**
      * Constructor for a new infrared receiver using a specific GPIO pin.
      * @param pin the GPIO pin to use to deal with the infrared receiver.
@@ -92,7 +152,7 @@ public abstract class IRReceiver extends GPIOComponent {
     public IRSignal detectSignal() {
         // We will store up to 100 pulse pairs (this is -a lot-).
         // Pair is high and low pulse (2 int per pulse).
-        int[] signal = new int[200];
+        int[] signal = new int[INITIAL_BUFFER_SIZE];
         // temporary storage timing
         int highPulse, lowPulse;
         
@@ -120,6 +180,9 @@ public abstract class IRReceiver extends GPIOComponent {
                 }
             }
             if(!completeSignalDetected) {
+                // more pulses than expected: the buffer is grown
+                if(currentPulse * 2 + 1 >= signal.length)
+                    signal = Arrays.copyOf(signal, signal.length * 2);
                 // we didn't time out so lets stash the reading
                 signal[currentPulse * 2] = highPulse * RESOLUTION;
             }
@@ -154,6 +217,100 @@ public abstract class IRReceiver extends GPIOComponent {
         return new IRSignal(signal);
     }
     
+    /**
+     * Starts the capture of infrared signals with Gpio interrupts.
+     * <p>The signals are then delivered to the listeners added with
+     * {@link #addSignalListener(IRSignalListener)}. {@link #detectSignal()} must not be used anymore.</p>
+     * <p>Note: the interrupts can't be disabled once set up.</p>
+     */
+    public synchronized void startCapture() {
+        if(capturing)
+            return;
+        if(Gpio.wiringPiISR(pinNumber, Gpio.INT_EDGE_BOTH, pin -> edge()) < 0)
+            throw new RaspoidException("Unable to set up the interrupts on the pin of the infrared receiver.");
+        capturing = true;
+    }
+    
+    /**
+     * Add a listener notified of each signal captured (after a call to {@link #startCapture()}).
+     * <p>The listeners are notified on the {@link #getSharedScheduler() Gpio scheduler} thread,
+     * and should return quickly.</p>
+     * @param listener the listener to add.
+     */
+    public void addSignalListener(IRSignalListener listener) {
+        signalListeners.add(listener);
+    }
+    
+    /**
+     * Remove a signal listener.
+     * @param listener the listener to remove.
+     */
+    public void removeSignalListener(IRSignalListener listener) {
+        signalListeners.remove(listener);
+    }
+    
+    /**
+     * Called by the interrupts of the pin, on each edge of the signal.
+     * <p>The output of the receiver is HIGH when no carrier is detected (OFF period),
+     * and LOW when the carrier is detected (ON period).</p>
+     */
+    private synchronized void edge() {
+        long timestamp = System.nanoTime();
+        // the period which just ended is an OFF period if the pin is now LOW
+        boolean offPeriodEnded = Gpio.digitalRead(pinNumber) == 0;
+        
+        if(capturedPeriods == 0) {
+            // a signal starts with the first ON period
+            if(!offPeriodEnded)
+                return;
+            // the first OFF period is ignored (cfr IRSignal)
+            captureBuffer[0] = 0;
+            capturedPeriods = 1;
+            lastEdgeTime = timestamp;
+            getSharedScheduler().schedule(this::checkEndOfSignal, MAX_PULSE, TimeUnit.MICROSECONDS);
+            return;
+        }
+        
+        // OFF periods are at even indexes, ON periods at odd indexes.
+        // If an edge has been missed, an empty period keeps the parity.
+        if(offPeriodEnded != (capturedPeriods % 2 == 0))
+            storePeriod(0);
+        storePeriod((int) ((timestamp - lastEdgeTime) / 1000));
+        lastEdgeTime = timestamp;
+    }
+    
+    /**
+     * Store the duration of a period of the signal being captured, growing the buffer if needed.
+     * @param duration the duration of the period, in μs.
+     */
+    private void storePeriod(int duration) {
+        if(capturedPeriods == captureBuffer.length)
+            captureBuffer = Arrays.copyOf(captureBuffer, captureBuffer.length * 2);
+        captureBuffer[capturedPeriods++] = duration;
+    }
+    
+    /**
+     * Called by the scheduler to check if the signal being captured is complete
+     * (no edge during {@link #MAX_PULSE} μs). If not, the check is scheduled again.
+     */
+    private void checkEndOfSignal() {
+        IRSignal signal;
+        synchronized(this) {
+            long remaining = MAX_PULSE - (System.nanoTime() - lastEdgeTime) / 1000;
+            if(remaining > 0) {
+                getSharedScheduler().schedule(this::checkEndOfSignal, remaining, TimeUnit.MICROSECONDS);
+                return;
+            }
+            // the last (incomplete) OFF/ON pair is completed with an empty ON period
+            if(capturedPeriods % 2 == 1)
+                storePeriod(0);
+            signal = new IRSignal(Arrays.copyOf(captureBuffer, capturedPeriods));
+            capturedPeriods = 0;
+        }
+        for(IRSignalListener listener : signalListeners)
+            listener.signalReceived(signal);
+    }
+    
     /**
      * Returns the IRSignal from IRProtocol corresponding to the input signal,
      * or null if the input signal has no correspondance in the given protocol.
@@ -170,12 +327,6 @@ public abstract class IRReceiver extends GPIOComponent {
         
         int tolerance = 20; // %
         
-        for(IRSignal protocolSignal : protocol.getSignals()) {
-            if(protocolSignal.matches(signal, tolerance)) {
-                return protocolSignal;
-            }
-        }
-        
-        return null;
+        return protocol.findSignal(signal, tolerance);
     }
 }
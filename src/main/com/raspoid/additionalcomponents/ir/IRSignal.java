@@ -92,6 +92,15 @@ public class IRSignal {
         return signal.clone();
     }
     
+    /**
+     * Get the internal array of OFF/ON periods, without copy.
+     * <p>Used by the decoders to avoid a copy for each decoding. The array must not be modified.</p>
+     * @return the internal array of OFF/ON periods.
+     */
+    int[] getPulsesArray() {
+        return signal;
+    }
+    
     /**
      * Get the name corresponding to this signal.
      * "no_name" String if undefined.
@@ -114,7 +123,7 @@ public class IRSignal {
             return false;
         
         // we then compare pulse by pulse
-        int[] pulsesToCompare = signal.getPulses();
+        int[] pulsesToCompare = signal.signal;
         
         for(int i = 0; i < 2 * nbPulses; i++) {
             int currentPulseToCompare = pulsesToCompare[i]; 
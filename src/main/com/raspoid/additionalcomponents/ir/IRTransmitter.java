@@ -18,9 +18,16 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents.ir;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
 import com.pi4j.wiringpi.Gpio;
 import com.raspoid.PWMComponent;
 import com.raspoid.PWMPin;
+import com.raspoid.Tools;
 import com.raspoid.examples.additionalcomponents.ir.IRTransmitterExample;
 
 /**
@@ -54,6 +61,29 @@ public class IRTransmitter extends PWMComponent {
      */
     public static final int PWM_RANGE_GENERATOR = 100; // %
     
+    /**
+     * Repeat code of the NEC protocol: sent every {@link #NEC_REPEAT_PERIOD} ms while a button is held
+     * (a pulse of 9ms, a space of 2.25ms and a pulse of 560μs).
+     * @see #transmitSignal(IRSignal, IRSignal, int, int)
+     */
+    public static final IRSignal NEC_REPEAT_CODE = new IRSignal("nec_repeat_code", new int[] {0, 9000, 2250, 560});
+    
+    /**
+     * Period between the starts of two successive NEC frames (or repeat codes), in ms.
+     */
+    public static final int NEC_REPEAT_PERIOD = 108; // ms
+    
+    /**
+     * Remaining delay under which the transmitter actively waits for the next edge, instead of sleeping.
+     */
+    private static final long SPIN_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(2);
+    
+    /**
+     * Compiled timelines of the signals already transmitted, shared by all the transmitters.
+     * <p>Weak keys: a timeline is discarded with its signal.</p>
+     */
+    private static final Map<IRSignal, long[]> TIMELINES = Collections.synchronizedMap(new WeakHashMap<>());
+    
     /**
      * Constructor for a default infrared transmitter connected to a specific PWM pin,
      * using the default carrier frequency ({@link #DEFAULT_CARRIER_FREQUENCY}).
@@ -75,29 +105,95 @@ public class IRTransmitter extends PWMComponent {
         setPWMFreq(carrierFrequency);
     }
     
-    /**
-     * Sends an IR pulse for a duration of micros microseconds.
-     * <p>Note: this method isn't placed in the parent PWMComponent, because it's deprecated to use a Gpio.delayMicroseconds.
-     * Indeed, since the system is not in realtime executions, we can't get any guarantee regarding the microseconds delays.</p>
-     * @param micros
-     */
-    private void pulse(long micros) {
-        Gpio.pwmWrite(pinNumber, 50); // 50%
-        Gpio.delayMicroseconds(micros);
-        Gpio.pwmWrite(pinNumber, 0);
-    }
-    
     /**
      * Sends an IRSignal through the IRTransmitter connected to the setted PWM pin.
+     * <p>The signal is compiled once in a timeline of edges (see {@link #getTimeline(IRSignal)}), and each edge
+     * is sent at its deadline from the start of the signal: the delays don't accumulate, as with successive
+     * relative delays. The calling thread is blocked during the transmission.</p>
      * @param signal the IRSignal sent through the PWM pin.
      * @see IRSignal
      */
     public void transmitSignal(IRSignal signal) {
-        int[] pulses = signal.getPulses();
-        
+        replay(getTimeline(signal), System.nanoTime());
+    }
+    
+    /**
+     * Sends an IRSignal, followed by repeat codes (as when a button of a remote is held).
+     * <p>Each frame starts repeatPeriod ms after the start of the previous one.
+     * The timelines of the signal and of the repeat code are compiled only once.</p>
+     * <p>Example, for the NEC protocol:
+     * <pre>transmitter.transmitSignal(signal, IRTransmitter.NEC_REPEAT_CODE, 5, IRTransmitter.NEC_REPEAT_PERIOD);</pre></p>
+     * @param signal the IRSignal sent first.
+     * @param repeatCode the repeat code sent after the signal.
+     * @param nbRepeats the number of repeat codes to send.
+     * @param repeatPeriod the period between the starts of two successive frames, in ms.
+     */
+    public void transmitSignal(IRSignal signal, IRSignal repeatCode, int nbRepeats, int repeatPeriod) {
+        long[] repeatTimeline = getTimeline(repeatCode);
+        long start = System.nanoTime();
+        replay(getTimeline(signal), start);
+        for(int i = 1; i <= nbRepeats; i++)
+            replay(repeatTimeline, start + i * TimeUnit.MILLISECONDS.toNanos(repeatPeriod));
+    }
+    
+    /**
+     * Get the timeline of a signal, compiled on the first call and then cached.
+     * <p>The timeline contains the times of the edges of the signal, in ns from the start of the signal:
+     * the carrier is switched on at each even index, and switched off at each odd index.</p>
+     * @param signal the signal.
+     * @return the timeline of the signal.
+     */
+    private static long[] getTimeline(IRSignal signal) {
+        return TIMELINES.computeIfAbsent(signal, IRTransmitter::compileTimeline);
+    }
+    
+    /**
+     * Compile a signal in a timeline (see {@link #getTimeline(IRSignal)}).
+     * @param signal the signal to compile.
+     * @return the timeline of the signal.
+     */
+    private static long[] compileTimeline(IRSignal signal) {
+        int[] periods = signal.getPulsesArray();
+        long[] timeline = new long[2 * signal.getNbPulses()];
+        int nbEdges = 0;
+        long time = 0;
         for(int i = 0; i < signal.getNbPulses(); i++) {
-            Gpio.delayMicroseconds(pulses[i * 2]); // off
-            pulse(pulses[i * 2 + 1]); // on
+            time += TimeUnit.MICROSECONDS.toNanos(periods[i * 2]); // off
+            long on = TimeUnit.MICROSECONDS.toNanos(periods[i * 2 + 1]);
+            if(on == 0)
+                continue;
+            timeline[nbEdges++] = time;
+            time += on;
+            timeline[nbEdges++] = time;
+        }
+        return Arrays.copyOf(timeline, nbEdges);
+    }
+    
+    /**
+     * Sends the edges of a timeline, each one at its deadline.
+     * @param timeline the timeline to send.
+     * @param start the start time of the timeline ({@link System#nanoTime()} scale).
+     */
+    private void replay(long[] timeline, long start) {
+        for(int i = 0; i < timeline.length; i++) {
+            waitUntil(start + timeline[i]);
+            Gpio.pwmWrite(pinNumber, i % 2 == 0 ? 50 : 0); // 50% duty cycle when on
+        }
+    }
+    
+    /**
+     * Waits until a deadline: sleeps while the deadline is far, then actively waits for a precise timing.
+     * <p>Note: since the system is not in realtime executions, we can't get any guarantee regarding the
+     * microseconds delays. Actively waiting on absolute deadlines limits the jitter to the scheduling of
+     * the thread during the last {@link #SPIN_THRESHOLD} ns.</p>
+     * @param deadline the deadline ({@link System#nanoTime()} scale).
+     */
+    private static void waitUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if(remaining > SPIN_THRESHOLD)
+            Tools.sleepMilliseconds(TimeUnit.NANOSECONDS.toMillis(remaining - SPIN_THRESHOLD) + 1);
+        while(System.nanoTime() < deadline) {
+            // busy wait (no Thread.onSpinWait in Java 8)
         }
     }
 }
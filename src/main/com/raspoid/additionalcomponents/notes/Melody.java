@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.notes;
+
+import java.util.Arrays;
+
+import com.raspoid.additionalcomponents.PCA9685;
+
+/**
+ * A melody is a sequence of notes (or tones) and rests, with their durations.
+ * 
+ * <p>The frequency of each note, and the corresponding value of the PCA9685 PRE_SCALE register, are
+ * computed once when the note is added: playing a melody with a {@link MelodyPlayer} then only
+ * needs array accesses.</p>
+ * 
+ * <p>Example:
+ * <pre>
+ * Melody melody = new Melody()
+ *         .note(BaseNote.DO_0, 5, 250)
+ *         .note(BaseNote.MI_0, 5, 250)
+ *         .rest(100)
+ *         .note(BaseNote.SOL_0, 5, 500);
+ * </pre>
+ * </p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class Melody {
+    
+    /**
+     * Initial capacity of the arrays of notes.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /**
+     * Frequency of each note, in Hz (0 for a rest).
+     */
+    private double[] frequencies = new double[INITIAL_CAPACITY];
+    
+    /**
+     * Value of the PCA9685 PRE_SCALE register corresponding to each note (unused for a rest).
+     */
+    private int[] preScales = new int[INITIAL_CAPACITY];
+    
+    /**
+     * Duration of each note, in ms.
+     */
+    private int[] durations = new int[INITIAL_CAPACITY];
+    
+    /**
+     * Number of notes (and rests) in the melody.
+     */
+    private int nbNotes = 0;
+    
+    /**
+     * Adds a note at the end of the melody.
+     * @param baseNote the base note.
+     * @param octave the octave from the base note.
+     * @param millis the duration of the note, in ms.
+     * @return this melody.
+     */
+    public Melody note(BaseNote baseNote, int octave, int millis) {
+        return tone(Note.getNoteFrequency(baseNote, octave), millis);
+    }
+    
+    /**
+     * Adds a tone at the end of the melody.
+     * @param frequency the frequency of the tone, in Hz.
+     * @param millis the duration of the tone, in ms.
+     * @return this melody.
+     */
+    public Melody tone(double frequency, int millis) {
+        if(frequency <= 0)
+            throw new IllegalArgumentException("The frequency of a tone must be positive.");
+        add(frequency, PCA9685.frequencyToPreScale((int) frequency), millis);
+        return this;
+    }
+    
+    /**
+     * Adds a rest (silence) at the end of the melody.
+     * @param millis the duration of the rest, in ms.
+     * @return this melody.
+     */
+    public Melody rest(int millis) {
+        add(0, 0, millis);
+        return this;
+    }
+    
+    private void add(double frequency, int preScale, int millis) {
+        if(millis < 0)
+            throw new IllegalArgumentException("The duration of a note can't be negative.");
+        if(nbNotes == durations.length) {
+            frequencies = Arrays.copyOf(frequencies, nbNotes * 2);
+            preScales = Arrays.copyOf(preScales, nbNotes * 2);
+            durations = Arrays.copyOf(durations, nbNotes * 2);
+        }
+        frequencies[nbNotes] = frequency;
+        preScales[nbNotes] = preScale;
+        durations[nbNotes] = millis;
+        nbNotes++;
+    }
+    
+    /**
+     * Get the number of notes (and rests) in the melody.
+     * @return the number of notes in the melody.
+     */
+    public int getNbNotes() {
+        return nbNotes;
+    }
+    
+    /**
+     * Get the total duration of the melody.
+     * @return the total duration of the melody, in ms.
+     */
+    public int getDuration() {
+        int duration = 0;
+        for(int i = 0; i < nbNotes; i++)
+            duration += durations[i];
+        return duration;
+    }
+    
+    /**
+     * Get the frequency of a note.
+     * @param index the index of the note.
+     * @return the frequency of the note, in Hz (0 for a rest).
+     */
+    public double getFrequency(int index) {
+        return frequencies[index];
+    }
+    
+    /**
+     * Get the value of the PCA9685 PRE_SCALE register corresponding to a note.
+     * @param index the index of the note.
+     * @return the value of the PRE_SCALE register for this note.
+     */
+    public int getPreScale(int index) {
+        return preScales[index];
+    }
+    
+    /**
+     * Get the duration of a note.
+     * @param index the index of the note.
+     * @return the duration of the note, in ms.
+     */
+    public int getNoteDuration(int index) {
+        return durations[index];
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.notes;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.raspoid.PWMComponent;
+import com.raspoid.additionalcomponents.PCA9685;
+import com.raspoid.additionalcomponents.PassiveBuzzer;
+
+/**
+ * <b>Asynchronous player of {@link Melody melodies} on a {@link PassiveBuzzer}.</b>
+ * 
+ * <p>The melodies are queued, and played one after the other on the
+ * {@link PWMComponent#getSharedScheduler() shared PWM scheduler}: the caller thread is never blocked,
+ * and an alert can be played from a control thread without stalling it.</p>
+ * 
+ * <p>When the buzzer uses a PCA9685, the precomputed PRE_SCALE value of each note is sent directly
+ * to the module, and the sleep/restart sequence needed to change the frequency is skipped when two
+ * consecutive notes have the same PRE_SCALE value.
+ * <b>! Attention !</b> the frequency is common to all the channels of a PCA9685.</p>
+ * 
+ * <p>Example:
+ * <pre>
+ * MelodyPlayer player = new MelodyPlayer(buzzer);
+ * player.play(melody).thenRun(() -&gt; Tools.log("End of the melody"));
+ * </pre>
+ * </p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class MelodyPlayer {
+    
+    /**
+     * Duty cycle of the PWM signal while a note is played, in % of the range of the buzzer.
+     */
+    private static final int DUTY_CYCLE = PassiveBuzzer.PWM_RANGE_GENERATOR / 2;
+    
+    private final PassiveBuzzer buzzer;
+    
+    /**
+     * The PCA9685 of the buzzer (null if the buzzer uses a Raspberry Pi PWM pin).
+     */
+    private final PCA9685 pca9685;
+    
+    /**
+     * The melodies waiting to be played.
+     */
+    private final Deque<QueuedMelody> queue = new ArrayDeque<>();
+    
+    /**
+     * The melody being played (null if none), the index of its next note, and the scheduled next step.
+     */
+    private QueuedMelody current = null;
+    private int nextNote = 0;
+    private ScheduledFuture<?> nextStep = null;
+    
+    /**
+     * Incremented each time a step is scheduled, or the player is stopped, to discard a step that
+     * would still be waiting for the lock after {@link #stop()}.
+     */
+    private int stepGeneration = 0;
+    
+    /**
+     * A melody in the queue, with the future completed at its end.
+     */
+    private static class QueuedMelody {
+        private final Melody melody;
+        private final CompletableFuture<Void> end = new CompletableFuture<>();
+        
+        QueuedMelody(Melody melody) {
+            this.melody = melody;
+        }
+    }
+    
+    /**
+     * Constructor for a new melody player, using a specific passive buzzer.
+     * @param buzzer the buzzer used to play the melodies.
+     */
+    public MelodyPlayer(PassiveBuzzer buzzer) {
+        this.buzzer = buzzer;
+        this.pca9685 = buzzer.getPCA9685();
+    }
+    
+    /**
+     * Queues a melody: it will be played after the melodies already queued.
+     * @param melody the melody to play.
+     * @return a future completed at the end of the melody, or cancelled if the player is stopped before.
+     */
+    public synchronized CompletableFuture<Void> play(Melody melody) {
+        QueuedMelody queued = new QueuedMelody(melody);
+        queue.add(queued);
+        if(current == null && nextStep == null)
+            scheduleStep(0);
+        return queued.end;
+    }
+    
+    /**
+     * Stops the melody being played, and removes all the queued melodies.
+     */
+    public synchronized void stop() {
+        stepGeneration++;
+        if(nextStep != null) {
+            nextStep.cancel(false);
+            nextStep = null;
+        }
+        if(current != null) {
+            current.end.cancel(false);
+            current = null;
+        }
+        for(QueuedMelody queued : queue)
+            queued.end.cancel(false);
+        queue.clear();
+        buzzer.stop();
+    }
+    
+    /**
+     * Checks if a melody is being played.
+     * @return true if a melody is being played, or is queued.
+     */
+    public synchronized boolean isPlaying() {
+        return current != null || !queue.isEmpty();
+    }
+    
+    /**
+     * Schedules the next step after the delay.
+     * @param delay the delay before the next step, in milliseconds.
+     */
+    private void scheduleStep(long delay) {
+        int generation = ++stepGeneration;
+        nextStep = PWMComponent.getSharedScheduler().schedule(() -> step(generation), delay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Plays the next note, and schedules the following step at the end of this note.
+     * @param generation the generation of the step, discarded if not the last scheduled one.
+     */
+    private synchronized void step(int generation) {
+        if(generation != stepGeneration)
+            return;
+        nextStep = null;
+        while(current == null || nextNote == current.melody.getNbNotes()) {
+            if(current != null) {
+                current.end.complete(null);
+                current = null;
+            }
+            current = queue.poll();
+            nextNote = 0;
+            if(current == null) {
+                buzzer.stop();
+                return;
+            }
+        }
+        
+        Melody melody = current.melody;
+        double frequency = melody.getFrequency(nextNote);
+        if(frequency == 0) {
+            buzzer.stop();
+        } else {
+            if(pca9685 != null)
+                pca9685.setPreScale(melody.getPreScale(nextNote));
+            else
+                buzzer.setFrequency(frequency);
+            buzzer.setPWM(DUTY_CYCLE);
+        }
+        scheduleStep(melody.getNoteDuration(nextNote));
+        nextNote++;
+    }
+}
@@ -25,11 +25,29 @@ package com.raspoid.additionalcomponents.notes;
  * corresponding to a note of music, starting from the base note ({@link BaseNote})
  * and for a specific octave.</p>
  * 
+ * <p>The frequencies of the first {@link #NB_PRECOMPUTED_OCTAVES} octaves are precomputed in a table.</p>
+ * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
  * @version 1.0
  */
 public class Note {
     
+    /**
+     * Number of octaves whose frequencies are precomputed.
+     */
+    public static final int NB_PRECOMPUTED_OCTAVES = 11;
+    
+    /**
+     * Frequency of each base note, for each precomputed octave: FREQUENCIES[baseNote.ordinal()][octave].
+     */
+    private static final double[][] FREQUENCIES = new double[BaseNote.values().length][NB_PRECOMPUTED_OCTAVES];
+    
+    static {
+        for(BaseNote baseNote : BaseNote.values())
+            for(int octave = 0; octave < NB_PRECOMPUTED_OCTAVES; octave++)
+                FREQUENCIES[baseNote.ordinal()][octave] = baseNote.getFrequency() * Math.pow(2, octave);
+    }
+    
     /**
      * Private constructor to hide the implicit public one.
      */
@@ -45,6 +63,8 @@ public class Note {
     public static double getNoteFrequency(BaseNote baseNote, int octave) {
         if(octave <= 0)
             octave = 0;
+        if(octave < NB_PRECOMPUTED_OCTAVES)
+            return FREQUENCIES[baseNote.ordinal()][octave];
         return baseNote.getFrequency() * Math.pow(2, octave);
     }
 }
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.servomotor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.raspoid.Tools;
+import com.raspoid.additionalcomponents.PCA9685;
+import com.raspoid.exceptions.RaspoidException;
+
+/**
+ * <b>Motion engine used to move several servo motors smoothly, without blocking the caller threads.</b>
+ * 
+ * <p>With {@link ServoMotor#setAngle(double)}, the servo is sent directly to the new position, at its maximum
+ * speed, and the PWM signal is stopped after the estimated time needed to reach this position:
+ * the servo doesn't hold its position anymore.</p>
+ * 
+ * <p>The engine instead keeps the target of each registered servo, and interpolates the position of each
+ * servo at a fixed tick (one thread for all the servos), with a velocity limit and an acceleration limit
+ * (trapezoidal profile). The PWM signal is kept at the end of a move: each servo holds its position.
+ * For each tick, the changed channels of a PCA9685 are sent in one single i2c transaction
+ * (see {@link PCA9685#commit()}).</p>
+ * 
+ * <p>Each move returns a {@link CompletableFuture}, completed when the target position is reached.
+ * If a new target is given before the end of a move, the previous future is cancelled and the servo
+ * smoothly continues toward the new target: a pan/tilt support can then directly track a joystick.</p>
+ * 
+ * <p>Example:
+ * <pre>
+ * ServoMotionEngine engine = new ServoMotionEngine(ServoMotionEngine.DEFAULT_TICK_PERIOD);
+ * engine.addServo(servo1, 180, 720); // 180°/s max, 720°/s² max
+ * engine.addServo(servo2, 180, 720);
+ * engine.start();
+ * engine.moveTo(servo1, 90).thenRun(() -&gt; Tools.log("Position reached"));
+ * </pre>
+ * </p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class ServoMotionEngine {
+    
+    /**
+     * Default tick period, in milliseconds: one PWM period of a servo (50Hz).
+     */
+    public static final int DEFAULT_TICK_PERIOD = 1000 / ServoMotor.TARGET_FREQUENCY;
+    
+    /**
+     * Distance to the target, in μs of pulse length, under which the target is considered as reached.
+     */
+    private static final double POSITION_TOLERANCE = 0.5;
+    
+    /**
+     * Period between two successive updates of the positions, in milliseconds.
+     */
+    private final int tickPeriod;
+    
+    /**
+     * The state of each registered servo motor.
+     */
+    private final Map<ServoMotor, ServoState> servos = new LinkedHashMap<>();
+    
+    /**
+     * The PCA9685 modules with staged channels during the current tick.
+     */
+    private final List<PCA9685> pca9685ToCommit = new ArrayList<>();
+    
+    /**
+     * Scheduler used to update the positions at each tick.
+     */
+    private ScheduledExecutorService scheduler = null;
+    
+    /**
+     * The periodic task updating the positions.
+     */
+    private ScheduledFuture<?> tickTask = null;
+    
+    /**
+     * Motion state of a servo motor registered in the engine.
+     * <p>Positions are expressed in μs of pulse length, velocities in μs/s and accelerations in μs/s².</p>
+     */
+    private static class ServoState {
+        private double position;
+        private double velocity = 0;
+        private double target;
+        private double maxVelocity;
+        private double maxAcceleration;
+        private int lastStagedPulseLength = -1;
+        private CompletableFuture<Void> move = null;
+    }
+    
+    /**
+     * Constructor for a new servo motion engine.
+     * @param tickPeriod the period between two successive updates of the positions, in milliseconds.
+     * A tick period of {@link #DEFAULT_TICK_PERIOD} (one PWM period of a servo) is recommended.
+     */
+    public ServoMotionEngine(int tickPeriod) {
+        if(tickPeriod < 1)
+            throw new IllegalArgumentException("The tick period must be at least 1ms.");
+        this.tickPeriod = tickPeriod;
+    }
+    
+    /**
+     * Registers a new servo motor in the engine.
+     * <p>The current position of the servo is used as initial position: no move is started.</p>
+     * @param servo the servo motor to register.
+     * @param maxVelocity the maximum velocity of the servo, in °/s. 0 for no limit.
+     * @param maxAcceleration the maximum acceleration (and deceleration) of the servo, in °/s². 0 for no limit.
+     */
+    public synchronized void addServo(ServoMotor servo, double maxVelocity, double maxAcceleration) {
+        if(maxVelocity < 0 || maxAcceleration < 0)
+            throw new IllegalArgumentException("The velocity and acceleration limits can't be negative.");
+        if(servos.containsKey(servo))
+            throw new RaspoidException("This servo motor is already registered in the engine.");
+        
+        ServoState state = new ServoState();
+        state.position = servo.getCurrentPulseLength();
+        state.target = state.position;
+        state.maxVelocity = maxVelocity * servo.getPulseLengthUsPerDegreeOfRotation();
+        state.maxAcceleration = maxAcceleration * servo.getPulseLengthUsPerDegreeOfRotation();
+        servos.put(servo, state);
+    }
+    
+    /**
+     * Unregisters a servo motor. The move in progress, if any, is cancelled.
+     * @param servo the servo motor to unregister.
+     */
+    public synchronized void removeServo(ServoMotor servo) {
+        ServoState state = servos.remove(servo);
+        if(state != null && state.move != null)
+            state.move.cancel(false);
+    }
+    
+    /**
+     * Sets a new target angle for a registered servo motor. This method returns immediately.
+     * @param servo the servo motor to move.
+     * @param angle the target position of the rotor, in °.
+     * @return a future completed when the target position is reached, or cancelled if a new target 
+     * is given before the end of the move.
+     * @throws RaspoidException if the engine is not started (the move would never complete).
+     */
+    public CompletableFuture<Void> moveTo(ServoMotor servo, double angle) {
+        return moveToPulseLength(servo, servo.angleToPulseLength(angle));
+    }
+    
+    /**
+     * Sets a new target pulse length for a registered servo motor. This method returns immediately.
+     * @param servo the servo motor to move.
+     * @param pulseLength the target pulse length, in μs.
+     * @return a future completed when the target position is reached, or cancelled if a new target 
+     * is given before the end of the move.
+     * @throws RaspoidException if the engine is not started (the move would never complete).
+     */
+    public synchronized CompletableFuture<Void> moveToPulseLength(ServoMotor servo, int pulseLength) {
+        ServoState state = servos.get(servo);
+        if(state == null)
+            throw new RaspoidException("This servo motor is not registered in the engine.");
+        if(tickTask == null)
+            throw new RaspoidException("The engine must be started before moving a servo motor.");
+        
+        if(state.move != null)
+            state.move.cancel(false);
+        state.target = pulseLength;
+        state.move = new CompletableFuture<>();
+        return state.move;
+    }
+    
+    /**
+     * Checks if a registered servo motor is moving.
+     * @param servo the servo motor to check.
+     * @return true if the servo motor has not reached its target yet.
+     */
+    public synchronized boolean isMoving(ServoMotor servo) {
+        ServoState state = servos.get(servo);
+        return state != null && state.move != null;
+    }
+    
+    /**
+     * Starts the engine, in a new thread.
+     */
+    public synchronized void start() {
+        if(tickTask != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-servo-motion"));
+        tickTask = scheduler.scheduleAtFixedRate(this::tick, 0, tickPeriod, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Stops the engine. The servos hold their last position, and the moves in progress are cancelled.
+     */
+    public synchronized void stop() {
+        if(tickTask == null)
+            return;
+        tickTask.cancel(false);
+        scheduler.shutdown();
+        tickTask = null;
+        scheduler = null;
+        for(ServoState state : servos.values()) {
+            state.target = state.position;
+            state.velocity = 0;
+            if(state.move != null)
+                state.move.cancel(false);
+            state.move = null;
+        }
+    }
+    
+    /**
+     * Updates the position of each servo motor, and sends the changed channels.
+     */
+    private synchronized void tick() {
+        try {
+            double dt = tickPeriod / 1000.;
+            for(Map.Entry<ServoMotor, ServoState> entry : servos.entrySet()) {
+                ServoMotor servo = entry.getKey();
+                ServoState state = entry.getValue();
+                boolean reached = state.move == null || updatePosition(state, dt);
+                
+                int pulseLength = (int) Math.round(state.position);
+                if(pulseLength != state.lastStagedPulseLength) {
+                    servo.stagePulseLength(pulseLength);
+                    state.lastStagedPulseLength = pulseLength;
+                    PCA9685 pca9685 = servo.getPCA9685();
+                    if(pca9685 != null && !pca9685ToCommit.contains(pca9685))
+                        pca9685ToCommit.add(pca9685);
+                }
+                
+                if(reached && state.move != null) {
+                    state.move.complete(null);
+                    state.move = null;
+                }
+            }
+            
+            for(PCA9685 pca9685 : pca9685ToCommit)
+                pca9685.commit();
+            pca9685ToCommit.clear();
+        } catch(RuntimeException e) {
+            // an exception would silently stop the periodic task
+            Tools.log("[ServoMotionEngine] Error during a tick: " + e.getMessage(), Tools.Color.ANSI_RED);
+        }
+    }
+    
+    /**
+     * Computes the new position and velocity of a servo after one tick, with a trapezoidal profile:
+     * the servo accelerates up to its maximum velocity, and decelerates to stop on the target.
+     * @param state the motion state of the servo.
+     * @param dt the duration of the tick, in seconds.
+     * @return true if the target position is reached.
+     */
+    private static boolean updatePosition(ServoState state, double dt) {
+        double remaining = state.target - state.position;
+        double direction = Math.signum(remaining);
+        
+        // Velocity allowed to still be able to stop on the target
+        double desiredSpeed = state.maxVelocity > 0 ? state.maxVelocity : Double.MAX_VALUE;
+        if(state.maxAcceleration > 0)
+            desiredSpeed = Math.min(desiredSpeed, Math.sqrt(2 * state.maxAcceleration * Math.abs(remaining)));
+        double desiredVelocity = direction * desiredSpeed;
+        
+        if(state.maxAcceleration > 0) {
+            double maxDelta = state.maxAcceleration * dt;
+            state.velocity += Math.max(-maxDelta, Math.min(maxDelta, desiredVelocity - state.velocity));
+        } else {
+            state.velocity = desiredVelocity;
+        }
+        
+        double step = state.velocity * dt;
+        if(Math.abs(remaining) <= POSITION_TOLERANCE || (direction != 0 && Math.abs(step) >= Math.abs(remaining) && Math.signum(step) == direction)) {
+            state.position = state.target;
+            state.velocity = 0;
+            return true;
+        }
+        state.position += step;
+        return false;
+    }
+}
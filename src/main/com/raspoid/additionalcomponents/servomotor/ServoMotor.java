@@ -18,6 +18,8 @@
  ******************************************************************************/
 package com.raspoid.additionalcomponents.servomotor;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.raspoid.PWMComponent;
 import com.raspoid.PWMPin;
 import com.raspoid.additionalcomponents.PCA9685;
@@ -214,49 +216,97 @@ public abstract class ServoMotor extends PWMComponent {
     
     /**
      * Sets the position of the rotor to the angle position, in degree.
+     * <p>The caller thread is not blocked (cfr {@link #setPulseLength(int, int)}).</p>
      * @param angle the target position of the rotor, in °.
+     * @return a future completed when the signal is stopped, once the position is reached.
+     */
+    public CompletableFuture<Void> setAngle(double angle) {
+        return setPulseLength(angleToPulseLength(angle));
+    }
+    
+    /**
+     * Converts an angle position of the rotor, in degree, to the corresponding pulse length.
+     * @param angle the position of the rotor, in °. Bounded to the [minAngle; maxAngle] interval.
+     * @return the pulse length corresponding to the angle position, in μs.
      */
-    public void setAngle(double angle) {
+    public int angleToPulseLength(double angle) {
         if(angle < minAngle)
             angle = minAngle;
         else if(angle > maxAngle)
             angle = maxAngle;
-        int targetPulseLength = minPulseLength + (int)(pulseLengthUsPerDegreeOfRotation * angle);
-        setPulseLength(targetPulseLength);
+        return minPulseLength + (int)(pulseLengthUsPerDegreeOfRotation * angle);
     }
     
     /**
      * Turns the rotor to the minAngle position.
+     * @return a future completed when the signal is stopped, once the position is reached.
      */
-    public void resetPosition() {
-        setPulseLength(minPulseLength);
+    public CompletableFuture<Void> resetPosition() {
+        return setPulseLength(minPulseLength);
     }
         
     /**
      * Writes the value to the PWM register for the given pin.
      * <p>Rotates the servo to the new position, and then stops the signal.</p>
      * @param value the value for the PWM signal corresponding to the new position to apply on the servo.
+     * @return a future completed when the signal is stopped, once the position is reached.
      */
-    public void setPulseLength(int value) {
+    public CompletableFuture<Void> setPulseLength(int value) {
         if(value > 0)
-            setPulseLength(value, timeToReachPosition(value));
-        else
-            stopMotor();
+            return setPulseLength(value, timeToReachPosition(value));
+        stopMotor();
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Sends a PWM signal during delayToReachPosition ms.
-     * <p>This allows you to send a PWM signal for a custom duration.</p>
+     * <p>This allows you to send a PWM signal for a custom duration.
+     * The caller thread is not blocked: the end of the signal is scheduled (cfr {@link PWMComponent#setPWM(int, long)}).
+     * A new position requested before the end of the signal replaces the current one.</p>
      * @param value the value for the PWM signal corresponding to the new position to apply on the servo.
      * @param delayToReachPosition the estimated delay to reach the new position, with regard to it current position.
+     * @return a future completed when the signal is stopped, or cancelled if a new position is requested before.
+     */
+    public CompletableFuture<Void> setPulseLength(int value, int delayToReachPosition) {
+        if(value < minPulseLength)
+            value = minPulseLength;
+        else if(value > maxPulseLength)
+            value = maxPulseLength;
+        currentPulseLength = value;
+        return setPWM(value, delayToReachPosition);
+    }
+    
+    /**
+     * Stages a new pulse length, without stopping the signal afterwards: the servo then keeps 
+     * holding the new position. The caller thread is not blocked.
+     * <p>When using a PCA9685, the new value is only sent on the next {@link PCA9685#commit()}.</p>
+     * @param value the pulse length corresponding to the new position to hold, in μs.
+     * @see PWMComponent#stagePWM(int)
+     * @see ServoMotionEngine
      */
-    public void setPulseLength(int value, int delayToReachPosition) {
+    public void stagePulseLength(int value) {
         if(value < minPulseLength)
             value = minPulseLength;
         else if(value > maxPulseLength)
             value = maxPulseLength;
         currentPulseLength = value;
-        setPWM(value, delayToReachPosition);
+        stagePWM(value);
+    }
+    
+    /**
+     * Get the pulse length corresponding to the current position of the rotor.
+     * @return the current pulse length, in μs.
+     */
+    public int getCurrentPulseLength() {
+        return currentPulseLength;
+    }
+    
+    /**
+     * Get the number of μs of pulse length for a rotation of one degree.
+     * @return the number of μs of pulse length for a rotation of one degree.
+     */
+    public double getPulseLengthUsPerDegreeOfRotation() {
+        return pulseLengthUsPerDegreeOfRotation;
     }
     
     /**
@@ -18,7 +18,9 @@
  ******************************************************************************/
 package com.raspoid.examples.additionalcomponents;
 
+import com.raspoid.BlinkPattern;
 import com.raspoid.GPIOPin;
+import com.raspoid.Tools;
 import com.raspoid.additionalcomponents.ActiveBuzzer;
 
 /**
@@ -43,7 +45,14 @@ public class ActiveBuzzerExample {
      */
     public static void main(String[] args) {
         ActiveBuzzer buzzer = new ActiveBuzzer(GPIOPin.GPIO_00, true);
-        while(true)
+        
+        // blocking beeps
+        for(int i = 0; i < 3; i++)
             buzzer.beep(500);
+        
+        // non-blocking beep pattern
+        buzzer.play(BlinkPattern.morse("SOS", 100, true));
+        while(true)
+            Tools.sleepMilliseconds(1000);
     }
 }
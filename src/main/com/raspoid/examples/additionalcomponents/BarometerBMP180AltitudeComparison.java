@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.examples.additionalcomponents;
+
+import com.raspoid.Tools;
+import com.raspoid.additionalcomponents.BarometerBMP180;
+
+/**
+ * Comparison between the altitude calculated with the international barometric formula
+ * (one power per measure) and the altitude interpolated from the lookup table of the BMP180 driver.
+ * 
+ * <p>This comparison doesn't need any hardware: it evaluates both implementations on the whole
+ * pressure range of the BMP180, and prints the maximum error and the mean time per conversion.</p>
+ * 
+ * @see BarometerBMP180#pressureToAltitude(int)
+ * @see BarometerBMP180#calculateAltitudeWithBarometricFormula(int)
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BarometerBMP180AltitudeComparison {
+    
+    /**
+     * Private constructor to hide the implicit public one.
+     */
+    private BarometerBMP180AltitudeComparison() {
+    }
+    
+    /**
+     * Command-line interface.
+     * @param args unused here.
+     */
+    public static void main(String[] args) {
+        int minPressure = 30000; // Pa
+        int maxPressure = 110000; // Pa
+        int nbRounds = 20;
+        
+        // Maximum error of the lookup table
+        double maxError = 0.;
+        for(int pressure = minPressure; pressure <= maxPressure; pressure++) {
+            double error = Math.abs(BarometerBMP180.pressureToAltitude(pressure) - 
+                    BarometerBMP180.calculateAltitudeWithBarometricFormula(pressure));
+            maxError = Math.max(maxError, error);
+        }
+        Tools.log("Maximum error of the lookup table: " + maxError + "m");
+        
+        // Warm up, then measure each implementation
+        double checksum = 0.;
+        for(int round = 0; round < nbRounds; round++) {
+            for(int pressure = minPressure; pressure <= maxPressure; pressure++) {
+                checksum += BarometerBMP180.pressureToAltitude(pressure);
+                checksum += BarometerBMP180.calculateAltitudeWithBarometricFormula(pressure);
+            }
+        }
+        
+        long start = System.nanoTime();
+        for(int round = 0; round < nbRounds; round++)
+            for(int pressure = minPressure; pressure <= maxPressure; pressure++)
+                checksum += BarometerBMP180.calculateAltitudeWithBarometricFormula(pressure);
+        long formulaTime = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        for(int round = 0; round < nbRounds; round++)
+            for(int pressure = minPressure; pressure <= maxPressure; pressure++)
+                checksum += BarometerBMP180.pressureToAltitude(pressure);
+        long lookupTime = System.nanoTime() - start;
+        
+        long nbConversions = (long) nbRounds * (maxPressure - minPressure + 1);
+        Tools.log("Barometric formula:\t" + (double) formulaTime / nbConversions + "ns/conversion", Tools.Color.ANSI_RED);
+        Tools.log("Lookup table:\t\t" + (double) lookupTime / nbConversions + "ns/conversion", Tools.Color.ANSI_RED);
+        Tools.debug("(checksum: " + checksum + ")");
+    }
+}
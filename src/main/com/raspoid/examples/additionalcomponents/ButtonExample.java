@@ -18,8 +18,6 @@
  ******************************************************************************/
 package com.raspoid.examples.additionalcomponents;
 
-import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
-import com.pi4j.io.gpio.event.GpioPinListenerDigital;
 import com.raspoid.GPIOPin;
 import com.raspoid.Tools;
 import com.raspoid.additionalcomponents.Button;
@@ -47,9 +45,8 @@ public class ButtonExample {
     public static void main(String[] args) {
         Button button = new Button(GPIOPin.GPIO_00);
         
-        // Add a listener for button pressed/released events
-        button.getGpioPinDigitalInput().addListener((GpioPinListenerDigital)
-                (GpioPinDigitalStateChangeEvent event) -> Tools.log(button.isPressed() ? "button pressed" : "button released"));
+        // Add a listener for debounced button events (press, release, long press, double click)
+        button.addEventListener(event -> Tools.log("button event: " + event));
         
         Tools.sleepMilliseconds(15000);
     }
@@ -18,8 +18,7 @@
  ******************************************************************************/
 package com.raspoid.examples.additionalcomponents;
 
-import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
-import com.pi4j.io.gpio.event.GpioPinListenerDigital;
+import com.raspoid.DigitalInputEventDetector.Event;
 import com.raspoid.GPIOPin;
 import com.raspoid.Tools;
 import com.raspoid.additionalcomponents.IRObstacleAvoidanceModule;
@@ -47,8 +46,12 @@ public class IRObstacleAvoidanceModuleExample {
     public static void main(String[] args) {
         IRObstacleAvoidanceModule obstacleAvoidanceModule = new IRObstacleAvoidanceModule(GPIOPin.GPIO_00);
         
-        obstacleAvoidanceModule.getGpioPinDigitalInput().addListener((GpioPinListenerDigital)
-                (GpioPinDigitalStateChangeEvent event) -> Tools.log(event.getState().isLow() ? "obstacle detected" : "no obstacle"));
+        obstacleAvoidanceModule.addEventListener(event -> {
+            if(event == Event.PRESS)
+                Tools.log("obstacle detected");
+            else if(event == Event.RELEASE)
+                Tools.log("no obstacle");
+        });
         
         Tools.sleepMilliseconds(15000);
     }
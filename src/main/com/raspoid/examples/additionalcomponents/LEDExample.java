@@ -18,6 +18,7 @@
  ******************************************************************************/
 package com.raspoid.examples.additionalcomponents;
 
+import com.raspoid.BlinkPattern;
 import com.raspoid.GPIOPin;
 import com.raspoid.Tools;
 import com.raspoid.additionalcomponents.LED;
@@ -48,15 +49,14 @@ public class LEDExample {
         LED red = new LED(GPIOPin.GPIO_28);
         LED yellow = new LED(GPIOPin.GPIO_29);
 
+        // the patterns are played in background, by the same thread
+        white.blink(BlinkPattern.blink(250, 750));
+        green.blink(BlinkPattern.heartbeat(1000));
+        red.blink(BlinkPattern.morse("SOS", 150, true));
+
         while (true) {
-            white.toggle();
-            Tools.sleepMilliseconds(250);
-            green.toggle();
-            Tools.sleepMilliseconds(250);
-            red.toggle();
-            Tools.sleepMilliseconds(250);
-            yellow.toggle();
-            Tools.sleepMilliseconds(250);
+            yellow.pulse(100);
+            Tools.sleepMilliseconds(1000);
         }
     }
 }
@@ -22,6 +22,8 @@ import com.raspoid.additionalcomponents.PCA9685;
 import com.raspoid.additionalcomponents.PassiveBuzzer;
 import com.raspoid.additionalcomponents.PCA9685.PCA9685Channel;
 import com.raspoid.additionalcomponents.notes.BaseNote;
+import com.raspoid.additionalcomponents.notes.Melody;
+import com.raspoid.additionalcomponents.notes.MelodyPlayer;
 
 /**
  * Example of use of a Passive Buzzer.
@@ -59,14 +61,14 @@ public class PassiveBuzzerExample {
         // 2. Using a PCA9685
         buzzer = new PassiveBuzzer(new PCA9685(), PCA9685Channel.CHANNEL_00); // NOSONAR
         
+        // the scale of each octave is precomputed in a melody
+        Melody melody = new Melody();
         for(int i=0; i <= 7; i++) {
-            buzzer.playNote(BaseNote.DO_0, i, timePerNote);
-            buzzer.playNote(BaseNote.RE_0, i, timePerNote);
-            buzzer.playNote(BaseNote.MI_0, i, timePerNote);
-            buzzer.playNote(BaseNote.FA_0, i, timePerNote);
-            buzzer.playNote(BaseNote.SOL_0, i, timePerNote);
-            buzzer.playNote(BaseNote.LA_0, i, timePerNote);
-            buzzer.playNote(BaseNote.SI_0, i, timePerNote);
+            for(BaseNote baseNote : BaseNote.values())
+                melody.note(baseNote, i, timePerNote);
         }
+        
+        // the melody is played asynchronously: we wait for its end
+        new MelodyPlayer(buzzer).play(melody).join();
     }
 }
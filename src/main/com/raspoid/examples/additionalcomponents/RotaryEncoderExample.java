@@ -50,13 +50,12 @@ public class RotaryEncoderExample {
         rotaryEncoder.getGpioPinDigitalInput().addListener((GpioPinListenerDigital)
                 (GpioPinDigitalStateChangeEvent event) -> Tools.log(rotaryEncoder.isPressed() ? "rotary pressed" : "rotary released"));
         
-        int previousCounterValue = rotaryEncoder.getCounterValue();
+        rotaryEncoder.addRotationListener((direction, counterValue) ->
+                Tools.log(counterValue + " (" + String.format("%.1f", rotaryEncoder.getVelocity()) + " steps/s)"));
+        rotaryEncoder.startDecoding();
+        
         while(true) {
-            rotaryEncoder.getEncoderTurn();
-            if(previousCounterValue != rotaryEncoder.getCounterValue()) {
-                Tools.log(rotaryEncoder.getCounterValue());
-                previousCounterValue = rotaryEncoder.getCounterValue();
-            }
+            Tools.sleepMilliseconds(1000);
         }
     }
 }
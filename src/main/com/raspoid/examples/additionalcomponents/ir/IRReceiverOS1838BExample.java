@@ -47,14 +47,20 @@ public class IRReceiverOS1838BExample {
     public static void main(String[] args) {
         IRReceiverOS1838B irReceiver = new IRReceiverOS1838B(GPIOPin.GPIO_00);
         
-        while(true) {
-            IRSignal newSignal = irReceiver.detectSignal();
-            
-            IRSignal signalDecoded = irReceiver.decodeIRSignal(new IRProtocolSunfounderMediaRemote(), newSignal);
+        IRProtocolSunfounderMediaRemote protocol = new IRProtocolSunfounderMediaRemote();
+        
+        // signals are captured with interrupts, and delivered to the listener
+        irReceiver.addSignalListener(newSignal -> {
+            IRSignal signalDecoded = irReceiver.decodeIRSignal(protocol, newSignal);
             if(signalDecoded != null)
                 Tools.log("New signal received and decoded: " + signalDecoded.getName());
             else
                 Tools.log("New signal received but NOT decoded: " + newSignal);
+        });
+        irReceiver.startCapture();
+        
+        while(true) {
+            Tools.sleepMilliseconds(1000);
         }
     }
 }
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.examples.network;
+
+import com.raspoid.Tools;
+import com.raspoid.additionalcomponents.MPU6050;
+import com.raspoid.network.TelemetryServer;
+
+/**
+ * Example of use of a TelemetryServer, streaming the angles of a MPU6050.
+ * 
+ * <p>In a browser console:
+ * <pre>
+ * var ws = new WebSocket("ws://&lt;ip_address&gt;:&lt;port&gt;/telemetry");
+ * ws.onmessage = function(event) { console.log(JSON.parse(event.data)); };
+ * ws.onopen = function() { ws.send("rate/10"); ws.send("subscribe/mpu6050_filtered"); };
+ * </pre></p>
+ * 
+ * @see TelemetryServer
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class TelemetryServerExample {
+    
+    /**
+     * Private constructor to hide the implicit public one.
+     */
+    private TelemetryServerExample() {
+    }
+    
+    /**
+     * Command-line interface.
+     * @param args unused here.
+     */
+    public static void main(String[] args) {
+        MPU6050 mpu6050 = new MPU6050();
+        mpu6050.startUpdatingThread();
+        
+        TelemetryServer server = new TelemetryServer();
+        // the sources are only sampled while the channels have subscribers
+        server.addSource("mpu6050_filtered", 20, mpu6050::getFilteredAngles);
+        server.addSource("mpu6050_accel", 20, mpu6050::getAccelAccelerations);
+        server.addSource("mpu6050_gyro", 20, mpu6050::getGyroAngularSpeeds);
+        server.start();
+        
+        while(true)
+            Tools.sleepMilliseconds(1000);
+    }
+}
@@ -20,7 +20,10 @@ package com.raspoid.examples.robots.poc;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import com.raspoid.AveragingFilter;
 import com.raspoid.GPIOPin;
 import com.raspoid.PWMPin;
 import com.raspoid.Tools;
@@ -29,6 +32,8 @@ import com.raspoid.additionalcomponents.LCM1602;
 import com.raspoid.additionalcomponents.LEDPWM;
 import com.raspoid.additionalcomponents.PCA9685;
 import com.raspoid.additionalcomponents.PCA9685.PCA9685Channel;
+import com.raspoid.additionalcomponents.adc.ADCChannel;
+import com.raspoid.additionalcomponents.adc.ADCSampler;
 import com.raspoid.additionalcomponents.adc.PCF8591;
 import com.raspoid.additionalcomponents.adc.PCF8591InputChannel;
 import com.raspoid.additionalcomponents.camera.CameraPi;
@@ -36,6 +41,7 @@ import com.raspoid.additionalcomponents.camera.Picture;
 import com.raspoid.additionalcomponents.ir.IRProtocolSunfounderMediaRemote;
 import com.raspoid.additionalcomponents.ir.IRReceiverOS1838B;
 import com.raspoid.additionalcomponents.ir.IRSignal;
+import com.raspoid.additionalcomponents.servomotor.ServoMotionEngine;
 import com.raspoid.additionalcomponents.servomotor.TowerProMG90S;
 import com.raspoid.brickpi.BrickPi;
 import com.raspoid.brickpi.Motor;
@@ -49,6 +55,7 @@ import com.raspoid.additionalcomponents.ThermistorNTCLE203E3103SB0;
 import com.raspoid.network.MessageLikeSocketServer;
 import com.raspoid.network.NetworkUtilities;
 import com.raspoid.network.Router;
+import com.raspoid.network.Router.ParamType;
 import com.raspoid.network.SocketServer;
 import com.raspoid.network.pushbullet.Pushbullet;
 
@@ -105,6 +112,60 @@ public class RobotPOC {
     private static final int CAMERA_SUPPORT_JOYSTICK_HORIZONTAL_MIN_VALUE_RANGE = 7;
     private static final double CAMERA_SUPPORT_HORIZONTAL_JOYSTICK_UNIT_TO_DEGREE = CAMERA_SUPPORT_HORIZONTAL_STRAIGHT_AHEAD_ANGLE / (CAMERA_SUPPORT_JOYSTICK_HORIZONTAL_NEUTRAL_VALUE - CAMERA_SUPPORT_JOYSTICK_HORIZONTAL_MIN_VALUE_RANGE);
     private static final int CAMERA_SUPPORT_JOYSTICK_HORIZONTAL_MAX_VALUE_RANGE = (int)(CAMERA_SUPPORT_MAX_HORIZONTAL_ANGLE / CAMERA_SUPPORT_HORIZONTAL_JOYSTICK_UNIT_TO_DEGREE);
+    
+    /**
+     * Barometer: number of measures averaged, and period between two measures (ms).
+     */
+    private static final int BAROMETER_SAMPLING = 5;
+    private static final int BAROMETER_MEASURES_PERIOD = 100;
+    
+    /**
+     * Period between two successive samples of the channels of the PCF8591 (μs),
+     * and number of samples kept for each channel.
+     */
+    private static final int PCF8591_SAMPLING_PERIOD = 2000;
+    private static final int PCF8591_SAMPLES_BUFFER_SIZE = 500;
+    
+    /**
+     * Thermistor: shift of the exponential smoothing of the temperature (smoothing factor = 1/2^N).
+     */
+    private static final int THERMISTOR_SMOOTHING_SHIFT = 2;
+    
+    /**
+     * Sound sensor: intensity above which a clap is detected.
+     */
+    private static final int SOUND_CLAP_THRESHOLD = 70;
+    
+    /**
+     * Camera support: velocity (°/s) and acceleration (°/s²) limits of the servos.
+     */
+    private static final double CAMERA_SUPPORT_MAX_VELOCITY = 240.;
+    private static final double CAMERA_SUPPORT_MAX_ACCELERATION = 1200.;
+    
+    /**
+     * Camera: maximum duration of the "takePicture" request, in ms.
+     */
+    private static final long CAMERA_TIMEOUT = 30000; // ms
+    
+    /**
+     * Network: preferred range of ports for the servers of the robot (a port chosen by the system is used
+     * if no port of the range is available).
+     */
+    private static final int ROBOT_FIRST_PORT = 80;
+    private static final int ROBOT_LAST_PORT = 90;
+    
+    /**
+     * Network: preferred range of ports for the camera stream, disjoint from the servers range:
+     * GStreamer binds its port itself, on another thread, and must not compete with the servers.
+     */
+    private static final int CAMERA_STREAM_FIRST_PORT = 5000;
+    private static final int CAMERA_STREAM_LAST_PORT = 5010;
+    
+    /**
+     * Joystick: message type ids of the binary frames.
+     */
+    private static final int JOYSTICK_CAMERA_MESSAGE_TYPE = 1;
+    private static final int JOYSTICK_ROBOT_MOTORS_MESSAGE_TYPE = 2;
 
 
     
@@ -117,6 +178,11 @@ public class RobotPOC {
      */
     private PCF8591 pcf8591Nb1 = null;
     
+    /**
+     * [PCF8591Nb1] continuous sampler of the 4 channels of the analog to digital converter 1
+     */
+    private ADCSampler pcf8591Nb1Sampler = null;
+    
     /**
      * [LCD1602] lcd display
      */
@@ -132,6 +198,16 @@ public class RobotPOC {
      */
     private TowerProMG90S servo2 = null;
     
+    /**
+     * [Camera support] motion engine used to smoothly move the two servos.
+     */
+    private ServoMotionEngine cameraSupportEngine = null;
+    
+    /**
+     * [Camera] executor of the "takePicture" requests (the camera is slow).
+     */
+    private ExecutorService cameraExecutor = null;
+    
     /**
      * [IRReceiver_1838B] ir receiver.
      */
@@ -228,6 +304,11 @@ public class RobotPOC {
         
         if(config.pcf8591Nb1Enabled()) {
             pcf8591Nb1 = new PCF8591();
+            // thermistor, photoresistor and sound sensor share the same acquisition of the 4 channels
+            pcf8591Nb1Sampler = new ADCSampler(pcf8591Nb1, new ADCChannel[] {PCF8591InputChannel.CHANNEL_0,
+                    PCF8591InputChannel.CHANNEL_1, PCF8591InputChannel.CHANNEL_2, PCF8591InputChannel.CHANNEL_3},
+                    PCF8591_SAMPLES_BUFFER_SIZE);
+            pcf8591Nb1Sampler.start(PCF8591_SAMPLING_PERIOD);
             Tools.debug("PCF8591_1 enabled.", Tools.Color.ANSI_RED);
         }
         
@@ -253,6 +334,10 @@ public class RobotPOC {
         if(config.cameraSupportEnabled()) {
             servo1 = new TowerProMG90S(PWMPin.PWM0);
             servo2 = new TowerProMG90S(PWMPin.PWM1);
+            cameraSupportEngine = new ServoMotionEngine(ServoMotionEngine.DEFAULT_TICK_PERIOD);
+            cameraSupportEngine.addServo(servo1, CAMERA_SUPPORT_MAX_VELOCITY, CAMERA_SUPPORT_MAX_ACCELERATION);
+            cameraSupportEngine.addServo(servo2, CAMERA_SUPPORT_MAX_VELOCITY, CAMERA_SUPPORT_MAX_ACCELERATION);
+            cameraSupportEngine.start();
             rotateCameraSupportHorizontally(90);
             rotateCameraSupportVertically(58);
             Tools.debug("Camera support enabled", Tools.Color.ANSI_RED);
@@ -260,51 +345,50 @@ public class RobotPOC {
         
         if(config.cameraStreamEnabled()) {
             new Thread(() -> 
-                CameraPi.startGStreamerServer(NetworkUtilities.getIpAddresses().get(0), NetworkUtilities.getAvailablePort(), 640, 360, false, false, 2500000, true, false)
+                CameraPi.startGStreamerServer(NetworkUtilities.getIpAddresses().get(0), NetworkUtilities.getAvailablePort(CAMERA_STREAM_FIRST_PORT, CAMERA_STREAM_LAST_PORT), 640, 360, false, false, 2500000, true, false)
             ).start();
         }
         
         if(config.irReceiverEnabled()) {
             irReceiver = new IRReceiverOS1838B(GPIOPin.GPIO_04);
+            IRProtocolSunfounderMediaRemote irProtocol = new IRProtocolSunfounderMediaRemote();
             
-            new Thread(() -> {
-                while(!stopped) {
-                    if(running) {
-                        IRSignal newSignal = irReceiver.detectSignal();
-                        
-                        IRSignal signalDecoded = irReceiver.decodeIRSignal(new IRProtocolSunfounderMediaRemote(), newSignal);
-                        if(signalDecoded != null) {
-                            Tools.debug("New signal received and decoded: " + signalDecoded.getName(), Tools.Color.ANSI_BLUE);
-                            if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button0))
-                                switchToDisplayScreen(DisplayScreen.IP_ADDRESS);
-                            else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button1))
-                                switchToDisplayScreen(DisplayScreen.TEMPERATURE);
-                            else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button2))
-                                switchToDisplayScreen(DisplayScreen.BAROMETER_TEMPERATURE);
-                            else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button3))
-                                switchToDisplayScreen(DisplayScreen.BAROMETER_PRESSURE);
-                            else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button4))
-                                switchToDisplayScreen(DisplayScreen.BAROMETER_ALTITUDE);
-                            else
-                                switchToDisplayScreen(DisplayScreen.UNKNOWN);
-                        } else {
-                            Tools.debug("New signal received but not decoded: " + newSignal, Tools.Color.ANSI_BLUE);
-                        }
-                    }
+            irReceiver.addSignalListener(newSignal -> {
+                if(!running)
+                    return;
+                IRSignal signalDecoded = irReceiver.decodeIRSignal(irProtocol, newSignal);
+                if(signalDecoded != null) {
+                    Tools.debug("New signal received and decoded: " + signalDecoded.getName(), Tools.Color.ANSI_BLUE);
+                    if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button0))
+                        switchToDisplayScreen(DisplayScreen.IP_ADDRESS);
+                    else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button1))
+                        switchToDisplayScreen(DisplayScreen.TEMPERATURE);
+                    else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button2))
+                        switchToDisplayScreen(DisplayScreen.BAROMETER_TEMPERATURE);
+                    else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button3))
+                        switchToDisplayScreen(DisplayScreen.BAROMETER_PRESSURE);
+                    else if(signalDecoded.equals(IRProtocolSunfounderMediaRemote.button4))
+                        switchToDisplayScreen(DisplayScreen.BAROMETER_ALTITUDE);
+                    else
+                        switchToDisplayScreen(DisplayScreen.UNKNOWN);
+                } else {
+                    Tools.debug("New signal received but not decoded: " + newSignal, Tools.Color.ANSI_BLUE);
                 }
-            }).start();
+            });
+            irReceiver.startCapture();
             
             Tools.debug("IR receiver enabled.", Tools.Color.ANSI_RED);
         }
         
         if(config.thermistorEnabled()) {
-            thermistor = new ThermistorNTCLE203E3103SB0(pcf8591Nb1, PCF8591InputChannel.CHANNEL_0);
+            thermistor = new ThermistorNTCLE203E3103SB0(pcf8591Nb1Sampler, PCF8591InputChannel.CHANNEL_0);
+            thermistor.setSmoothing(AveragingFilter.Mode.EXPONENTIAL, THERMISTOR_SMOOTHING_SHIFT);
             Tools.debug("Thermistor enabled.", Tools.Color.ANSI_RED);
             
             new Thread(() -> {
                     while(!stopped) {
                         if(running) {
-                            thermistorTemperature = thermistor.getTemperature();
+                            thermistorTemperature = thermistor.getSmoothedTemperature();
                         }
                         Tools.sleepMilliseconds(500);
                     }
@@ -315,50 +399,21 @@ public class RobotPOC {
             barometer = new BarometerBMP180();
             Tools.debug("Barometer enabled.", Tools.Color.ANSI_RED);
             
-            new Thread(() -> {
-                    int sampling = 5;
-                    while(!stopped) {
-                        if(running && (currentDisplayScreen == DisplayScreen.BAROMETER_TEMPERATURE
-                                || currentDisplayScreen == DisplayScreen.BAROMETER_PRESSURE
-                                || currentDisplayScreen == DisplayScreen.BAROMETER_ALTITUDE)) {
-                            double[] temperatures = new double[sampling];
-                            int[] pressures = new int[sampling];
-                            double[] altitudes = new double[sampling];
-                            
-                            for(int i = 0; i < sampling; i++) {
-                                temperatures[i] = barometer.calculateTrueTemperature();
-                                pressures[i] = barometer.calculateTruePressure();
-                                altitudes[i] = barometer.calculateAbsoluteAltitude();
-                                Tools.sleepMilliseconds(100);
-                            }
-                            
-                            double temperature = 0;
-                            double pressure = 0;
-                            double altitude = 0;
-                            for(int i = 0; i < sampling; i++) {
-                                temperature += temperatures[i];
-                                pressure += pressures[i];
-                                altitude += altitudes[i];
-                            }
-                            
-                            barometerTemperature = temperature / sampling;
-                            barometerPressure = pressure / sampling;
-                            barometerAltitude = altitude / sampling;
-                            
-                            Tools.debug("Barometer data: (temperature)" + barometerTemperature + 
-                                    " (pressure)" + barometerPressure + " (altitude)" + barometerAltitude);
-                        } else {
-                            Tools.sleepMilliseconds(100);
-                        }
-                    }
-                }).start();
+            // The measures are read on the i2c shared scheduler, only when a barometer screen is displayed
+            // (see switchToDisplayScreen). Values are averaged by the driver on BAROMETER_SAMPLING successive measures.
+            barometer.setAveraging(AveragingFilter.Mode.WINDOW, BAROMETER_SAMPLING);
+            barometer.addMeasureListener((temperature, pressure) -> {
+                barometerTemperature = temperature;
+                barometerPressure = pressure;
+                barometerAltitude = BarometerBMP180.pressureToAltitude(pressure);
+            });
         }
         
         if(config.passiveBuzzerEnabled())
             buzzer = new PassiveBuzzer(pca9685, PCA9685Channel.CHANNEL_00);
         
         if(config.photoresistorEnabled()) {
-            photoresistor = new Photoresistor(pcf8591Nb1, PCF8591InputChannel.CHANNEL_1);
+            photoresistor = new Photoresistor(pcf8591Nb1Sampler, PCF8591InputChannel.CHANNEL_1);
             LEDPWM pwmLED = new LEDPWM(pca9685, PCA9685Channel.CHANNEL_04);
             
             new Thread(() -> {
@@ -376,14 +431,13 @@ public class RobotPOC {
         }
         
         if(config.soundSensorEnabled()) {
-            soundSensor = new SoundSensor(pcf8591Nb1, PCF8591InputChannel.CHANNEL_2);
-            new Thread(() -> {
-                while(true) {
-                    if(soundSensor.getIntensity() > 70)
-                        Tools.log("Clap detected");
-                    Tools.sleepMilliseconds(100);
-                }
-            }).start();
+            soundSensor = new SoundSensor(pcf8591Nb1Sampler, PCF8591InputChannel.CHANNEL_2);
+            // claps are shorter than any polling period: they are detected on each sample of the sampler
+            pcf8591Nb1Sampler.addThresholdListener(PCF8591InputChannel.CHANNEL_2, SOUND_CLAP_THRESHOLD,
+                    (channel, value, rising) -> {
+                        if(rising)
+                            Tools.log("Clap detected");
+                    });
         }
         
         if(config.NXTEnabled()) {
@@ -392,18 +446,19 @@ public class RobotPOC {
         
         // Joystick WebSocket server
         Router joystickRouter = new Router();
-        joystickRouter.addRouteWithParams("joystick_camera", 2, inputArgs -> {
+        ParamType[] joystickParams = {ParamType.INTEGER, ParamType.INTEGER};
+        joystickRouter.addRouteWithTypedParams("joystick_camera", joystickParams, inputArgs -> {
             if(config.cameraSupportEnabled()) {
-                this.newCameraSupportPosition(Integer.valueOf(inputArgs[0]), Integer.valueOf(inputArgs[1]));
+                this.newCameraSupportPosition(inputArgs.getInt(0), inputArgs.getInt(1));
                 return "New joystick position received.";
             } else {
                 return "Camera support disabled.";
             }
         });
-        joystickRouter.addRouteWithParams("joystick_robot_motors", 2, inputArgs -> {
+        joystickRouter.addRouteWithTypedParams("joystick_robot_motors", joystickParams, inputArgs -> {
             if(config.NXTEnabled()) {
-                int x = joystickValueToNXTMotorPower(Integer.valueOf(inputArgs[0]));
-                int y = joystickValueToNXTMotorPower(Integer.valueOf(inputArgs[1]));
+                int x = joystickValueToNXTMotorPower(inputArgs.getInt(0));
+                int y = joystickValueToNXTMotorPower(inputArgs.getInt(1));
                 int powerLeft = 0;
                 int powerRight = 0;
                 if(x >= 0 && y >= 0) {
@@ -447,17 +502,23 @@ public class RobotPOC {
             return "";
         });
         // joystick_router will work better on a message like server, to be sure no requests are not correctly received.
-        new MessageLikeSocketServer(5, NetworkUtilities.getAvailablePort(), joystickRouter).start();
+        // The joystick updates can also be sent as fire-and-forget commands, in binary frames.
+        MessageLikeSocketServer joystickServer = new MessageLikeSocketServer(5, NetworkUtilities.bindServerSocket(ROBOT_FIRST_PORT, ROBOT_LAST_PORT, 5), joystickRouter);
+        joystickServer.addMessageType(JOYSTICK_CAMERA_MESSAGE_TYPE, "joystick_camera");
+        joystickServer.addMessageType(JOYSTICK_ROBOT_MOTORS_MESSAGE_TYPE, "joystick_robot_motors");
+        joystickServer.start();
             
         // Main router
         Router mainRouter = new Router();
         
         Pushbullet pushbullet = new Pushbullet("<your_access_token>", "RaspoidPOC", mainRouter);
-        new SocketServer(5, NetworkUtilities.getAvailablePort(), mainRouter).start();
+        new SocketServer(5, NetworkUtilities.bindServerSocket(ROBOT_FIRST_PORT, ROBOT_LAST_PORT, 5), mainRouter).start();
         
         mainRouter.addRoute("temperature", () -> String.format(Locale.US,"%.2f", thermistor.getTemperature()) + "°C");
         mainRouter.addRoute("thanks", () -> "You're welcome");
-        mainRouter.addRoute("takePicture", () -> {
+        // the camera is slow: the pictures are taken on a dedicated thread, without holding the servers threads
+        cameraExecutor = Executors.newSingleThreadExecutor(Tools.daemonThreadFactory("raspoid-camera"));
+        mainRouter.addRouteOnExecutor("takePicture", 0, cameraExecutor, CAMERA_TIMEOUT, args -> {
             Picture picture = CameraPi.takePicture();
             Tools.log("PICTURE: " + picture);
             pushbullet.sendNewFile(picture.getFilePath(), picture.getConfig().getOutputFilenameWithExtension(), "image/jpeg", null);
@@ -465,6 +526,8 @@ public class RobotPOC {
         
         // To execute on exit
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            cameraExecutor.shutdownNow();
+            
             // clear screen
             if(refreshScreen) {
                 refreshScreen = false;
@@ -517,7 +580,7 @@ public class RobotPOC {
             angle = maxAngle;
         else if(angle < minAngle)
             angle = minAngle;
-        servo1.setAngle(angle);
+        cameraSupportEngine.moveTo(servo1, angle);
     }
     
     /**
@@ -537,7 +600,7 @@ public class RobotPOC {
             angle = maxAngle;
         else if(angle < minAngle)
             angle = minAngle;
-        servo2.setAngle(angle);
+        cameraSupportEngine.moveTo(servo2, angle);
     }
     
     /**
@@ -617,7 +680,7 @@ public class RobotPOC {
         case TEMPERATURE:
             if(thermistor != null)
                 message = String.format(Locale.US,"%.2f", thermistorTemperature) + (char)223 + "C";
-            lcdDisplay.writeTextRightAlign(1, " " + message);
+            updateLcdLine(1, message, false);
             break;
         case BAROMETER_TEMPERATURE:
             if(barometer != null)
@@ -639,65 +702,72 @@ public class RobotPOC {
         }
     }
     
+    /**
+     * Updates a line of the display. Only the characters that changed are sent to the display.
+     * @param lineNb the line to update.
+     * @param text the new content of the line.
+     * @param leftAlign true to align the text on the left, false to align it on the right.
+     */
     private void updateLcdLine(int lineNb, String text, boolean leftAlign) {
-        if(text.length() > LCM1602.NB_COL) {
-            text = text.substring(0, LCM1602.NB_COL);
-        } else {
-            String comp = "";
-            for(int i = 0; i < LCM1602.NB_COL - text.length(); i++)
-                comp += " ";
-            if(leftAlign)
-                text += comp;
-            else
-                text = comp + text;
-        }
-        
-        lcdDisplay.writeText(lineNb, 0, text);
+        lcdDisplay.bufferLine(lineNb, text, leftAlign);
+        lcdDisplay.flush();
     }
     
     private void switchToDisplayScreen(DisplayScreen targetScreen) {
         refreshScreen = false; // ensure no update will be made during the switch of screen
-        lcdDisplay.clearDisplay();
+        lcdDisplay.clearFrameBuffer();
         this.currentDisplayScreen = targetScreen;
         
+        if(barometer != null) {
+            boolean barometerScreen = targetScreen == DisplayScreen.BAROMETER_TEMPERATURE
+                    || targetScreen == DisplayScreen.BAROMETER_PRESSURE
+                    || targetScreen == DisplayScreen.BAROMETER_ALTITUDE;
+            if(barometerScreen && !barometer.continuousMeasuresRunning())
+                barometer.startContinuousMeasures(BAROMETER_MEASURES_PERIOD);
+            else if(!barometerScreen)
+                barometer.stopContinuousMeasures();
+        }
+        
         switch(currentDisplayScreen) {
         case IP_ADDRESS:
-            lcdDisplay.writeText(0, 0, "IP address:");
+            lcdDisplay.bufferText(0, 0, "IP address:");
             updateDisplayScreen();
             sleepBetweenScreenRefreshes = 5000;
             refreshScreen = true;
             break;
         case TEMPERATURE:
-            lcdDisplay.writeText(0, 0, "Temperature:");
+            lcdDisplay.bufferText(0, 0, "Temperature:");
             updateDisplayScreen();
             sleepBetweenScreenRefreshes = 200;
             refreshScreen = true;
             break;
         case BAROMETER_TEMPERATURE:
-            lcdDisplay.writeText(0, 0, "Barometer T" + (char)223 + ":");
+            lcdDisplay.bufferText(0, 0, "Barometer T" + (char)223 + ":");
             updateDisplayScreen();
             sleepBetweenScreenRefreshes = 500;
             refreshScreen = true;
             break;
         case BAROMETER_PRESSURE:
-            lcdDisplay.writeText(0, 0, "Barometer P:");
+            lcdDisplay.bufferText(0, 0, "Barometer P:");
             updateDisplayScreen();
             sleepBetweenScreenRefreshes = 500;
             refreshScreen = true;
             break;
         case BAROMETER_ALTITUDE:
-            lcdDisplay.writeText(0, 0, "Barometer Alt.:");
+            lcdDisplay.bufferText(0, 0, "Barometer Alt.:");
             updateDisplayScreen();
             sleepBetweenScreenRefreshes = 500;
             refreshScreen = true;
             break;
         case UNKNOWN:
-            lcdDisplay.writeText(0, 0, "Unknown signal");
-            lcdDisplay.writeText(1, 0, "received");
+            lcdDisplay.bufferText(0, 0, "Unknown signal");
+            lcdDisplay.bufferText(1, 0, "received");
+            lcdDisplay.flush();
             refreshScreen = false;
             break;
         default:
-            lcdDisplay.writeText(0, 0, "ERROR 875");
+            lcdDisplay.bufferText(0, 0, "ERROR 875");
+            lcdDisplay.flush();
             refreshScreen = false;
             break;
         }
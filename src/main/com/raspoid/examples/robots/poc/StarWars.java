@@ -47,12 +47,17 @@ public class StarWars {
     private StarWars() {
     }
     
+    /**
+     * Starts a tone, without waiting for its end (as the Arduino tone() function).
+     * <p>Each tone is followed by a delay 1ms longer than the tone: the tone is finished
+     * before the next one starts.</p>
+     */
     private static void tone(PassiveBuzzer buzzer, double note, double millis) {
         buzzer.playTone(note, (int) millis);
     }
     
     private static void delay(double millis) {
-        Tools.sleepMilliseconds((long) millis/1000);
+        Tools.sleepMilliseconds((long) millis);
     }
     
     /**
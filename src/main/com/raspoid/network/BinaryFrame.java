@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>Binary frame of the {@link MessageLikeSocketServer}: many commands (or responses) in one message.</b>
+ * 
+ * <p>A binary frame is a message whose length field has its highest bit set
+ * (the text messages have a positive length): the flag is combined with the payload length,
+ * in one 4 bytes big-endian field (<code>0x80000000 | payload_length</code>).</p>
+ * 
+ * <pre>
+ * ----------------------------------------------------------------------
+ * | 0x80000000 OR payload_length (4 bytes) | command | command | ... |
+ * ----------------------------------------------------------------------
+ * </pre>
+ * 
+ * <p>Each command has the following format (a varint is an unsigned LEB128 integer, 1 byte up to 127):</p>
+ * 
+ * <pre>
+ * -----------------------------------------------------------------------------------------
+ * | flags (1 byte) | type_id (varint) | request_id (varint, if a response is expected)      |
+ * | nb_args (varint) | arg_type (1 byte) | arg_value | arg_type (1 byte) | arg_value | ... |
+ * -----------------------------------------------------------------------------------------
+ * </pre>
+ * 
+ * <ul>
+ *  <li>flags: {@link #FLAG_NO_RESPONSE} for a fire-and-forget command (no response is sent back),</li>
+ *  <li>type_id: the id of the message type, mapped to a route of the router
+ *  ({@link MessageLikeSocketServer#addMessageType(int, String)}),</li>
+ *  <li>request_id: an id chosen by the client, copied in the response,</li>
+ *  <li>arg_type and arg_value: {@link #ARG_INT} (zigzag varint), {@link #ARG_DOUBLE} (8 bytes),
+ *  {@link #ARG_BOOLEAN} (1 byte) or {@link #ARG_STRING} (varint length and UTF-8 bytes).</li>
+ * </ul>
+ * 
+ * <p>The responses to the commands of a frame are sent back in one binary frame, in the same order.
+ * Each response has the following format:</p>
+ * 
+ * <pre>
+ * ----------------------------------------------------------------------------------------
+ * | status (1 byte) | request_id (varint) | response_length (varint) | response (UTF-8) |
+ * ----------------------------------------------------------------------------------------
+ * </pre>
+ * 
+ * <p>A joystick update (two small ints) then costs about 12 bytes, and many updates can be sent
+ * in one frame, without waiting for any response.</p>
+ * 
+ * <p>This class is used to build the frames (on the client side, or for the responses),
+ * and to decode them.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BinaryFrame {
+    
+    /**
+     * Bit set in the length field of a binary frame.
+     */
+    public static final int BINARY_FRAME_FLAG = 0x80000000;
+    
+    /**
+     * Flag of a fire-and-forget command (no response is sent back).
+     */
+    public static final int FLAG_NO_RESPONSE = 0x01;
+    
+    /**
+     * Types of the arguments.
+     */
+    public static final int ARG_INT = 0;
+    public static final int ARG_DOUBLE = 1;
+    public static final int ARG_BOOLEAN = 2;
+    public static final int ARG_STRING = 3;
+    
+    /**
+     * Status of the responses.
+     */
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_INVALID = 1;
+    public static final int STATUS_FAILED = 2;
+    
+    /**
+     * Content of the frame (without the length field).
+     */
+    private ByteBuffer payload = ByteBuffer.allocate(64);
+    
+    private int nbEntries = 0;
+    
+    /**
+     * Adds a command expecting a response to the frame.
+     * @param typeId the id of the message type.
+     * @param requestId the id of the request, copied in the response.
+     * @param args the arguments (Integer, Long, Double, Float, Boolean or String values).
+     * @return this frame.
+     */
+    public BinaryFrame command(int typeId, int requestId, Object... args) {
+        put((byte) 0);
+        putVarint(typeId);
+        putVarint(requestId);
+        putArgs(args);
+        return this;
+    }
+    
+    /**
+     * Adds a fire-and-forget command to the frame (no response is sent back).
+     * @param typeId the id of the message type.
+     * @param args the arguments (Integer, Long, Double, Float, Boolean or String values).
+     * @return this frame.
+     */
+    public BinaryFrame fireAndForget(int typeId, Object... args) {
+        put((byte) FLAG_NO_RESPONSE);
+        putVarint(typeId);
+        putArgs(args);
+        return this;
+    }
+    
+    /**
+     * Adds a response to the frame.
+     * @param status the status of the response ({@link #STATUS_OK}, {@link #STATUS_INVALID} or {@link #STATUS_FAILED}).
+     * @param requestId the id of the request.
+     * @param response the response, or the explanation of the error.
+     * @return this frame.
+     */
+    public BinaryFrame response(int status, int requestId, String response) {
+        put((byte) status);
+        putVarint(requestId);
+        putString(response);
+        nbEntries++;
+        return this;
+    }
+    
+    /**
+     * Get the number of commands or responses in the frame.
+     * @return the number of entries.
+     */
+    public int getNbEntries() {
+        return nbEntries;
+    }
+    
+    /**
+     * Get the complete frame, with its length field.
+     * @return a new buffer containing the frame (ready to be written).
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer frame = ByteBuffer.allocate(4 + payload.position());
+        frame.putInt(BINARY_FRAME_FLAG | payload.position());
+        frame.put(payload.array(), 0, payload.position());
+        frame.flip();
+        return frame;
+    }
+    
+    private void putArgs(Object[] args) {
+        putVarint(args.length);
+        for(Object arg : args) {
+            if(arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+                put((byte) ARG_INT);
+                long value = ((Number) arg).longValue();
+                putVarint((value << 1) ^ (value >> 63)); // zigzag encoding
+            } else if(arg instanceof Double || arg instanceof Float) {
+                put((byte) ARG_DOUBLE);
+                ensureCapacity(8);
+                payload.putDouble(((Number) arg).doubleValue());
+            } else if(arg instanceof Boolean) {
+                put((byte) ARG_BOOLEAN);
+                put((byte) ((Boolean) arg ? 1 : 0));
+            } else if(arg instanceof String) {
+                put((byte) ARG_STRING);
+                putString((String) arg);
+            } else
+                throw new IllegalArgumentException("Unsupported argument type: " + arg);
+        }
+        nbEntries++;
+    }
+    
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        payload.put(bytes);
+    }
+    
+    private void putVarint(long value) {
+        while((value & ~0x7FL) != 0) {
+            put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        put((byte) value);
+    }
+    
+    private void put(byte value) {
+        ensureCapacity(1);
+        payload.put(value);
+    }
+    
+    private void ensureCapacity(int nbBytes) {
+        if(payload.remaining() < nbBytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(payload.capacity() * 2, payload.position() + nbBytes));
+            payload.flip();
+            bigger.put(payload);
+            payload = bigger;
+        }
+    }
+    
+    /**
+     * Decodes the commands of a binary frame.
+     * @param payload the payload of the frame (without the length field).
+     * @return the list of commands.
+     * @throws IllegalArgumentException if the frame is malformed.
+     */
+    static List<BinaryCommand> decodeCommands(ByteBuffer payload) {
+        List<BinaryCommand> commands = new ArrayList<>();
+        try {
+            while(payload.hasRemaining()) {
+                int flags = payload.get();
+                boolean noResponse = (flags & FLAG_NO_RESPONSE) != 0;
+                int typeId = getVarintInt(payload, "type id");
+                int requestId = noResponse ? 0 : getVarintInt(payload, "request id");
+                int nbArgs = getVarintInt(payload, "number of arguments");
+                if(nbArgs > payload.remaining())
+                    throw new IllegalArgumentException("Invalid number of arguments: " + nbArgs);
+                Object[] args = new Object[nbArgs];
+                for(int i = 0; i < nbArgs; i++)
+                    args[i] = getArg(payload);
+                commands.add(new BinaryCommand(typeId, noResponse, requestId, args));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary frame.", e);
+        }
+        return commands;
+    }
+    
+    private static Object getArg(ByteBuffer payload) {
+        int type = payload.get();
+        switch(type) {
+            case ARG_INT:
+                long value = getVarint(payload);
+                value = (value >>> 1) ^ -(value & 1); // zigzag decoding
+                if(value == (int) value)
+                    return (int) value;
+                return value;
+            case ARG_DOUBLE:
+                return payload.getDouble();
+            case ARG_BOOLEAN:
+                return payload.get() != 0;
+            case ARG_STRING:
+                int length = getVarintInt(payload, "string length");
+                if(length > payload.remaining())
+                    throw new IllegalArgumentException("Invalid string length: " + length);
+                byte[] bytes = new byte[length];
+                payload.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            default:
+                throw new IllegalArgumentException("Unknown argument type: " + type);
+        }
+    }
+    
+    private static long getVarint(ByteBuffer payload) {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            byte b = payload.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Invalid varint.");
+    }
+    
+    /**
+     * Reads a varint which must fit in a non negative int (ids, counts and lengths).
+     * @param payload the payload, positioned on the varint.
+     * @param name the name of the value, for the error message.
+     * @return the value read.
+     * @throws IllegalArgumentException if the value is negative or doesn't fit in an int.
+     */
+    private static int getVarintInt(ByteBuffer payload, String name) {
+        long value = getVarint(payload);
+        if(value < 0 || value > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        return (int) value;
+    }
+    
+    /**
+     * This class represents a command decoded from a binary frame.
+     */
+    static class BinaryCommand {
+        
+        private final int typeId;
+        private final boolean noResponse;
+        private final int requestId;
+        private final Object[] args;
+        
+        /**
+         * Constructor for a decoded command.
+         * @param typeId the id of the message type.
+         * @param noResponse true for a fire-and-forget command.
+         * @param requestId the id of the request (0 for a fire-and-forget command).
+         * @param args the decoded arguments.
+         */
+        BinaryCommand(int typeId, boolean noResponse, int requestId, Object[] args) {
+            this.typeId = typeId;
+            this.noResponse = noResponse;
+            this.requestId = requestId;
+            this.args = args;
+        }
+        
+        int getTypeId() {
+            return typeId;
+        }
+        
+        boolean isNoResponse() {
+            return noResponse;
+        }
+        
+        int getRequestId() {
+            return requestId;
+        }
+        
+        Object[] getArgs() {
+            return args;
+        }
+        
+        @Override
+        public String toString() {
+            return typeId + Arrays.toString(args);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+import com.raspoid.Tools;
+
+/**
+ * <b>This class represents a connection with a client connected to a {@link SocketServer}.</b>
+ * 
+ * <p>The I/O of the connection are done by the event loop thread of the server:
+ * the responses sent with {@link #send(byte[])} are queued, and written as soon as the socket is writable.</p>
+ * 
+ * <p>The tasks of a connection ({@link #execute(Runnable)}) are executed by the worker threads of the server,
+ * in order and one at a time: the responses are then sent back in the order of the requests.
+ * An asynchronous task ({@link #executeAsync(Supplier)}) releases its worker thread immediately,
+ * and the next task of the connection starts when its completion stage completes.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class ClientConnection {
+    
+    private final SocketServer server;
+    
+    private final SocketChannel channel;
+    
+    private final SelectionKey key;
+    
+    /**
+     * Buffer of the received bytes (only accessed by the event loop thread).
+     */
+    private ByteBuffer input;
+    
+    /**
+     * Queue of the buffers to write.
+     */
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Queue of the tasks to execute, and guard value marking when a worker is executing them.
+     */
+    private final Deque<Supplier<CompletionStage<?>>> tasks = new ArrayDeque<>();
+    private boolean taskRunning = false;
+    
+    /**
+     * Protocol state attached to the connection by the server (only accessed by the event loop thread).
+     */
+    private Object attachment = null;
+    
+    private volatile long lastActivity;
+    private volatile boolean closeRequested = false;
+    private volatile boolean closed = false;
+    
+    /**
+     * Constructor for a new connection with a client.
+     * @param server the server.
+     * @param channel the socket channel of the client.
+     * @param key the selection key of the channel.
+     * @param input the buffer used to read the bytes received from the client.
+     */
+    ClientConnection(SocketServer server, SocketChannel channel, SelectionKey key, ByteBuffer input) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.input = input;
+        this.lastActivity = System.currentTimeMillis();
+    }
+    
+    /**
+     * Sends bytes to the client. This method returns immediately: the bytes are written by the event loop thread.
+     * @param bytes the bytes to send.
+     */
+    public void send(byte[] bytes) {
+        send(ByteBuffer.wrap(bytes));
+    }
+    
+    /**
+     * Sends the remaining bytes of a buffer to the client. This method returns immediately:
+     * the bytes are written by the event loop thread.
+     * @param buffer the buffer to send (must not be modified after this call).
+     */
+    public void send(ByteBuffer buffer) {
+        if(closed)
+            return;
+        output.add(buffer);
+        server.notifyPendingWrite(this);
+    }
+    
+    /**
+     * Closes the connection once all the queued bytes have been written.
+     */
+    public void closeAfterWrite() {
+        closeRequested = true;
+        server.notifyPendingWrite(this);
+    }
+    
+    /**
+     * Executes a task on the worker threads of the server, after the previous tasks of this connection.
+     * @param task the task to execute.
+     */
+    public void execute(Runnable task) {
+        executeAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+    
+    /**
+     * Executes an asynchronous task on the worker threads of the server, after the previous tasks of this connection.
+     * <p>The worker thread is released as soon as the task returns, and the next task of this connection
+     * is only started when the returned completion stage completes.</p>
+     * @param task the task to execute, returning its completion stage (or null if the task is already complete).
+     */
+    public void executeAsync(Supplier<CompletionStage<?>> task) {
+        synchronized(tasks) {
+            tasks.add(task);
+            if(taskRunning)
+                return;
+            taskRunning = true;
+        }
+        server.getWorkers().execute(this::runTasks);
+    }
+    
+    private void runTasks() {
+        while(true) {
+            Supplier<CompletionStage<?>> task;
+            synchronized(tasks) {
+                task = tasks.poll();
+                if(task == null) {
+                    taskRunning = false;
+                    return;
+                }
+            }
+            CompletionStage<?> stage = null;
+            try {
+                stage = task.get();
+            } catch (RuntimeException e) {
+                Tools.log("Error when handling a request: " + e.getMessage(), Tools.Color.ANSI_RED);
+            }
+            if(stage != null && !stage.toCompletableFuture().isDone()) {
+                // the next tasks will be executed once this one completes, on a worker thread
+                stage.whenComplete((result, error) -> {
+                    if(!closed)
+                        server.getWorkers().execute(this::runTasks);
+                });
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Checks if the connection is closed.
+     * @return true if the connection is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+    
+    /**
+     * Checks if the connection has tasks to execute, or bytes to write.
+     * @return true if the connection is busy.
+     */
+    boolean isBusy() {
+        synchronized(tasks) {
+            if(taskRunning)
+                return true;
+        }
+        return !output.isEmpty();
+    }
+    
+    /**
+     * Updates the time of the last activity of the connection.
+     */
+    void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+    
+    long getLastActivity() {
+        return lastActivity;
+    }
+    
+    boolean isCloseRequested() {
+        return closeRequested;
+    }
+    
+    /**
+     * Marks the connection as closed (the channel is closed by the server).
+     */
+    void close() {
+        closed = true;
+        output.clear();
+        synchronized(tasks) {
+            tasks.clear();
+        }
+    }
+    
+    Object getAttachment() {
+        return attachment;
+    }
+    
+    void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+    
+    SocketChannel getChannel() {
+        return channel;
+    }
+    
+    SelectionKey getKey() {
+        return key;
+    }
+    
+    ByteBuffer getInput() {
+        return input;
+    }
+    
+    void setInput(ByteBuffer input) {
+        this.input = input;
+    }
+    
+    Queue<ByteBuffer> getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * <b>Incremental parser of HTTP/1.1 requests.</b>
+ * 
+ * <p>The parser keeps its state from one call to another: a request can be received in many parts
+ * (partial reads), and many requests can be received at once (pipelining).
+ * The request line and the headers are parsed line by line (CRLF or LF terminated lines), and the body
+ * is read according to the <code>Content-Length</code> header, or decoded if the
+ * <code>Transfer-Encoding</code> is <code>chunked</code>.</p>
+ * 
+ * <p>After a malformed request, or after a request closing the connection ({@link #discard()}),
+ * the parser ignores all the following bytes.</p>
+ * 
+ * <p>One parser is used per connection, by the event loop thread of the {@link SocketServer}.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+class HttpRequestParser {
+    
+    /**
+     * Methods recognized at the beginning of an HTTP request.
+     */
+    private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"};
+    
+    /**
+     * Maximum length of a line (request line, header or chunk size), in bytes.
+     */
+    private static final int MAX_LINE_LENGTH = 8192;
+    
+    /**
+     * Maximum total length of the request line and the headers (or of the trailers) of a request, in bytes.
+     */
+    private static final int MAX_HEADERS_LENGTH = 16384;
+    
+    private enum State {
+        REQUEST_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS, DISCARD
+    }
+    
+    private final int maxBodySize;
+    
+    private State state = State.REQUEST_LINE;
+    
+    /**
+     * The request being parsed (null between two requests).
+     */
+    private HttpRequest request = null;
+    
+    private ByteArrayOutputStream body = null;
+    
+    /**
+     * Number of bytes remaining in the body, or in the current chunk.
+     */
+    private int remaining = 0;
+    
+    /**
+     * Length of the request line and headers (or trailers) read for the request being parsed.
+     */
+    private int headersLength = 0;
+    
+    /**
+     * Constructor for a new parser.
+     * @param maxBodySize the maximum size of the body of a request, in bytes.
+     */
+    HttpRequestParser(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+    
+    /**
+     * Checks if some bytes are the beginning of an HTTP request.
+     * @param input the bytes (ready to be read, not consumed).
+     * @return 1 if the bytes start with an HTTP method, 0 if more bytes are needed to decide, -1 otherwise.
+     */
+    static int startsLikeHttp(ByteBuffer input) {
+        int undecided = -1;
+        for(String method : METHODS) {
+            int length = Math.min(method.length() + 1, input.remaining());
+            boolean match = true;
+            for(int i = 0; i < length && match; i++) {
+                char expected = i < method.length() ? method.charAt(i) : ' ';
+                match = input.get(input.position() + i) == expected;
+            }
+            if(match) {
+                if(length == method.length() + 1)
+                    return 1;
+                undecided = 0;
+            }
+        }
+        return undecided;
+    }
+    
+    /**
+     * Parses the next request from the received bytes.
+     * <p>The consumed bytes are removed from the input. The bytes of an incomplete line
+     * are left in the input, and the next call continues the parsing.</p>
+     * @param input the received bytes (ready to be read).
+     * @return the next complete request, or null if more bytes are needed (or if the bytes are ignored).
+     * @throws IllegalArgumentException if the request is malformed or too long. The following bytes are then ignored.
+     */
+    HttpRequest parse(ByteBuffer input) {
+        try {
+            return parseNext(input);
+        } catch (IllegalArgumentException e) {
+            discard();
+            input.position(input.limit());
+            throw e;
+        }
+    }
+    
+    /**
+     * Ignores all the following bytes (e.g. after a request closing the connection).
+     */
+    void discard() {
+        state = State.DISCARD;
+        request = null;
+        body = null;
+    }
+    
+    /**
+     * Checks if the parser ignores all the following bytes.
+     * @return true if the following bytes are ignored.
+     */
+    boolean isDiscarding() {
+        return state == State.DISCARD;
+    }
+    
+    private HttpRequest parseNext(ByteBuffer input) {
+        while(true) {
+            switch(state) {
+                case REQUEST_LINE: {
+                    String line = readLine(input);
+                    if(line == null)
+                        return null;
+                    if(line.isEmpty())
+                        continue; // empty lines are allowed before a request
+                    headersLength = 0;
+                    countHeaderLine(line);
+                    parseRequestLine(line);
+                    state = State.HEADERS;
+                    break;
+                }
+                case HEADERS: {
+                    String line = readLine(input);
+                    if(line == null)
+                        return null;
+                    if(!line.isEmpty()) {
+                        countHeaderLine(line);
+                        parseHeader(line);
+                        break;
+                    }
+                    // end of the headers
+                    if("chunked".equalsIgnoreCase(request.getHeader("transfer-encoding"))) {
+                        body = new ByteArrayOutputStream();
+                        state = State.CHUNK_SIZE;
+                    } else if(request.getHeader("content-length") != null) {
+                        remaining = parseLength(request.getHeader("content-length").trim(), 10);
+                        body = new ByteArrayOutputStream(remaining);
+                        state = State.BODY;
+                    } else {
+                        return completeRequest();
+                    }
+                    break;
+                }
+                case BODY:
+                    readBody(input);
+                    if(remaining > 0)
+                        return null;
+                    return completeRequest();
+                case CHUNK_SIZE: {
+                    String line = readLine(input);
+                    if(line == null)
+                        return null;
+                    int extension = line.indexOf(';');
+                    remaining = parseLength((extension >= 0 ? line.substring(0, extension) : line).trim(), 16);
+                    if(remaining == 0) {
+                        headersLength = 0;
+                        state = State.TRAILERS;
+                    } else {
+                        state = State.CHUNK_DATA;
+                    }
+                    break;
+                }
+                case CHUNK_DATA:
+                    readBody(input);
+                    if(remaining > 0)
+                        return null;
+                    state = State.CHUNK_DATA_END;
+                    break;
+                case CHUNK_DATA_END: {
+                    String line = readLine(input);
+                    if(line == null)
+                        return null;
+                    if(!line.isEmpty())
+                        throw new IllegalArgumentException("Invalid end of chunk.");
+                    state = State.CHUNK_SIZE;
+                    break;
+                }
+                case TRAILERS: {
+                    String line = readLine(input);
+                    if(line == null)
+                        return null;
+                    if(line.isEmpty())
+                        return completeRequest();
+                    countHeaderLine(line);
+                    break; // trailers are ignored
+                }
+                case DISCARD:
+                    input.position(input.limit());
+                    return null;
+                default:
+                    throw new IllegalStateException("Unknown state: " + state);
+            }
+        }
+    }
+    
+    private void countHeaderLine(String line) {
+        headersLength += line.length() + 2;
+        if(headersLength > MAX_HEADERS_LENGTH)
+            throw new IllegalArgumentException("Headers too long.");
+    }
+    
+    private void parseRequestLine(String line) {
+        String[] parts = line.split(" ");
+        if(parts.length != 3 || !parts[2].startsWith("HTTP/"))
+            throw new IllegalArgumentException("Invalid request line: " + line);
+        request = new HttpRequest(parts[0], parts[1], parts[2]);
+    }
+    
+    private void parseHeader(String line) {
+        int separator = line.indexOf(':');
+        if(separator <= 0)
+            throw new IllegalArgumentException("Invalid header: " + line);
+        request.headers.put(line.substring(0, separator).trim().toLowerCase(Locale.ROOT), line.substring(separator + 1).trim());
+    }
+    
+    private int parseLength(String value, int radix) {
+        long length;
+        try {
+            length = Long.parseLong(value, radix);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid length: " + value, e);
+        }
+        if(length < 0)
+            throw new IllegalArgumentException("Invalid length: " + value);
+        if(length + (body == null ? 0 : body.size()) > maxBodySize)
+            throw new IllegalArgumentException("Request body too long.");
+        return (int) length;
+    }
+    
+    private void readBody(ByteBuffer input) {
+        int length = Math.min(remaining, input.remaining());
+        if(input.hasArray()) {
+            body.write(input.array(), input.arrayOffset() + input.position(), length);
+            input.position(input.position() + length);
+        } else {
+            for(int i = 0; i < length; i++)
+                body.write(input.get());
+        }
+        remaining -= length;
+    }
+    
+    private HttpRequest completeRequest() {
+        HttpRequest complete = request;
+        if(body != null)
+            complete.body = body.toByteArray();
+        request = null;
+        body = null;
+        state = State.REQUEST_LINE;
+        return complete;
+    }
+    
+    /**
+     * Reads a line terminated by LF (the CR before the LF is removed).
+     * @param input the received bytes.
+     * @return the line, or null if the input doesn't contain a complete line (nothing is then consumed).
+     */
+    private static String readLine(ByteBuffer input) {
+        int start = input.position();
+        for(int i = start; i < input.limit(); i++) {
+            if(input.get(i) == '\n') {
+                int end = i > start && input.get(i - 1) == '\r' ? i - 1 : i;
+                byte[] line = new byte[end - start];
+                input.get(line);
+                input.position(i + 1);
+                return new String(line, StandardCharsets.ISO_8859_1);
+            }
+        }
+        if(input.remaining() > MAX_LINE_LENGTH)
+            throw new IllegalArgumentException("Line too long.");
+        return null;
+    }
+    
+    /**
+     * This class represents an HTTP request received by the socket server.
+     */
+    static class HttpRequest {
+        
+        private static final byte[] NO_BODY = new byte[0];
+        
+        private final String method;
+        private final String target;
+        private final String version;
+        
+        /**
+         * Headers of the request (lower case names).
+         */
+        final Map<String, String> headers = new HashMap<>();
+        
+        byte[] body = NO_BODY;
+        
+        /**
+         * Constructor for a new HTTP request.
+         * @param method the method of the request (GET, POST, ...).
+         * @param target the target of the request (path and query).
+         * @param version the HTTP version of the request (HTTP/1.1, ...).
+         */
+        HttpRequest(String method, String target, String version) {
+            this.method = method;
+            this.target = target;
+            this.version = version;
+        }
+        
+        String getMethod() {
+            return method;
+        }
+        
+        /**
+         * Get the path of the request, without the query.
+         * @return the path of the request.
+         */
+        String getPath() {
+            int query = target.indexOf('?');
+            return query >= 0 ? target.substring(0, query) : target;
+        }
+        
+        /**
+         * Get the value of a header.
+         * @param name the lower case name of the header.
+         * @return the value of the header, or null if the request doesn't contain this header.
+         */
+        String getHeader(String name) {
+            return headers.get(name);
+        }
+        
+        byte[] getBody() {
+            return body;
+        }
+        
+        /**
+         * Checks if the connection must be kept open after the response
+         * (default for HTTP/1.1, on demand for HTTP/1.0).
+         * @return true if the connection must be kept open.
+         */
+        boolean isKeepAlive() {
+            String connection = getHeader("connection");
+            if("HTTP/1.0".equals(version))
+                return "keep-alive".equalsIgnoreCase(connection);
+            return !"close".equalsIgnoreCase(connection);
+        }
+    }
+}
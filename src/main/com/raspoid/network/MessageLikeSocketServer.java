@@ -18,15 +18,21 @@
  ******************************************************************************/
 package com.raspoid.network;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.raspoid.Tools;
 import com.raspoid.examples.network.MessageLikeSocketServerExample;
-import com.raspoid.exceptions.RaspoidException;
+import com.raspoid.network.BinaryFrame.BinaryCommand;
 
 /**
  * <b>This server is used to provide (if needed) a message-like support on top of a socket server.</b>
@@ -46,7 +52,15 @@ import com.raspoid.exceptions.RaspoidException;
  * -------------------------------------------
  * </pre>
  * 
- * <p>You can then easily decode received TCP packets and decode corresponding messages.</p>
+ * <p>You can then easily decode received TCP packets and decode corresponding messages.
+ * An empty message (payload_length = 0) is ignored: it can be used to keep the connection alive.</p>
+ * 
+ * <p>A compact binary mode is also available: a {@link BinaryFrame binary frame} (length field with
+ * its highest bit set) contains many commands, identified by message type ids
+ * ({@link #addMessageType(int, String)}), with binary arguments given to the routes without any parsing
+ * (see {@link Router#addRouteWithTypedParams(String, Router.ParamType[], Router.ResponseWithTypedParams)}).
+ * The commands can be fire-and-forget (no response is sent back). High rate commands (e.g. a joystick
+ * at 100 Hz) then cost a few bytes each, and no round trip.</p>
  * 
  * <p>This server must be linked to a {@link Router}.</p>
  * 
@@ -56,20 +70,26 @@ import com.raspoid.exceptions.RaspoidException;
  * @version 1.0
  */
 public class MessageLikeSocketServer extends SocketServer {
-        
+    
+    /**
+     * Routes corresponding to the message type ids of the binary frames.
+     */
+    private final Map<Integer, String> messageTypes = new ConcurrentHashMap<>();
+    
     /**
      * Constructor for a message-like socket server using the specified Router
      * and with the following parameter values:
      * <ul>
      *  <li>Maximum number of connections: 5</li>
-     *  <li>Port number: Network.getAvailablePort()</li>
+     *  <li>Port number: {@link NetworkUtilities#DEFAULT_PREFERRED_PORT}, or a port chosen by the system
+     *  if not available</li>
      * </ul>
-     * @see NetworkUtilities#getAvailablePort()
+     * @see NetworkUtilities#bindServerSocket(int)
      * 
      * @param router the Raspoid router to use with this server.
      */
     public MessageLikeSocketServer(Router router) {
-        this(5, NetworkUtilities.getAvailablePort(), router);
+        this(5, NetworkUtilities.bindServerSocket(5), router);
     }
     
     /**
@@ -83,122 +103,158 @@ public class MessageLikeSocketServer extends SocketServer {
         super(maxNbOfConnections, port, router);
     }
     
-    @Override
-    protected void newThreadToDealWithClient(Socket client) {
-        new Thread(new MessageLikeSocketConnectionWithClient(router, client)).start();
+    /**
+     * Constructor for a message-like socket server using a server socket already bound
+     * (e.g. with {@link NetworkUtilities#bindServerSocket(int, int, int)}).
+     * 
+     * @param maxNbOfConnections the maximum number of parallel connections allowed on this server.
+     * @param server the bound server socket to use with this server.
+     * @param router the Raspoid router to use with this server.
+     */
+    public MessageLikeSocketServer(int maxNbOfConnections, ServerSocketChannel server, Router router) {
+        super(maxNbOfConnections, server, router);
     }
     
-    @Override
-    protected void printServerLaunchedMessage() {
-        Tools.log("A Raspoid Message Like Server is launched on port " + port +
-                ".\nYou can access it with one of the following ip addresses:\n" + 
-                "\t127.0.0.1 (localhost)", Tools.Color.ANSI_GREEN); // NOSONAR
-        for(String ipAddress : serverIpAddresses)
-            Tools.log("\t" + ipAddress, Tools.Color.ANSI_GREEN);
+    /**
+     * Maps a message type id of the binary frames to a route of the router.
+     * @param typeId the message type id.
+     * @param route the route corresponding to this message type.
+     */
+    public void addMessageType(int typeId, String route) {
+        if(typeId < 0)
+            throw new IllegalArgumentException("The message type id can't be negative.");
+        messageTypes.put(typeId, route);
     }
-}
-
-/**
- * This class represents a connection with a client,
- * connected to the message like socket server.
- */
-class MessageLikeSocketConnectionWithClient implements Runnable {
-    private Router router;
-    private Socket client;
-    private DataInputStream inputStream;
-    private DataOutputStream outputStream;
     
     /**
-     * Constructor for a new connection with a client.
-     * 
-     * @param router the Raspoid router used by the server, for this client.
-     * @param client the Socket of the client connected to the server.
+     * Decodes the complete messages received from a client. The bytes of an incomplete message
+     * are kept in the input buffer until the end of the message is received.
+     * <p>An empty message is ignored, and a message too long closes the connection.</p>
      */
-    public MessageLikeSocketConnectionWithClient(Router router, Socket client) {
-        this.router = router;
-        this.client = client;
-        
-        try {
-            inputStream = new DataInputStream(client.getInputStream());
-            outputStream = new DataOutputStream(client.getOutputStream());
-        } catch (IOException e) {
-            throw new RaspoidException("An I/O error occured when creating the input "
-                    + "stream. The socket is closed, the socket is not connected, "
-                    + "or the socket input has been shutdown using shutdownInput()", e);
-        }
-    }
-
     @Override
-    public void run() {
-        // while the connection is up, we deal with requests
-        while(!client.isClosed()) {
-            // we wait a request from the client
-            String request = waitForRequest();
-            if(request == null) {
-                closeSocketWithClient();
-                break;
+    protected void decodeRequests(ClientConnection connection, ByteBuffer input) {
+        while(input.remaining() >= 4) {
+            int lengthField = input.getInt(input.position());
+            boolean binary = (lengthField & BinaryFrame.BINARY_FRAME_FLAG) != 0;
+            int length = lengthField & ~BinaryFrame.BINARY_FRAME_FLAG;
+            if(length > MAX_REQUEST_SIZE - 4) {
+                Tools.debug("Message-like server: message too long, connection closed.");
+                input.position(input.limit());
+                connection.closeAfterWrite();
+                return;
             }
+            if(input.remaining() < 4 + length)
+                return; // incomplete message
             
-            String[] splittedRequest = request.split("/");
-            
-            String route = splittedRequest[0];
-            String[] params = null;
-            if(splittedRequest.length > 1) {
-                int nbOfParams = splittedRequest.length - 1;
-                params = new String[nbOfParams];
-                for(int i = 0; i < nbOfParams; i++)
-                    params[i] = splittedRequest[i + 1];
-            }
+            input.getInt();
+            if(length == 0)
+                continue;
             
-            // we ask for a response from the router
-            boolean validRequest = router.routeIsValid(route, params);
-            String response = router.getResponse(route, params);
-            
-            // we send back the response to client
-            try {
-                if(!validRequest) {
-                    Tools.log("The following received request was not understood: " + request);
-                } else {
-                    byte[] message;
-                    message = response.getBytes("UTF-8");
-                    outputStream.writeInt(message.length);
-                    outputStream.write(message);
-                    outputStream.flush();
+            if(binary) {
+                ByteBuffer payload = input.slice();
+                payload.limit(length);
+                input.position(input.position() + length);
+                List<BinaryCommand> commands;
+                try {
+                    commands = BinaryFrame.decodeCommands(payload);
+                } catch (IllegalArgumentException e) {
+                    Tools.debug("Message-like server: invalid binary frame (" + e.getMessage() + "), connection closed.");
+                    input.position(input.limit());
+                    connection.closeAfterWrite();
+                    return;
                 }
-            } catch (IOException e) {
-                throw new RaspoidException("Error when writing on output stream", e);
+                connection.executeAsync(() -> handleBinaryFrame(connection, commands));
+            } else {
+                byte[] message = new byte[length];
+                input.get(message);
+                String request = new String(message, StandardCharsets.UTF_8);
+                connection.executeAsync(() -> handleMessage(connection, request));
             }
         }
     }
     
     /**
-     * Close the connection with the client.
+     * Handles the commands of a binary frame: gets the responses from the Router, and sends them back
+     * to the client in one binary frame, once they are all available.
+     * <p>This method is executed by a worker thread.</p>
+     * @param connection the connection with the client.
+     * @param commands the decoded commands.
+     * @return the completion stage of the responses.
      */
-    private void closeSocketWithClient() {
-        try {
-            inputStream = null;
-            outputStream = null;
-            client.close();
-        } catch (IOException e) {
-            throw new RaspoidException("An I/O error occurs when closing the client socket.", e);
+    private CompletionStage<?> handleBinaryFrame(ClientConnection connection, List<BinaryCommand> commands) {
+        List<CompletableFuture<String>> responses = new ArrayList<>(commands.size());
+        for(int i = 0; i < commands.size(); i++) {
+            BinaryCommand command = commands.get(i);
+            String route = messageTypes.get(command.getTypeId());
+            CompletableFuture<String> response = null;
+            if(route != null) {
+                try {
+                    response = router.getResponseIfValidAsync(route, command.getArgs());
+                } catch (RuntimeException e) {
+                    response = new CompletableFuture<>();
+                    response.completeExceptionally(e);
+                }
+            }
+            if(response == null) {
+                Tools.log("The following received binary command was not understood: " + command);
+                response = CompletableFuture.completedFuture(null);
+            }
+            responses.add(response);
         }
+        
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).handle((result, error) -> {
+            BinaryFrame frame = new BinaryFrame();
+            for(int i = 0; i < responses.size(); i++) {
+                BinaryCommand command = commands.get(i);
+                if(command.isNoResponse())
+                    continue;
+                try {
+                    String response = responses.get(i).join();
+                    if(response == null)
+                        frame.response(BinaryFrame.STATUS_INVALID, command.getRequestId(), "Sorry, we can't understand your request.");
+                    else
+                        frame.response(BinaryFrame.STATUS_OK, command.getRequestId(), response);
+                } catch (CompletionException | CancellationException e) {
+                    frame.response(BinaryFrame.STATUS_FAILED, command.getRequestId(),
+                            "The request failed: " + Router.getFailureCause(e).getMessage());
+                }
+            }
+            if(frame.getNbEntries() > 0)
+                connection.send(frame.toByteBuffer());
+            return null;
+        });
     }
     
     /**
-     * Wait for a new request from the client, and parse this request.
-     * @return the String request from the client or null if the end of the stream has been reached.
+     * Handles a message: gets the response from the Router, and sends it back to the client
+     * once it is available.
+     * <p>This method is executed by a worker thread.</p>
+     * @param connection the connection with the client.
+     * @param request the request.
+     * @return the completion stage of the response.
      */
-    private String waitForRequest() {
-        try {
-            int length = inputStream.readInt();
-            if(length>0) {
-                byte[] message = new byte[length];
-                inputStream.readFully(message, 0, length); // read the message
-                return new String(message, 0, length, StandardCharsets.UTF_8);
+    private CompletionStage<?> handleMessage(ClientConnection connection, String request) {
+        return getRouterResponse(request).whenComplete((response, error) -> {
+            // we send back the response to client
+            if(error != null) {
+                Tools.log("The following request failed: " + request + " (" + Router.getFailureCause(error).getMessage() + ")");
+            } else if(!response.getLeft()) {
+                Tools.log("The following received request was not understood: " + request);
+            } else {
+                byte[] message = response.getRight().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer packet = ByteBuffer.allocate(4 + message.length);
+                packet.putInt(message.length).put(message).flip();
+                connection.send(packet);
             }
-            return null;
-        } catch (IOException e) {
-            throw new RaspoidException("There is a problem when reading bytes from inputStream.", e);
-        }
+        });
+    }
+    
+    @Override
+    protected void printServerLaunchedMessage() {
+        Tools.log("A Raspoid Message Like Server is launched on port " + port +
+                ".\nYou can access it with one of the following ip addresses:\n" + 
+                "\t127.0.0.1 (localhost)", Tools.Color.ANSI_GREEN); // NOSONAR
+        for(String ipAddress : serverIpAddresses)
+            Tools.log("\t" + ipAddress, Tools.Color.ANSI_GREEN);
     }
 }
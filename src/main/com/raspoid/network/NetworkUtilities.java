@@ -20,10 +20,12 @@ package com.raspoid.network;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
-import java.net.ServerSocket;
 import java.net.SocketException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 
@@ -49,6 +51,22 @@ public class NetworkUtilities {
      */
     public static final int MIN_PORT_NUMBER = 0;
     
+    /**
+     * The port tried first when searching an available port (HTTP port, for the browsers).
+     */
+    public static final int DEFAULT_PREFERRED_PORT = 80;
+    
+    /**
+     * Duration during which the list of ip addresses is cached, in ms.
+     */
+    public static final long IP_ADDRESSES_CACHE_DURATION = 60000; // ms
+    
+    /**
+     * Cached list of ip addresses, and time of its last update (ms).
+     */
+    private static List<String> cachedIpAddresses = null;
+    private static long cachedIpAddressesTime = 0;
+    
     /**
      * Private constructor, used to hide the implicit public one.
      */
@@ -57,9 +75,27 @@ public class NetworkUtilities {
     /**
      * Returns a list containing all ip addresses (IPv4 and IPv6) of current host,
      * without any link local or loopback addresses.
+     * <p>The enumeration of the network interfaces is slow: the list is cached
+     * during {@link #IP_ADDRESSES_CACHE_DURATION} ms (see {@link #refreshIpAddresses()}).</p>
      * @return the list of ip addresses for the current host, without link local or loopback addresses.
      */
-    public static List<String> getIpAddresses() {
+    public static synchronized List<String> getIpAddresses() {
+        if(cachedIpAddresses == null || System.currentTimeMillis() - cachedIpAddressesTime > IP_ADDRESSES_CACHE_DURATION) {
+            cachedIpAddresses = Collections.unmodifiableList(enumerateIpAddresses());
+            cachedIpAddressesTime = System.currentTimeMillis();
+        }
+        return cachedIpAddresses;
+    }
+    
+    /**
+     * Clears the cached list of ip addresses (e.g. after a change of network): the next call to
+     * {@link #getIpAddresses()} enumerates the network interfaces again.
+     */
+    public static synchronized void refreshIpAddresses() {
+        cachedIpAddresses = null;
+    }
+    
+    private static List<String> enumerateIpAddresses() {
         try {
             ArrayList<String> result = new ArrayList<>();
             Enumeration<NetworkInterface> e = NetworkInterface.getNetworkInterfaces();
@@ -82,16 +118,99 @@ public class NetworkUtilities {
     /**
      * Searches a port number available to launch a new server,
      * or -1 if no port is available.
+     * <p>The {@link #DEFAULT_PREFERRED_PORT} is tried first, then a port is chosen by the system.</p>
+     * <p>The port is closed after the search: another process could use it before the new server.
+     * When possible, use {@link #bindServerSocket(int)} to get a socket already bound.</p>
      * @return a port number available to launch a new server, or -1 if no port available.
      */
     public static int getAvailablePort() {
-        for(int port = 80; port <= MAX_PORT_NUMBER; port++)
-            if(portIsAvailable(port))
-                return port;
-        for(int port = 0; port < 80; port++)
-            if(portIsAvailable(port))
-                return port;
-        return -1;
+        return getAvailablePort(DEFAULT_PREFERRED_PORT, DEFAULT_PREFERRED_PORT);
+    }
+    
+    /**
+     * Searches a port number available to launch a new server, in a preferred range of ports,
+     * or chosen by the system if no port of the range is available.
+     * @param firstPreferredPort the first port of the preferred range.
+     * @param lastPreferredPort the last port of the preferred range.
+     * @return a port number available to launch a new server, or -1 if no port available.
+     * @see #getAvailablePort()
+     */
+    public static int getAvailablePort(int firstPreferredPort, int lastPreferredPort) {
+        try(ServerSocketChannel server = tryToBind(firstPreferredPort, lastPreferredPort, 1)) {
+            return server == null ? -1 : server.socket().getLocalPort();
+        } catch (IOException e) {
+            throw new RaspoidException("Error when closing a server socket.", e);
+        }
+    }
+    
+    /**
+     * Opens a server socket bound to the {@link #DEFAULT_PREFERRED_PORT}, or to a port chosen by the system
+     * if this port is not available.
+     * <p>The socket is bound immediately: unlike {@link #getAvailablePort()}, the port can't be taken
+     * by another process before the server uses it.</p>
+     * @param backlog the maximum number of pending connections.
+     * @return the bound server socket channel (in blocking mode).
+     */
+    public static ServerSocketChannel bindServerSocket(int backlog) {
+        return bindServerSocket(DEFAULT_PREFERRED_PORT, DEFAULT_PREFERRED_PORT, backlog);
+    }
+    
+    /**
+     * Opens a server socket bound to a port of a preferred range of ports,
+     * or to a port chosen by the system if no port of the range is available.
+     * @param firstPreferredPort the first port of the preferred range.
+     * @param lastPreferredPort the last port of the preferred range.
+     * @param backlog the maximum number of pending connections.
+     * @return the bound server socket channel (in blocking mode).
+     * @see #bindServerSocket(int)
+     */
+    public static ServerSocketChannel bindServerSocket(int firstPreferredPort, int lastPreferredPort, int backlog) {
+        ServerSocketChannel server = tryToBind(firstPreferredPort, lastPreferredPort, backlog);
+        if(server == null)
+            throw new RaspoidException("No port available to launch a new server.");
+        return server;
+    }
+    
+    /**
+     * Tries to bind a new server socket to the ports of a preferred range, then to a port chosen by the system.
+     * @param firstPreferredPort the first port of the preferred range.
+     * @param lastPreferredPort the last port of the preferred range.
+     * @param backlog the maximum number of pending connections.
+     * @return the bound server socket channel, or null if no port is available.
+     */
+    private static ServerSocketChannel tryToBind(int firstPreferredPort, int lastPreferredPort, int backlog) {
+        for(int port = Math.max(firstPreferredPort, MIN_PORT_NUMBER + 1); port <= lastPreferredPort && isAValidPortNumber(port); port++) {
+            ServerSocketChannel server = bind(port, backlog);
+            if(server != null)
+                return server;
+        }
+        Tools.debug("No port available in " + firstPreferredPort + ".." + lastPreferredPort + ": the port is chosen by the system.");
+        // port 0: an ephemeral port is chosen by the system
+        return bind(0, backlog);
+    }
+    
+    /**
+     * Opens a new server socket bound to a port.
+     * @param port the port (0 for a port chosen by the system).
+     * @param backlog the maximum number of pending connections.
+     * @return the bound server socket channel, or null if the port is not available.
+     */
+    private static ServerSocketChannel bind(int port, int backlog) {
+        ServerSocketChannel server = null;
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(port), backlog);
+            return server;
+        } catch (IOException e) {
+            if(server != null) {
+                try {
+                    server.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
+            return null;
+        }
     }
     
     /**
@@ -107,28 +226,4 @@ public class NetworkUtilities {
                 portNumber > NetworkUtilities.MIN_PORT_NUMBER;
     }
 
-    /**
-     * Checks if a port is available to launch a new server.
-     * 
-     * @see NetworkUtilities#isAValidPortNumber(int)
-     * 
-     * @param port the port number to check.
-     * @return true if the port is available, false otherwise.
-     */
-    private static boolean portIsAvailable(int port) {
-        if(!isAValidPortNumber(port))
-            return false;
-        
-        ServerSocket server = null;
-        boolean result = false;
-        try {
-            server = new ServerSocket(port);
-            result = true;
-            server.close();
-         } catch (IOException e) {
-             Tools.debug("The port " + port + " is not available to launch a new server. (Related exception: " + e + ")");
-             result = false;
-         }
-        return result;
-    }
 }
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+/**
+ * This class is an abstraction to a pair of values. 
+ * @param <L> the type of the first element of the pair.
+ * @param <R> the type of the second element of the pair.
+ */
+class Pair<L,R> {
+    
+    private final L left;
+    private final R right;
+    
+    /**
+     * Constructor for a pair of values.
+     * @param left the first element of the pair.
+     * @param right the second element of the pair.
+     */
+    public Pair(L left, R right) {
+        this.left = left;
+        this.right = right;
+    }
+    
+    /**
+     * Get the first element of the pair.
+     * @return the first element of the pair.
+     */
+    public L getLeft() { return left; }
+    
+    /**
+     * Get the second element of the pair.
+     * @return the second element of the pair.
+     */
+    public R getRight() { return right; }
+
+    @Override
+    public int hashCode() { return left.hashCode() ^ right.hashCode(); }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Pair))
+          return false;
+      Pair<L, R> pairo = (Pair<L, R>) o;
+      return this.left.equals(pairo.getLeft()) &&
+             this.right.equals(pairo.getRight());
+    }
+}
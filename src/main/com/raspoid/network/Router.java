@@ -18,9 +18,21 @@
  ******************************************************************************/
 package com.raspoid.network;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import com.raspoid.Tools;
 import com.raspoid.exceptions.RaspoidException;
 import com.raspoid.network.pushbullet.Pushbullet;
 
@@ -45,7 +57,16 @@ import com.raspoid.network.pushbullet.Pushbullet;
  *  </ul>
  * </p>
  * 
- * <p>For each route, you can then easily define the response to send back to the client.</p>
+ * <p>For each route, you can then easily define the response to send back to the client.
+ * The parameters of a route can be typed ({@link #addRouteWithTypedParams(String, ParamType[], ResponseWithTypedParams)}):
+ * they are then checked and converted before calling the response.</p>
+ * 
+ * <p>The responses of the slow routes can be asynchronous ({@link #addAsyncRoute(String, int, long, AsyncResponse)}),
+ * or executed by a specific executor ({@link #addRouteOnExecutor(String, int, Executor, long, ResponseWithParams)}),
+ * with a timeout: the servers then don't wait for them.</p>
+ * 
+ * <p>The routes are compiled in a trie when they are added: a request is matched in one pass over
+ * its characters (normalized on the fly), without any regular expression.</p>
  * 
  * <p>Note: a default <code>"hello"</code> route is added to each router.
  * You can then easily test your installation by sending an "hello" request to your server(s).</p>
@@ -59,6 +80,61 @@ public class Router {
     
     private static final Map<String, Integer> RESERVED_COMMANDS = new HashMap<>();
     
+    /**
+     * Number of letters (nodes children) in the routes trie.
+     */
+    private static final int NB_LETTERS = 26;
+    
+    private static final String[] NO_PARAMS = new String[0];
+    
+    /**
+     * Scheduler used for the timeouts of the asynchronous routes
+     * (lazily created, see {@link #getTimeoutScheduler()}).
+     */
+    private static ScheduledExecutorService timeoutScheduler = null;
+    
+    /**
+     * Types of the typed parameters of a route.
+     * @see Router#addRouteWithTypedParams(String, ParamType[], ResponseWithTypedParams)
+     */
+    public enum ParamType {
+        STRING, INTEGER, DOUBLE, BOOLEAN
+    }
+    
+    /**
+     * Node of the routes trie. Each node corresponds to a letter of a normalized route.
+     */
+    private static class Node {
+        private Node[] children = null;
+        
+        /**
+         * The route ending at this node (null if none).
+         */
+        private Response response = null;
+        private ResponseWithParams responseWithParams = null;
+        private int nbParams = 0;
+        
+        /**
+         * Types of the parameters (null if the parameters are not typed).
+         */
+        private ParamType[] paramTypes = null;
+        private ResponseWithTypedParams typedResponse = null;
+        
+        /**
+         * The asynchronous response of the route (null if the route is synchronous).
+         */
+        private AsyncResponse asyncResponse = null;
+        
+        private boolean isRoute() {
+            return response != null || responseWithParams != null;
+        }
+    }
+    
+    /**
+     * Root of the trie containing all the routes, indexed by the letters of their normalized command.
+     */
+    private final Node root = new Node();
+    
     private Map<String, Response> routesWithoutParams = new HashMap<>();
     private Map<String, Pair<Integer, ResponseWithParams>> routesWithParams = new HashMap<>();
     
@@ -81,7 +157,8 @@ public class Router {
      */
     private boolean commandIsAvailable(String command) {
         command = cleanStrRoute(command);
-        if(RESERVED_COMMANDS.containsKey(command) ||
+        if(command.isEmpty() ||
+                RESERVED_COMMANDS.containsKey(command) ||
                 routesWithoutParams.containsKey(command) ||
                 routesWithParams.containsKey(command))
             return false;
@@ -95,9 +172,10 @@ public class Router {
      */
     public void addRoute(String route, Response response) {
         route = cleanStrRoute(route);
-        if(commandIsAvailable(route))
+        if(commandIsAvailable(route)) {
             routesWithoutParams.put(route, response);
-        else
+            insertNode(route).response = response;
+        } else
             throw new RaspoidException("The command '" + route + "' can not be used.");
     }
     
@@ -108,13 +186,202 @@ public class Router {
      * @param response the response to execute when the request will be triggered.
      */
     public void addRouteWithParams(String route, int nbParams, ResponseWithParams response) {
+        addRouteWithParams(route, nbParams, null, response);
+    }
+    
+    /**
+     * Adds a new route WITH typed parameters to the router.
+     * <p>The parameters are converted once, when the request is matched: a request
+     * with a parameter that can't be converted to its type is not valid.</p>
+     * @param route the command corresponding to this route.
+     * @param paramTypes the types of the parameters that form the request.
+     * @param response the response to execute when the request will be triggered.
+     */
+    public void addRouteWithTypedParams(String route, ParamType[] paramTypes, ResponseWithTypedParams response) {
+        ParamType[] types = paramTypes.clone();
+        // this wrapper is only exposed by getRoutesWithParams(): the router converts the parameters itself
+        addRouteWithParams(route, types.length, types, args -> {
+            TypedParams typedParams = TypedParams.convert(types, args);
+            return typedParams == null ? null : response.getResponse(typedParams);
+        });
+        insertNode(cleanStrRoute(route)).typedResponse = response;
+    }
+    
+    private void addRouteWithParams(String route, int nbParams, ParamType[] paramTypes, ResponseWithParams response) {
         route = cleanStrRoute(route);
-        if(commandIsAvailable(route))
+        if(commandIsAvailable(route)) {
             routesWithParams.put(route, new Pair<Integer, ResponseWithParams>(nbParams, response));
-        else
+            Node node = insertNode(route);
+            node.responseWithParams = response;
+            node.nbParams = nbParams;
+            node.paramTypes = paramTypes;
+        } else
             throw new RaspoidException("The command '" + route + "' is already used or is a reserved command.");
     }
     
+    /**
+     * Adds a new asynchronous route to the router, without timeout.
+     * @param route the command corresponding to this route.
+     * @param nbParams the number of parameters that form the request (0 for a route without parameters).
+     * @param response the asynchronous response to execute when the request will be triggered.
+     * @see #addAsyncRoute(String, int, long, AsyncResponse)
+     */
+    public void addAsyncRoute(String route, int nbParams, AsyncResponse response) {
+        addAsyncRoute(route, nbParams, 0, response);
+    }
+    
+    /**
+     * Adds a new asynchronous route to the router.
+     * <p>The response returns a completion stage instead of a String: the servers don't wait for the response,
+     * and send it back to the client when the stage completes. The request fails if the stage completes
+     * exceptionally, or if it doesn't complete before the timeout.</p>
+     * <p>With {@link #getResponse(String, String[])}, the caller waits for the completion of the stage.</p>
+     * @param route the command corresponding to this route.
+     * @param nbParams the number of parameters that form the request (0 for a route without parameters).
+     * @param timeout the maximum duration of the response, in ms (0 for no timeout).
+     * @param response the asynchronous response to execute when the request will be triggered.
+     */
+    public void addAsyncRoute(String route, int nbParams, long timeout, AsyncResponse response) {
+        AsyncResponse timedResponse = args -> invokeAsync(response, args, timeout);
+        if(nbParams == 0)
+            addRoute(route, () -> await(timedResponse.getResponse(NO_PARAMS)));
+        else
+            addRouteWithParams(route, nbParams, args -> await(timedResponse.getResponse(args)));
+        insertNode(cleanStrRoute(route)).asyncResponse = timedResponse;
+    }
+    
+    /**
+     * Adds a new route to the router, with a (blocking) response executed by a specific executor.
+     * <p>The slow responses (hardware, camera, ...) then don't hold the threads of the servers.</p>
+     * @param route the command corresponding to this route.
+     * @param nbParams the number of parameters that form the request (0 for a route without parameters).
+     * @param executor the executor used to execute the response.
+     * @param timeout the maximum duration of the response, in ms (0 for no timeout).
+     * @param response the response to execute when the request will be triggered.
+     */
+    public void addRouteOnExecutor(String route, int nbParams, Executor executor, long timeout, ResponseWithParams response) {
+        addAsyncRoute(route, nbParams, timeout, args -> CompletableFuture.supplyAsync(() -> response.getResponse(args), executor));
+    }
+    
+    /**
+     * Get the scheduler used for the timeouts of the asynchronous routes.
+     * @return the scheduler.
+     */
+    private static synchronized ScheduledExecutorService getTimeoutScheduler() {
+        if(timeoutScheduler == null) {
+            timeoutScheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-router-timeouts"));
+        }
+        return timeoutScheduler;
+    }
+    
+    /**
+     * Invokes an asynchronous response, and applies its timeout.
+     * @param response the asynchronous response.
+     * @param args the parameters values.
+     * @param timeout the maximum duration of the response, in ms (0 for no timeout).
+     * @return the future response, completed exceptionally with a TimeoutException after the timeout.
+     */
+    private static CompletableFuture<String> invokeAsync(AsyncResponse response, String[] args, long timeout) {
+        CompletableFuture<String> future;
+        try {
+            future = response.getResponse(args).toCompletableFuture();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        if(timeout <= 0 || future.isDone())
+            return future;
+        
+        CompletableFuture<String> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = getTimeoutScheduler().schedule(() -> 
+                result.completeExceptionally(new TimeoutException("No response after " + timeout + " ms.")),
+                timeout, TimeUnit.MILLISECONDS);
+        future.whenComplete((value, error) -> {
+            timer.cancel(false);
+            if(error != null)
+                result.completeExceptionally(error);
+            else
+                result.complete(value);
+        });
+        return result;
+    }
+    
+    /**
+     * Waits for an asynchronous response.
+     * @param stage the completion stage of the response.
+     * @return the response, or an explanation if the response failed.
+     */
+    private static String await(CompletionStage<String> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException | CancellationException e) {
+            return "The request failed: " + getFailureCause(e).getMessage();
+        }
+    }
+    
+    /**
+     * Get the cause of the failure of an asynchronous response.
+     * @param error the exception completing the response.
+     * @return the cause of the failure (a TimeoutException if the response took too long).
+     */
+    public static Throwable getFailureCause(Throwable error) {
+        while(error instanceof CompletionException && error.getCause() != null)
+            error = error.getCause();
+        return error;
+    }
+    
+    /**
+     * Get (and create if needed) the node of the trie corresponding to a normalized command.
+     * @param command the normalized command.
+     * @return the node of the command.
+     */
+    private Node insertNode(String command) {
+        Node node = root;
+        for(int i = 0; i < command.length(); i++) {
+            if(node.children == null)
+                node.children = new Node[NB_LETTERS];
+            int index = command.charAt(i) - 'a';
+            if(node.children[index] == null)
+                node.children[index] = new Node();
+            node = node.children[index];
+        }
+        return node;
+    }
+    
+    /**
+     * Finds the route corresponding to a raw command, normalized on the fly (see {@link #cleanStrRoute(String)}).
+     * <p>This method doesn't allocate anything.</p>
+     * @param command the raw command.
+     * @return the node of the route, or null if the command doesn't correspond to any route.
+     */
+    private Node findNode(String command) {
+        Node node = root;
+        boolean empty = true;
+        for(int i = 0; i < command.length(); i++) {
+            int index = letterIndex(command.charAt(i));
+            if(index < 0)
+                continue;
+            if(node.children == null || node.children[index] == null)
+                return null;
+            node = node.children[index];
+            empty = false;
+        }
+        return !empty && node.isRoute() ? node : null;
+    }
+    
+    /**
+     * Get the index of a letter in the trie nodes.
+     * @param c the character.
+     * @return the index of the (case insensitive) letter, or -1 if the character is not a letter.
+     */
+    private static int letterIndex(char c) {
+        if(c >= 'a' && c <= 'z')
+            return c - 'a';
+        if(c >= 'A' && c <= 'Z')
+            return c - 'A';
+        return -1;
+    }
+    
     /**
      * Checks if the route is valid and contains a correspondance in the router.
      * @param route the route to analyze.
@@ -122,23 +389,125 @@ public class Router {
      * @return true if the route is valid. False otherwise.
      */
     public boolean routeIsValid(String route, String[] params) {
-        route = cleanStrRoute(route);
+        Node node = findNode(route);
+        if(node == null)
+            return false;
+        if(params == null || params.length == 0)
+            return node.response != null;
+        return node.responseWithParams != null && node.nbParams == params.length &&
+                (node.paramTypes == null || TypedParams.convert(node.paramTypes, params) != null);
+    }
+    
+    /**
+     * Matches the request and evaluates the response to send back to the client, in one pass.
+     * <p>This method is used by the servers: the route is found without any regular expression
+     * or allocation, and the parameters are checked (and converted) once.</p>
+     * @param route the route to analyze.
+     * @param params the input parameters to use with the route. null if route without parameters.
+     * @return the String representation of the response to send back to the client,
+     * or null if the request is not valid (see {@link #getResponse(String, String[])} for an explanation).
+     */
+    public String getResponseIfValid(String route, String[] params) {
+        Node node = findNode(route);
+        return node == null ? null : evaluate(node, params);
+    }
+    
+    /**
+     * Matches the request and evaluates the response to send back to the client, without waiting
+     * for the asynchronous routes.
+     * <p>The response of a synchronous route is evaluated by the caller thread, and returned as a completed future.</p>
+     * @param route the route to analyze.
+     * @param params the input parameters to use with the route. null if route without parameters.
+     * @return the future response to send back to the client (completed exceptionally if the response failed
+     * or took too long, see {@link #getFailureCause(Throwable)}),
+     * or null if the request is not valid (see {@link #getResponse(String, String[])} for an explanation).
+     */
+    public CompletableFuture<String> getResponseIfValidAsync(String route, String[] params) {
+        Node node = findNode(route);
+        return node == null ? null : evaluateAsync(node, params);
+    }
+    
+    /**
+     * Matches the request and evaluates the response to send back to the client, without waiting
+     * for the asynchronous routes, with parameters already decoded (e.g. from a binary message).
+     * <p>The values of the parameters are given to the typed routes without any conversion to String
+     * (Integer and Long values for INTEGER parameters, Number values for DOUBLE parameters,
+     * Boolean values for BOOLEAN parameters, or String values to convert).
+     * They are converted to String for the other routes.</p>
+     * @param route the route to analyze.
+     * @param args the values of the parameters (empty for a route without parameters).
+     * @return the future response to send back to the client,
+     * or null if the request is not valid (see {@link #getResponseIfValidAsync(String, String[])}).
+     */
+    public CompletableFuture<String> getResponseIfValidAsync(String route, Object[] args) {
+        Node node = findNode(route);
+        if(node == null)
+            return null;
+        if(node.typedResponse != null && args.length > 0) {
+            if(args.length != node.nbParams)
+                return null;
+            String response = evaluateTyped(node, args);
+            return response == null ? null : CompletableFuture.completedFuture(response);
+        }
+        String[] params = new String[args.length];
+        for(int i = 0; i < args.length; i++)
+            params[i] = String.valueOf(args[i]);
+        return evaluateAsync(node, params);
+    }
+    
+    /**
+     * Evaluates the response of a route, without waiting for the asynchronous routes.
+     * @param node the node of the route.
+     * @param params the input parameters to use with the route. null if route without parameters.
+     * @return the future response, or null if the parameters are not valid.
+     */
+    private static CompletableFuture<String> evaluateAsync(Node node, String[] params) {
+        if(node.asyncResponse != null) {
+            int nbParams = params == null ? 0 : params.length;
+            if(nbParams != node.nbParams)
+                return null;
+            return node.asyncResponse.getResponse(params == null ? NO_PARAMS : params).toCompletableFuture();
+        }
+        String response = evaluate(node, params);
+        return response == null ? null : CompletableFuture.completedFuture(response);
+    }
+    
+    /**
+     * Evaluates the response of a route.
+     * @param node the node of the route.
+     * @param params the input parameters to use with the route. null if route without parameters.
+     * @return the response, or null if the parameters are not valid.
+     */
+    private static String evaluate(Node node, String[] params) {
+        String response;
         if(params == null || params.length == 0) {
-            // route without params
-            if(routesWithoutParams.containsKey(route))
-                return true;
+            if(node.response == null)
+                return null;
+            response = node.response.getResponse();
         } else {
-            // route with params needed
-            if(routesWithParams.containsKey(route)) {
-                // we then check the number of received params
-                int expectedNbOfParams = routesWithParams.get(route).getLeft();
-                int receivedNbOfParams = params.length;
-                if(expectedNbOfParams == receivedNbOfParams)
-                    return true;
-            }
+            if(node.responseWithParams == null || node.nbParams != params.length)
+                return null;
+            if(node.typedResponse != null)
+                return evaluateTyped(node, params);
+            response = node.responseWithParams.getResponse(params);
         }
-        
-        return false;
+        return response == null ? "" : response;
+    }
+    
+    /**
+     * Converts the parameters of a typed route, then evaluates its response.
+     * <p>A conversion failure is detected before calling the response: a null response
+     * of the route is then an empty response, as for the other routes.</p>
+     * @param node the node of the typed route.
+     * @param args the raw (String) or decoded values of the parameters.
+     * @return the response, or null if the parameters can't be converted.
+     */
+    private static String evaluateTyped(Node node, Object[] args) {
+        TypedParams typedParams = TypedParams.convert(node.paramTypes, args);
+        if(typedParams == null)
+            return null;
+        String response = node.typedResponse.getResponse(typedParams);
+        return response == null ? "" : response;
     }
     
     /**
@@ -150,35 +519,21 @@ public class Router {
      * @return the String representation of the response to send back to the client.
      */
     public String getResponse(String route, String[] params) {
-        route = cleanStrRoute(route);
-        String response;
+        String response = getResponseIfValid(route, params);
+        if(response != null)
+            return response;
         
-        if(params == null || params.length == 0) {
-            // route without params
-            // we need to check the existance of the route
-            if(routesWithoutParams.containsKey(route))
-                response = routesWithoutParams.get(route).getResponse();
-            else
-                response = "Sorry, but we can't understand your request.";
-        } else {
-            // route with params needed
-            // we need to check the existance of the route
-            if(routesWithParams.containsKey(route)) {
-                // we then check the number of received parameters
-                int expectedNbOfParams = routesWithParams.get(route).getLeft();
-                int receivedNbOfParams = params.length;
-                if(expectedNbOfParams != receivedNbOfParams) {
-                    response = "The number of received paramaters is incorrect for the " + route + 
-                            " route: " + expectedNbOfParams + " expected, " + receivedNbOfParams + " received.";
-                } else {
-                    // the request is valid
-                    response = routesWithParams.get(route).getRight().getResponse(params);
-                }
-            } else
-                response = "Sorry, we can't understand your request.";
-        }
-        
-        return response;
+        // the request is not valid: we explain why
+        Node node = findNode(route);
+        if(params == null || params.length == 0)
+            return "Sorry, but we can't understand your request.";
+        if(node == null || node.responseWithParams == null)
+            return "Sorry, we can't understand your request.";
+        if(node.nbParams != params.length)
+            return "The number of received paramaters is incorrect for the " + cleanStrRoute(route) + 
+                    " route: " + node.nbParams + " expected, " + params.length + " received.";
+        return "The received parameters are incorrect for the " + cleanStrRoute(route) + 
+                " route: " + Arrays.toString(node.paramTypes) + " expected.";
     }
     
     /**
@@ -228,64 +583,163 @@ public class Router {
     }
     
     /**
-     * Returns a new String corresponding to the clean version of the input one.
-     * <p>This method:
-     *  <ul>
-     *      <li>removes all non-letter characters,</li>
-     *      <li>folds to lowercase,</li>
-     *      <li>removes all whitespaces and non visible characters such as tab, \n</li>
-     *  </ul>
-     * </p>
-     * @param input the input String to clean.
-     * @return a new String corresponding to the clean version of the input one.
+     * Interface used to represent a response to a request with typed parameters.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
      */
-    private String cleanStrRoute(String input) {
-        return input.replaceAll("[^a-zA-Z ]", "").toLowerCase().trim().replaceAll("\\s+","");
+    @FunctionalInterface
+    public interface ResponseWithTypedParams {
+        
+        /**
+         * Returns the String representation of a response to a request with typed parameters. 
+         * @param args the converted parameters values.
+         * @return the String representation of a response to a request with typed parameters.
+         */
+        String getResponse(TypedParams args);
     }
-}
-
-/**
- * This class is an abstraction to a pair of values. 
- * @param <L> the type of the first element of the pair.
- * @param <R> the type of the second element of the pair.
- */
-class Pair<L,R> {
-    
-    private final L left;
-    private final R right;
     
     /**
-     * Constructor for a pair of values.
-     * @param left the first element of the pair.
-     * @param right the second element of the pair.
+     * Interface used to represent an asynchronous response to a request.
+     * <p><i>[Specific to Java 8: only one method per interface to allow the use of lambda expressions]</i></p>
      */
-    public Pair(L left, R right) {
-        this.left = left;
-        this.right = right;
+    @FunctionalInterface
+    public interface AsyncResponse {
+        
+        /**
+         * Starts the evaluation of a response, and returns immediately.
+         * @param args the parameters values (empty for a route without parameters).
+         * @return the completion stage of the String representation of the response.
+         */
+        CompletionStage<String> getResponse(String[] args);
     }
     
     /**
-     * Get the first element of the pair.
-     * @return the first element of the pair.
+     * The parameters of a request, converted to the types declared with the route.
      */
-    public L getLeft() { return left; }
+    public static class TypedParams {
+        
+        private final Object[] values;
+        
+        private TypedParams(Object[] values) {
+            this.values = values;
+        }
+        
+        /**
+         * Converts the raw parameters of a request.
+         * @param types the types of the parameters.
+         * @param args the raw parameters.
+         * @return the converted parameters, or null if a parameter can't be converted.
+         */
+        private static TypedParams convert(ParamType[] types, Object[] args) {
+            Object[] values = new Object[types.length];
+            for(int i = 0; i < types.length; i++) {
+                values[i] = convertValue(types[i], args[i]);
+                if(values[i] == null)
+                    return null;
+            }
+            return new TypedParams(values);
+        }
+        
+        /**
+         * Converts the value of a parameter.
+         * @param type the type of the parameter.
+         * @param arg the raw (String) or decoded value of the parameter.
+         * @return the converted value, or null if the value can't be converted.
+         */
+        private static Object convertValue(ParamType type, Object arg) {
+            if(arg instanceof String && type != ParamType.STRING) {
+                String value = ((String) arg).trim();
+                try {
+                    switch(type) {
+                        case INTEGER:
+                            return Integer.parseInt(value);
+                        case DOUBLE:
+                            return Double.parseDouble(value);
+                        default:
+                            if(!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value))
+                                return null;
+                            return Boolean.parseBoolean(value);
+                    }
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            switch(type) {
+                case INTEGER:
+                    if(arg instanceof Integer)
+                        return arg;
+                    if(arg instanceof Long && (Long) arg == ((Long) arg).intValue())
+                        return ((Long) arg).intValue();
+                    return null;
+                case DOUBLE:
+                    return arg instanceof Number ? ((Number) arg).doubleValue() : null;
+                case BOOLEAN:
+                    return arg instanceof Boolean ? arg : null;
+                default:
+                    return arg == null ? null : arg.toString();
+            }
+        }
+        
+        /**
+         * Get the number of parameters.
+         * @return the number of parameters.
+         */
+        public int size() {
+            return values.length;
+        }
+        
+        /**
+         * Get a STRING parameter.
+         * @param index the index of the parameter.
+         * @return the value of the parameter.
+         */
+        public String getString(int index) {
+            return values[index].toString();
+        }
+        
+        /**
+         * Get an INTEGER parameter.
+         * @param index the index of the parameter.
+         * @return the value of the parameter.
+         */
+        public int getInt(int index) {
+            return (Integer) values[index];
+        }
+        
+        /**
+         * Get a DOUBLE (or INTEGER) parameter.
+         * @param index the index of the parameter.
+         * @return the value of the parameter.
+         */
+        public double getDouble(int index) {
+            return ((Number) values[index]).doubleValue();
+        }
+        
+        /**
+         * Get a BOOLEAN parameter.
+         * @param index the index of the parameter.
+         * @return the value of the parameter.
+         */
+        public boolean getBoolean(int index) {
+            return (Boolean) values[index];
+        }
+    }
     
     /**
-     * Get the second element of the pair.
-     * @return the second element of the pair.
+     * Returns a new String corresponding to the clean version of the input one.
+     * <p>This method keeps only the letters, folded to lowercase
+     * (all digits, punctuation, whitespaces and non visible characters such as tab, \n are removed).</p>
+     * <p>It is only used when the routes are added: the requests are normalized on the fly,
+     * while walking the routes trie.</p>
+     * @param input the input String to clean.
+     * @return a new String corresponding to the clean version of the input one.
      */
-    public R getRight() { return right; }
-
-    @Override
-    public int hashCode() { return left.hashCode() ^ right.hashCode(); }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public boolean equals(Object o) {
-      if (!(o instanceof Pair))
-          return false;
-      Pair<L, R> pairo = (Pair<L, R>) o;
-      return this.left.equals(pairo.getLeft()) &&
-             this.right.equals(pairo.getRight());
+    private static String cleanStrRoute(String input) {
+        StringBuilder clean = new StringBuilder(input.length());
+        for(int i = 0; i < input.length(); i++) {
+            int index = letterIndex(input.charAt(i));
+            if(index >= 0)
+                clean.append((char) ('a' + index));
+        }
+        return clean.toString();
     }
 }
@@ -18,17 +18,30 @@
  ******************************************************************************/
 package com.raspoid.network;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 
 import com.raspoid.Tools;
 import com.raspoid.examples.network.SocketServerExample;
+import com.raspoid.network.HttpRequestParser.HttpRequest;
 import com.raspoid.exceptions.RaspoidException;
 
 /**
@@ -36,8 +49,20 @@ import com.raspoid.exceptions.RaspoidException;
  * 
  * <p>This server must be linked to a {@link Router}.</p>
  * 
- * <p>Requests can be send as plain text requests or as http get requests.
- * You can then easily use your browser to send requests to this server.</p>
+ * <p>Requests can be send as plain text requests or as HTTP/1.1 requests.
+ * You can then easily use your browser to send requests to this server.
+ * The HTTP connections are kept alive between requests (unless the client asks to close them),
+ * and the requests can be received in many parts, or pipelined.</p>
+ * 
+ * <p>All the connections are served by one event loop thread, using a NIO selector:
+ * the event loop accepts the connections, reads the requests in reusable direct buffers,
+ * and writes the responses. The Router handlers are executed by a small pool of worker threads
+ * (the requests of a same connection are executed in order, one at a time). The responses of the
+ * asynchronous routes are sent back when they complete, without holding a worker thread.
+ * Many clients then cost no thread creation, and no thread blocked on a read.</p>
+ * 
+ * <p>The number of simultaneous connections is limited (the additional connections are closed immediately),
+ * and the connections without activity during the idle timeout are closed.</p>
  * 
  * <p>Example of use: {@link SocketServerExample}</p>
  * 
@@ -47,9 +72,67 @@ import com.raspoid.exceptions.RaspoidException;
 public class SocketServer {
     
     /**
-     * The server socket used for this message-like server.
+     * Default number of worker threads executing the Router handlers.
+     */
+    public static final int DEFAULT_NB_WORKERS = 2;
+    
+    /**
+     * Default idle timeout of the connections, in ms.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT = 60000; // ms
+    
+    /**
+     * Size of the (direct) buffers used to read the requests, in bytes.
+     */
+    static final int BUFFER_SIZE = 4096;
+    
+    /**
+     * Maximum size of a request, in bytes. The connections sending bigger requests are closed.
+     */
+    static final int MAX_REQUEST_SIZE = 65536;
+    
+    /**
+     * Protocol state of the plain text connections.
      */
-    private ServerSocket server;
+    private static final Object PLAIN_TEXT = new Object();
+    
+    /**
+     * Maximum duration of a select, in ms (the idle connections are checked after each select).
+     */
+    private static final int SELECT_TIMEOUT = 1000; // ms
+    
+    /**
+     * The server socket channel used for this server.
+     */
+    private final ServerSocketChannel server;
+    
+    private final Selector selector;
+    
+    private final SelectionKey serverKey;
+    
+    /**
+     * Pool of worker threads, executing the Router handlers.
+     */
+    private final ExecutorService workers;
+    
+    /**
+     * Connections opened with the clients (only accessed by the event loop thread).
+     */
+    private final List<ClientConnection> connections = new ArrayList<>();
+    
+    /**
+     * Connections with new data to write, or to close (filled by the worker threads).
+     */
+    private final Queue<ClientConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Free direct buffers, reused from one connection to another (only accessed by the event loop thread).
+     */
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    
+    private final int maxNbOfConnections;
+    
+    private volatile int idleTimeout = DEFAULT_IDLE_TIMEOUT;
     
     /**
      * List of available ip addresses to access the socket server.
@@ -65,8 +148,8 @@ public class SocketServer {
      * Guard value, used to mark when the server is running.
      * True while the server is running, false otherwise.
      */
-    private boolean running = false;
-    private boolean serverClosed = false;
+    private volatile boolean running = false;
+    private volatile boolean serverClosed = false;
     
     /**
      * The Raspoid Router used by this server.
@@ -79,60 +162,448 @@ public class SocketServer {
      * and with the following parameter values:
      * <ul>
      *  <li>Maximum number of connections: 5</li>
-     *  <li>Port number: Network.getAvailablePort()</li>
+     *  <li>Port number: {@link NetworkUtilities#DEFAULT_PREFERRED_PORT}, or a port chosen by the system
+     *  if not available</li>
      * </ul>
+     * @see NetworkUtilities#bindServerSocket(int)
      * @param router the Raspoid router to use with this socket server.
      */
     public SocketServer(Router router) {
-        this(5, NetworkUtilities.getAvailablePort(), router);
+        this(5, NetworkUtilities.bindServerSocket(5), router);
     }
     
     /**
-     * Constructor for a simple socket server using the specified parameters.
+     * Constructor for a simple socket server using the specified parameters,
+     * and {@link #DEFAULT_NB_WORKERS} worker threads.
      * @param maxNbOfConnections the maximum number of parallel connections allowed on this server.
      * @param port the port to use with this server.
      * @param router the Raspoid router to use with this socket server.
      */
     public SocketServer(int maxNbOfConnections, int port, Router router) {
-        if(!NetworkUtilities.isAValidPortNumber(port))
-            throw new IllegalArgumentException("The port must be between " + NetworkUtilities.MIN_PORT_NUMBER + " and " + NetworkUtilities.MAX_PORT_NUMBER);
+        this(maxNbOfConnections, port, router, DEFAULT_NB_WORKERS);
+    }
+    
+    /**
+     * Constructor for a simple socket server using the specified parameters.
+     * @param maxNbOfConnections the maximum number of parallel connections allowed on this server.
+     * @param port the port to use with this server.
+     * @param router the Raspoid router to use with this socket server.
+     * @param nbWorkers the number of worker threads executing the Router handlers.
+     */
+    public SocketServer(int maxNbOfConnections, int port, Router router, int nbWorkers) {
+        this(maxNbOfConnections, bind(port, maxNbOfConnections), router, nbWorkers);
+    }
+    
+    /**
+     * Constructor for a simple socket server using a server socket already bound
+     * (e.g. with {@link NetworkUtilities#bindServerSocket(int, int, int)}), 
+     * and {@link #DEFAULT_NB_WORKERS} worker threads.
+     * @param maxNbOfConnections the maximum number of parallel connections allowed on this server.
+     * @param server the bound server socket to use with this server.
+     * @param router the Raspoid router to use with this socket server.
+     */
+    public SocketServer(int maxNbOfConnections, ServerSocketChannel server, Router router) {
+        this(maxNbOfConnections, server, router, DEFAULT_NB_WORKERS);
+    }
+    
+    /**
+     * Constructor for a simple socket server using a server socket already bound
+     * (e.g. with {@link NetworkUtilities#bindServerSocket(int, int, int)}).
+     * <p>The port can't be taken by another process between its search and the launch of the server.</p>
+     * @param maxNbOfConnections the maximum number of parallel connections allowed on this server.
+     * @param server the bound server socket to use with this server.
+     * @param router the Raspoid router to use with this socket server.
+     * @param nbWorkers the number of worker threads executing the Router handlers.
+     */
+    public SocketServer(int maxNbOfConnections, ServerSocketChannel server, Router router, int nbWorkers) {
+        if(server == null || server.socket().getLocalPort() <= 0)
+            throw new IllegalArgumentException("The server socket must be bound.");
+        if(maxNbOfConnections <= 0 || nbWorkers <= 0)
+            throw new IllegalArgumentException("The maximum number of connections and the number of workers must be positive.");
         
-        this.port = port;
+        this.server = server;
+        this.port = server.socket().getLocalPort();
         this.router = router;
+        this.maxNbOfConnections = maxNbOfConnections;
         
         try {
-            server = new ServerSocket(port, maxNbOfConnections);
-            run();
+            server.configureBlocking(false);
+            selector = Selector.open();
+            // the connections are only accepted once the server is started
+            serverKey = server.register(selector, 0);
+        } catch (IOException e) {
+            throw new RaspoidException("Error when creating Raspoid server.", e);
+        }
+        
+        workers = Executors.newFixedThreadPool(nbWorkers, Tools.daemonThreadFactory("raspoid-socket-worker"));
+        run();
+    }
+    
+    /**
+     * Opens a new server socket bound to the specified port.
+     * @param port the port to use.
+     * @param backlog the maximum number of pending connections.
+     * @return the bound server socket channel.
+     */
+    private static ServerSocketChannel bind(int port, int backlog) {
+        if(!NetworkUtilities.isAValidPortNumber(port))
+            throw new IllegalArgumentException("The port must be between " + NetworkUtilities.MIN_PORT_NUMBER + " and " + NetworkUtilities.MAX_PORT_NUMBER);
+        try {
+            ServerSocketChannel server = ServerSocketChannel.open();
+            try {
+                server.bind(new InetSocketAddress(port), backlog);
+            } catch (IOException e) {
+                server.close();
+                throw e;
+            }
+            return server;
         } catch (IOException e) {
             throw new RaspoidException("Error when creating Raspoid server.", e);
         }
     }
     
     /**
-     * Starts the Raspoid server in a new Thread.
+     * Starts the event loop of the Raspoid server in a new Thread.
      */
     private void run() {
-        new Thread(() -> {
-            while(!serverClosed) {
-                if(running) {
+        new Thread(this::eventLoop, "raspoid-socket-server").start();
+    }
+    
+    private void eventLoop() {
+        while(!serverClosed) {
+            try {
+                selector.select(SELECT_TIMEOUT);
+            } catch (IOException e) {
+                // the event loop serves all the clients: it must not stop on an error
+                Tools.log("Socket server: an I/O error occurs when waiting for events (" + e.getMessage() + ").", Tools.Color.ANSI_RED);
+                continue;
+            }
+            if(serverClosed)
+                break;
+            
+            if(serverKey.isValid())
+                serverKey.interestOps(running ? SelectionKey.OP_ACCEPT : 0);
+            processPendingWrites();
+            
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if(!key.isValid())
+                    continue;
+                
+                if(key.isAcceptable()) {
+                    accept();
+                } else {
+                    ClientConnection connection = (ClientConnection) key.attachment();
                     try {
-                        // we wait for a connection from a client
-                        Socket client = server.accept();
-                        
-                        // once received, we treat it in a separate thread
-                        newThreadToDealWithClient(client);
+                        if(key.isReadable())
+                            read(connection);
+                        if(key.isValid() && key.isWritable())
+                            write(connection);
                     } catch (IOException e) {
-                        throw new RaspoidException("An I/O error occurs when waiting for a connection.", e);
+                        Tools.debug("Socket server: connection lost (" + e.getMessage() + ").");
+                        closeConnection(connection);
+                    } catch (RuntimeException e) {
+                        // only this connection is closed: the other clients are still served
+                        Tools.log("Socket server: error when handling a connection, connection closed (" + e + ").", Tools.Color.ANSI_RED);
+                        closeConnection(connection);
                     }
-                } else {
-                    Tools.sleepMilliseconds(500);
                 }
             }
-        }).start();
+            
+            closeIdleConnections();
+        }
+        
+        for(ClientConnection connection : new ArrayList<>(connections))
+            closeConnection(connection);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Tools.log("Socket server: error when closing the selector (" + e.getMessage() + ").", Tools.Color.ANSI_RED);
+        }
+    }
+    
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+            if(channel == null)
+                return;
+            if(connections.size() >= maxNbOfConnections) {
+                Tools.debug("Socket server: maximum number of connections reached, connection rejected.");
+                channel.close();
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            ClientConnection connection = new ClientConnection(this, channel, key, acquireBuffer());
+            key.attach(connection);
+            connections.add(connection);
+        } catch (IOException e) {
+            Tools.debug("Socket server: error when accepting a connection (" + e.getMessage() + ").");
+        }
+    }
+    
+    private void read(ClientConnection connection) throws IOException {
+        ByteBuffer input = connection.getInput();
+        if(connection.getChannel().read(input) == -1) {
+            // connection closed by the client
+            closeConnection(connection);
+            return;
+        }
+        connection.touch();
+        
+        input.flip();
+        decodeRequests(connection, input);
+        input.compact();
+        
+        if(!input.hasRemaining()) {
+            // the buffer is full, without a complete request
+            if(input.capacity() >= MAX_REQUEST_SIZE) {
+                Tools.debug("Socket server: request too long, connection closed.");
+                closeConnection(connection);
+                return;
+            }
+            ByteBuffer bigger = ByteBuffer.allocateDirect(input.capacity() * 2);
+            input.flip();
+            bigger.put(input);
+            releaseBuffer(input);
+            connection.setInput(bigger);
+        }
+    }
+    
+    private void write(ClientConnection connection) throws IOException {
+        Queue<ByteBuffer> output = connection.getOutput();
+        ByteBuffer buffer;
+        while((buffer = output.peek()) != null) {
+            connection.getChannel().write(buffer);
+            if(buffer.hasRemaining())
+                return; // the socket buffer is full: we wait for the next OP_WRITE
+            output.poll();
+        }
+        connection.touch();
+        connection.getKey().interestOps(SelectionKey.OP_READ);
+        if(connection.isCloseRequested())
+            closeConnection(connection);
+    }
+    
+    private void processPendingWrites() {
+        ClientConnection connection;
+        while((connection = pendingWrites.poll()) != null) {
+            if(!connection.getKey().isValid())
+                continue;
+            if(!connection.getOutput().isEmpty())
+                connection.getKey().interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            else if(connection.isCloseRequested())
+                closeConnection(connection);
+        }
+    }
+    
+    private void closeIdleConnections() {
+        if(idleTimeout <= 0)
+            return;
+        long now = System.currentTimeMillis();
+        for(int i = connections.size() - 1; i >= 0; i--) {
+            ClientConnection connection = connections.get(i);
+            if(now - connection.getLastActivity() > idleTimeout && !connection.isBusy()) {
+                Tools.debug("Socket server: idle connection closed.");
+                closeConnection(connection);
+            }
+        }
+    }
+    
+    private void closeConnection(ClientConnection connection) {
+        if(!connections.remove(connection))
+            return;
+        connection.close();
+        releaseBuffer(connection.getInput());
+        try {
+            connection.getChannel().close();
+        } catch (IOException e) {
+            Tools.debug("Socket server: an I/O error occurs when closing the client socket (" + e.getMessage() + ").");
+        }
+    }
+    
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    
+    private void releaseBuffer(ByteBuffer buffer) {
+        // the grown buffers are not kept
+        if(buffer.capacity() == BUFFER_SIZE && freeBuffers.size() < maxNbOfConnections) {
+            buffer.clear();
+            freeBuffers.push(buffer);
+        }
+    }
+    
+    /**
+     * Called by a connection when it has new data to write, or when it must be closed.
+     * @param connection the connection.
+     */
+    void notifyPendingWrite(ClientConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+    
+    /**
+     * Get the pool of worker threads executing the Router handlers.
+     * @return the pool of worker threads.
+     */
+    ExecutorService getWorkers() {
+        return workers;
+    }
+    
+    /**
+     * Decodes the requests received from a client.
+     * <p>This method is called by the event loop thread each time new bytes are received: it must return quickly,
+     * and execute the Router handlers on the worker threads ({@link ClientConnection#execute(Runnable)}).
+     * The complete requests must be consumed from the input buffer: the remaining bytes
+     * are kept, and the next received bytes will be appended to them.</p>
+     * <p>With this server, a connection is either an HTTP/1.1 connection (if the first received bytes
+     * start with an HTTP method), or a plain text connection, where each group of received bytes is a request.</p>
+     * @param connection the connection with the client.
+     * @param input the received bytes (ready to be read).
+     */
+    protected void decodeRequests(ClientConnection connection, ByteBuffer input) {
+        if(connection.getAttachment() == null) {
+            int http = HttpRequestParser.startsLikeHttp(input);
+            if(http == 0)
+                return; // we wait for more bytes
+            connection.setAttachment(http > 0 ? new HttpRequestParser(MAX_REQUEST_SIZE) : PLAIN_TEXT);
+        }
+        
+        if(connection.getAttachment() == PLAIN_TEXT) {
+            byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            String request = new String(bytes, StandardCharsets.UTF_8);
+            connection.executeAsync(() -> handlePlainTextRequest(connection, request));
+            return;
+        }
+        
+        HttpRequestParser parser = (HttpRequestParser) connection.getAttachment();
+        try {
+            HttpRequest request;
+            while((request = parser.parse(input)) != null) {
+                HttpRequest httpRequest = request;
+                connection.executeAsync(() -> handleHttpRequest(connection, httpRequest));
+                if(!request.isKeepAlive()) {
+                    // the following bytes, even received later, are ignored
+                    parser.discard();
+                    input.position(input.limit());
+                    break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // the parser ignores the following bytes: the 400 response is the last one
+            Tools.debug("Socket server: invalid HTTP request (" + e.getMessage() + ").");
+            connection.execute(() -> sendHttpResponse(connection, 400, "Bad Request", e.getMessage(), false, false));
+        }
+    }
+    
+    /**
+     * Splits a request in a route and its parameters, gets the response from the Router.
+     * @param request the request (route/param1/param2/...).
+     * @return the future validity of the request, and the response (or the explanation of the error).
+     * The future completes exceptionally if the handler of the route fails.
+     */
+    CompletableFuture<Pair<Boolean, String>> getRouterResponse(String request) {
+        String[] splittedRequest = request.split("/");
+        
+        String route = splittedRequest[0];
+        String[] params = null;
+        if(splittedRequest.length > 1) {
+            int nbOfParams = splittedRequest.length - 1;
+            params = new String[nbOfParams];
+            for(int i = 0; i < nbOfParams; i++)
+                params[i] = splittedRequest[i + 1];
+        }
+        
+        // we ask for a response from the router (matched once, the explanation is only evaluated on errors)
+        try {
+            CompletableFuture<String> response = router.getResponseIfValidAsync(route, params);
+            if(response == null)
+                return CompletableFuture.completedFuture(new Pair<>(false, router.getResponse(route, params)));
+            return response.thenApply(value -> new Pair<>(true, value));
+        } catch (RuntimeException e) {
+            // a synchronous handler failed: the failure is reported as for the asynchronous ones
+            CompletableFuture<Pair<Boolean, String>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
     }
     
-    protected void newThreadToDealWithClient(Socket client) {
-        new Thread(new SocketConnectionWithClient(router, client)).start();
+    /**
+     * Handles a plain text request: gets the response from the Router, and sends it back to the client
+     * once it is available.
+     * <p>This method is executed by a worker thread.</p>
+     * @param connection the connection with the client.
+     * @param request the request.
+     * @return the completion stage of the response.
+     */
+    private CompletionStage<?> handlePlainTextRequest(ClientConnection connection, String request) {
+        return getRouterResponse(request).whenComplete((response, error) -> {
+            // this is not a response to an HTTP request, so we can let the connection open
+            if(error != null)
+                Tools.log("The following request failed: " + request + " (" + Router.getFailureCause(error).getMessage() + ")");
+            else if(!response.getLeft())
+                Tools.log("The following received request was not understood: " + request);
+            else
+                connection.send(response.getRight().getBytes(StandardCharsets.UTF_8));
+        });
+    }
+    
+    /**
+     * Handles an HTTP request: gets the response from the Router, and sends it back to the client
+     * once it is available.
+     * <p>This method is executed by a worker thread.</p>
+     * @param connection the connection with the client.
+     * @param request the HTTP request.
+     * @return the completion stage of the response.
+     */
+    private CompletionStage<?> handleHttpRequest(ClientConnection connection, HttpRequest request) {
+        boolean head = "HEAD".equals(request.getMethod());
+        boolean keepAlive = request.isKeepAlive();
+        String path = request.getPath();
+        return getRouterResponse(path.startsWith("/") ? path.substring(1) : path).whenComplete((response, error) -> {
+            if(error != null) {
+                Throwable cause = Router.getFailureCause(error);
+                if(cause instanceof TimeoutException)
+                    sendHttpResponse(connection, 504, "Gateway Timeout", cause.getMessage(), keepAlive, head);
+                else
+                    sendHttpResponse(connection, 500, "Internal Server Error", "The request failed: " + cause.getMessage(), keepAlive, head);
+            } else if(!response.getLeft())
+                sendHttpResponse(connection, 404, "Not Found", response.getRight(), keepAlive, head);
+            else
+                sendHttpResponse(connection, 200, "OK", response.getRight(), keepAlive, head);
+        });
+    }
+    
+    /**
+     * Sends an HTTP response, with a plain text body.
+     * @param connection the connection with the client.
+     * @param status the status code.
+     * @param reason the reason phrase.
+     * @param content the body of the response.
+     * @param keepAlive true to keep the connection open after the response.
+     * @param head true to send only the headers (response to a HEAD request).
+     */
+    private void sendHttpResponse(ClientConnection connection, int status, String reason, String content, boolean keepAlive, boolean head) {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        byte[] headers = ("HTTP/1.1 " + status + " " + reason + "\r\n" +
+                "Content-Type: text/plain;charset=utf-8\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        
+        ByteBuffer packet = ByteBuffer.allocate(headers.length + (head ? 0 : body.length));
+        packet.put(headers);
+        if(!head)
+            packet.put(body);
+        packet.flip();
+        connection.send(packet);
+        if(!keepAlive)
+            connection.closeAfterWrite();
     }
     
     protected void printServerLaunchedMessage() {
@@ -150,10 +621,11 @@ public class SocketServer {
      * @see #pause()
      */
     public void start() {
-        if(server.isClosed())
+        if(serverClosed)
             Tools.log("The socket server has been closed. You need to create a new one.");
         else {
             running = true;
+            selector.wakeup();
             serverIpAddresses = NetworkUtilities.getIpAddresses();
             printServerLaunchedMessage();
         }
@@ -161,11 +633,12 @@ public class SocketServer {
     
     /**
      * Turns the Raspoid server in a pause mode.
-     * <p>All requests are then rejected. You can use the start() method to relaunch the server.</p>
+     * <p>All new connections are then rejected. You can use the start() method to relaunch the server.</p>
      * @see #start()
      */
     public void pause() {
         running = false;
+        selector.wakeup();
         Tools.debug("Socket server: PAUSE.");
     }
     
@@ -175,6 +648,8 @@ public class SocketServer {
     public void close() {
         running = false;
         serverClosed = true;
+        selector.wakeup();
+        workers.shutdown();
         try {
             server.close();
             Tools.debug("Socket server closed.");
@@ -184,139 +659,43 @@ public class SocketServer {
     }
     
     /**
-     * Get the list of ip addresses linked to this server.
-     * @return the list of ip addresses linked to this server.
+     * Set the idle timeout of the connections: the connections without activity
+     * during this delay are closed (default: {@link #DEFAULT_IDLE_TIMEOUT}).
+     * @param idleTimeout the idle timeout, in ms (0 to never close the idle connections).
      */
-    public List<String> getIpAddresses() {
-        return serverIpAddresses;
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
     }
     
     /**
-     * Get the port used by the server.
-     * @return the port used by the server.
+     * Get the idle timeout of the connections.
+     * @return the idle timeout, in ms (0 if the idle connections are never closed).
      */
-    public int getPort() {
-        return port;
+    public int getIdleTimeout() {
+        return idleTimeout;
     }
-}
-
-/**
- * This class represents a connection with a client
- * connected to the socket server.
- */
-class SocketConnectionWithClient implements Runnable {
-    private Router router;
-    private Socket client;
-    private BufferedInputStream inputStream;
-    private PrintWriter outputStream;
     
     /**
-     * Constructor for a new connection with a client.
-     * @param router the Raspoid router used by the server, for this client.
-     * @param client the Socket of the client connected to the server.
+     * Get the maximum number of parallel connections allowed on this server.
+     * @return the maximum number of parallel connections.
      */
-    public SocketConnectionWithClient(Router router, Socket client) {
-        this.router = router;
-        this.client = client;
-        
-        try {
-            inputStream = new BufferedInputStream(client.getInputStream());
-            outputStream = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
-        } catch (IOException e) {
-            throw new RaspoidException("An I/O error occured when creating the input "
-                    + "stream. The socket is closed, the socket is not connected, "
-                    + "or the socket input has been shutdown using shutdownInput()", e);
-        }
-    }
-
-    @Override
-    public void run() {
-        boolean httpRequest = false;
-        
-        // while the connection is up, we deal with requests
-        while(!client.isClosed()) {
-            // we wait a request from the client
-            String request = waitForRequest();
-            if(request == null) {
-                closeSocketWithClient();
-                break;
-            }
-            
-            // we check if the request is an HTTP GET request
-            String[] splittedRequest = request.split(" ");
-            if("GET".equals(splittedRequest[0])) {
-                httpRequest = true;
-                request = splittedRequest[1].substring(1);
-            }
-            
-            splittedRequest = request.split("/");
-            
-            String route = splittedRequest[0];
-            String[] params = null;
-            if(splittedRequest.length > 1) {
-                int nbOfParams = splittedRequest.length - 1;
-                params = new String[nbOfParams];
-                for(int i = 0; i < nbOfParams; i++)
-                    params[i] = splittedRequest[i + 1];
-            }
-            
-            // we ask for a response from the router
-            boolean validRequest = router.routeIsValid(route, params);
-            String response = router.getResponse(route, params);
-            
-            // we send back the response to client
-            if(httpRequest) {
-                // we need to close the connection after one HTTP request !
-                if(!validRequest) {
-                    outputStream.write("HTTP/1.1 404\nContent-type:text/plain;charset=utf-8\n\n");
-                    if(!"".equals(response))
-                        outputStream.write("\n" + response);
-                } else {
-                    outputStream.write("HTTP/1.1 200\nContent-type:text/plain;charset=utf-8\n\n");
-                    outputStream.write(response);
-                }
-                outputStream.flush();
-                closeSocketWithClient();
-            } else {
-                // this is not a response to an HTTP request, so we can let the connection open
-                if(!validRequest) {
-                    Tools.log("The following received request was not understood: " + request);
-                } else {
-                    outputStream.write(response);
-                    outputStream.flush();
-                }
-            }
-        }
+    public int getMaxNbOfConnections() {
+        return maxNbOfConnections;
     }
     
-    private void closeSocketWithClient() {
-        try {
-            inputStream = null;
-            outputStream = null;
-            client.close();
-        } catch (IOException e) {
-            throw new RaspoidException("An I/O error occurs when closing the client socket.", e);
-        }
+    /**
+     * Get the list of ip addresses linked to this server.
+     * @return the list of ip addresses linked to this server.
+     */
+    public List<String> getIpAddresses() {
+        return serverIpAddresses;
     }
     
     /**
-     * Wait for a new request from the client, and parse this request.
-     * @return the String request from the client or null if the end of the stream has been reached.
+     * Get the port used by the server.
+     * @return the port used by the server.
      */
-    private String waitForRequest() {
-        try {
-            byte[] buffer = new byte[4096];
-            // Reads up to buffer.length bytes of data from the input stream 
-            // into the buffer. This method blocks until some input is available.
-            int bytesRead = inputStream.read(buffer);
-            if(bytesRead == -1) {
-                // There is no more data because the end of the stream has been reached.
-                // connection closed by the client
-                return null;
-            }
-            return new String(buffer, 0, bytesRead, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new RaspoidException("There is a problem when reading bytes from inputStream.", e);
-        }
+    public int getPort() {
+        return port;
     }
 }
@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.websocket.CloseReason;
+import javax.websocket.DeploymentException;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+
+import org.glassfish.tyrus.spi.ServerContainer;
+import org.glassfish.tyrus.spi.ServerContainerFactory;
+
+import com.raspoid.Tools;
+import com.raspoid.examples.network.TelemetryServerExample;
+import com.raspoid.exceptions.RaspoidException;
+
+/**
+ * <b>WebSocket server streaming live sensor data (telemetry) to its clients.</b>
+ * 
+ * <p>The data are organized in channels (e.g. "mpu6050", "brickpi_encoders", "adc").
+ * A new value of a channel is published with {@link #publish(String, double...)}, or sampled
+ * periodically from a source ({@link #addSource(String, int, Supplier)}) while the channel has subscribers.
+ * Instead of polling routes, the clients then receive the new values as soon as they are published.</p>
+ * 
+ * <p>The clients connect to <code>ws://&lt;ip_address&gt;:&lt;port&gt;/telemetry</code>,
+ * and send the following text commands:
+ *  <ul>
+ *      <li><code>subscribe/&lt;channel&gt;</code>: subscribes to a channel (the last value is sent immediately),</li>
+ *      <li><code>unsubscribe/&lt;channel&gt;</code>: unsubscribes from a channel,</li>
+ *      <li><code>rate/&lt;hz&gt;</code>: sets the maximum rate of the updates sent to this client,</li>
+ *      <li><code>channels</code>: asks for the list of the channels.</li>
+ *  </ul>
+ * Each update is sent as a JSON text message: <code>{"channel":"mpu6050","time":1459375200000,"values":[1.5,-0.25,90.0]}</code>.</p>
+ * 
+ * <p>Each update is serialized once, and the same message is sent to all the subscribers.
+ * The updates are coalesced per subscriber: a subscriber receives at most one update per channel
+ * at its maximum rate, and only the last value of a channel is kept while a slow subscriber
+ * is still receiving the previous updates (the stale values are dropped).</p>
+ * 
+ * <p>Example of use: {@link TelemetryServerExample}</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class TelemetryServer {
+    
+    /**
+     * Path of the WebSocket endpoint.
+     */
+    public static final String PATH = "/telemetry";
+    
+    /**
+     * Default maximum rate of the updates sent to a subscriber, in Hz.
+     */
+    public static final int DEFAULT_MAX_RATE = 20; // Hz
+    
+    /**
+     * A channel of telemetry data.
+     */
+    private static class Channel {
+        private final String name;
+        private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        
+        /**
+         * The last update of the channel, serialized (null if no value has been published yet).
+         */
+        private volatile String lastMessage = null;
+        
+        /**
+         * The periodic sampling of the source of the channel (null if the channel has no source).
+         */
+        private ScheduledFuture<?> source = null;
+        
+        private Channel(String name) {
+            this.name = name;
+        }
+    }
+    
+    private final int port;
+    
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    
+    /**
+     * Scheduler used to sample the sources, and to send the coalesced updates.
+     */
+    private final ScheduledExecutorService scheduler;
+    
+    private ServerContainer container = null;
+    
+    /**
+     * Constructor for a telemetry server using the port returned by {@link NetworkUtilities#getAvailablePort()}.
+     */
+    public TelemetryServer() {
+        this(NetworkUtilities.getAvailablePort());
+    }
+    
+    /**
+     * Constructor for a telemetry server using a specific port.
+     * @param port the port to use with this server.
+     */
+    public TelemetryServer(int port) {
+        if(!NetworkUtilities.isAValidPortNumber(port))
+            throw new IllegalArgumentException("The port must be between " + NetworkUtilities.MIN_PORT_NUMBER + " and " + NetworkUtilities.MAX_PORT_NUMBER);
+        this.port = port;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Tools.daemonThreadFactory("raspoid-telemetry"));
+    }
+    
+    /**
+     * Starts the WebSocket server.
+     */
+    public synchronized void start() {
+        if(container != null)
+            return;
+        TelemetryEndpoint endpoint = new TelemetryEndpoint(this);
+        ServerEndpointConfig config = ServerEndpointConfig.Builder.create(TelemetryEndpoint.class, PATH)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(endpoint);
+                    }
+                }).build();
+        try {
+            container = ServerContainerFactory.createServerContainer(null);
+            container.addEndpoint(config);
+            container.start("/", port);
+        } catch (IOException | DeploymentException e) {
+            container = null;
+            throw new RaspoidException("Error when starting the Raspoid telemetry server.", e);
+        }
+        
+        Tools.log("The Raspoid telemetry server is launched: ws://<ip_address>:" + port + PATH +
+                ".\nYou can access it with one of the following ip addresses:\n" + 
+                "\t127.0.0.1 (localhost)", Tools.Color.ANSI_GREEN); // NOSONAR
+        for(String ipAddress : NetworkUtilities.getIpAddresses())
+            Tools.log("\t" + ipAddress, Tools.Color.ANSI_GREEN);
+    }
+    
+    /**
+     * Stops the WebSocket server. The sources keep their configuration, and the server can be restarted.
+     */
+    public synchronized void stop() {
+        if(container != null) {
+            container.stop();
+            container = null;
+            Tools.debug("Telemetry server stopped.");
+        }
+    }
+    
+    /**
+     * Get the port used by the server.
+     * @return the port used by the server.
+     */
+    public int getPort() {
+        return port;
+    }
+    
+    /**
+     * Get the names of the channels of this server.
+     * @return the names of the channels.
+     */
+    public List<String> getChannels() {
+        return new ArrayList<>(channels.keySet());
+    }
+    
+    /**
+     * Publishes a new value of a channel: the value is serialized once, and sent to the subscribers of the channel.
+     * @param channel the name of the channel (letters, digits, '_', '-' and '.').
+     * @param values the values.
+     */
+    public void publish(String channel, double... values) {
+        Channel target = getChannel(channel);
+        
+        StringBuilder message = new StringBuilder(48 + 12 * values.length);
+        message.append("{\"channel\":\"").append(target.name).append("\",\"time\":").append(System.currentTimeMillis())
+               .append(",\"values\":[");
+        for(int i = 0; i < values.length; i++) {
+            if(i > 0)
+                message.append(',');
+            // JSON doesn't support NaN and infinite values
+            if(Double.isNaN(values[i]) || Double.isInfinite(values[i]))
+                message.append("null");
+            else
+                message.append(values[i]);
+        }
+        message.append("]}");
+        target.lastMessage = message.toString();
+        
+        for(Subscriber subscriber : target.subscribers)
+            subscriber.offer(target.name, target.lastMessage);
+    }
+    
+    /**
+     * Adds a source to a channel: the source is sampled periodically, and its values are published,
+     * while the channel has at least one subscriber.
+     * <p>Example: <code>server.addSource("mpu6050", 50, mpu6050::getFilteredAngles);</code></p>
+     * @param channel the name of the channel (letters, digits, '_', '-' and '.').
+     * @param periodMillis the sampling period, in ms.
+     * @param source the source of the values.
+     */
+    public void addSource(String channel, int periodMillis, Supplier<double[]> source) {
+        Channel target = getChannel(channel);
+        synchronized(target) {
+            if(target.source != null)
+                target.source.cancel(false);
+            target.source = scheduler.scheduleAtFixedRate(() -> {
+                if(target.subscribers.isEmpty())
+                    return;
+                try {
+                    publish(target.name, source.get());
+                } catch (RuntimeException e) {
+                    Tools.log("[Telemetry] Error when sampling the '" + target.name + "' channel: " + e.getMessage(), Tools.Color.ANSI_RED);
+                }
+            }, 0, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Removes the source of a channel (if any).
+     * @param channel the name of the channel.
+     */
+    public void removeSource(String channel) {
+        Channel target = channels.get(channel);
+        if(target == null)
+            return;
+        synchronized(target) {
+            if(target.source != null) {
+                target.source.cancel(false);
+                target.source = null;
+            }
+        }
+    }
+    
+    private Channel getChannel(String name) {
+        Channel channel = channels.get(name);
+        if(channel != null)
+            return channel;
+        for(int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if(!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.')
+                throw new IllegalArgumentException("Invalid channel name: " + name);
+        }
+        return channels.computeIfAbsent(name, Channel::new);
+    }
+    
+    /**
+     * Handles a command received from a subscriber.
+     * @param subscriber the subscriber.
+     * @param command the command.
+     */
+    private void handleCommand(Subscriber subscriber, String command) {
+        String[] splittedCommand = command.trim().split("/");
+        switch(splittedCommand[0]) {
+            case "subscribe":
+                if(splittedCommand.length == 2 && channels.containsKey(splittedCommand[1])) {
+                    Channel channel = channels.get(splittedCommand[1]);
+                    channel.subscribers.add(subscriber);
+                    if(channel.lastMessage != null)
+                        subscriber.offer(channel.name, channel.lastMessage);
+                } else
+                    subscriber.sendError("Unknown channel: " + command);
+                break;
+            case "unsubscribe":
+                if(splittedCommand.length == 2 && channels.containsKey(splittedCommand[1]))
+                    channels.get(splittedCommand[1]).subscribers.remove(subscriber);
+                break;
+            case "rate":
+                try {
+                    subscriber.setMaxRate(Double.parseDouble(splittedCommand[1]));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    subscriber.sendError("Invalid rate: " + command);
+                }
+                break;
+            case "channels":
+                StringBuilder list = new StringBuilder("{\"channels\":[");
+                boolean first = true;
+                for(String name : channels.keySet()) {
+                    list.append(first ? "\"" : ",\"").append(name).append('"');
+                    first = false;
+                }
+                subscriber.sendDirectly(list.append("]}").toString());
+                break;
+            default:
+                subscriber.sendError("Unknown command: " + command);
+        }
+    }
+    
+    private void removeSubscriber(Subscriber subscriber) {
+        for(Channel channel : channels.values())
+            channel.subscribers.remove(subscriber);
+    }
+    
+    /**
+     * A client connected to the telemetry server.
+     * <p>The updates waiting to be sent are kept per channel: a new update of a channel replaces the stale one.
+     * One update is sent at a time, and the pending updates are sent at most at the maximum rate of the subscriber.</p>
+     */
+    private class Subscriber {
+        private final Session session;
+        
+        /**
+         * Minimum interval between two sendings of the pending updates, in ms.
+         */
+        private long minInterval = 1000 / DEFAULT_MAX_RATE;
+        
+        /**
+         * Last update of each channel waiting to be sent.
+         */
+        private final Map<String, String> pending = new LinkedHashMap<>();
+        
+        /**
+         * Updates being sent (null if no update is being sent).
+         */
+        private List<String> sending = null;
+        private boolean flushScheduled = false;
+        private long lastFlush = 0;
+        
+        private Subscriber(Session session) {
+            this.session = session;
+        }
+        
+        private synchronized void setMaxRate(double maxRate) {
+            if(Double.isNaN(maxRate) || Double.isInfinite(maxRate) || maxRate <= 0)
+                throw new NumberFormatException("The rate must be a positive finite number.");
+            minInterval = Math.round(1000 / maxRate);
+        }
+        
+        /**
+         * Offers a new update to this subscriber.
+         * @param channel the name of the channel.
+         * @param message the serialized update.
+         */
+        private void offer(String channel, String message) {
+            long delay;
+            synchronized(this) {
+                pending.put(channel, message);
+                if(sending != null || flushScheduled)
+                    return; // the update will be sent with the next flush
+                flushScheduled = true;
+                delay = lastFlush + minInterval - System.currentTimeMillis();
+            }
+            scheduler.schedule(this::flush, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+        
+        /**
+         * Sends the pending updates, one at a time.
+         */
+        private void flush() {
+            synchronized(this) {
+                flushScheduled = false;
+                if(pending.isEmpty() || sending != null)
+                    return;
+                sending = new ArrayList<>(pending.values());
+                pending.clear();
+                lastFlush = System.currentTimeMillis();
+            }
+            sendNext(0);
+        }
+        
+        private void sendNext(int index) {
+            List<String> messages;
+            synchronized(this) {
+                messages = sending;
+            }
+            if(index < messages.size() && session.isOpen()) {
+                session.getAsyncRemote().sendText(messages.get(index), result -> {
+                    if(result.isOK())
+                        sendNext(index + 1);
+                    else
+                        endOfFlush();
+                });
+            } else
+                endOfFlush();
+        }
+        
+        private void endOfFlush() {
+            long delay;
+            synchronized(this) {
+                sending = null;
+                if(pending.isEmpty() || flushScheduled || !session.isOpen())
+                    return;
+                flushScheduled = true;
+                delay = lastFlush + minInterval - System.currentTimeMillis();
+            }
+            scheduler.schedule(this::flush, Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+        
+        private void sendError(String error) {
+            sendDirectly("{\"error\":\"" + error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+        }
+        
+        private void sendDirectly(String message) {
+            if(session.isOpen())
+                session.getAsyncRemote().sendText(message);
+        }
+    }
+    
+    /**
+     * WebSocket endpoint of the telemetry server (one instance for all the sessions).
+     * <p>This class is public to be accessible by the WebSocket container, but can only be created by the server.</p>
+     */
+    public static final class TelemetryEndpoint extends Endpoint {
+        
+        private final TelemetryServer server;
+        
+        private TelemetryEndpoint(TelemetryServer server) {
+            this.server = server;
+        }
+        
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            Subscriber subscriber = server.new Subscriber(session);
+            session.getUserProperties().put(Subscriber.class.getName(), subscriber);
+            session.addMessageHandler(String.class, (String command) -> server.handleCommand(subscriber, command));
+            Tools.debug("[Telemetry] New subscriber: " + session.getId());
+        }
+        
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            Subscriber subscriber = (Subscriber) session.getUserProperties().get(Subscriber.class.getName());
+            if(subscriber != null)
+                server.removeSubscriber(subscriber);
+            Tools.debug("[Telemetry] Subscriber disconnected: " + session.getId());
+        }
+        
+        @Override
+        public void onError(Session session, Throwable throwable) {
+            Tools.debug("[Telemetry] Error with subscriber " + session.getId() + ": " + throwable.getMessage());
+        }
+    }
+}
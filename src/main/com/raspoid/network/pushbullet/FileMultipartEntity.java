@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 2 of the License.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network.pushbullet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * <b>Http entity used to upload a file with the multipart/form-data encoding.</b>
+ * 
+ * <p>The file is streamed from the disk to the connection: it is never loaded in memory.</p>
+ * 
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+class FileMultipartEntity extends AbstractHttpEntity {
+    
+    /**
+     * The file to upload.
+     */
+    private final Path file;
+    
+    /**
+     * The bytes sent before and after the content of the file.
+     */
+    private final byte[] head;
+    private final byte[] tail;
+    
+    /**
+     * Constructor for a new multipart entity containing a file.
+     * @param fieldName the name of the form field containing the file.
+     * @param file the file to upload.
+     * @param fileType the MIME type of the file.
+     */
+    FileMultipartEntity(String fieldName, Path file, String fileType) {
+        this.file = file;
+        String boundary = "----RaspoidBoundary" + UUID.randomUUID().toString().replace("-", "");
+        this.head = ("--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"" + fieldName + "\"; filename=\"" + file.getFileName() + "\"\r\n" +
+                "Content-Type: " + fileType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        this.tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        setContentType("multipart/form-data; boundary=" + boundary);
+    }
+    
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+    
+    @Override
+    public long getContentLength() {
+        try {
+            return head.length + Files.size(file) + tail.length;
+        } catch (IOException e) { // NOSONAR
+            return -1; // unknown length: the entity is chunked
+        }
+    }
+    
+    @Override
+    public InputStream getContent() throws IOException {
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(head), Files.newInputStream(file), new ByteArrayInputStream(tail))));
+    }
+    
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        outstream.write(head);
+        Files.copy(file, outstream);
+        outstream.write(tail);
+        outstream.flush();
+    }
+    
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -15,15 +15,18 @@
  ******************************************************************************/
 package com.raspoid.network.pushbullet;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.CloseReason;
@@ -34,15 +37,18 @@ import javax.websocket.EndpointConfig;
 import javax.websocket.Session;
 import javax.websocket.WebSocketContainer;
 
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpEntity;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 
 import com.google.gson.Gson;
 import com.raspoid.Tools;
@@ -61,6 +67,11 @@ import com.raspoid.network.Router;
  * and an access token for this account.<br>
  * <i>This access token can easily be retrieved from your Pushbullet settings.</i></p>
  * 
+ * <p>The Http requests share a pool of keep-alive connections with the Pushbullet servers
+ * (the TLS sessions are reused), and the requests received on the websocket are handled
+ * by a dedicated thread, not by the websocket thread.
+ * The <i>Async</i> methods send the pushes without blocking the caller.</p>
+ * 
  * @author Julien Louette &amp; Ga&euml;l Wittorski
  * @version 1.0
  */
@@ -97,6 +108,33 @@ public class Pushbullet {
      */
     private static final double MIN_LAST_PUSH_RECEIVED_TIMESTAMP = 1.4E+9;
     
+    /**
+     * Maximum number of connections kept open with the Pushbullet servers.
+     */
+    public static final int MAX_NB_OF_CONNECTIONS = 4;
+    
+    /**
+     * The Http client used for all the requests to the Pushbullet servers (pool of keep-alive connections).
+     */
+    private final CloseableHttpClient httpClient;
+    
+    /**
+     * The executor of the asynchronous requests, and of the responses to the received pushes.
+     */
+    private final ExecutorService executor;
+    
+    /**
+     * The thread checking the new pushes after the tickles received on the websocket
+     * (one check at a time, to keep lastPushReceivedTime consistent).
+     */
+    private final ExecutorService pushesChecker;
+    
+    /**
+     * True if a check of the new pushes is waiting for the pushesChecker thread.
+     * <p>A burst of tickles only leads to one check.</p>
+     */
+    private final AtomicBoolean pushesCheckPending = new AtomicBoolean(false);
+    
     /**
      * Constructor for a new Pushbullet instance with a specific access token, a device name
      * corresponding to the name that your robot will take in your Pushbullet list of devices,
@@ -119,6 +157,13 @@ public class Pushbullet {
         
         gson = new Gson();
         
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_NB_OF_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_NB_OF_CONNECTIONS);
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+        executor = Executors.newFixedThreadPool(MAX_NB_OF_CONNECTIONS, Tools.daemonThreadFactory("raspoid-pushbullet"));
+        pushesChecker = Executors.newSingleThreadExecutor(Tools.daemonThreadFactory("raspoid-pushbullet-pushes"));
+        
         this.deviceIden = initDevice(deviceName);
         this.lastPushReceivedTime = initLastPushReceivedTime();
         
@@ -132,13 +177,23 @@ public class Pushbullet {
             throw new RaspoidException("Error when connecting to Pushbullet server.", e);
         }
         
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+    
+    /**
+     * Closes the websocket session and the connections with the Pushbullet servers.
+     * <p>This method is automatically called when the program exits.</p>
+     */
+    public void close() {
+        pushesChecker.shutdownNow();
+        executor.shutdown();
+        try {
+            if(session.isOpen())
                 session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Websocket closed by client"));
-            } catch (IOException e) { 
-                throw new RaspoidException("Error when closing the websocket session with Pushbullet.", e);
-            }
-        }));
+            httpClient.close();
+        } catch (IOException e) { 
+            throw new RaspoidException("Error when closing the connections with Pushbullet.", e);
+        }
     }
     
     /**
@@ -169,7 +224,7 @@ public class Pushbullet {
         Device newDevice = createNewDevice(deviceName);
         deviceId = newDevice.getIden();
         Tools.log("New device created on pushbullet: (name)" + newDevice.getNickname() + " (iden)" + deviceId);
-        return deviceIden;
+        return deviceId;
     }
     
     /**
@@ -235,18 +290,32 @@ public class Pushbullet {
     
     /**
      * Upload a file on the Pushbullet servers.
+     * <p>The file is streamed from the disk to the server (multipart/form-data encoding).</p>
      * @param url authorized url to post the file.
      * @param filePath the local path of the file to post.
-     * @return the response from the HTTP request.
+     * @return the Http status code of the response.
      */
     public int postFile(String url, String filePath) {
-        String cmd = "curl -i -X POST " + url + " -F file=@" + filePath;
-        Process process;
-        try {
-            process = Runtime.getRuntime().exec(cmd);
-            process.waitFor();
-            return process.exitValue();
-        } catch (IOException | InterruptedException e) {
+        return postFile(url, filePath, "application/octet-stream");
+    }
+    
+    /**
+     * Upload a file of a specific type on the Pushbullet servers.
+     * <p>The file is streamed from the disk to the server (multipart/form-data encoding).</p>
+     * @param url authorized url to post the file.
+     * @param filePath the local path of the file to post.
+     * @param fileType the MIME type of the file.
+     * @return the Http status code of the response.
+     */
+    public int postFile(String url, String filePath, String fileType) {
+        HttpPost request = new HttpPost(url);
+        request.setEntity(new FileMultipartEntity("file", Paths.get(filePath), fileType));
+        Tools.debug("[Pushbullet] Http request executed: " + request);
+        try(CloseableHttpResponse response = httpClient.execute(request)) {
+            // the response must be consumed to reuse the connection
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        } catch (IOException e) {
             throw new RaspoidException("[Pushbullet] Error when uploading a file.", e);
         }
     }
@@ -254,21 +323,15 @@ public class Pushbullet {
     /**
      * Sends an Http request (Get or Post), and returns the String representation
      * of the response from the server.
+     * <p>The connection is kept open in the pool of connections, for the next requests.</p>
      * @return the String representation of the response from the server. 
      */
     private String sendHttpRequest(HttpUriRequest request) {
-        HttpClient client = HttpClientBuilder.create().build();
-        try {
-            Tools.debug("[Pushbullet] Http request executed: " + request);
-            HttpResponse response = client.execute(request);
+        Tools.debug("[Pushbullet] Http request executed: " + request);
+        try(CloseableHttpResponse response = httpClient.execute(request)) {
             Tools.debug("[Pushbullet] Http Response Code: " + response.getStatusLine().getStatusCode());
-            try(BufferedReader rd = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8))) {
-                StringBuilder result = new StringBuilder();
-                String line;
-                while ((line = rd.readLine()) != null)
-                    result.append(line);
-                return result.toString();
-            }
+            HttpEntity entity = response.getEntity();
+            return entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new RaspoidException("Error when executing Http request.", e);
         }
@@ -382,6 +445,18 @@ public class Pushbullet {
         return deserializePushbulletEntity(response, Push.class);
     }
     
+    /**
+     * Sends a new push, without blocking the caller.
+     * @param title the title of the push sent to the Pusbullet server. null for no title.
+     * @param body the body of the push sent to the Pushbullet server.
+     * @param targetDeviceIden the user's device targeted by the push. null for broadcast.
+     * @return the future Push entity representing the newly sent push.
+     * @see #sendNewPush(String, String, String)
+     */
+    public CompletableFuture<Push> sendNewPushAsync(String title, String body, String targetDeviceIden) {
+        return CompletableFuture.supplyAsync(() -> sendNewPush(title, body, targetDeviceIden), executor);
+    }
+    
     /**
      * Sends a new file to the Pushbullet servers and sends this file through a push.
      * The push is sent to a specific device, or in broadcast mode if targetDeviceIden is null.
@@ -398,11 +473,13 @@ public class Pushbullet {
         url1Parameters.add(new BasicNameValuePair("file_type", fileType));
         String response1 = sendPostRequest("https://api.pushbullet.com/v2/upload-request", url1Parameters);
         FileUploaded fileUploaded = deserializePushbulletEntity(response1, FileUploaded.class);
-        Tools.log("DEBUG AAAAA: " + fileUploaded.getFileName() + " " + fileUploaded.getUploadUrl());
+        Tools.debug("[Pushbullet] Upload authorized: " + fileUploaded.getFileName() + " " + fileUploaded.getUploadUrl());
         
         // step 2 - upload the file
-        int result = postFile(fileUploaded.getUploadUrl(), filePath);
-        Tools.log("FILE POSTED? exit value: " + result);
+        int statusCode = postFile(fileUploaded.getUploadUrl(), filePath, fileType);
+        Tools.debug("[Pushbullet] File uploaded, Http Response Code: " + statusCode);
+        if(statusCode / 100 != 2)
+            throw new RaspoidException("[Pushbullet] Error when uploading a file (Http Response Code: " + statusCode + ").");
         
         // step 3 - new push
         List<NameValuePair> urlParameters = new ArrayList<>();
@@ -413,11 +490,73 @@ public class Pushbullet {
         if(targetDeviceIden != null)
             urlParameters.add(new BasicNameValuePair("device_iden", targetDeviceIden));
         urlParameters.add(new BasicNameValuePair("source_device_iden", deviceIden));
-        Tools.log("URL PARAMETERS: " + urlParameters);
         String response = sendPostRequest("https://api.pushbullet.com/v2/pushes", urlParameters);
         return deserializePushbulletEntity(response, Push.class);
     }
     
+    /**
+     * Sends a new file through a push, without blocking the caller.
+     * @param filePath the path of the file to send.
+     * @param fileName the name of the file to send.
+     * @param fileType the type of the file to send.
+     * @param targetDeviceIden the user's device targeted by the push. null for broadcast.
+     * @return the future Push entity representing the newly sent push.
+     * @see #sendNewFile(String, String, String, String)
+     */
+    public CompletableFuture<Push> sendNewFileAsync(String filePath, String fileName, String fileType, String targetDeviceIden) {
+        return CompletableFuture.supplyAsync(() -> sendNewFile(filePath, fileName, fileType, targetDeviceIden), executor);
+    }
+    
+    /**
+     * Checks the new pushes, and sends back the responses of the router to the pushes targeting our device.
+     * <p>This method is executed by the pushesChecker thread.</p>
+     * @param router the router used to deal with the requests.
+     */
+    private void checkNewPushes(Router router) {
+        pushesCheckPending.set(false);
+        List<Push> newPushes;
+        try {
+            newPushes = getListOfPushes(lastPushReceivedTime, -1);
+        } catch (RuntimeException e) {
+            Tools.log("[Pushbullet] Error when retrieving the new pushes: " + e.getMessage());
+            return;
+        }
+        for(Push newPush : newPushes) {
+            String targetDeviceIden = newPush.getTargetDeviceIden();
+            if(targetDeviceIden != null && targetDeviceIden.equals(deviceIden)) {
+                Tools.log("[Pushbullet] New push detected for us: " + newPush.getBody());
+                getRouterResponse(router, newPush.getBody()).whenComplete((response, error) -> {
+                    String responseBody = error == null ? response : "The request failed: " + Router.getFailureCause(error).getMessage();
+                    sendNewPushAsync("Response", responseBody, newPush.getSourceDeviceIden()).exceptionally(sendError -> {
+                        Tools.log("[Pushbullet] Error when sending a response: " + Router.getFailureCause(sendError).getMessage());
+                        return null;
+                    });
+                });
+            }
+            if(newPush.getLastModificationTimestamp() > lastPushReceivedTime)
+                lastPushReceivedTime = newPush.getLastModificationTimestamp();
+        }
+    }
+    
+    /**
+     * Gets the response of the router to a request, without waiting for the asynchronous routes.
+     * @param router the router used to deal with the request. null if no router.
+     * @param request the request (body of the push).
+     * @return the future response to send back.
+     */
+    private CompletableFuture<String> getRouterResponse(Router router, String request) {
+        if(router == null)
+            return CompletableFuture.completedFuture("Sorry, no router is defined. I can't understand your request.");
+        try {
+            CompletableFuture<String> response = router.getResponseIfValidAsync(request, (String[]) null);
+            return response != null ? response : CompletableFuture.completedFuture(router.getResponse(request, null));
+        } catch (RuntimeException e) {
+            CompletableFuture<String> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+    }
+    
     /**
      * The WebSocket client endpoint used to connect to the Pushbullet WebSocket server.
      */
@@ -435,23 +574,10 @@ public class Pushbullet {
                 RealtimeEventStreamMessage streamMessage = decodeRealtimeEventStreamMessage(message);
                 if("tickle".equals(streamMessage.getType()) && "push".equals(streamMessage.getSubtype())) {
                     Tools.debug("[Pushbullet] New tickle push received.");
-                    // We then need to check pushes and keep the new ones for our device into account
-                    List<Push> newPushes = getListOfPushes(lastPushReceivedTime, -1);
-                    for(Push newPush : newPushes) {
-                        String targetDeviceIden = newPush.getTargetDeviceIden();
-                        if(targetDeviceIden != null && targetDeviceIden.equals(deviceIden)) {
-                            String newPushBody = newPush.getBody();
-                            String response;
-                            if(router != null)
-                                response = router.getResponse(newPushBody, null);
-                            else
-                                response = "Sorry, no router is defined. I can't understand your request.";
-                            Tools.log("[Pushbullet] New push detected for us: " + newPush.getBody());
-                            sendNewPush("Response", response, newPush.getSourceDeviceIden());
-                        }
-                        if(newPush.getLastModificationTimestamp() > lastPushReceivedTime)
-                            lastPushReceivedTime = newPush.getLastModificationTimestamp();
-                    }
+                    // We then need to check pushes and keep the new ones for our device into account,
+                    // out of the websocket thread (a check already waiting also handles this tickle)
+                    if(pushesCheckPending.compareAndSet(false, true))
+                        pushesChecker.execute(() -> checkNewPushes(router));
                 }
                 Tools.debug("[Pushbullet] Realtime Event Stream message received: " + message);
             });
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import com.raspoid.AveragingFilter.Mode;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class AveragingFilterTest {
+    
+    @Test
+    public void testNone() {
+        AveragingFilter filter = new AveragingFilter(Mode.NONE, 0);
+        assertThat(filter.hasValue(), equalTo(false));
+        assertThat(filter.add(10), equalTo(10));
+        assertThat(filter.add(-3), equalTo(-3));
+        assertThat(filter.getValue(), equalTo(-3));
+        assertThat(filter.hasValue(), equalTo(true));
+    }
+    
+    @Test
+    public void testWindowFill() {
+        AveragingFilter filter = new AveragingFilter(Mode.WINDOW, 3);
+        // the mean of the values received, until the window is full
+        assertThat(filter.add(10), equalTo(10));
+        assertThat(filter.add(20), equalTo(15));
+        assertThat(filter.add(30), equalTo(20));
+    }
+    
+    @Test
+    public void testWindowEviction() {
+        AveragingFilter filter = new AveragingFilter(Mode.WINDOW, 3);
+        filter.add(10);
+        filter.add(20);
+        filter.add(30);
+        // the oldest value leaves the window
+        assertThat(filter.add(40), equalTo(30));
+        assertThat(filter.add(50), equalTo(40));
+        assertThat(filter.add(60), equalTo(50));
+        assertThat(filter.add(-60), equalTo(17));
+    }
+    
+    @Test
+    public void testWindowRounding() {
+        AveragingFilter filter = new AveragingFilter(Mode.WINDOW, 2);
+        filter.add(1);
+        assertThat(filter.add(2), equalTo(2));
+        filter.reset();
+        filter.add(-1);
+        assertThat(filter.add(-2), equalTo(-2));
+    }
+    
+    @Test
+    public void testWindowOfOne() {
+        AveragingFilter filter = new AveragingFilter(Mode.WINDOW, 1);
+        assertThat(filter.add(7), equalTo(7));
+        assertThat(filter.add(-7), equalTo(-7));
+    }
+    
+    @Test
+    public void testExponential() {
+        AveragingFilter filter = new AveragingFilter(Mode.EXPONENTIAL, 2);
+        // the first value initializes the filter
+        assertThat(filter.add(100), equalTo(100));
+        // value += (newValue - value) / 4
+        assertThat(filter.add(0), equalTo(75));
+        assertThat(filter.add(0), equalTo(56));
+        assertThat(filter.add(200), equalTo(92));
+    }
+    
+    @Test
+    public void testExponentialConvergence() {
+        AveragingFilter filter = new AveragingFilter(Mode.EXPONENTIAL, 4);
+        filter.add(0);
+        for(int i = 0; i < 500; i++)
+            filter.add(1000);
+        assertThat(filter.getValue(), equalTo(1000));
+        // fixed-point: no drift on large values
+        filter.reset();
+        filter.add(Integer.MAX_VALUE);
+        assertThat(filter.add(Integer.MAX_VALUE), equalTo(Integer.MAX_VALUE));
+    }
+    
+    @Test
+    public void testExponentialShiftZero() {
+        AveragingFilter filter = new AveragingFilter(Mode.EXPONENTIAL, 0);
+        filter.add(100);
+        assertThat(filter.add(-5), equalTo(-5));
+    }
+    
+    @Test
+    public void testReset() {
+        AveragingFilter filter = new AveragingFilter(Mode.WINDOW, 3);
+        filter.add(100);
+        filter.add(200);
+        filter.reset();
+        assertThat(filter.hasValue(), equalTo(false));
+        assertThat(filter.getValue(), equalTo(0));
+        // the values before the reset are forgotten
+        assertThat(filter.add(10), equalTo(10));
+        
+        filter = new AveragingFilter(Mode.EXPONENTIAL, 3);
+        filter.add(1000);
+        filter.reset();
+        assertThat(filter.add(8), equalTo(8));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyWindow() {
+        new AveragingFilter(Mode.WINDOW, 0);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testShiftTooLarge() {
+        new AveragingFilter(Mode.EXPONENTIAL, AveragingFilter.MAX_EXPONENTIAL_SHIFT + 1);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeShift() {
+        new AveragingFilter(Mode.EXPONENTIAL, -1);
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BlinkPatternTest {
+    
+    private static int[] durationsOf(BlinkPattern pattern) {
+        int[] durations = new int[pattern.getNbPeriods()];
+        for(int i = 0; i < durations.length; i++)
+            durations[i] = pattern.getDuration(i);
+        return durations;
+    }
+    
+    @Test
+    public void testBlink() {
+        BlinkPattern pattern = BlinkPattern.blink(250, 750);
+        assertThat(durationsOf(pattern), equalTo(new int[] {250, 750}));
+        assertThat(pattern.isLooping(), equalTo(true));
+    }
+    
+    @Test
+    public void testPulse() {
+        BlinkPattern pattern = BlinkPattern.pulse(100);
+        assertThat(durationsOf(pattern), equalTo(new int[] {100}));
+        assertThat(pattern.isLooping(), equalTo(false));
+    }
+    
+    @Test
+    public void testHeartbeat() {
+        BlinkPattern pattern = BlinkPattern.heartbeat(1000);
+        assertThat(durationsOf(pattern), equalTo(new int[] {100, 100, 100, 700}));
+        assertThat(pattern.isLooping(), equalTo(true));
+        // the pause takes the remainder of the period
+        assertThat(durationsOf(BlinkPattern.heartbeat(1005)), equalTo(new int[] {100, 100, 100, 705}));
+    }
+    
+    @Test
+    public void testDutyCycle() {
+        assertThat(durationsOf(BlinkPattern.dutyCycle(30, 10)), equalTo(new int[] {3, 7}));
+        assertThat(durationsOf(BlinkPattern.dutyCycle(50, 20)), equalTo(new int[] {10, 10}));
+        assertThat(durationsOf(BlinkPattern.dutyCycle(0, 10)), equalTo(new int[] {0, 10}));
+        assertThat(durationsOf(BlinkPattern.dutyCycle(100, 10)), equalTo(new int[] {10, 0}));
+        assertThat(BlinkPattern.dutyCycle(30, 10).isLooping(), equalTo(true));
+    }
+    
+    @Test
+    public void testDutyCycleClamped() {
+        assertThat(durationsOf(BlinkPattern.dutyCycle(-20, 10)), equalTo(new int[] {0, 10}));
+        assertThat(durationsOf(BlinkPattern.dutyCycle(150, 10)), equalTo(new int[] {10, 0}));
+    }
+    
+    @Test
+    public void testMorseElements() {
+        // E: dot, T: dash, A: dot dash with a gap of one unit
+        assertThat(durationsOf(BlinkPattern.morse("E", 100, false)), equalTo(new int[] {100, 0}));
+        assertThat(durationsOf(BlinkPattern.morse("T", 100, false)), equalTo(new int[] {300, 0}));
+        assertThat(durationsOf(BlinkPattern.morse("A", 100, false)), equalTo(new int[] {100, 100, 300, 0}));
+        assertThat(durationsOf(BlinkPattern.morse("5", 10, false)), equalTo(new int[] {10, 10, 10, 10, 10, 10, 10, 10, 10, 0}));
+    }
+    
+    @Test
+    public void testMorseGaps() {
+        // three units between two characters, seven units between two words
+        assertThat(durationsOf(BlinkPattern.morse("EE", 100, false)), equalTo(new int[] {100, 300, 100, 0}));
+        assertThat(durationsOf(BlinkPattern.morse("E E", 100, false)), equalTo(new int[] {100, 700, 100, 0}));
+        assertThat(durationsOf(BlinkPattern.morse("E   E", 100, false)), equalTo(new int[] {100, 700, 100, 0}));
+        // leading and trailing spaces, and unsupported characters, are ignored
+        assertThat(durationsOf(BlinkPattern.morse(" E? ", 100, false)), equalTo(new int[] {100, 0}));
+    }
+    
+    @Test
+    public void testMorseLooping() {
+        BlinkPattern pattern = BlinkPattern.morse("sos", 100, true);
+        assertThat(pattern.isLooping(), equalTo(true));
+        assertThat(durationsOf(pattern), equalTo(new int[] {
+            100, 100, 100, 100, 100, 300,
+            300, 100, 300, 100, 300, 300,
+            100, 100, 100, 100, 100, 700}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMorseNothingToTransmit() {
+        BlinkPattern.morse(" ?! ", 100, false);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDuration() {
+        new BlinkPattern(new int[] {100, -1}, true);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyPattern() {
+        new BlinkPattern(new int[] {0, 0}, true);
+    }
+    
+    @Test
+    public void testDurationsCopied() {
+        int[] durations = {100, 200};
+        BlinkPattern pattern = new BlinkPattern(durations, true);
+        durations[0] = 0;
+        assertThat(pattern.getDuration(0), equalTo(100));
+    }
+}
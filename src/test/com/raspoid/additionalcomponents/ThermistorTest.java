@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.raspoid.additionalcomponents.adc.ADCChannel;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class ThermistorTest {
+    
+    private static final double SERIE_RESISTOR = 10000; // Ohm
+    
+    /**
+     * Steinhart-Hart coefficients of a 10k NTC thermistor.
+     */
+    private static final double A = 1.009249522e-3;
+    private static final double B = 2.378405444e-4;
+    private static final double C = 2.019202697e-7;
+    
+    private static final ADCChannel CHANNEL = () -> (byte) 0;
+    
+    /**
+     * Raw value returned by the simulated ADC.
+     */
+    private int rawValue;
+    
+    private Thermistor thermistor;
+    
+    @Before
+    public void before() {
+        thermistor = new Thermistor(channel -> rawValue, CHANNEL, SERIE_RESISTOR, 10000, 3950);
+    }
+    
+    /**
+     * Temperature given by the Steinhart-Hart equation with the A/B/C coefficients, for a raw value of the ADC.
+     */
+    private static double steinhartHart(int rawValue) {
+        // voltage divider: R = serieResistor * raw / (255 - raw)
+        double lnR = Math.log(SERIE_RESISTOR * rawValue / (255. - rawValue));
+        return 1. / (A + B * lnR + C * lnR * lnR * lnR) - Thermistor.K_TO_C;
+    }
+    
+    private double temperatureAt(int raw) {
+        rawValue = raw;
+        return thermistor.getTemperature();
+    }
+    
+    private void assertSteinhartHartTable(double delta) {
+        for(int raw = 1; raw < 255; raw++)
+            assertEquals("raw value " + raw, steinhartHart(raw), temperatureAt(raw), delta);
+    }
+    
+    @Test
+    public void testCalibrateThreePoints() {
+        int[] rawValues = {40, 128, 220};
+        double[] temperatures = new double[rawValues.length];
+        for(int i = 0; i < rawValues.length; i++)
+            temperatures[i] = steinhartHart(rawValues[i]);
+        thermistor.calibrate(rawValues, temperatures);
+        // the coefficients are recovered: the whole table follows the equation
+        assertSteinhartHartTable(1e-6);
+    }
+    
+    @Test
+    public void testCalibrateLeastSquares() {
+        int[] rawValues = new int[20];
+        double[] temperatures = new double[rawValues.length];
+        for(int i = 0; i < rawValues.length; i++) {
+            rawValues[i] = 10 + 12 * i;
+            temperatures[i] = steinhartHart(rawValues[i]);
+        }
+        thermistor.calibrate(rawValues, temperatures);
+        assertSteinhartHartTable(1e-6);
+    }
+    
+    @Test
+    public void testCalibrateNoisyPoints() {
+        int[] rawValues = new int[20];
+        double[] temperatures = new double[rawValues.length];
+        for(int i = 0; i < rawValues.length; i++) {
+            rawValues[i] = 10 + 12 * i;
+            // +/- 0.05°C of measure error
+            temperatures[i] = steinhartHart(rawValues[i]) + (i % 2 == 0 ? 0.05 : -0.05);
+        }
+        thermistor.calibrate(rawValues, temperatures);
+        for(int raw = 10; raw <= 238; raw++)
+            assertEquals("raw value " + raw, steinhartHart(raw), temperatureAt(raw), 0.1);
+    }
+    
+    @Test
+    public void testResetCalibration() {
+        double bParameterTemperature = temperatureAt(128);
+        thermistor.calibrate(new int[] {40, 128, 220}, new double[] {steinhartHart(40), 50., steinhartHart(220)});
+        thermistor.resetCalibration();
+        assertEquals(bParameterTemperature, temperatureAt(128), 0.);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooFewPoints() {
+        thermistor.calibrate(new int[] {40, 220}, new double[] {steinhartHart(40), steinhartHart(220)});
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingTemperature() {
+        thermistor.calibrate(new int[] {40, 128, 220}, new double[] {20., 25.});
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingularSystem() {
+        // three points at the same raw value: the coefficients can't be determined
+        thermistor.calibrate(new int[] {128, 128, 128}, new double[] {25., 25., 25.});
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testTwoDistinctPoints() {
+        thermistor.calibrate(new int[] {40, 40, 220}, new double[] {60., 60., 0.});
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRawValueOutOfRange() {
+        thermistor.calibrate(new int[] {0, 128, 220}, new double[] {100., 25., 0.});
+    }
+}
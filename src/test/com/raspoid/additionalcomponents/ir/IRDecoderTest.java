@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class IRDecoderTest {
+    
+    private final IRDecoder nec = new IRDecoderNEC();
+    
+    private final IRDecoder sony = new IRDecoderSony();
+    
+    private final IRDecoder rc5 = new IRDecoderRC5();
+    
+    private static int[] toArray(List<Integer> periods) {
+        int[] result = new int[periods.size()];
+        for(int i = 0; i < result.length; i++)
+            result[i] = periods.get(i);
+        return result;
+    }
+    
+    /**
+     * NEC signal: leading pulse and space, 32 bits (LSB first) and the final pulse.
+     */
+    private static IRSignal necSignal(long code, double scale) {
+        List<Integer> periods = new ArrayList<>();
+        periods.add(0);
+        periods.add((int) (9000 * scale));
+        periods.add((int) (4500 * scale));
+        for(int bit = 0; bit < 32; bit++) {
+            periods.add((int) (562 * scale));
+            periods.add((int) (((code >> bit) & 1) == 1 ? 1687 * scale : 562 * scale));
+        }
+        periods.add((int) (562 * scale));
+        return new IRSignal(toArray(periods));
+    }
+    
+    /**
+     * Sony SIRC signal: leading pulse, then nbBits pulses (LSB first) separated by spaces.
+     */
+    private static IRSignal sonySignal(long value, int nbBits, boolean withGap) {
+        List<Integer> periods = new ArrayList<>();
+        periods.add(0);
+        periods.add(2400);
+        for(int bit = 0; bit < nbBits; bit++) {
+            periods.add(600);
+            periods.add(((value >> bit) & 1) == 1 ? 1200 : 600);
+        }
+        if(withGap) {
+            // gap before a repeated frame
+            periods.add(25000);
+            periods.add(2400);
+        }
+        return new IRSignal(toArray(periods));
+    }
+    
+    /**
+     * RC5 signal: 14 Manchester bits (MSB first), a logical 1 being a space followed by a pulse.
+     * The space of the first start bit and the space of a last logical 0 are not received.
+     */
+    private static IRSignal rc5Signal(long code) {
+        List<Boolean> halfBits = new ArrayList<>();
+        for(int bit = 13; bit >= 0; bit--) {
+            boolean one = ((code >> bit) & 1) == 1;
+            halfBits.add(!one);
+            halfBits.add(one);
+        }
+        halfBits.remove(0);
+        while(!halfBits.get(halfBits.size() - 1))
+            halfBits.remove(halfBits.size() - 1);
+        
+        List<Integer> periods = new ArrayList<>();
+        periods.add(0);
+        int length = 0;
+        for(int i = 0; i < halfBits.size(); i++) {
+            length += 889;
+            if(i == halfBits.size() - 1 || halfBits.get(i + 1) != halfBits.get(i)) {
+                periods.add(length);
+                length = 0;
+            }
+        }
+        return new IRSignal(toArray(periods));
+    }
+    
+    @Test
+    public void testNEC() {
+        assertThat(nec.decode(necSignal(0xF708FF00L, 1)), equalTo(0xF708FF00L));
+        assertThat(nec.decode(necSignal(0, 1)), equalTo(0L));
+        assertThat(nec.decode(necSignal(0xFFFFFFFFL, 1)), equalTo(0xFFFFFFFFL));
+    }
+    
+    @Test
+    public void testNECTolerance() {
+        assertThat(nec.decode(necSignal(0x12345678L, 0.8)), equalTo(0x12345678L));
+        assertThat(nec.decode(necSignal(0x12345678L, 1.2)), equalTo(0x12345678L));
+        assertThat(nec.decode(necSignal(0x12345678L, 1.5)), equalTo(IRDecoder.NO_CODE));
+    }
+    
+    @Test
+    public void testNECTruncated() {
+        int[] periods = necSignal(0x12345678L, 1).getPulses();
+        int[] truncated = new int[periods.length - 4];
+        System.arraycopy(periods, 0, truncated, 0, truncated.length);
+        assertThat(nec.decode(new IRSignal(truncated)), equalTo(IRDecoder.NO_CODE));
+    }
+    
+    @Test
+    public void testNECSunfounderRemote() {
+        // each button of the remote gives a distinct NEC code
+        List<Long> codes = new ArrayList<>();
+        for(IRSignal signal : new IRProtocolSunfounderMediaRemote().getSignals()) {
+            long code = nec.decode(signal);
+            assertThat(signal.getName(), code == IRDecoder.NO_CODE, equalTo(false));
+            assertThat(signal.getName(), codes.contains(code), equalTo(false));
+            codes.add(code);
+        }
+        assertThat(codes.size(), equalTo(21));
+    }
+    
+    @Test
+    public void testSony() {
+        assertThat(sony.decode(sonySignal(0x095, 12, false)), equalTo((12L << 32) | 0x095));
+        assertThat(sony.decode(sonySignal(0x4A95, 15, false)), equalTo((15L << 32) | 0x4A95));
+        assertThat(sony.decode(sonySignal(0xFFFFF, 20, false)), equalTo((20L << 32) | 0xFFFFF));
+        // the same value with a different number of bits gives a different code
+        assertThat(sony.decode(sonySignal(0x095, 15, false)) == sony.decode(sonySignal(0x095, 12, false)), equalTo(false));
+    }
+    
+    @Test
+    public void testSonyRepeatedFrame() {
+        assertThat(sony.decode(sonySignal(0x095, 12, true)), equalTo((12L << 32) | 0x095));
+    }
+    
+    @Test
+    public void testSonyInvalidNbBits() {
+        assertThat(sony.decode(sonySignal(0x095, 13, false)), equalTo(IRDecoder.NO_CODE));
+        assertThat(sony.decode(sonySignal(0x095, 11, true)), equalTo(IRDecoder.NO_CODE));
+    }
+    
+    @Test
+    public void testRC5() {
+        // start bits, toggle 0, address 5, command 53
+        long code = 0b11_0_00101_110101L;
+        assertThat(rc5.decode(rc5Signal(code)), equalTo(code));
+        // last bit 0: its space is not received
+        long codeEndingWithZero = 0b11_0_10101_101010L;
+        assertThat(rc5.decode(rc5Signal(codeEndingWithZero)), equalTo(codeEndingWithZero));
+        assertThat(rc5.decode(rc5Signal(0b11_0_00000_000000L)), equalTo(0b11_0_00000_000000L));
+        assertThat(rc5.decode(rc5Signal(0b11_0_11111_111111L)), equalTo(0b11_0_11111_111111L));
+    }
+    
+    @Test
+    public void testRC5ToggleBit() {
+        // the toggle bit changes each time a button is pressed
+        long code = 0b11_0_00101_110101L;
+        assertThat(rc5.decode(rc5Signal(code | (1 << 11))), equalTo(code));
+    }
+    
+    @Test
+    public void testRC5Invalid() {
+        assertThat(rc5.decode(new IRSignal(new int[] {0, 889, 3000, 889})), equalTo(IRDecoder.NO_CODE));
+        // too short
+        assertThat(rc5.decode(new IRSignal(new int[] {0, 889, 889, 889})), equalTo(IRDecoder.NO_CODE));
+    }
+    
+    @Test
+    public void testOtherProtocols() {
+        IRSignal necSignal = necSignal(0x12345678L, 1);
+        IRSignal sonySignal = sonySignal(0x095, 12, false);
+        IRSignal rc5Signal = rc5Signal(0b11_0_00101_110101L);
+        
+        assertThat(nec.decode(sonySignal), equalTo(IRDecoder.NO_CODE));
+        assertThat(nec.decode(rc5Signal), equalTo(IRDecoder.NO_CODE));
+        assertThat(sony.decode(necSignal), equalTo(IRDecoder.NO_CODE));
+        assertThat(sony.decode(rc5Signal), equalTo(IRDecoder.NO_CODE));
+        assertThat(rc5.decode(necSignal), equalTo(IRDecoder.NO_CODE));
+        assertThat(rc5.decode(sonySignal), equalTo(IRDecoder.NO_CODE));
+    }
+    
+    @Test
+    public void testEmptySignal() {
+        IRSignal empty = new IRSignal(new int[] {0, 0});
+        assertThat(nec.decode(empty), equalTo(IRDecoder.NO_CODE));
+        assertThat(sony.decode(empty), equalTo(IRDecoder.NO_CODE));
+        assertThat(rc5.decode(empty), equalTo(IRDecoder.NO_CODE));
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.additionalcomponents.ir;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class IRProtocolTest {
+    
+    private static final int TOLERANCE = 20; // %
+    
+    private IRProtocol protocol;
+    
+    @Before
+    public void before() {
+        protocol = new IRProtocolSunfounderMediaRemote();
+    }
+    
+    /**
+     * Copy of a signal, with slightly different durations (as for two presses of the same button).
+     */
+    private static IRSignal jittered(IRSignal signal, int jitter) {
+        int[] periods = signal.getPulses();
+        for(int i = 1; i < periods.length; i++)
+            if(periods[i] != 0)
+                periods[i] += i % 2 == 0 ? jitter : -jitter;
+        return new IRSignal(periods);
+    }
+    
+    @Test
+    public void testFindSignal() {
+        for(IRSignal signal : protocol.getSignals()) {
+            assertThat(signal.getName(), protocol.findSignal(signal, TOLERANCE), equalTo(signal));
+            assertThat(signal.getName(), protocol.findSignal(jittered(signal, 60), TOLERANCE), equalTo(signal));
+        }
+    }
+    
+    @Test
+    public void testUnknownSignal() {
+        assertThat(protocol.findSignal(new IRSignal(new int[] {0, 2400, 600, 600}), TOLERANCE), nullValue());
+        assertThat(protocol.findSignal(new IRSignal(new int[] {0, 0}), TOLERANCE), nullValue());
+    }
+    
+    @Test
+    public void testAddSignal() {
+        IRSignal signal = new IRSignal("unknown", new int[] {0, 2400, 600, 600, 600, 1200});
+        assertThat(protocol.findSignal(signal, TOLERANCE), nullValue());
+        // the index is rebuilt when the signals of the protocol change
+        protocol.addSignal(signal);
+        assertThat(protocol.findSignal(signal, TOLERANCE), equalTo(signal));
+    }
+    
+    @Test
+    public void testRemoveSignal() {
+        IRSignal signal = IRProtocolSunfounderMediaRemote.button1;
+        assertThat(protocol.findSignal(signal, TOLERANCE), equalTo(signal));
+        protocol.removeSignal(signal);
+        assertThat(protocol.findSignal(signal, TOLERANCE), nullValue());
+        // replaced by a signal with another name: the index gives the new one
+        IRSignal renamed = new IRSignal("renamed", signal.getPulses());
+        protocol.addSignal(renamed);
+        assertThat(protocol.findSignal(signal, TOLERANCE), equalTo(renamed));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSignalsReadOnly() {
+        protocol.getSignals().set(0, IRProtocolSunfounderMediaRemote.button1);
+    }
+    
+    @Test
+    public void testUndecodableSignals() {
+        // without decoder, the signals are compared one by one
+        IRProtocol fuzzyProtocol = new IRProtocol(Collections.<IRDecoder>emptyList()) {};
+        fuzzyProtocol.addSignal(IRProtocolSunfounderMediaRemote.button0);
+        fuzzyProtocol.addSignal(IRProtocolSunfounderMediaRemote.button1);
+        assertThat(fuzzyProtocol.findSignal(jittered(IRProtocolSunfounderMediaRemote.button1, 20), TOLERANCE),
+                equalTo(IRProtocolSunfounderMediaRemote.button1));
+        assertThat(fuzzyProtocol.findSignal(IRProtocolSunfounderMediaRemote.button2, TOLERANCE), nullValue());
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.raspoid.network.BinaryFrame.BinaryCommand;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class BinaryFrameTest {
+    
+    /**
+     * Get the payload of a frame, after checking its length field.
+     */
+    private static ByteBuffer payloadOf(BinaryFrame frame) {
+        ByteBuffer buffer = frame.toByteBuffer();
+        int lengthField = buffer.getInt();
+        assertThat(lengthField & BinaryFrame.BINARY_FRAME_FLAG, equalTo(BinaryFrame.BINARY_FRAME_FLAG));
+        assertThat(lengthField & ~BinaryFrame.BINARY_FRAME_FLAG, equalTo(buffer.remaining()));
+        return buffer.slice();
+    }
+    
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    @Test
+    public void testLengthField() {
+        ByteBuffer buffer = new BinaryFrame().fireAndForget(1, 2, 3).toByteBuffer();
+        // the flag is combined with the length in one 4 bytes big-endian field
+        assertThat(buffer.get(0), equalTo((byte) 0x80));
+        assertThat(buffer.get(1), equalTo((byte) 0));
+        assertThat(buffer.get(2), equalTo((byte) 0));
+        assertThat(buffer.get(3), equalTo((byte) (buffer.remaining() - 4)));
+    }
+    
+    @Test
+    public void testCommandRoundTrip() {
+        BinaryFrame frame = new BinaryFrame().command(3, 300, 1, (short) -2, 2.5, 1.5f, true, false, "héllo", "");
+        assertThat(frame.getNbEntries(), equalTo(1));
+        List<BinaryCommand> commands = BinaryFrame.decodeCommands(payloadOf(frame));
+        assertThat(commands.size(), equalTo(1));
+        BinaryCommand command = commands.get(0);
+        assertThat(command.getTypeId(), equalTo(3));
+        assertThat(command.getRequestId(), equalTo(300));
+        assertThat(command.isNoResponse(), equalTo(false));
+        assertThat(command.getArgs(), equalTo(new Object[] {1, -2, 2.5, 1.5, true, false, "héllo", ""}));
+    }
+    
+    @Test
+    public void testFireAndForgetRoundTrip() {
+        BinaryFrame frame = new BinaryFrame().fireAndForget(2, -100, 100).fireAndForget(1).command(2, 7, "x");
+        assertThat(frame.getNbEntries(), equalTo(3));
+        List<BinaryCommand> commands = BinaryFrame.decodeCommands(payloadOf(frame));
+        assertThat(commands.size(), equalTo(3));
+        
+        assertThat(commands.get(0).isNoResponse(), equalTo(true));
+        assertThat(commands.get(0).getTypeId(), equalTo(2));
+        assertThat(commands.get(0).getRequestId(), equalTo(0));
+        assertThat(commands.get(0).getArgs(), equalTo(new Object[] {-100, 100}));
+        
+        assertThat(commands.get(1).isNoResponse(), equalTo(true));
+        assertThat(commands.get(1).getArgs().length, equalTo(0));
+        
+        assertThat(commands.get(2).isNoResponse(), equalTo(false));
+        assertThat(commands.get(2).getRequestId(), equalTo(7));
+        assertThat(commands.get(2).getArgs(), equalTo(new Object[] {"x"}));
+    }
+    
+    @Test
+    public void testCompactEncoding() {
+        // flags, type_id, nb_args, ARG_INT, zigzag(-1) = 1
+        assertThat(bytesOf(payloadOf(new BinaryFrame().fireAndForget(1, -1))), equalTo(new byte[] {1, 1, 1, 0, 1}));
+        // zigzag(63) = 126 (1 byte), zigzag(64) = 128 (2 bytes), zigzag(-64) = 127 (1 byte)
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(1, 63)).remaining(), equalTo(5));
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(1, 64)).remaining(), equalTo(6));
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(1, -64)).remaining(), equalTo(5));
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(1, -65)).remaining(), equalTo(6));
+    }
+    
+    @Test
+    public void testZigzagEdgeValues() {
+        Object[] values = {0, -1, 1, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE,
+            (long) Integer.MAX_VALUE + 1, (long) Integer.MIN_VALUE - 1, Long.MAX_VALUE, Long.MIN_VALUE};
+        List<BinaryCommand> commands = BinaryFrame.decodeCommands(payloadOf(new BinaryFrame().fireAndForget(1, values)));
+        // the values in the int range are decoded as Integer, the others as Long
+        assertThat(commands.get(0).getArgs(), equalTo(values));
+        assertThat(commands.get(0).getArgs()[9] instanceof Long, equalTo(true));
+        assertThat(commands.get(0).getArgs()[7] instanceof Integer, equalTo(true));
+    }
+    
+    @Test
+    public void testVarintEdgeValues() {
+        int[] ids = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE};
+        BinaryFrame frame = new BinaryFrame();
+        for(int id : ids)
+            frame.command(id, id);
+        List<BinaryCommand> commands = BinaryFrame.decodeCommands(payloadOf(frame));
+        assertThat(commands.size(), equalTo(ids.length));
+        for(int i = 0; i < ids.length; i++) {
+            assertThat(commands.get(i).getTypeId(), equalTo(ids[i]));
+            assertThat(commands.get(i).getRequestId(), equalTo(ids[i]));
+        }
+        // 1 byte up to 127, 2 bytes up to 16383
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(127)).remaining(), equalTo(3));
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(128)).remaining(), equalTo(4));
+        assertThat(payloadOf(new BinaryFrame().fireAndForget(16384)).remaining(), equalTo(5));
+    }
+    
+    @Test
+    public void testLargeFrame() {
+        BinaryFrame frame = new BinaryFrame();
+        String text = new String(new char[1000]).replace('\0', 'a');
+        for(int i = 0; i < 100; i++)
+            frame.command(1, i, text, i);
+        List<BinaryCommand> commands = BinaryFrame.decodeCommands(payloadOf(frame));
+        assertThat(commands.size(), equalTo(100));
+        assertThat(commands.get(99).getArgs(), equalTo(new Object[] {text, 99}));
+    }
+    
+    @Test
+    public void testTruncatedFrames() {
+        ByteBuffer payload = payloadOf(new BinaryFrame().command(300, 70000, -5000, 2.5, true, "text"));
+        for(int length = 1; length < payload.remaining(); length++) {
+            ByteBuffer truncated = payload.duplicate();
+            truncated.limit(length);
+            try {
+                BinaryFrame.decodeCommands(truncated);
+                assertThat("truncated at " + length, false, equalTo(true));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownArgType() {
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(new byte[] {1, 1, 1, 9, 0}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidVarint() {
+        byte[] payload = new byte[12];
+        payload[0] = 1;
+        for(int i = 1; i < payload.length; i++)
+            payload[i] = (byte) 0xFF;
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(payload));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidNbArgs() {
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(new byte[] {1, 1, 100, 0, 0}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeNbArgs() {
+        // nb_args = 0xFFFFFFFF (-1 once cast to an int)
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(new byte[] {1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverflowingTypeId() {
+        // type_id = 2^31
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(new byte[] {1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 0}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeStringLength() {
+        // 64 bits length (negative as a long)
+        byte[] payload = {1, 1, 1, 3, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 'a'};
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(payload));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStringLength() {
+        BinaryFrame.decodeCommands(ByteBuffer.wrap(new byte[] {1, 1, 1, 3, 10, 'a'}));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedArgument() {
+        new BinaryFrame().command(1, 1, new Object());
+    }
+    
+    @Test
+    public void testResponses() {
+        BinaryFrame frame = new BinaryFrame()
+                .response(BinaryFrame.STATUS_OK, 300, "ok")
+                .response(BinaryFrame.STATUS_FAILED, 1, "");
+        assertThat(frame.getNbEntries(), equalTo(2));
+        byte[] expected = {BinaryFrame.STATUS_OK, (byte) 0xAC, 0x02, 2, 'o', 'k', BinaryFrame.STATUS_FAILED, 1, 0};
+        assertThat(bytesOf(payloadOf(frame)), equalTo(expected));
+    }
+}
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.raspoid.network.HttpRequestParser.HttpRequest;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class HttpRequestParserTest {
+    
+    private HttpRequestParser parser;
+    
+    /**
+     * Input buffer of the connection, used as by the socket server (the unconsumed bytes are kept).
+     */
+    private ByteBuffer input;
+    
+    @Before
+    public void before() {
+        parser = new HttpRequestParser(64);
+        input = ByteBuffer.allocate(32768);
+    }
+    
+    /**
+     * Appends received bytes to the input buffer, and parses all the complete requests.
+     */
+    private List<HttpRequest> receive(String bytes) {
+        input.put(bytes.getBytes(StandardCharsets.ISO_8859_1));
+        input.flip();
+        List<HttpRequest> requests = new ArrayList<>();
+        try {
+            HttpRequest request;
+            while((request = parser.parse(input)) != null)
+                requests.add(request);
+        } finally {
+            input.compact();
+        }
+        return requests;
+    }
+    
+    private static String body(HttpRequest request) {
+        return new String(request.getBody(), StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testStartsLikeHttp() {
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("GET / HTTP/1.1".getBytes())), equalTo(1));
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("DELETE ".getBytes())), equalTo(1));
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("GE".getBytes())), equalTo(0));
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("GET".getBytes())), equalTo(0));
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("GETX".getBytes())), equalTo(-1));
+        assertThat(HttpRequestParser.startsLikeHttp(ByteBuffer.wrap("hello".getBytes())), equalTo(-1));
+    }
+    
+    @Test
+    public void testSimpleRequest() {
+        List<HttpRequest> requests = receive("GET /hello?x=1 HTTP/1.1\r\nHost: raspoid\r\nX-Custom:  value \r\n\r\n");
+        assertThat(requests.size(), equalTo(1));
+        HttpRequest request = requests.get(0);
+        assertThat(request.getMethod(), equalTo("GET"));
+        assertThat(request.getPath(), equalTo("/hello"));
+        assertThat(request.getHeader("host"), equalTo("raspoid"));
+        assertThat(request.getHeader("x-custom"), equalTo("value"));
+        assertThat(request.getBody().length, equalTo(0));
+        assertThat(request.isKeepAlive(), equalTo(true));
+    }
+    
+    @Test
+    public void testPartialReads() {
+        String raw = "POST /temperature HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello";
+        for(int i = 0; i < raw.length() - 1; i++)
+            assertThat(receive(raw.substring(i, i + 1)).size(), equalTo(0));
+        List<HttpRequest> requests = receive(raw.substring(raw.length() - 1));
+        assertThat(requests.size(), equalTo(1));
+        assertThat(requests.get(0).getPath(), equalTo("/temperature"));
+        assertThat(body(requests.get(0)), equalTo("hello"));
+    }
+    
+    @Test
+    public void testLfOnlyLines() {
+        List<HttpRequest> requests = receive("GET /hello HTTP/1.1\nHost: raspoid\n\n");
+        assertThat(requests.size(), equalTo(1));
+        assertThat(requests.get(0).getHeader("host"), equalTo("raspoid"));
+    }
+    
+    @Test
+    public void testPipelining() {
+        List<HttpRequest> requests = receive("GET /first HTTP/1.1\r\n\r\n" +
+                "POST /second HTTP/1.1\r\nContent-Length: 3\r\n\r\nabc" +
+                "GET /third HTTP/1.1\r\n\r\nGET /fourth HTT");
+        assertThat(requests.size(), equalTo(3));
+        assertThat(requests.get(0).getPath(), equalTo("/first"));
+        assertThat(requests.get(1).getPath(), equalTo("/second"));
+        assertThat(body(requests.get(1)), equalTo("abc"));
+        assertThat(requests.get(2).getPath(), equalTo("/third"));
+        
+        requests = receive("P/1.1\r\n\r\n");
+        assertThat(requests.size(), equalTo(1));
+        assertThat(requests.get(0).getPath(), equalTo("/fourth"));
+    }
+    
+    @Test
+    public void testContentLength() {
+        List<HttpRequest> requests = receive("PUT /x HTTP/1.1\r\nContent-Length: 0\r\n\r\n" +
+                "PUT /y HTTP/1.1\r\nContent-Length: 11\r\n\r\nhello");
+        assertThat(requests.size(), equalTo(1));
+        assertThat(requests.get(0).getBody().length, equalTo(0));
+        
+        requests = receive(" world");
+        assertThat(requests.size(), equalTo(1));
+        assertThat(body(requests.get(0)), equalTo("hello world"));
+    }
+    
+    @Test
+    public void testChunkedBody() {
+        List<HttpRequest> requests = receive("POST /x HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                "5\r\nhello\r\n6;name=value\r\n wo");
+        assertThat(requests.size(), equalTo(0));
+        requests = receive("rld\r\n0\r\nX-Trailer: ignored\r\n\r\nGET /next HTTP/1.1\r\n\r\n");
+        assertThat(requests.size(), equalTo(2));
+        assertThat(body(requests.get(0)), equalTo("hello world"));
+        assertThat(requests.get(1).getPath(), equalTo("/next"));
+    }
+    
+    @Test
+    public void testKeepAlive() {
+        List<HttpRequest> requests = receive("GET /a HTTP/1.1\r\nConnection: close\r\n\r\n" +
+                "GET /b HTTP/1.0\r\n\r\n" +
+                "GET /c HTTP/1.0\r\nConnection: Keep-Alive\r\n\r\n");
+        assertThat(requests.size(), equalTo(3));
+        assertThat(requests.get(0).isKeepAlive(), equalTo(false));
+        assertThat(requests.get(1).isKeepAlive(), equalTo(false));
+        assertThat(requests.get(2).isKeepAlive(), equalTo(true));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBodyTooLong() {
+        receive("POST /x HTTP/1.1\r\nContent-Length: 65\r\n\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testChunkedBodyTooLong() {
+        receive("POST /x HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n20\r\n");
+        receive(new String(new char[32]).replace('\0', 'a') + "\r\n21\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineTooLong() {
+        receive("GET /" + new String(new char[9000]).replace('\0', 'a'));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testHeadersTooLong() {
+        receive("GET / HTTP/1.1\r\n");
+        for(int i = 0; i < 1000; i++)
+            receive("X-Header-" + i + ": some value\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedRequestLine() {
+        receive("GET /hello\r\n\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedHeader() {
+        receive("GET /hello HTTP/1.1\r\nNoSeparator\r\n\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedContentLength() {
+        receive("POST /hello HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedChunk() {
+        receive("POST /hello HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n2\r\nabXY\r\n");
+    }
+    
+    @Test
+    public void testInputIgnoredAfterError() {
+        try {
+            receive("GET /hello HTTP/1.1\r\nNoSeparator\r\n");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertThat(input.position(), equalTo(0));
+        assertThat(receive("\r\nGET /hello HTTP/1.1\r\n\r\n").size(), equalTo(0));
+        assertThat(input.position(), equalTo(0));
+    }
+    
+    @Test
+    public void testDiscard() {
+        List<HttpRequest> requests = receive("GET /a HTTP/1.1\r\n\r\n");
+        assertThat(requests.size(), equalTo(1));
+        parser.discard();
+        assertThat(parser.parse(ByteBuffer.wrap("GET /b HTTP/1.1\r\n\r\n".getBytes())), nullValue());
+        assertThat(parser.isDiscarding(), equalTo(true));
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Julien Louette & Gaël Wittorski
+ * 
+ * This file is part of Raspoid.
+ * 
+ * Raspoid is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Raspoid is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Raspoid.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package com.raspoid.network;
+
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.raspoid.exceptions.RaspoidException;
+import com.raspoid.network.Router.ParamType;
+
+/**
+ * @author Julien Louette &amp; Ga&euml;l Wittorski
+ * @version 1.0
+ */
+public class RouterTest {
+    
+    private static final ParamType[] TYPES = {ParamType.INTEGER, ParamType.DOUBLE, ParamType.BOOLEAN, ParamType.STRING};
+    
+    private Router router;
+    
+    @Before
+    public void before() {
+        router = new Router();
+        router.addRoute("Temperature", () -> "20°C");
+        router.addRouteWithParams("move", 2, args -> args[0] + "," + args[1]);
+        router.addRouteWithTypedParams("typed", TYPES, args -> 
+            args.getInt(0) + "|" + args.getDouble(1) + "|" + args.getBoolean(2) + "|" + args.getString(3));
+    }
+    
+    /**
+     * The normalization of the routes before the routes trie (regular expressions).
+     */
+    private static String previousCleanStrRoute(String input) {
+        return input.replaceAll("[^a-zA-Z ]", "").toLowerCase().trim().replaceAll("\\s+","");
+    }
+    
+    @Test
+    public void testDefaultHelloRoute() {
+        assertThat(router.getResponse("hello", null), equalTo("Hello world !"));
+    }
+    
+    @Test
+    public void testNormalization() {
+        String[] matching = {"temperature", "TEMPERATURE", " temperature\n", "\tTem-pe_ra ture42!", "temperature/"};
+        for(String request : matching)
+            assertThat(router.getResponseIfValid(request, null), equalTo("20°C"));
+        
+        String[] notMatching = {"temperatur", "temperatures", "", "42", "t"};
+        for(String request : notMatching)
+            assertThat(router.getResponseIfValid(request, null), nullValue());
+    }
+    
+    @Test
+    public void testNormalizationEquivalentToRegex() {
+        String[] routes = {"Temperature", "move", "typed", "hello", "takePicture", "joystick_camera"};
+        String[] requests = {"temperature", "TEMPÉRATURE", "te mpérature", "take picture", "TAKE_PICTURE 2",
+            "joystick-camera", "joystickcamera\r\n", "Hello!", "hel lo", "h3ll0", "mov e", "typéd", "ümove"};
+        router.addRoute("takePicture", () -> "picture");
+        router.addRouteWithParams("joystick_camera", 1, args -> args[0]);
+        
+        for(String request : requests) {
+            String expected = null;
+            for(String route : routes)
+                if(previousCleanStrRoute(route).equals(previousCleanStrRoute(request)))
+                    expected = previousCleanStrRoute(route);
+            boolean matched = router.routeIsValid(request, null) || router.routeIsValid(request, new String[] {"1"}) ||
+                    router.routeIsValid(request, new String[] {"1", "2"}) || router.routeIsValid(request, new String[] {"1", "2.0", "true", "s"});
+            assertThat(request, matched, equalTo(expected != null));
+        }
+        assertThat(router.getRoutesWithoutParams().containsKey(previousCleanStrRoute("takePicture")), equalTo(true));
+        assertThat(router.getRoutesWithParams().containsKey(previousCleanStrRoute("joystick_camera")), equalTo(true));
+    }
+    
+    @Test(expected = RaspoidException.class)
+    public void testDuplicateRoute() {
+        router.addRoute("tempe-rature", () -> "duplicate");
+    }
+    
+    @Test(expected = RaspoidException.class)
+    public void testReservedRoute() {
+        router.addRoute("GET", () -> "reserved");
+    }
+    
+    @Test(expected = RaspoidException.class)
+    public void testEmptyRoute() {
+        router.addRoute("1234", () -> "empty");
+    }
+    
+    @Test
+    public void testParamCounts() {
+        assertThat(router.getResponseIfValid("move", new String[] {"1", "2"}), equalTo("1,2"));
+        assertThat(router.getResponseIfValid("move", new String[] {"1"}), nullValue());
+        assertThat(router.getResponseIfValid("move", new String[] {"1", "2", "3"}), nullValue());
+        assertThat(router.getResponseIfValid("move", null), nullValue());
+        assertThat(router.getResponseIfValid("temperature", new String[] {"1"}), nullValue());
+        
+        assertThat(router.routeIsValid("move", new String[] {"1", "2"}), equalTo(true));
+        assertThat(router.routeIsValid("move", new String[] {"1"}), equalTo(false));
+        assertThat(router.getResponse("move", new String[] {"1", "2", "3"}),
+                equalTo("The number of received paramaters is incorrect for the move route: 2 expected, 3 received."));
+        assertThat(router.getResponse("move", null), equalTo("Sorry, but we can't understand your request."));
+    }
+    
+    @Test
+    public void testTypedParams() {
+        assertThat(router.getResponseIfValid("typed", new String[] {" 42 ", "2.5", "TRUE", "text"}), equalTo("42|2.5|true|text"));
+        assertThat(router.getResponseIfValid("typed", new String[] {"-1", "3", "false", "12"}), equalTo("-1|3.0|false|12"));
+        assertThat(router.routeIsValid("typed", new String[] {"42", "2.5", "true", "text"}), equalTo(true));
+    }
+    
+    @Test
+    public void testTypedConversionFailures() {
+        String[][] invalid = {
+            {"4.2", "2.5", "true", "text"},
+            {"abc", "2.5", "true", "text"},
+            {"99999999999", "2.5", "true", "text"},
+            {"42", "abc", "true", "text"},
+            {"42", "2.5", "yes", "text"},
+            {"42", "2.5", "1", "text"}
+        };
+        for(String[] params : invalid) {
+            assertThat(router.getResponseIfValid("typed", params), nullValue());
+            assertThat(router.routeIsValid("typed", params), equalTo(false));
+        }
+        assertThat(router.getResponse("typed", invalid[0]),
+                equalTo("The received parameters are incorrect for the typed route: [INTEGER, DOUBLE, BOOLEAN, STRING] expected."));
+    }
+    
+    @Test
+    public void testTypedDecodedArgs() {
+        assertThat(router.getResponseIfValidAsync("typed", new Object[] {42L, 3, true, 7}).join(), equalTo("42|3.0|true|7"));
+        assertThat(router.getResponseIfValidAsync("typed", new Object[] {1L << 40, 3, true, "s"}), nullValue());
+        assertThat(router.getResponseIfValidAsync("typed", new Object[] {42, "2.5", "false", "s"}).join(), equalTo("42|2.5|false|s"));
+        assertThat(router.getResponseIfValidAsync("typed", new Object[] {42, 2.5, 1, "s"}), nullValue());
+        assertThat(router.getResponseIfValidAsync("typed", new Object[] {42}), nullValue());
+        assertThat(router.getResponseIfValidAsync("move", new Object[] {1, 2.5}).join(), equalTo("1,2.5"));
+    }
+    
+    @Test
+    public void testNullResponses() {
+        router.addRoute("nothing", () -> null);
+        router.addRouteWithParams("nothingWithParams", 1, args -> null);
+        router.addRouteWithTypedParams("nothingTyped", new ParamType[] {ParamType.INTEGER}, args -> null);
+        
+        assertThat(router.getResponseIfValid("nothing", null), equalTo(""));
+        assertThat(router.getResponseIfValid("nothingWithParams", new String[] {"1"}), equalTo(""));
+        assertThat(router.getResponseIfValid("nothingTyped", new String[] {"1"}), equalTo(""));
+        assertThat(router.getResponseIfValidAsync("nothingTyped", new Object[] {1}).join(), equalTo(""));
+        assertThat(router.getResponseIfValid("nothingTyped", new String[] {"x"}), nullValue());
+    }
+    
+    @Test
+    public void testAsyncRoutes() {
+        router.addAsyncRoute("later", 1, args -> CompletableFuture.completedFuture("later " + args[0]));
+        router.addAsyncRoute("never", 0, 50, args -> new CompletableFuture<>());
+        
+        assertThat(router.getResponseIfValidAsync("later", new String[] {"1"}).join(), equalTo("later 1"));
+        assertThat(router.getResponse("later", new String[] {"2"}), equalTo("later 2"));
+        assertThat(router.getResponseIfValidAsync("later", (String[]) null), nullValue());
+        
+        CompletableFuture<String> never = router.getResponseIfValidAsync("never", (String[]) null);
+        try {
+            never.join();
+            assertThat("the response should time out", false, equalTo(true));
+        } catch (CompletionException e) {
+            assertThat(Router.getFailureCause(e) instanceof TimeoutException, equalTo(true));
+        }
+    }
+}